@@ -4,17 +4,26 @@ import org.motechproject.admin.domain.QueueMBean;
 import org.motechproject.admin.domain.QueueMessage;
 import org.motechproject.admin.domain.TopicMBean;
 import org.motechproject.admin.jmx.MBeanService;
+import org.motechproject.admin.security.SecurityConstants;
+import org.motechproject.event.listener.EventMetrics;
+import org.motechproject.event.listener.EventMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 import java.util.List;
 
 /**
  * Responsible for the queue statistics view in the Admin UI.
- * Uses {@link org.motechproject.admin.jmx.MBeanService} for retrieving queue data.
+ * Uses {@link org.motechproject.admin.jmx.MBeanService} for retrieving queue data and
+ * {@link org.motechproject.event.listener.EventMetricsService} for retrieving the metrics of the events
+ * relayed by this instance.
  */
 @Controller
 public class BrokerStatisticsController {
@@ -22,6 +31,9 @@ public class BrokerStatisticsController {
     @Autowired
     private MBeanService mBeanService;
 
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
     /**
      * Returns the topic statistics.
      * @return a list {@link org.motechproject.admin.domain.TopicMBean} with the statistics, one for each topic
@@ -52,4 +64,26 @@ public class BrokerStatisticsController {
     public List<QueueMessage> browseQueueMessages(@RequestParam(required = true) String queueName) {
         return mBeanService.getQueueMessages(queueName);
     }
+
+    /**
+     * Returns the metrics of the events relayed by this instance: per subject and per listener counters,
+     * handling latencies, redeliveries and discards.
+     * @return the {@link org.motechproject.event.listener.EventMetrics} of this instance
+     */
+    @RequestMapping(value = "/events/metrics", method = RequestMethod.GET)
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @ResponseBody
+    public EventMetrics eventMetrics() {
+        return eventMetricsService.getMetrics();
+    }
+
+    /**
+     * Resets the metrics of the events relayed by this instance.
+     */
+    @RequestMapping(value = "/events/metrics", method = RequestMethod.DELETE)
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetEventMetrics() {
+        eventMetricsService.reset();
+    }
 }
@@ -12,6 +12,9 @@ import org.motechproject.admin.domain.QueueMessage;
 import org.motechproject.admin.domain.TopicMBean;
 import org.motechproject.admin.jmx.MBeanService;
 import org.motechproject.admin.web.controller.BrokerStatisticsController;
+import org.motechproject.event.listener.EventHandlingMetrics;
+import org.motechproject.event.listener.EventMetrics;
+import org.motechproject.event.listener.EventMetricsService;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.request.MockMvcRequestBuilders;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
@@ -19,6 +22,7 @@ import org.springframework.test.web.server.setup.MockMvcBuilders;
 import java.util.Arrays;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.springframework.test.web.server.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.server.result.MockMvcResultMatchers.status;
@@ -33,6 +37,9 @@ public class BrokerStatisticsControllerTest {
     @Mock
     MBeanService mBeanService;
 
+    @Mock
+    EventMetricsService eventMetricsService;
+
     @Before
     public void before() {
         initMocks(this);
@@ -75,4 +82,25 @@ public class BrokerStatisticsControllerTest {
                 .get("/queues/browse"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void shouldReturnEventMetrics() throws Exception {
+        EventMetrics metrics = new EventMetrics();
+        metrics.setRedelivered(3);
+        metrics.getSubjects().add(new EventHandlingMetrics("subject-1"));
+        given(eventMetricsService.getMetrics()).willReturn(metrics);
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/events/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(new StringContains("\"redelivered\":3")))
+                .andExpect(content().string(new StringContains("\"name\":\"subject-1\"")));
+    }
+
+    @Test
+    public void shouldResetEventMetrics() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/events/metrics"))
+                .andExpect(status().isOk());
+        verify(eventMetricsService).reset();
+    }
 }
@@ -17,6 +17,7 @@ public class JobsSearchSettings {
     private String status;
     private String timeFrom;
     private String timeTo;
+    private String after;
 
     public String getName() {
         return name;
@@ -89,4 +90,18 @@ public class JobsSearchSettings {
     public void setTimeTo(String timeTo) {
         this.timeTo = timeTo;
     }
+
+    /**
+     * Returns the name of the last job of the previous page. If it is set and jobs are sorted by name, the page starts
+     * after this job instead of skipping the jobs of the previous pages.
+     *
+     * @return the name of the last job of the previous page
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
 }
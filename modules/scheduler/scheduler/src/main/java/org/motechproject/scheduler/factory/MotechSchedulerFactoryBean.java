@@ -1,9 +1,12 @@
 package org.motechproject.scheduler.factory;
 
+import org.apache.commons.lang.math.NumberUtils;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
@@ -22,6 +25,13 @@ import static java.lang.Boolean.getBoolean;
 @Component("motechSchedulerFactoryBean")
 public class MotechSchedulerFactoryBean {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerFactoryBean.class);
+
+    private static final String THREAD_COUNT = "org.quartz.threadPool.threadCount";
+    private static final String BATCH_TRIGGER_ACQUISITION_MAX_COUNT = "org.quartz.scheduler.batchTriggerAcquisitionMaxCount";
+    private static final String CLUSTERED = "org.quartz.jobStore.isClustered";
+    private static final String INSTANCE_ID = "org.quartz.scheduler.instanceId";
+
     private ApplicationContext applicationContext;
 
     private SchedulerFactoryBean schedulerFactoryBean;
@@ -46,7 +56,7 @@ public class MotechSchedulerFactoryBean {
     @PostConstruct
     public void init() {
         schedulerFactoryBean = new SchedulerFactoryBean();
-        schedulerFactoryBean.setQuartzProperties(schedulerProperties);
+        schedulerFactoryBean.setQuartzProperties(getQuartzProperties());
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
         schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
         schedulerFactoryBean.setApplicationContext(applicationContext);
@@ -83,6 +93,29 @@ public class MotechSchedulerFactoryBean {
         return getQuartzSchedulerFactoryBean().getScheduler();
     }
 
+    /*
+     * A node never acquires more triggers at once than it has threads to execute them, so in a cluster the triggers
+     * firing at the same time are left for the other nodes, instead of waiting for the threads of a single node.
+     */
+    private Properties getQuartzProperties() {
+        Properties properties = new Properties();
+        properties.putAll(schedulerProperties);
+
+        int threadCount = NumberUtils.toInt(properties.getProperty(THREAD_COUNT), 1);
+        int batchMaxCount = NumberUtils.toInt(properties.getProperty(BATCH_TRIGGER_ACQUISITION_MAX_COUNT), 1);
+        if (batchMaxCount > threadCount) {
+            LOGGER.warn("{} is greater than {}, using {} instead of {}", BATCH_TRIGGER_ACQUISITION_MAX_COUNT,
+                    THREAD_COUNT, threadCount, batchMaxCount);
+            properties.setProperty(BATCH_TRIGGER_ACQUISITION_MAX_COUNT, String.valueOf(threadCount));
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty(CLUSTERED)) && properties.getProperty(INSTANCE_ID) == null) {
+            properties.setProperty(INSTANCE_ID, "AUTO");
+        }
+
+        return properties;
+    }
+
     private boolean getBooleanWithDefault(String s, boolean defaultValue) {
         return s != null ? getBoolean(s) : defaultValue;
     }
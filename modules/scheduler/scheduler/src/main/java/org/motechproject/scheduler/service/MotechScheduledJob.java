@@ -21,12 +21,15 @@ import java.util.Map;
  * its execute method will be called when a MOTECH job in quartz triggers. Since jobs in MOTECH are basically {@link org.motechproject.event.MotechEvent}s
  * getting published on a quartz schedule, upon execution this class retrieves the {@link org.motechproject.event.listener.EventRelay}
  * from the application context and uses it to immediately publish the event scheduled with this job. For every execution
- * a new copy of the event is constructed.
+ * a new copy of the event is constructed. Quartz creates a new instance of this class for every execution, so the
+ * relay is looked up once per application context and shared by all executions.
  */
 public class MotechScheduledJob implements Job {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechScheduledJob.class);
 
+    private static volatile EventRelayHandle eventRelayHandle;
+
     /**
      * Executes the job called by Quartz.
      *
@@ -64,10 +67,32 @@ public class MotechScheduledJob implements Job {
             }
 
             ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
-            EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
+            getEventRelay(applicationContext).sendEventMessage(motechEvent);
         } catch (RuntimeException e) {
             LOGGER.error("Job execution failed.", e);
         }
     }
+
+    private static EventRelay getEventRelay(ApplicationContext applicationContext) {
+        EventRelayHandle handle = eventRelayHandle;
+
+        // a restart of the module creates a new context, with a new relay
+        if (handle == null || handle.applicationContext != applicationContext) {
+            handle = new EventRelayHandle(applicationContext, applicationContext.getBean(EventRelay.class));
+            eventRelayHandle = handle;
+        }
+
+        return handle.eventRelay;
+    }
+
+    private static final class EventRelayHandle {
+
+        private final ApplicationContext applicationContext;
+        private final EventRelay eventRelay;
+
+        private EventRelayHandle(ApplicationContext applicationContext, EventRelay eventRelay) {
+            this.applicationContext = applicationContext;
+            this.eventRelay = eventRelay;
+        }
+    }
 }
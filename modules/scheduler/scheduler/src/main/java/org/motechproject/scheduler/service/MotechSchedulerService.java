@@ -10,6 +10,7 @@ import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.contract.SchedulableJob;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,6 +48,16 @@ public interface MotechSchedulerService {
      */
     void scheduleJob(SchedulableJob job);
 
+    /**
+     * Schedules the given schedulable jobs. All jobs are validated before any of them is scheduled. Jobs are stored in
+     * batches, every batch in a single transaction, and replace the existing jobs with the same job IDs. Whether
+     * a job is UI defined is written after its batch is committed, separately, and a failure to write it is only
+     * logged.
+     *
+     * @param jobs the jobs to schedule, not null
+     */
+    void scheduleJobs(Collection<? extends SchedulableJob> jobs);
+
     /**
      * Schedules the given cron schedulable job. The Job ID by which the job will be referencing in the future should be provided
      * in an Instance of MotechEvent in SchedulableJob
@@ -0,0 +1,148 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.JobKey;
+import org.quartz.TriggerKey;
+import org.quartz.utils.DBConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Queries executed directly on the Quartz tables, for the operations the Quartz API can only perform one job at
+ * a time. Triggers are found by the prefix of their names using the index on the scheduler name, group and trigger
+ * name, so the time it takes depends on the number of matching triggers, not on the number of all triggers in the
+ * group. The UI_DEFINED column of the job details table, added by MOTECH, is kept up to date, so jobs can be listed
+ * without deserializing their job data.
+ */
+class JobStoreQueries {
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String JOB_DETAILS = "JOB_DETAILS";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String TRIGGER_NAME = "TRIGGER_NAME";
+    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    private static final String JOB_NAME = "JOB_NAME";
+    private static final String JOB_GROUP = "JOB_GROUP";
+    private static final String UI_DEFINED = "UI_DEFINED";
+    private static final String EQUALS_PARAM = " = ?";
+    private static final String AND = " AND ";
+    private static final char ESCAPE = '!';
+
+    private final Properties sqlProperties;
+
+    JobStoreQueries(Properties sqlProperties) {
+        this.sqlProperties = sqlProperties;
+    }
+
+    /**
+     * Returns the keys of the triggers from the given group, which names start with the given prefix.
+     *
+     * @param schedulerName  the name of the scheduler, not null
+     * @param group  the group of the triggers, not null
+     * @param namePrefix  the prefix of the trigger names, not null
+     * @return the keys of the matching triggers
+     * @throws SQLException if the query fails
+     */
+    List<TriggerKey> findTriggerKeysByNamePrefix(String schedulerName, String group, String namePrefix)
+            throws SQLException {
+        List<TriggerKey> keys = new ArrayList<>();
+
+        String query = new StringBuilder("SELECT ").append(getCorrectNameRepresentation(TRIGGER_NAME))
+                .append(" FROM ").append(getTableName(TRIGGERS))
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(EQUALS_PARAM)
+                .append(AND).append(getCorrectNameRepresentation(TRIGGER_GROUP)).append(EQUALS_PARAM)
+                .append(AND).append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ? ESCAPE '")
+                .append(ESCAPE).append('\'')
+                .toString();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, schedulerName);
+            stmt.setString(2, group);
+            stmt.setString(3, escapeLikePattern(namePrefix) + '%');
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new TriggerKey(rs.getString(1), group));
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Sets the UI_DEFINED column of the given jobs.
+     *
+     * @param schedulerName  the name of the scheduler, not null
+     * @param jobKeys  the keys of the jobs, not null
+     * @param uiDefined  the value to set
+     * @throws SQLException if the update fails
+     */
+    void setUiDefined(String schedulerName, Collection<JobKey> jobKeys, boolean uiDefined) throws SQLException {
+        if (jobKeys.isEmpty()) {
+            return;
+        }
+
+        String query = new StringBuilder("UPDATE ").append(getTableName(JOB_DETAILS))
+                .append(" SET ").append(getCorrectNameRepresentation(UI_DEFINED)).append(EQUALS_PARAM)
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(EQUALS_PARAM)
+                .append(AND).append(getCorrectNameRepresentation(JOB_NAME)).append(EQUALS_PARAM)
+                .append(AND).append(getCorrectNameRepresentation(JOB_GROUP)).append(EQUALS_PARAM)
+                .toString();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (JobKey jobKey : jobKeys) {
+                stmt.setBoolean(1, uiDefined);
+                stmt.setString(2, schedulerName);
+                stmt.setString(3, jobKey.getName());
+                stmt.setString(4, jobKey.getGroup());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Escapes the wildcards of the SQL LIKE operator in the given value, using {@value #ESCAPE} as the escape
+     * character.
+     *
+     * @param value  the value to escape, not null
+     * @return the escaped value
+     */
+    static String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+    }
+
+    private String getTableName(String table) {
+        return getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX) + table);
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+}
@@ -12,21 +12,21 @@ import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.RepeatingJobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodJobId;
 import org.motechproject.scheduler.contract.RunOnceJobId;
+import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
-import org.quartz.CalendarIntervalTrigger;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
-import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
-import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
+import org.quartz.impl.jdbcjobstore.Constants;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.triggers.CalendarIntervalTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 import org.quartz.utils.DBConnectionManager;
 import org.slf4j.Logger;
@@ -40,15 +40,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TimeZone;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
@@ -66,16 +68,54 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
     private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
     private static final String UI_DEFINED = "uiDefined";
+    private static final String SCHED_NAME = "SCHED_NAME";
     private static final String START_TIME = "START_TIME";
     private static final String END_TIME = "END_TIME";
+    private static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
     private static final String TRIGGER_NAME = "TRIGGER_NAME";
     private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
     private static final String TRIGGER_STATE = "TRIGGER_STATE";
     private static final String TRIGGER_TYPE = "TRIGGER_TYPE";
-    private static final String WAITING = "WAITING";
+    private static final String JOB_NAME = "JOB_NAME";
+    private static final String JOB_GROUP = "JOB_GROUP";
+    private static final String JOB_DATA = "JOB_DATA";
+    private static final String UI_DEFINED_COLUMN = "UI_DEFINED";
+    private static final String CRON_EXPRESSION = "CRON_EXPRESSION";
+    private static final String REPEAT_COUNT = "REPEAT_COUNT";
+    private static final String REPEAT_INTERVAL = "REPEAT_INTERVAL";
+    private static final String TIMES_TRIGGERED = "TIMES_TRIGGERED";
+    private static final String STR_PROP_1 = "STR_PROP_1";
+    private static final String STR_PROP_2 = "STR_PROP_2";
+    private static final String INT_PROP_1 = "INT_PROP_1";
+    private static final String INT_PROP_2 = "INT_PROP_2";
     private static final String TRIGGERS = "TRIGGERS";
     private static final String JOB_DETAILS = "JOB_DETAILS";
-    private static final String JOB_DATA = "JOB_DATA";
+    private static final String CRON_TRIGGERS = "CRON_TRIGGERS";
+    private static final String SIMPLE_TRIGGERS = "SIMPLE_TRIGGERS";
+    private static final String SIMPROP_TRIGGERS = "SIMPROP_TRIGGERS";
+    private static final String TRIGGERS_ALIAS = "A";
+    private static final String JOB_DETAILS_ALIAS = "B";
+    private static final String CRON_ALIAS = "C";
+    private static final String SIMPLE_ALIAS = "S";
+    private static final String SIMPROP_ALIAS = "P";
+    // positions of the columns selected by the jobs basic info query
+    private static final int COL_NAME = 1;
+    private static final int COL_GROUP = 2;
+    private static final int COL_STATE = 3;
+    private static final int COL_TYPE = 4;
+    private static final int COL_START_TIME = 5;
+    private static final int COL_END_TIME = 6;
+    private static final int COL_NEXT_FIRE_TIME = 7;
+    private static final int COL_UI_DEFINED = 8;
+    private static final int COL_JOB_DATA = 9;
+    private static final int COL_CRON_EXPRESSION = 10;
+    private static final int COL_REPEAT_COUNT = 11;
+    private static final int COL_REPEAT_INTERVAL = 12;
+    private static final int COL_TIMES_TRIGGERED = 13;
+    private static final int COL_STR_PROP_1 = 14;
+    private static final int COL_STR_PROP_2 = 15;
+    private static final int COL_INT_PROP_1 = 16;
+    private static final int COL_INT_PROP_2 = 17;
     private static final String OR = " OR ";
     private static final String AND = " AND ";
 
@@ -94,81 +134,49 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
     @Override
     public int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
-        String query = buildJobsCountSqlQuery(jobsSearchSettings);
-        int rowCount;
+        List<Object> params = new ArrayList<>();
+        String query = buildJobsCountSqlQuery(jobsSearchSettings, params);
         try {
-            rowCount = executeCountQuery(query);
             LOGGER.debug("Executing {}", query);
-            return rowCount;
+            return executeCountQuery(query, params);
         } catch (SQLException e) {
             throw new MotechSchedulerJobRetrievalException("Jobs counting failed.", e);
         }
     }
 
-    private String getQuery(JobsSearchSettings jobsSearchSettings){
+    private String getQuery(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         String query;
         if (isBlank(jobsSearchSettings.getName()) &&  isBlank(jobsSearchSettings.getActivity()) && isBlank(jobsSearchSettings.getStatus()) && isBlank(jobsSearchSettings.getTimeFrom()) && isBlank(jobsSearchSettings.getTimeTo())) { //NO CHECKSTYLE BooleanExpressionComplexity
-            query = buildJobsAllSqlQuery();
+            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings, params, false);
         } else if (isBlank(jobsSearchSettings.getActivity()) || isBlank(jobsSearchSettings.getStatus())) {
             query = null;
         } else {
-            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings);
+            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings, params, true);
         }
         return query;
     }
-    
+
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
         List<JobBasicInfo> jobBasicInfos = new LinkedList<>();
-        String query = getQuery(jobsSearchSettings);
-        if(query == null) {
+        List<Object> params = new ArrayList<>();
+        String query = getQuery(jobsSearchSettings, params);
+        if (query == null) {
             return jobBasicInfos;
         }
 
         LOGGER.debug("Executing {}", query);
 
-        List<String> columnNames = new LinkedList<>();
-        columnNames.add(TRIGGER_NAME);
-        columnNames.add(TRIGGER_GROUP);
-        columnNames.add(JOB_DATA);
-        List<List<Object>> objects;
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = prepareStatement(conn, query, params);
+             ResultSet rs = stmt.executeQuery()) {
 
-        try {
-            objects = executeQuery(query, columnNames);
-
-            for (List<Object> row : objects) {
-                JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobGroup = jobKey.getGroup();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
-                }
-                String endDate = getEndDate(trigger, jobType);
-                boolean uiDefined = getUiDefined((byte[]) row.get(2));
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        jobGroup,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info,
-                        uiDefined
-                ));
+            while (rs.next()) {
+                jobBasicInfos.add(toJobBasicInfo(rs));
             }
 
             return jobBasicInfos;
-        } catch (SQLException | SchedulerException | ClassNotFoundException | IOException e) {
+        } catch (SQLException | ClassNotFoundException | IOException e) {
             throw new MotechSchedulerJobRetrievalException("Retrieval of scheduled jobs failed.", e);
         }
     }
@@ -212,35 +220,55 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
-        List<List<Object>> rows = new LinkedList<>();
+    private JobBasicInfo toJobBasicInfo(ResultSet rs) throws SQLException, IOException, ClassNotFoundException {
+        String jobName = rs.getString(COL_NAME);
+        String jobGroup = rs.getString(COL_GROUP);
+        String jobType = getJobType(jobName);
 
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
+        Date startTime = new Date(rs.getLong(COL_START_TIME));
+        long endMillis = rs.getLong(COL_END_TIME);
+        Date endTime = (endMillis > 0) ? new Date(endMillis) : null;
+        long nextFireMillis = rs.getLong(COL_NEXT_FIRE_TIME);
+        Date nextFireTime = (nextFireMillis > 0) ? new Date(nextFireMillis) : null;
 
-            while (rs.next()) {
-                List<Object> row = new LinkedList<>();
-                if (columns != null) {
-                    for (String name : columns) {
-                        row.add(rs.getObject(name));
-                    }
-                }
-                rows.add(row);
-            }
+        String nextFireDate = "";
+        if (nextFireTime != null) {
+            nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(nextFireTime.getTime());
         }
-        return rows;
+
+        return new JobBasicInfo(
+                getJobActivity(startTime, endTime),
+                getJobStatus(rs.getString(COL_STATE)),
+                jobName,
+                jobGroup,
+                getStartDate(startTime),
+                nextFireDate,
+                getEndDate(startTime, endTime, jobType),
+                jobType,
+                getJobInfo(rs, jobType, startTime, endTime, nextFireTime),
+                getUiDefined(rs)
+        );
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
     }
 
-    private int executeCountQuery(String query) throws SQLException {
-        int rowConut = 0;
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
+    private PreparedStatement prepareStatement(Connection conn, String query, List<Object> params) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(query);
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
+        }
+        return stmt;
+    }
+
+    private int executeCountQuery(String query, List<Object> params) throws SQLException {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = prepareStatement(conn, query, params);
+             ResultSet rs = stmt.executeQuery()) {
             rs.next();
-            rowConut = rs.getInt(1);
+            return rs.getInt(1);
         }
-        return rowConut;
     }
 
     private void checkAndAddElement(StringBuilder sb, String element, boolean condition) {
@@ -249,7 +277,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private String buildDateRangeFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildDateRangeFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder dateRangeSb = new StringBuilder();
         boolean addAnd = false;
         DateTime dateFrom;
@@ -257,7 +285,8 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         if (StringUtils.isNotBlank(jobsSearchSettings.getTimeFrom())) {
             dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeFrom());
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" >= ").append(dateFrom.getMillis());
+            dateRangeSb.append(column(START_TIME)).append(" >= ?");
+            params.add(dateFrom.getMillis());
             addAnd = true;
         }
 
@@ -265,30 +294,34 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeTo());
             checkAndAddElement(dateRangeSb, AND, addAnd);
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" <= ").append(dateTo.getMillis());
+            dateRangeSb.append(column(START_TIME)).append(" <= ?");
+            params.add(dateTo.getMillis());
         }
         return dateRangeSb.toString();
     }
 
-    private String buildActivityFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildActivityFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder activitySb = new StringBuilder();
         if (jobsSearchSettings.getActivity() != null) {
             String[] activityElements = jobsSearchSettings.getActivity().split(",");
             boolean addOr = false;
+            long now = DateTime.now().getMillis();
             if (activityElements.length < 3) {
                 for (String element : activityElements) {
                     checkAndAddElement(activitySb, OR, addOr);
                     if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
-                        activitySb.append(getCorrectNameRepresentation(START_TIME)).append(" > ").append(DateTime.now().getMillis());
+                        activitySb.append(column(START_TIME)).append(" > ?");
+                        params.add(now);
                     } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
-                        activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" < ").append(DateTime.now().getMillis())
-                                .append(AND).append(getCorrectNameRepresentation(END_TIME)).append(" != 0");
+                        activitySb.append(column(END_TIME)).append(" < ?")
+                                .append(AND).append(column(END_TIME)).append(" != 0");
+                        params.add(now);
                     } else {
-                        activitySb.append(" (").append(getCorrectNameRepresentation(START_TIME)).append(" <= ")
-                                .append(DateTime.now().getMillis()).append(" AND (")
-                                .append(getCorrectNameRepresentation(END_TIME)).append(" >= ")
-                                .append(DateTime.now().getMillis()).append(OR)
-                                .append(getCorrectNameRepresentation(END_TIME)).append(" = 0))");
+                        activitySb.append(" (").append(column(START_TIME)).append(" <= ? AND (")
+                                .append(column(END_TIME)).append(" >= ?").append(OR)
+                                .append(column(END_TIME)).append(" = 0))");
+                        params.add(now);
+                        params.add(now);
                     }
                     addOr = true;
                 }
@@ -297,7 +330,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return activitySb.toString();
     }
 
-    private String buildStatusFilter(JobsSearchSettings jobsSearchSettings) {
+    private String buildStatusFilter(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         StringBuilder statusSb = new StringBuilder();
         if (jobsSearchSettings.getStatus() != null) {
             String[] statusElements = jobsSearchSettings.getStatus().split(",");
@@ -305,19 +338,18 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             if (statusElements.length < 4) {
                 for (String element : statusElements) {
                     checkAndAddElement(statusSb, OR, addOr);
-                    statusSb.append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
                     if (Trigger.TriggerState.ERROR.toString().equals(element)) {
-                        statusSb.append("\'").append(Trigger.TriggerState.ERROR.toString()).append("\'");
+                        addStateCondition(statusSb, params, Constants.STATE_ERROR);
                     } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
-                        statusSb.append("\'").append(Trigger.TriggerState.BLOCKED.toString()).append("\'");
+                        addStateCondition(statusSb, params, Constants.STATE_BLOCKED);
                     } else if (Trigger.TriggerState.PAUSED.toString().equals(element)) {
-                        statusSb.append("\'").append(Trigger.TriggerState.PAUSED.toString()).append("\'");
+                        addStateCondition(statusSb, params, Constants.STATE_PAUSED);
                     } else {
-                        statusSb.append("\'").append(Trigger.TriggerState.NORMAL.toString()).append("\'")
-                            .append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ")
-                            .append("\'").append(Trigger.TriggerState.COMPLETE.toString()).append("\'")
-                            .append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ")
-                            .append("\'").append(WAITING).append("\'");
+                        addStateCondition(statusSb, params, Trigger.TriggerState.NORMAL.toString());
+                        statusSb.append(OR);
+                        addStateCondition(statusSb, params, Constants.STATE_COMPLETE);
+                        statusSb.append(OR);
+                        addStateCondition(statusSb, params, Constants.STATE_WAITING);
                     }
                     addOr = true;
                 }
@@ -326,25 +358,28 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return statusSb.toString();
     }
 
-    private List<String> buildFilters(JobsSearchSettings jobsSearchSettings) {
+    private void addStateCondition(StringBuilder sb, List<Object> params, String state) {
+        sb.append(column(TRIGGER_STATE)).append(" = ?");
+        params.add(state);
+    }
+
+    private List<String> buildFilters(JobsSearchSettings jobsSearchSettings, List<Object> params) {
         List<String> filters = new ArrayList<>();
-        String dateRangeFilter = buildDateRangeFilter(jobsSearchSettings);
+        String dateRangeFilter = buildDateRangeFilter(jobsSearchSettings, params);
         if (isNotBlank(dateRangeFilter)) {
             filters.add(dateRangeFilter);
         }
-        String activityFilter = buildActivityFilter(jobsSearchSettings);
+        String activityFilter = buildActivityFilter(jobsSearchSettings, params);
         if (isNotBlank(activityFilter)) {
             filters.add(activityFilter);
         }
-        String statusFilter = buildStatusFilter(jobsSearchSettings);
+        String statusFilter = buildStatusFilter(jobsSearchSettings, params);
         if (isNotBlank(statusFilter)) {
             filters.add(statusFilter);
         }
-        StringBuilder nameSb = new StringBuilder();
         if (isNotBlank(jobsSearchSettings.getName())) {
-            nameSb.append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ").append("\'%")
-                    .append(jobsSearchSettings.getName()).append("%\'");
-            filters.add(nameSb.toString());
+            filters.add(column(TRIGGER_NAME) + " LIKE ? ESCAPE '!'");
+            params.add('%' + JobStoreQueries.escapeLikePattern(jobsSearchSettings.getName()) + '%');
         }
 
         return filters;
@@ -354,67 +389,125 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sqlProperties.get("org.quartz.dataSource.motechDS.driver").equals(Drivers.MYSQL_DRIVER) ? name : "\"" + name.toLowerCase() + "\"";
     }
 
-    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings) {
-        List<String> filters = buildFilters(jobsSearchSettings);
+    private String column(String name) {
+        return column(TRIGGERS_ALIAS, name);
+    }
+
+    private String column(String alias, String name) {
+        return alias + "." + getCorrectNameRepresentation(name);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        boolean addAnd = false;
-        if (filters.size() > 0) {
-            sb.append(" WHERE ");
-        }
-        for (String filter : filters) {
-            if (filter.length() > 0) {
-                checkAndAddElement(sb, AND, addAnd);
-                sb.append("(").append(filter).append(")");
-                addAnd = true;
+    private String table(String name) {
+        return getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + name);
+    }
+
+    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings, List<Object> params, boolean filter) {
+        StringBuilder sb = new StringBuilder(" WHERE ").append(column(SCHED_NAME)).append(" = ?");
+        params.add(getSchedulerName());
+
+        if (filter) {
+            for (String condition : buildFilters(jobsSearchSettings, params)) {
+                if (condition.length() > 0) {
+                    sb.append(AND).append("(").append(condition).append(")");
+                }
             }
         }
         return sb.toString();
     }
 
-    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
+    private String buildJoin(String table, String alias) {
+        return new StringBuilder(" LEFT JOIN ").append(table(table)).append(" AS ").append(alias)
+                .append(" ON ").append(column(alias, SCHED_NAME)).append(" = ").append(column(SCHED_NAME))
+                .append(AND).append(column(alias, TRIGGER_NAME)).append(" = ").append(column(TRIGGER_NAME))
+                .append(AND).append(column(alias, TRIGGER_GROUP)).append(" = ").append(column(TRIGGER_GROUP))
+                .toString();
+    }
 
-        StringBuilder sb = new StringBuilder("SELECT A.TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
-                .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-                .append(" AS A JOIN ")
-                .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + JOB_DETAILS))
-                .append(" AS B")
-                .append(" ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP")
-                .append(buildWhereCondition(jobsSearchSettings));
+    /*
+     * Selects all data needed for listing the jobs in a single query, the job data is selected only for the jobs
+     * scheduled before the UI_DEFINED column was added.
+     */
+    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings, List<Object> params,
+                                              boolean filter) {
+        StringBuilder sb = new StringBuilder("SELECT ")
+                .append(column(TRIGGER_NAME)).append(", ")
+                .append(column(TRIGGER_GROUP)).append(", ")
+                .append(column(TRIGGER_STATE)).append(", ")
+                .append(column(TRIGGER_TYPE)).append(", ")
+                .append(column(START_TIME)).append(", ")
+                .append(column(END_TIME)).append(", ")
+                .append(column(NEXT_FIRE_TIME)).append(", ")
+                .append(column(JOB_DETAILS_ALIAS, UI_DEFINED_COLUMN)).append(", ")
+                .append("CASE WHEN ").append(column(JOB_DETAILS_ALIAS, UI_DEFINED_COLUMN)).append(" IS NULL THEN ")
+                .append(column(JOB_DETAILS_ALIAS, JOB_DATA)).append(" END, ")
+                .append(column(CRON_ALIAS, CRON_EXPRESSION)).append(", ")
+                .append(column(SIMPLE_ALIAS, REPEAT_COUNT)).append(", ")
+                .append(column(SIMPLE_ALIAS, REPEAT_INTERVAL)).append(", ")
+                .append(column(SIMPLE_ALIAS, TIMES_TRIGGERED)).append(", ")
+                .append(column(SIMPROP_ALIAS, STR_PROP_1)).append(", ")
+                .append(column(SIMPROP_ALIAS, STR_PROP_2)).append(", ")
+                .append(column(SIMPROP_ALIAS, INT_PROP_1)).append(", ")
+                .append(column(SIMPROP_ALIAS, INT_PROP_2))
+                .append(" FROM ").append(table(TRIGGERS)).append(" AS ").append(TRIGGERS_ALIAS)
+                .append(" JOIN ").append(table(JOB_DETAILS)).append(" AS ").append(JOB_DETAILS_ALIAS)
+                .append(" ON ").append(column(SCHED_NAME)).append(" = ").append(column(JOB_DETAILS_ALIAS, SCHED_NAME))
+                .append(AND).append(column(JOB_NAME)).append(" = ").append(column(JOB_DETAILS_ALIAS, JOB_NAME))
+                .append(AND).append(column(JOB_GROUP)).append(" = ").append(column(JOB_DETAILS_ALIAS, JOB_GROUP))
+                .append(buildJoin(CRON_TRIGGERS, CRON_ALIAS))
+                .append(buildJoin(SIMPLE_TRIGGERS, SIMPLE_ALIAS))
+                .append(buildJoin(SIMPROP_TRIGGERS, SIMPROP_ALIAS))
+                .append(buildWhereCondition(jobsSearchSettings, params, filter));
+
+        String sortColumn = getSortColumn(jobsSearchSettings.getSortColumn());
+        String sortDirection = "desc".equalsIgnoreCase(jobsSearchSettings.getSortDirection()) ? "DESC" : "ASC";
+        // jobs after the last job of the previous page, only possible when jobs are sorted by name
+        boolean keyset = isNotBlank(jobsSearchSettings.getAfter()) && TRIGGER_NAME.equals(sortColumn);
+
+        if (keyset) {
+            sb.append(AND).append(column(TRIGGER_NAME)).append("DESC".equals(sortDirection) ? " < ?" : " > ?");
+            params.add(jobsSearchSettings.getAfter());
+        }
 
-        if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
-            sb.append(" ORDER BY ")
-                    .append("A.")
-                    .append(getCorrectNameRepresentation(getSortColumn(jobsSearchSettings.getSortColumn())))
-                    .append(" ")
-                    .append(jobsSearchSettings.getSortDirection().toUpperCase());
+        sb.append(" ORDER BY ").append(column(sortColumn)).append(' ').append(sortDirection);
+        if (!TRIGGER_NAME.equals(sortColumn)) {
+            sb.append(", ").append(column(TRIGGER_NAME)).append(' ').append(sortDirection);
         }
-        if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
-            int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
-            sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(offset);
+
+        if (jobsSearchSettings.getRows() != null && (jobsSearchSettings.getPage() != null || keyset)) {
+            sb.append(" LIMIT ?");
+            params.add(jobsSearchSettings.getRows());
+
+            if (!keyset) {
+                int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
+                sb.append(" OFFSET ?");
+                params.add(offset);
+            }
         }
 
         return sb.toString();
     }
 
-    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ")
-            .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-            .append(buildWhereCondition(jobsSearchSettings));
-        return sb.toString();
+    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings, List<Object> params) {
+        return new StringBuilder("SELECT COUNT(*) FROM ")
+                .append(table(TRIGGERS)).append(" AS ").append(TRIGGERS_ALIAS)
+                .append(buildWhereCondition(jobsSearchSettings, params, true))
+                .toString();
     }
 
-    private String buildJobsAllSqlQuery() {
-        StringBuilder sb = new StringBuilder("SELECT A. TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
-            .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-            .append(" AS A JOIN QRTZ_JOB_DETAILS AS B ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP");
-        return sb.toString();
+    private String getSchedulerName() {
+        try {
+            return scheduler.getSchedulerName();
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException("Unable to get the name of the scheduler", e);
+        }
     }
 
     private String getSortColumn(String column) {
         String sortColumn;
 
-        if (column.equalsIgnoreCase("startDate")) {
+        if (column == null) {
+            sortColumn = TRIGGER_NAME;
+        } else if (column.equalsIgnoreCase("startDate")) {
             sortColumn = START_TIME;
         } else if (column.equalsIgnoreCase("endDate")) {
             sortColumn = END_TIME;
@@ -429,99 +522,116 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sortColumn;
     }
 
-    private String getJobInfo(Trigger trigger, String jobType) throws SchedulerException {
+    private String getJobInfo(ResultSet rs, String jobType, Date startTime, Date endTime, Date nextFireTime)
+            throws SQLException {
         if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
-            Integer timesTriggered = 0;
+            OperableTrigger trigger = null;
+            int timesTriggered = 0;
             String repeatMaxCount = "-";
 
-            if (trigger instanceof CalendarIntervalTrigger) {
-                CalendarIntervalTrigger calendarIntervalTrigger = (CalendarIntervalTrigger) trigger;
-
-                timesTriggered = calendarIntervalTrigger.getTimesTriggered();
-            } else if (trigger instanceof SimpleTrigger) {
-                SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
-
-                timesTriggered = simpleTrigger.getTimesTriggered();
+            if (Constants.TTYPE_SIMPLE.equals(rs.getString(COL_TYPE))) {
+                SimpleTriggerImpl simpleTrigger = new SimpleTriggerImpl();
+                simpleTrigger.setRepeatCount(rs.getInt(COL_REPEAT_COUNT));
+                simpleTrigger.setRepeatInterval(rs.getLong(COL_REPEAT_INTERVAL));
+                timesTriggered = rs.getInt(COL_TIMES_TRIGGERED);
+                simpleTrigger.setTimesTriggered(timesTriggered);
+                trigger = simpleTrigger;
+            } else if (Constants.TTYPE_CAL_INT.equals(rs.getString(COL_TYPE))) {
+                CalendarIntervalTriggerImpl calendarIntervalTrigger = new CalendarIntervalTriggerImpl();
+                calendarIntervalTrigger.setRepeatIntervalUnit(DateBuilder.IntervalUnit.valueOf(rs.getString(COL_STR_PROP_1)));
+                calendarIntervalTrigger.setRepeatInterval(rs.getInt(COL_INT_PROP_1));
+                if (rs.getString(COL_STR_PROP_2) != null) {
+                    calendarIntervalTrigger.setTimeZone(TimeZone.getTimeZone(rs.getString(COL_STR_PROP_2)));
+                }
+                timesTriggered = rs.getInt(COL_INT_PROP_2);
+                calendarIntervalTrigger.setTimesTriggered(timesTriggered);
+                trigger = calendarIntervalTrigger;
             }
 
-            if (trigger.getEndTime() != null) {
+            if (trigger != null && endTime != null) {
+                trigger.setStartTime(startTime);
+                trigger.setEndTime(endTime);
+                trigger.setNextFireTime(nextFireTime);
+
                 repeatMaxCount = Integer.toString(TriggerUtils.computeFireTimesBetween(
-                        (OperableTrigger) trigger, null, trigger.getStartTime(), trigger.getEndTime()
+                        trigger, null, startTime, endTime
                 ).size() + timesTriggered);
             }
 
             return String.format("%d/%s", timesTriggered, repeatMaxCount);
         } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
-            CronScheduleBuilder cronScheduleBuilder = (CronScheduleBuilder) trigger.getScheduleBuilder();
-
-            CronTrigger cronTrigger = (CronTrigger) cronScheduleBuilder.build();
-
-            return cronTrigger.getCronExpression();
+            String cronExpression = rs.getString(COL_CRON_EXPRESSION);
+            return (cronExpression == null) ? "-" : cronExpression;
         } else {
             return "-";
         }
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
-        if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
+    private String getJobType(String jobName) {
+        if (jobName.endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
-        } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
+        } else if (jobName.endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
             return JobBasicInfo.JOBTYPE_REPEATING;
-        } else if (jobKey.getName().endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
+        } else if (jobName.endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
             return JobBasicInfo.JOBTYPE_PERIOD;
         } else {
             return JobBasicInfo.JOBTYPE_CRON;
         }
     }
 
-    private String getStartDate(Trigger trigger) throws SchedulerException {
-        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getStartTime().getTime());
+    private String getStartDate(Date startTime) {
+        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(startTime.getTime());
     }
 
-    private String getEndDate(Trigger trigger, String jobType) throws SchedulerException {
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-        String startDate = getStartDate(trigger);
+    private String getEndDate(Date startTime, Date endTime, String jobType) {
         String endDate;
 
-        if (!endDateTime.isAfterNow()) {
+        if (endTime == null || !new DateTime(endTime).isAfterNow()) {
             if (jobType.equals(JobBasicInfo.JOBTYPE_RUNONCE)) {
-                endDate = startDate;
+                endDate = getStartDate(startTime);
             } else {
                 endDate = "-";
             }
         } else {
-            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endDateTime);
+            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endTime.getTime());
         }
 
         return endDate;
     }
 
-    private String getJobActivity(Trigger trigger) throws SchedulerException {
-        DateTime startDateTime = new DateTime(trigger.getStartTime());
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-
-        if (startDateTime.isAfterNow()) {
+    private String getJobActivity(Date startTime, Date endTime) {
+        if (new DateTime(startTime).isAfterNow()) {
             return JobBasicInfo.ACTIVITY_NOTSTARTED;
-        } else if (endDateTime.isBeforeNow()) {
+        } else if (endTime != null && new DateTime(endTime).isBeforeNow()) {
             return  JobBasicInfo.ACTIVITY_FINISHED;
         } else {
             return JobBasicInfo.ACTIVITY_ACTIVE;
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
-        if (currentTriggerState == Trigger.TriggerState.ERROR) {
+    private String getJobStatus(String triggerState) {
+        if (Constants.STATE_ERROR.equals(triggerState)) {
             return JobBasicInfo.STATUS_ERROR;
-        } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
+        } else if (Constants.STATE_BLOCKED.equals(triggerState)) {
             return JobBasicInfo.STATUS_BLOCKED;
-        } else if (currentTriggerState == Trigger.TriggerState.PAUSED) {
+        } else if (Constants.STATE_PAUSED.equals(triggerState) || Constants.STATE_PAUSED_BLOCKED.equals(triggerState)) {
             return JobBasicInfo.STATUS_PAUSED;
         } else {
             return JobBasicInfo.STATUS_OK;
         }
     }
 
+    private boolean getUiDefined(ResultSet rs) throws SQLException, IOException, ClassNotFoundException {
+        boolean uiDefined = rs.getBoolean(COL_UI_DEFINED);
+        if (!rs.wasNull()) {
+            return uiDefined;
+        }
+
+        // jobs scheduled before the UI_DEFINED column was added
+        byte[] jobData = rs.getBytes(COL_JOB_DATA);
+        return jobData != null && getUiDefined(jobData);
+    }
+
     private boolean getUiDefined(byte[] bytes) throws IOException, ClassNotFoundException {
         try (InputStream is = new ByteArrayInputStream(bytes);
              ObjectInputStream ois = new ObjectInputStream(is)) {
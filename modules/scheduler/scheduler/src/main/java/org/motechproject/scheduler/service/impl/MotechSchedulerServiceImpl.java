@@ -46,15 +46,20 @@ import org.quartz.spi.OperableTrigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import static java.lang.String.format;
@@ -90,11 +95,15 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
     private static final String LOG_SUBJECT_EXTERNAL_ID = "subject: %s, externalId: %s";
+    private static final String BATCH_SIZE_KEY = "scheduler.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 500;
 
     private SettingsFacade schedulerSettings;
 
     private Scheduler scheduler;
 
+    private JobStoreQueries jobStoreQueries;
+
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
@@ -107,6 +116,20 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         constructMisfirePoliciesMaps();
     }
 
+    /**
+     * Sets the SQL properties of the scheduler. Jobs are then found by the prefix of their IDs directly in the
+     * triggers table, instead of loading the keys of all triggers, and UI defined jobs are marked in the job details
+     * table.
+     *
+     * @param sqlProperties  the properties of scheduler, null disables the queries
+     */
+    @Autowired(required = false)
+    public void setSqlProperties(@Qualifier("sqlProperties") Properties sqlProperties) {
+        boolean jdbcStore = sqlProperties != null &&
+                StringUtils.isNotBlank(sqlProperties.getProperty("org.quartz.jobStore.dataSource"));
+        this.jobStoreQueries = jdbcStore ? new JobStoreQueries(sqlProperties) : null;
+    }
+
     @Override
     public void scheduleJob(CronSchedulableJob cronSchedulableJob) {
         scheduleCronJob(cronSchedulableJob, false, false);
@@ -137,6 +160,34 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         scheduleJob(job, false);
     }
 
+    @Override
+    public void scheduleJobs(Collection<? extends SchedulableJob> jobs) {
+        assertArgumentNotNull("Jobs", jobs);
+
+        // building the jobs validates them, nothing is scheduled if any of them is invalid
+        Map<JobDetail, Set<? extends Trigger>> jobsToSchedule = new LinkedHashMap<>();
+        for (SchedulableJob job : jobs) {
+            assertArgumentNotNull("SchedulableJob", job);
+            addJob(job, jobsToSchedule);
+        }
+
+        int batchSize = getBatchSize();
+        Map<JobDetail, Set<? extends Trigger>> batch = new LinkedHashMap<>();
+
+        for (Map.Entry<JobDetail, Set<? extends Trigger>> entry : jobsToSchedule.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+
+            if (batch.size() == batchSize) {
+                scheduleJobs(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            scheduleJobs(batch);
+        }
+    }
+
     @Override
     public void safeScheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
@@ -294,13 +345,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void unscheduleAllJobs(String jobIdPrefix) {
         try {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
+                LOGGER.debug("Unscheduling jobs with prefix: {}", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
+            if (StringUtils.isNotEmpty(jobIdPrefix)) {
+                List<TriggerKey> triggerKeys = getTriggerKeysWithPrefix(jobIdPrefix);
+                int batchSize = getBatchSize();
+
+                for (int i = 0; i < triggerKeys.size(); i += batchSize) {
+                    scheduler.unscheduleJobs(triggerKeys.subList(i, Math.min(i + batchSize, triggerKeys.size())));
                 }
             }
         } catch (SchedulerException e) {
@@ -353,11 +405,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
+            if (StringUtils.isNotEmpty(jobIdPrefix)) {
+                List<TriggerKey> triggerKeys = getTriggerKeysWithPrefix(jobIdPrefix);
+                int batchSize = getBatchSize();
+
+                for (int i = 0; i < triggerKeys.size(); i += batchSize) {
+                    safeUnscheduleJobs(triggerKeys.subList(i, Math.min(i + batchSize, triggerKeys.size())));
                 }
             }
         } catch (SchedulerException e) {
@@ -469,8 +522,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     /*
-     * Loads all triggers and then loops over them to find the applicable trigger using string comparison. This
-     * will work regardless of the jobId being cron or repeating.
+     * Finds the triggers which names start with the job ID built from the subject and the prefix. This will work
+     * regardless of the jobId being cron or repeating.
      */
     @Override
     public List<DateTime> getScheduledJobTimingsWithPrefix(
@@ -479,13 +532,13 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
+            if (StringUtils.isNotEmpty(externalJobIdPrefix)) {
+                for (TriggerKey triggerKey : getTriggerKeysWithPrefix(jobId.value())) {
                     Trigger trigger = scheduler.getTrigger(triggerKey);
-                    messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
-                            (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
+                    if (trigger != null) {
+                        messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
+                                (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
+                    }
                 }
             }
 
@@ -523,6 +576,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleCronJob(CronSchedulableJob job, boolean isDayOfWeek, boolean update) {
+        Map<JobDetail, Set<? extends Trigger>> jobs = new HashMap<>();
+        JobDetail jobDetail = addCronJob(job, isDayOfWeek, jobs);
+
+        unscheduleExistingJob(jobDetail.getKey().getName());
+        scheduleJob(jobDetail, jobs.get(jobDetail), update);
+    }
+
+    private JobDetail addCronJob(CronSchedulableJob job, boolean isDayOfWeek, Map<JobDetail, Set<? extends Trigger>> jobs) {
         logObjectIfNotNull(job);
 
         validateCronSchedulableJob(job);
@@ -556,17 +617,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(DateUtil.toDate(job.getEndDate()))
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (job.isIgnorePastFiresAtStart() && (job.getStartDate() == null || job.getStartDate().isBefore(now))) {
@@ -585,10 +635,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                     .build();
         }
 
-        scheduleJob(jobDetail, trigger, update);
+        return putJob(jobs, jobDetail, trigger);
     }
 
     private void scheduleRepeatingJob(RepeatingSchedulableJob job, boolean update) {
+        Map<JobDetail, Set<? extends Trigger>> jobs = new HashMap<>();
+        JobDetail jobDetail = addRepeatingJob(job, jobs);
+
+        unscheduleExistingJob(jobDetail.getKey().getName());
+        scheduleJob(jobDetail, jobs.get(jobDetail), update);
+    }
+
+    private JobDetail addRepeatingJob(RepeatingSchedulableJob job, Map<JobDetail, Set<? extends Trigger>> jobs) {
         logObjectIfNotNull(job);
 
         validateRepeatingSchedulableJob(job);
@@ -614,15 +672,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         jobDetail.getJobDataMap().put(EVENT_METADATA, createMetadataForMisfireSchedulableJob(job, motechEvent));
 
-        try {
-            if (scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME)) != null) {
-                unscheduleJob(jobId);
-            }
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-
         ScheduleBuilder scheduleBuilder;
         if (!job.isUseOriginalFireTimeAfterMisfire()) {
             SimpleScheduleBuilder simpleSchedule = simpleSchedule()
@@ -644,7 +693,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(jobStartTime),
                 DateUtil.toDate(jobEndTime), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return putJob(jobs, jobDetail, trigger);
     }
 
     private Map<String, Object> createMetadataForMisfireSchedulableJob(MisfireSchedulableJob job, MotechEvent event) {
@@ -659,6 +708,13 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleRepeatingPeriodJob(RepeatingPeriodSchedulableJob job, boolean update) {
+        Map<JobDetail, Set<? extends Trigger>> jobs = new HashMap<>();
+        JobDetail jobDetail = addRepeatingPeriodJob(job, jobs);
+
+        scheduleJob(jobDetail, jobs.get(jobDetail), update);
+    }
+
+    private JobDetail addRepeatingPeriodJob(RepeatingPeriodSchedulableJob job, Map<JobDetail, Set<? extends Trigger>> jobs) {
         logObjectIfNotNull(job);
 
         validateRepeatingPeriodSchedulableJob(job);
@@ -680,10 +736,17 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(job.getStartDate()),
                 DateUtil.toDate(job.getEndDate()), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return putJob(jobs, jobDetail, trigger);
     }
 
     private void scheduleRunOnceJob(RunOnceSchedulableJob job, boolean update) {
+        Map<JobDetail, Set<? extends Trigger>> jobs = new HashMap<>();
+        JobDetail jobDetail = addRunOnceJob(job, jobs);
+
+        scheduleJob(jobDetail, jobs.get(jobDetail), update);
+    }
+
+    private JobDetail addRunOnceJob(RunOnceSchedulableJob job, Map<JobDetail, Set<? extends Trigger>> jobs) {
         logObjectIfNotNull(job);
 
         validateRunOnceSchedulableJob(job);
@@ -713,10 +776,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(DateUtil.toDate(job.getStartDate()))
                 .build();
 
-        scheduleJob(jobDetail, trigger, update);
+        return putJob(jobs, jobDetail, trigger);
     }
 
     private void scheduleDayOfWeekJob(DayOfWeekSchedulableJob job, boolean update) {
+        scheduleCronJob(toCronSchedulableJob(job), true, update);
+    }
+
+    private CronSchedulableJob toCronSchedulableJob(DayOfWeekSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateDayOfWeekSchedulableJob(job);
@@ -729,10 +796,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                         .toArray(new Integer[job.getCronDays().size()]));
 
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
-        CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
+        return new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
                 job.getStartDate(), job.getEndDate(), job.isIgnorePastFiresAtStart(), job.isUiDefined());
-
-        scheduleCronJob(cronSchedulableJob, true, update);
     }
 
     private void scheduleJob(SchedulableJob job, boolean update) {
@@ -749,23 +814,98 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
-    private void scheduleJob(JobDetail jobDetail, Trigger trigger) {
-        scheduleJob(jobDetail, trigger, false);
+    private void addJob(SchedulableJob job, Map<JobDetail, Set<? extends Trigger>> jobs) {
+        if (job instanceof CronSchedulableJob) {
+            addCronJob((CronSchedulableJob) job, false, jobs);
+        } else if (job instanceof DayOfWeekSchedulableJob) {
+            addCronJob(toCronSchedulableJob((DayOfWeekSchedulableJob) job), true, jobs);
+        } else if (job instanceof RepeatingSchedulableJob) {
+            addRepeatingJob((RepeatingSchedulableJob) job, jobs);
+        } else if (job instanceof RepeatingPeriodSchedulableJob) {
+            addRepeatingPeriodJob((RepeatingPeriodSchedulableJob) job, jobs);
+        } else if (job instanceof RunOnceSchedulableJob) {
+            addRunOnceJob((RunOnceSchedulableJob) job, jobs);
+        }
+    }
+
+    private JobDetail putJob(Map<JobDetail, Set<? extends Trigger>> jobs, JobDetail jobDetail, Trigger trigger) {
+        // jobs are equal if their keys are equal, the job scheduled later replaces the previous one
+        jobs.remove(jobDetail);
+        jobs.put(jobDetail, Collections.singleton(trigger));
+        return jobDetail;
     }
 
-    private void scheduleJob(JobDetail jobDetail, Trigger trigger, boolean update) {
+    private void scheduleJob(JobDetail jobDetail, Set<? extends Trigger> triggers, boolean update) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Scheduling job:" + jobDetail);
         }
         try {
-            Set<Trigger> triggerSet = new HashSet<>();
-            triggerSet.add(trigger);
-            scheduler.scheduleJob(jobDetail, triggerSet, update);
+            scheduler.scheduleJob(jobDetail, triggers, update);
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not schedule the job:\n %s\n%s\n%s",
-                    jobDetail.toString(), trigger.toString(), e.getMessage()),
+                    jobDetail.toString(), triggers.toString(), e.getMessage()),
+                    "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
+        }
+
+        boolean uiDefined = isJobUIDefined(jobDetail.getJobDataMap());
+        // new jobs are not UI defined by default, an updated job might have been UI defined before
+        if (uiDefined || update) {
+            setUiDefined(Arrays.asList(jobDetail.getKey()), uiDefined);
+        }
+    }
+
+    private void scheduleJobs(Map<JobDetail, Set<? extends Trigger>> jobs) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Scheduling {} jobs", jobs.size());
+        }
+        try {
+            scheduler.scheduleJobs(jobs, true);
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not schedule %d jobs:\n%s", jobs.size(), e.getMessage()),
                     "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
         }
+
+        // the jobs might have replaced UI defined jobs, so the flag is written for all of them
+        List<JobKey> uiDefinedJobs = new ArrayList<>();
+        List<JobKey> otherJobs = new ArrayList<>();
+        for (JobDetail jobDetail : jobs.keySet()) {
+            if (isJobUIDefined(jobDetail.getJobDataMap())) {
+                uiDefinedJobs.add(jobDetail.getKey());
+            } else {
+                otherJobs.add(jobDetail.getKey());
+            }
+        }
+        setUiDefined(uiDefinedJobs, true);
+        setUiDefined(otherJobs, false);
+    }
+
+    /**
+     * Writes whether the given jobs are UI defined. Quartz does not know the column, so it is written on a separate
+     * connection once Quartz committed the jobs, not in the same transaction. If it can not be written, the jobs stay
+     * scheduled with the previous value of the flag and the failure is only logged.
+     */
+    private void setUiDefined(List<JobKey> jobKeys, boolean uiDefined) {
+        if (jobStoreQueries != null && !jobKeys.isEmpty()) {
+            try {
+                jobStoreQueries.setUiDefined(scheduler.getSchedulerName(), jobKeys, uiDefined);
+            } catch (SQLException | SchedulerException e) {
+                LOGGER.error("Unable to set UI defined to {} for {} jobs starting with {}", uiDefined,
+                        jobKeys.size(), jobKeys.get(0), e);
+            }
+        }
+    }
+
+    private void unscheduleExistingJob(String jobId) {
+        Trigger existingTrigger;
+        try {
+            existingTrigger = scheduler.getTrigger(triggerKey(jobId, JOB_GROUP_NAME));
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
+                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId, e.getMessage()), e);
+        }
+        if (existingTrigger != null) {
+            unscheduleJob(jobId);
+        }
     }
 
     private void unscheduleJob(String jobId) {
@@ -781,18 +921,34 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
-    private void safeUnscheduleJob(String jobId) {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug(jobId);
-        }
+    private void safeUnscheduleJobs(List<TriggerKey> triggerKeys) {
         try {
-            assertArgumentNotNull("ScheduledJobID", jobId);
-            scheduler.unscheduleJob(triggerKey(jobId, JOB_GROUP_NAME));
+            scheduler.unscheduleJobs(triggerKeys);
         } catch (SchedulerException e) {
-            LOGGER.error("Unable to unschedule job with ID {}", jobId, e);
+            LOGGER.error("Unable to unschedule {} jobs starting with ID {}", triggerKeys.size(),
+                    triggerKeys.get(0).getName(), e);
         }
     }
 
+    private List<TriggerKey> getTriggerKeysWithPrefix(String jobIdPrefix) throws SchedulerException {
+        if (jobStoreQueries != null) {
+            try {
+                return jobStoreQueries.findTriggerKeysByNamePrefix(scheduler.getSchedulerName(), JOB_GROUP_NAME,
+                        jobIdPrefix);
+            } catch (SQLException e) {
+                throw new SchedulerException(String.format("Can not find the jobs with prefix: %s", jobIdPrefix), e);
+            }
+        }
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(JOB_GROUP_NAME))) {
+            if (triggerKey.getName().startsWith(jobIdPrefix)) {
+                triggerKeys.add(triggerKey);
+            }
+        }
+        return triggerKeys;
+    }
+
     private void validateJob(JobKey key) throws SchedulerException {
         JobDetail detail = scheduler.getJobDetail(key);
 
@@ -810,7 +966,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private boolean isJobUIDefined(JobDataMap jobDataMap) {
-        return jobDataMap.get(EVENT_METADATA) != null &&  (Boolean) ((Map<String, Object>) jobDataMap.get(EVENT_METADATA)).get(UI_DEFINED);
+        return jobDataMap.get(EVENT_METADATA) != null && Boolean.TRUE.equals(((Map<String, Object>) jobDataMap.get(EVENT_METADATA)).get(UI_DEFINED));
     }
 
     private MotechEvent assertCronJob(CronSchedulableJob cronSchedulableJob) {
@@ -870,6 +1026,23 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         return trigger;
     }
 
+    private int getBatchSize() {
+        String batchSize = schedulerSettings.getProperty(BATCH_SIZE_KEY);
+
+        if (StringUtils.isNotBlank(batchSize)) {
+            try {
+                int size = Integer.parseInt(batchSize.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.error("Invalid value of {}: {}, using {}", BATCH_SIZE_KEY, batchSize, DEFAULT_BATCH_SIZE);
+            }
+        }
+
+        return DEFAULT_BATCH_SIZE;
+    }
+
     private Date getFirstTriggerInFuture(Trigger trigger, DateTime now) {   // extracted away because of checkstyle :(
         Date newStartTime = trigger.getFireTimeAfter(now.toDate());
         if (newStartTime == null) {
@@ -919,14 +1092,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDataMap.put(EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
-        }
-        return names;
-    }
-
     private void constructMisfirePoliciesMaps() {
         cronTriggerMisfirePolicies = new HashMap<>();
         cronTriggerMisfirePolicies.put("do_nothing", CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING);
@@ -0,0 +1,6 @@
+--
+-- Marks jobs defined through the UI, so jobs can be listed without deserializing their job data.
+-- Jobs scheduled before this column was added have NULL in it.
+--
+ALTER TABLE QRTZ_JOB_DETAILS ADD COLUMN UI_DEFINED BOOLEAN NULL;
+ALTER TABLE QRTZ_JOB_DETAILS ALTER COLUMN UI_DEFINED SET DEFAULT FALSE;
@@ -544,6 +544,30 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldGetPageOfJobsAfterTheGivenJob() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 1, 7, 13, 10, 0, 0));
+            addTestJobs();
+
+            JobsSearchSettings jobsSearchSettings = getGridSettings(null, 2, "name", "asc");
+            jobsSearchSettings.setName("test_event");
+            jobsSearchSettings.setAfter("test_event_2-job_id2");
+            List<JobBasicInfo> jobs = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(2, jobs.size());
+            assertEquals(printJobNames(jobs), "test_event_3-job_id3", jobs.get(0).getName());
+            assertEquals(printJobNames(jobs), "test_event_4-job_id4", jobs.get(1).getName());
+            assertEquals(6, databaseService.countJobs(jobsSearchSettings));
+
+            jobsSearchSettings.setSortDirection("desc");
+            jobs = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(1, jobs.size());
+            assertEquals(printJobNames(jobs), "test_event_1-job_id1", jobs.get(0).getName());
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     private void addTestJobs() {
         Map<String, Object> params = new HashMap<>();
         params.put(MotechSchedulerService.JOB_ID_KEY, "job_id1");
@@ -582,6 +582,57 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldScheduleJobsInBatch() throws SchedulerException {
+        try {
+            fakeNow(newDateTime(2020, 7, 15, 10, 0, 0));
+
+            List<RunOnceSchedulableJob> jobs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Map<String, Object> params = new HashMap<>();
+                params.put(MotechSchedulerService.JOB_ID_KEY, "job_id" + i);
+                jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", params),
+                        newDateTime(2020, 7, 15, 12, i, 0)));
+            }
+
+            schedulerService.scheduleJobs(jobs);
+            // scheduling the same jobs again replaces them
+            schedulerService.scheduleJobs(jobs);
+
+            for (int i = 0; i < 10; i++) {
+                assertEquals(asList(newDateTime(2020, 7, 15, 12, i, 0)),
+                        getFireTimes("test_event-job_id" + i + "-runonce"));
+            }
+        } finally {
+            stopFakingTime();
+        }
+    }
+
+    @Test
+    public void shouldNotScheduleAnyJobsInBatchIfOneIsInvalid() throws SchedulerException {
+        try {
+            fakeNow(newDateTime(2020, 7, 15, 10, 0, 0));
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id");
+            Map<String, Object> invalidParams = new HashMap<>();
+            invalidParams.put(MotechSchedulerService.JOB_ID_KEY, "invalid_job_id");
+
+            try {
+                schedulerService.scheduleJobs(asList(
+                        new CronSchedulableJob(new MotechEvent("test_event", params), "0 0 10 * * ?"),
+                        new CronSchedulableJob(new MotechEvent("test_event", invalidParams), "invalidCronExpression")));
+            } catch (MotechSchedulerException e) {
+                assertNull(scheduler.getTrigger(triggerKey("test_event-job_id", "default")));
+                return;
+            }
+
+            throw new AssertionError("Invalid job was scheduled");
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     @Test
     public void shouldUnscheduleJob() throws SchedulerException {
         Map<String, Object> params = new HashMap<>();
@@ -610,6 +661,27 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         assertNull(scheduler.getTrigger(triggerKey("test_event3-job_id", "default")));
     }
 
+    @Test
+    public void shouldUnscheduleOnlyJobsStartingWithTheGivenJobIdPrefix() throws SchedulerException {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, "job_id");
+
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event1", params), "0 0 12 * * ?"));
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("testXevent", params), "0 0 13 * * ?"));
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("other_test_event", params), "0 0 14 * * ?"));
+
+        try {
+            schedulerService.unscheduleAllJobs("test_event");
+
+            assertNull(scheduler.getTrigger(triggerKey("test_event1-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("testXevent-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("other_test_event-job_id", "default")));
+        } finally {
+            schedulerService.unscheduleAllJobs("testXevent");
+            schedulerService.unscheduleAllJobs("other_test_event");
+        }
+    }
+
     @Test
     public void shouldPauseJobIfItIsUiDefined() throws Exception {
         Map<String, Object> params = new HashMap<>();
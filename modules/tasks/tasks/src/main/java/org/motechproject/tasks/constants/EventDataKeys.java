@@ -23,6 +23,8 @@ public final class EventDataKeys {
 
     public static final String DATA_PROVIDER_NAME = "name";
 
+    public static final String LOOKUP_CACHE_OBJECT_TYPE = "objectType";
+
     public static final String HANDLER_ERROR_PARAM = "taskError";
 
     public static final String REPEAT_COUNT = "repeatCount";
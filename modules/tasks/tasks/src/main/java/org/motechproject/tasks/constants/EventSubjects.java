@@ -21,6 +21,9 @@ public final class EventSubjects {
     public static final String DATA_PROVIDER_SUBJECT = BASE_SUBJECT + "dataProvider.";
     public static final String DATA_PROVIDER_UPDATE_SUBJECT = DATA_PROVIDER_SUBJECT + "update";
 
+    public static final String TASK_CACHE_INVALIDATE_SUBJECT = BASE_SUBJECT + "cache.invalidate";
+    public static final String LOOKUP_CACHE_INVALIDATE_SUBJECT = BASE_SUBJECT + "lookupCache.invalidate";
+
     public static final String SCHEDULE_REPEATING_JOB = "scheduleRepeatingJob";
     public static final String UNSCHEDULE_REPEATING_JOB = "unscheduleRepeatingJob";
 
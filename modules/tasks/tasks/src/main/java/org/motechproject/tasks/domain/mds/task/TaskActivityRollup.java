@@ -0,0 +1,131 @@
+package org.motechproject.tasks.domain.mds.task;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.annotations.Access;
+import org.motechproject.mds.annotations.CrudEvents;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.util.SecurityMode;
+import org.motechproject.tasks.constants.TasksRoles;
+
+import javax.jdo.annotations.Unique;
+import java.util.Objects;
+
+/**
+ * Represents the number of activities of a single type, stored for a task on a single day. Rollups are kept for days
+ * that have passed, so the activities of a task can be counted without counting the activities of these days one by
+ * one.
+ */
+@Entity(nonEditable = true)
+@CrudEvents(CrudEventType.NONE)
+@Access(value = SecurityMode.PERMISSIONS, members = {TasksRoles.MANAGE_TASKS})
+@Unique(name = "TASK_DATE_ACTIVITYTYPE", members = {"task", "date", "activityType"})
+public class TaskActivityRollup {
+
+    @Field
+    private Long id;
+
+    @Field(displayName = "Task", required = true)
+    private Long task;
+
+    @Field(displayName = "Date", required = true)
+    private DateTime date;
+
+    @Field(displayName = "Activity Type", required = true)
+    private TaskActivityType activityType;
+
+    @Field(displayName = "Activity Count")
+    private long activityCount;
+
+    /**
+     * Constructor.
+     */
+    public TaskActivityRollup() {
+        this(null, null, null, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param task  the ID of the task
+     * @param date  the start of the day
+     * @param activityType  the type of the activities
+     * @param activityCount  the number of the activities
+     */
+    public TaskActivityRollup(Long task, DateTime date, TaskActivityType activityType, long activityCount) {
+        this.task = task;
+        this.date = date;
+        this.activityType = activityType;
+        this.activityCount = activityCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getTask() {
+        return task;
+    }
+
+    public void setTask(Long task) {
+        this.task = task;
+    }
+
+    public DateTime getDate() {
+        return date;
+    }
+
+    public void setDate(DateTime date) {
+        this.date = date;
+    }
+
+    public TaskActivityType getActivityType() {
+        return activityType;
+    }
+
+    public void setActivityType(TaskActivityType activityType) {
+        this.activityType = activityType;
+    }
+
+    public long getActivityCount() {
+        return activityCount;
+    }
+
+    public void setActivityCount(long activityCount) {
+        this.activityCount = activityCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final TaskActivityRollup other = (TaskActivityRollup) obj;
+
+        return Objects.equals(this.task, other.task) &&
+                Objects.equals(this.date, other.date) &&
+                Objects.equals(this.activityType, other.activityType) &&
+                this.activityCount == other.activityCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(task, date, activityType, activityCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskActivityRollup{task=%d, date=%s, activityType=%s, activityCount=%d}",
+                task, date, activityType, activityCount);
+    }
+}
@@ -1,5 +1,7 @@
 package org.motechproject.tasks.repository;
 
+import org.joda.time.DateTime;
+import org.motechproject.commons.api.Range;
 import org.motechproject.mds.annotations.Lookup;
 import org.motechproject.mds.annotations.LookupField;
 import org.motechproject.mds.query.QueryParams;
@@ -17,6 +19,7 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
 
     String TASK = "task";
     String ACTIVITY_TYPE = "activityType";
+    String DATE = "date";
 
     /**
      * Returns the list of activities for the given task id.
@@ -41,6 +44,17 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
                                               @LookupField(name = ACTIVITY_TYPE) final Set<TaskActivityType> activityTypes,
                                               QueryParams queryParams);
 
+    /**
+     * Returns the list of activities from the given range of dates. Fields used in lookups are indexed, which makes
+     * the rollups and the retention of activities, both selecting activities by date, fast.
+     *
+     * @param date  the range of dates
+     * @param queryParams  the query parameters to use
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Date")
+    List<TaskActivity> byDate(@LookupField(name = DATE) final Range<DateTime> date, QueryParams queryParams);
+
     /**
      * Returns the count of activities for the given task id and of specified type.
      *
@@ -0,0 +1,52 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.motechproject.commons.api.Range;
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.tasks.domain.mds.task.TaskActivityRollup;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+
+import java.util.List;
+
+/**
+ * Data service for the daily rollups of task activities.
+ */
+public interface TaskActivityRollupsDataService extends MotechDataService<TaskActivityRollup> {
+
+    String TASK = "task";
+    String DATE = "date";
+    String ACTIVITY_TYPE = "activityType";
+
+    /**
+     * Returns the list of rollups for the given task id.
+     *
+     * @param task  the id of the task
+     * @return the list of matching rollups
+     */
+    @Lookup(name = "By Task")
+    List<TaskActivityRollup> byTask(@LookupField(name = TASK) final Long task);
+
+    /**
+     * Returns the list of rollups for the days in the given range.
+     *
+     * @param date  the range of the days
+     * @return the list of matching rollups
+     */
+    @Lookup(name = "By Date")
+    List<TaskActivityRollup> byDate(@LookupField(name = DATE) final Range<DateTime> date);
+
+    /**
+     * Returns the rollup of the activities of the given type, for the given task id and day.
+     *
+     * @param task  the id of the task
+     * @param date  the start of the day
+     * @param activityType  the type of the activities
+     * @return the matching rollup, null if there is none
+     */
+    @Lookup(name = "By Task, Date and Activity Type")
+    TaskActivityRollup byTaskDateAndActivityType(@LookupField(name = TASK) final Long task,
+                                                 @LookupField(name = DATE) final DateTime date,
+                                                 @LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType);
+}
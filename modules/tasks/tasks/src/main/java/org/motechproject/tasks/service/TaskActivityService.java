@@ -40,6 +40,14 @@ public interface TaskActivityService {
      */
     void addFailedExecution(Long activityId, Throwable e);
 
+    /**
+     * Writes the buffered changes of the activity with the given id to the database. This must be done before
+     * the execution of the task continues outside of this MOTECH instance, for example by sending an event.
+     *
+     * @param activityId the id of the activity
+     */
+    void flushActivity(Long activityId);
+
     /**
      * Logs a warning for the given task.
      *
@@ -98,6 +106,18 @@ public interface TaskActivityService {
      */
     List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypeSet, QueryParams queryParams);
 
+    /**
+     * Returns a page of activities for task with the given ID, ordered from the newest. The next page is retrieved by
+     * passing the ID of the last activity of the page, so pages stay consistent while new activities are added.
+     *
+     * @param taskId  the task ID
+     * @param activityTypeSet  the type of activities
+     * @param before  the ID of the last activity of the previous page, null for the first page
+     * @param limit  the maximum number of activities to return
+     * @return  the page of activities for task with given ID
+     */
+    List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypeSet, Long before, int limit);
+
     /**
      * Returns the count of all activities for the given task, of the specified type.
      *
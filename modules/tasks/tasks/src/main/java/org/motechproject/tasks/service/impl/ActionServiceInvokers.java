@@ -0,0 +1,135 @@
+package org.motechproject.tasks.service.impl;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the services and methods used for executing task actions through OSGi service calls. Services are tracked
+ * by a {@link ServiceTracker} opened for every service interface, so executing an action does not query the service
+ * registry. Methods are resolved once for every service class, method name and parameter classes and are kept as
+ * {@link MethodHandle}s accepting the service and an array of arguments. The methods of a service class are dropped
+ * once its service is unregistered.
+ */
+class ActionServiceInvokers {
+
+    static final int MAX_CACHED_METHODS = 1024;
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final BundleContext bundleContext;
+    private final Map<String, ServiceTracker<Object, Object>> trackers = new ConcurrentHashMap<>();
+    private final Map<List<Object>, MethodHandle> methods = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    ActionServiceInvokers(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Returns the service registered under the given interface.
+     *
+     * @param serviceInterface  the name of the service interface, not null
+     * @return the service, null if no service is registered
+     */
+    Object getService(String serviceInterface) {
+        ServiceTracker<Object, Object> tracker = trackers.get(serviceInterface);
+
+        if (tracker == null) {
+            tracker = openTracker(serviceInterface);
+        }
+
+        return (tracker == null) ? null : tracker.getService();
+    }
+
+    /**
+     * Returns the handle of the given method of the service class. The handle accepts the service and an array of
+     * arguments and returns the value returned by the method, null for void methods.
+     *
+     * @param serviceClass  the class of the service, not null
+     * @param methodName  the name of the method, not null
+     * @param classes  the classes of the parameters used for finding the method, not null
+     * @return the handle of the method
+     * @throws NoSuchMethodException if the service class has no such method
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    MethodHandle getMethod(Class<?> serviceClass, String methodName, Class[] classes)
+            throws NoSuchMethodException, IllegalAccessException {
+        List<Object> key = Arrays.asList(serviceClass, methodName, Arrays.asList(classes));
+        MethodHandle handle = methods.get(key);
+
+        if (handle == null) {
+            Method method = serviceClass.getMethod(methodName, classes);
+
+            handle = MethodHandles.lookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(classes.length + 1))
+                    .asSpreader(Object[].class, classes.length)
+                    .asType(INVOKER_TYPE);
+
+            if (methods.size() < MAX_CACHED_METHODS) {
+                methods.put(key, handle);
+            }
+        }
+
+        return handle;
+    }
+
+    /**
+     * Drops all resolved methods. Services remain tracked.
+     */
+    void clear() {
+        methods.clear();
+    }
+
+    /**
+     * Stops tracking services and drops all resolved methods.
+     */
+    synchronized void close() {
+        closed = true;
+
+        for (ServiceTracker<Object, Object> tracker : trackers.values()) {
+            tracker.close();
+        }
+
+        trackers.clear();
+        methods.clear();
+    }
+
+    private synchronized ServiceTracker<Object, Object> openTracker(String serviceInterface) {
+        ServiceTracker<Object, Object> tracker = trackers.get(serviceInterface);
+
+        if (tracker == null && !closed) {
+            tracker = new ServiceTracker<Object, Object>(bundleContext, serviceInterface, null) {
+                @Override
+                public void removedService(ServiceReference<Object> reference, Object service) {
+                    removeMethods(service.getClass());
+                    super.removedService(reference, service);
+                }
+            };
+            tracker.open();
+
+            trackers.put(serviceInterface, tracker);
+        }
+
+        return tracker;
+    }
+
+    private void removeMethods(Class<?> serviceClass) {
+        for (Iterator<List<Object>> it = methods.keySet().iterator(); it.hasNext();) {
+            if (it.next().get(0) == serviceClass) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.api.DataProvider;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.event.CrudEventBuilder;
+import org.motechproject.mds.service.EntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.tasks.constants.EventDataKeys.LOOKUP_CACHE_OBJECT_TYPE;
+import static org.motechproject.tasks.constants.EventSubjects.LOOKUP_CACHE_INVALIDATE_SUBJECT;
+
+/**
+ * Caches the objects found by data provider lookups executed by tasks. The time in seconds for which the objects are
+ * cached is configured with the <code>task.lookup.cache.ttl</code> setting and can be overridden for a single type of
+ * objects with the <code>task.lookup.cache.ttl.&lt;type&gt;</code> setting. Objects are not cached if the time is not
+ * positive, which is the default. Lookups that did not find an object are never cached.
+ * <p/>
+ * The cached objects of a type are dropped when MDS publishes a CRUD event for an instance of that type, which is
+ * announced to the other MOTECH instances with a broadcast event. The CRUD events of an entity are only listened to
+ * once objects of it were cached by this instance, so that MDS does not send events no one needs. Objects of types
+ * that are not MDS entities, or of entities that do not publish CRUD events, are dropped once their time passes, as
+ * are objects changed through MOTECH instances that never cached their type. All cached objects are dropped when
+ * a data provider is added or removed.
+ */
+@Component(DataProviderLookupCache.BEAN_NAME)
+public class DataProviderLookupCache {
+
+    static final String BEAN_NAME = "dataProviderLookupCache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataProviderLookupCache.class);
+
+    private static final String TTL_KEY = "task.lookup.cache.ttl";
+    private static final String ALL_CRUD_ACTIONS = "*";
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    static final int MAX_CACHED_OBJECTS = 10000;
+
+    private final Map<String, TypeCache> cache = new ConcurrentHashMap<>();
+    private final Map<String, Long> ttlByType = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final Set<String> listenedTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private SettingsFacade settings;
+    private EventRelay eventRelay;
+    private EventListenerRegistryService registryService;
+    private EntityService entityService;
+
+    @Autowired
+    public DataProviderLookupCache(@Qualifier("tasksSettings") SettingsFacade settings, EventRelay eventRelay,
+                                   EventListenerRegistryService registryService, EntityService entityService) {
+        this.settings = settings;
+        this.eventRelay = eventRelay;
+        this.registryService = registryService;
+        this.entityService = entityService;
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        registryService.clearListenersForBean(BEAN_NAME);
+        listenedTypes.clear();
+    }
+
+    /**
+     * Returns a data provider that executes lookups of the given data provider through this cache.
+     *
+     * @param provider  the data provider, not null
+     * @return the caching data provider
+     */
+    DataProvider wrap(DataProvider provider) {
+        return new CachingDataProvider(provider);
+    }
+
+    /**
+     * Drops all cached objects.
+     */
+    void clear() {
+        cache.clear();
+        size.set(0);
+    }
+
+    /**
+     * Handles the CRUD events of the MDS entities whose objects were cached. The listener is registered for
+     * an entity when its objects are cached for the first time.
+     *
+     * @param event  the CRUD event
+     */
+    public void handleCrudEvent(MotechEvent event) {
+        Object type = event.getParameters().get(ENTITY_CLASS);
+
+        if (type != null && getTtl(type.toString()) > 0) {
+            invalidate(type.toString());
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(LOOKUP_CACHE_OBJECT_TYPE, type.toString());
+            eventRelay.broadcastEventMessage(new MotechEvent(LOOKUP_CACHE_INVALIDATE_SUBJECT, params));
+        }
+    }
+
+    @MotechListener(subjects = LOOKUP_CACHE_INVALIDATE_SUBJECT)
+    public void handleCacheInvalidation(MotechEvent event) {
+        Object type = event.getParameters().get(LOOKUP_CACHE_OBJECT_TYPE);
+
+        if (type == null) {
+            clear();
+        } else {
+            invalidate(type.toString());
+        }
+    }
+
+    private void invalidate(String type) {
+        TypeCache typeCache = cache.get(type);
+
+        if (typeCache != null) {
+            typeCache.generation.incrementAndGet();
+            size.addAndGet(-typeCache.entries.size());
+            typeCache.entries.clear();
+        }
+    }
+
+    private Object lookup(DataProvider provider, String type, String lookupName, Map<String, String> lookupFields) {
+        long ttl = getTtl(type);
+        if (ttl <= 0) {
+            return provider.lookup(type, lookupName, lookupFields);
+        }
+
+        TypeCache typeCache = getTypeCache(type);
+        List<Object> key = key(provider, lookupName, lookupFields);
+
+        Object cached = typeCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = typeCache.generation.get();
+        Object result = provider.lookup(type, lookupName, lookupFields);
+        put(typeCache, generation, key, result, ttl);
+
+        return result;
+    }
+
+    private List<Object> lookupAll(DataProvider provider, String type, String lookupName,
+                                   List<Map<String, String>> lookupFields) {
+        long ttl = getTtl(type);
+        if (ttl <= 0) {
+            return provider.lookupAll(type, lookupName, lookupFields);
+        }
+
+        TypeCache typeCache = getTypeCache(type);
+        List<Object> results = new ArrayList<>(lookupFields.size());
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < lookupFields.size(); ++i) {
+            Object cached = typeCache.get(key(provider, lookupName, lookupFields.get(i)));
+            results.add(cached);
+            if (cached == null) {
+                missing.add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<Map<String, String>> missingFields = new ArrayList<>(missing.size());
+            for (Integer index : missing) {
+                missingFields.add(lookupFields.get(index));
+            }
+
+            long generation = typeCache.generation.get();
+            List<Object> found = provider.lookupAll(type, lookupName, missingFields);
+
+            for (int i = 0; i < missing.size(); ++i) {
+                Object result = found.get(i);
+                results.set(missing.get(i), result);
+                put(typeCache, generation, key(provider, lookupName, missingFields.get(i)), result, ttl);
+            }
+        }
+
+        return results;
+    }
+
+    private void put(TypeCache typeCache, long generation, List<Object> key, Object result, long ttl) {
+        if (result == null) {
+            return;
+        }
+
+        if (size.get() >= MAX_CACHED_OBJECTS) {
+            removeExpired();
+        }
+
+        // objects found before the type was invalidated might be stale
+        if (size.get() < MAX_CACHED_OBJECTS && typeCache.generation.get() == generation) {
+            long expiresAt = System.currentTimeMillis() + ttl * MILLIS_PER_SECOND;
+
+            if (typeCache.entries.put(key, new Entry(result, expiresAt)) == null) {
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+
+        for (TypeCache typeCache : cache.values()) {
+            for (Iterator<Entry> it = typeCache.entries.values().iterator(); it.hasNext();) {
+                if (it.next().expiresAt <= now) {
+                    it.remove();
+                    size.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private TypeCache getTypeCache(String type) {
+        TypeCache typeCache = cache.get(type);
+
+        if (typeCache == null) {
+            typeCache = new TypeCache();
+            TypeCache existing = cache.putIfAbsent(type, typeCache);
+            if (existing != null) {
+                typeCache = existing;
+            }
+        }
+
+        if (!listenedTypes.contains(type)) {
+            listenForCrudEvents(type);
+        }
+
+        return typeCache;
+    }
+
+    private void listenForCrudEvents(String type) {
+        if (!listenedTypes.add(type)) {
+            return;
+        }
+
+        try {
+            EntityDto entity = entityService.getEntityByClassName(type);
+            if (entity == null) {
+                LOGGER.debug("{} is not an MDS entity, its cached objects are dropped once their time passes", type);
+                return;
+            }
+
+            String subject = CrudEventBuilder.createSubject(entity.getModule(), entity.getNamespace(),
+                    entity.getName(), ALL_CRUD_ACTIONS);
+            Method method = ReflectionUtils.findMethod(getClass(), "handleCrudEvent", MotechEvent.class);
+            EventListener proxy = new MotechListenerEventProxy(BEAN_NAME, this, method);
+
+            registryService.registerListener(proxy, subject);
+            LOGGER.info("{} listens on subject {}", BEAN_NAME, subject);
+        } catch (RuntimeException e) {
+            // registering the listener is retried when the type is looked up again
+            listenedTypes.remove(type);
+            LOGGER.error("{} can not listen on the CRUD events of {} due to:", BEAN_NAME, type, e);
+        }
+    }
+
+    private long getTtl(String type) {
+        Long ttl = ttlByType.get(type);
+
+        if (ttl == null) {
+            String property = settings.getProperty(TTL_KEY + "." + type);
+            if (StringUtils.isBlank(property)) {
+                property = settings.getProperty(TTL_KEY);
+            }
+
+            ttl = parseTtl(property);
+            ttlByType.put(type, ttl);
+        }
+
+        return ttl;
+    }
+
+    private long parseTtl(String property) {
+        long ttl = 0;
+
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                ttl = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of the lookup cache time: {} is not a number. Objects will not be cached.",
+                        property);
+            }
+        }
+
+        return ttl;
+    }
+
+    private static List<Object> key(DataProvider provider, String lookupName, Map<String, String> lookupFields) {
+        return Arrays.<Object>asList(provider.getName(), lookupName, new HashMap<>(lookupFields));
+    }
+
+    private static final class TypeCache {
+
+        private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+
+        private Object get(List<Object> key) {
+            Entry entry = entries.get(key);
+            return (entry == null || entry.expiresAt <= System.currentTimeMillis()) ? null : entry.value;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Data provider executing the lookups of another data provider through this cache.
+     */
+    private final class CachingDataProvider implements DataProvider {
+
+        private final DataProvider provider;
+
+        private CachingDataProvider(DataProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public String getName() {
+            return provider.getName();
+        }
+
+        @Override
+        public String toJSON() {
+            return provider.toJSON();
+        }
+
+        @Override
+        public Object lookup(String type, String lookupName, Map<String, String> lookupFields) {
+            return DataProviderLookupCache.this.lookup(provider, type, lookupName, lookupFields);
+        }
+
+        @Override
+        public List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupFields) {
+            return DataProviderLookupCache.this.lookupAll(provider, type, lookupName, lookupFields);
+        }
+
+        @Override
+        public boolean supports(String type) {
+            return provider.supports(type);
+        }
+    }
+}
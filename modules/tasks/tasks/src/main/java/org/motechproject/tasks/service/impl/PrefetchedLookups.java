@@ -0,0 +1,57 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.mds.task.DataSource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of data source lookups executed up front for a batch of trigger events. A result is kept for
+ * the data provider, type, lookup and lookup fields it was retrieved with, so a task execution only uses it if it
+ * would execute exactly the same lookup. Results are added before the tasks of the batch are executed and only
+ * read afterwards.
+ */
+class PrefetchedLookups {
+
+    private final Map<List<Object>, Object> results = new HashMap<>();
+
+    /**
+     * Adds the result of the lookup of the given data source.
+     *
+     * @param dataSource  the data source, not null
+     * @param lookupFields  the lookup fields used, not null
+     * @param result  the result of the lookup, null if no object was found
+     */
+    void put(DataSource dataSource, Map<String, String> lookupFields, Object result) {
+        results.put(key(dataSource, lookupFields), result);
+    }
+
+    /**
+     * Checks whether the result of the lookup of the given data source was retrieved.
+     *
+     * @param dataSource  the data source, not null
+     * @param lookupFields  the lookup fields, not null
+     * @return true if the result was retrieved, false otherwise
+     */
+    boolean contains(DataSource dataSource, Map<String, String> lookupFields) {
+        return results.containsKey(key(dataSource, lookupFields));
+    }
+
+    /**
+     * Returns the result of the lookup of the given data source.
+     *
+     * @param dataSource  the data source, not null
+     * @param lookupFields  the lookup fields, not null
+     * @return the result of the lookup, null if no object was found or the result was not retrieved
+     */
+    Object get(DataSource dataSource, Map<String, String> lookupFields) {
+        return results.get(key(dataSource, lookupFields));
+    }
+
+    private static List<Object> key(DataSource dataSource, Map<String, String> lookupFields) {
+        return Arrays.<Object>asList(dataSource.getProviderName(), dataSource.getType(), dataSource.getName(),
+                lookupFields);
+    }
+}
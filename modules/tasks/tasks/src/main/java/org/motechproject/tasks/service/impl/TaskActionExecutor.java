@@ -4,6 +4,7 @@ import com.google.common.collect.Multimap;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.tasks.domain.KeyInformation;
 import org.motechproject.tasks.domain.mds.ParameterType;
 import org.motechproject.tasks.domain.mds.channel.ActionEvent;
@@ -17,14 +18,13 @@ import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import javax.annotation.PreDestroy;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.TaskFailureCause.ACTION;
 import static org.motechproject.tasks.constants.TaskFailureCause.TRIGGER;
 import static org.motechproject.tasks.domain.mds.ParameterType.LIST;
@@ -45,7 +47,8 @@ import static org.motechproject.tasks.domain.mds.ParameterType.MAP;
 public class TaskActionExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskActionExecutor.class);
 
-    private BundleContext bundleContext;
+    private volatile BundleContext bundleContext;
+    private volatile ActionServiceInvokers serviceInvokers;
     private EventRelay eventRelay;
 
     private TaskService taskService;
@@ -80,8 +83,9 @@ public class TaskActionExecutor {
         addTriggerParameters(task, action, parameters, taskContext.getTriggerParameters());
 
         LOGGER.debug("Parameters created: {} for task action: {}", parameters.toString(), action.getName());
-        if (action.hasService() && bundleContext != null) {
-            if (callActionServiceMethod(action, actionIndex, parameters, taskContext)) {
+        ActionServiceInvokers invokers = serviceInvokers;
+        if (action.hasService() && invokers != null) {
+            if (callActionServiceMethod(invokers, action, actionIndex, parameters, taskContext)) {
                 LOGGER.info("Action: {} from task: {} was executed through an OSGi service call", actionInformation.getName(), task.getName());
                 postExecutionHandler.handleActionExecuted(taskContext.getTriggerParameters(), taskContext.getMetadata(), activityId);
                 return;
@@ -93,11 +97,32 @@ public class TaskActionExecutor {
         if (!action.hasSubject()) {
             throw new TaskHandlerException(ACTION, "task.error.cantExecuteAction");
         } else {
+            activityService.flushActivity(activityId);
             eventRelay.sendEventMessage(new MotechEvent(action.getSubject(), parameters, TasksEventCallbackService.TASKS_EVENT_CALLBACK_NAME, taskContext.getMetadata()));
             LOGGER.info("Event: {} was sent", action.getSubject());
         }
     }
 
+    /**
+     * Checks whether the given action is executed through an OSGi service call. Only such actions can be executed
+     * concurrently with other actions of the task, actions executed by raising their events are executed in order.
+     *
+     * @param actionInformation  the information about the action, not null
+     * @return true if the action is executed through an OSGi service call, false otherwise
+     */
+    boolean isServiceCall(TaskActionInformation actionInformation) {
+        if (bundleContext == null) {
+            return false;
+        }
+
+        try {
+            return taskService.getActionEventFor(actionInformation).hasService();
+        } catch (ActionNotFoundException | RuntimeException e) {
+            LOGGER.debug("Unable to find action: {}", actionInformation.getName(), e);
+            return false;
+        }
+    }
+
     private ActionEvent getActionEvent(TaskActionInformation actionInformation)
             throws TaskHandlerException {
         ActionEvent action;
@@ -212,7 +237,7 @@ public class TaskActionExecutor {
     }
 
     private Object getValue(String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
+        List<KeyInformation> keys = keyEvaluator.getTemplateKeys(row);
 
         Object result;
         if (keys.isEmpty()) {
@@ -225,36 +250,42 @@ public class TaskActionExecutor {
         return result;
     }
 
-    private boolean callActionServiceMethod(ActionEvent action, Integer actionIndex, Map<String, Object> parameters, TaskContext taskContext)
+    private boolean callActionServiceMethod(ActionServiceInvokers invokers, ActionEvent action, Integer actionIndex,
+                                            Map<String, Object> parameters, TaskContext taskContext)
             throws TaskHandlerException {
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+        Object service = invokers.getService(action.getServiceInterface());
+        boolean serviceAvailable = service != null;
         if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
             String serviceMethod = action.getServiceMethod();
             MethodHandler methodHandler = new MethodHandler(action, parameters);
-            try {
-                Method method = service.getClass().getMethod(serviceMethod, methodHandler.getClasses());
-
-                try {
-                    Object object = method.invoke(service, methodHandler.getObjects());
+            MethodHandle method;
 
-                    if (object != null) {
-                        addPostActionParametersToTaskContext(action, actionIndex, taskContext, object);
-                    }
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw new TaskHandlerException(
-                            ACTION, "task.error.serviceMethodInvokeError", e,
-                            serviceMethod, action.getServiceInterface()
-                    );
-                }
+            try {
+                method = invokers.getMethod(service.getClass(), serviceMethod, methodHandler.getClasses());
             } catch (NoSuchMethodException e) {
                 throw new TaskHandlerException(
                         ACTION, "task.error.notFoundMethodForService", e,
                         serviceMethod, action.getServiceInterface()
                 );
+            } catch (IllegalAccessException e) {
+                throw new TaskHandlerException(
+                        ACTION, "task.error.serviceMethodInvokeError", e,
+                        serviceMethod, action.getServiceInterface()
+                );
+            }
+
+            Object object;
+            try {
+                object = method.invokeExact(service, methodHandler.getObjects());
+            } catch (Throwable e) {
+                throw new TaskHandlerException(
+                        ACTION, "task.error.serviceMethodInvokeError", e,
+                        serviceMethod, action.getServiceInterface()
+                );
+            }
+
+            if (object != null) {
+                addPostActionParametersToTaskContext(action, actionIndex, taskContext, object);
             }
         }
 
@@ -278,7 +309,25 @@ public class TaskActionExecutor {
         }
     }
 
-    void setBundleContext(BundleContext bundleContext) {
+    @MotechListener(subjects = { CHANNEL_UPDATE_SUBJECT, CHANNEL_DEREGISTER_SUBJECT })
+    public void handleChannelChange(MotechEvent event) {
+        ActionServiceInvokers invokers = serviceInvokers;
+        if (invokers != null) {
+            invokers.clear();
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        setBundleContext(null);
+    }
+
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        if (serviceInvokers != null) {
+            serviceInvokers.close();
+        }
+
         this.bundleContext = bundleContext;
+        this.serviceInvokers = (bundleContext == null) ? null : new ActionServiceInvokers(bundleContext);
     }
 }
@@ -0,0 +1,391 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.mds.task.TaskActivity;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers changes of task activities in memory and writes them to the database in batches. The journal keeps
+ * a copy of every activity started in this MOTECH instance, so the progress of a task execution can be updated
+ * without reading the activity from the database. Changes of the same activity are coalesced and written, together
+ * with the changes of other activities, in a single transaction every {@value #FLUSH_INTERVAL_MILLIS} milliseconds
+ * or as soon as {@value #BATCH_SIZE} activities are waiting. If {@value #MAX_PENDING} activities are waiting, the thread making
+ * the change writes them itself. Changes that can not be written are kept and written with the next batch.
+ * <p/>
+ * An activity is released from the journal, with its changes written first, when its task execution finishes
+ * and before the execution of its task continues outside of this instance, so other instances always see its
+ * current state. Only the progress of executions that are still running is buffered, so when the instance goes
+ * down an activity is left in progress, with the number of actions that succeeded possibly behind, which is
+ * the same state an execution interrupted by the shutdown leaves it in.
+ */
+class TaskActivityJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityJournal.class);
+
+    static final long FLUSH_INTERVAL_MILLIS = 500;
+    static final int BATCH_SIZE = 100;
+    static final int MAX_PENDING = 5000;
+    static final int MAX_TRACKED = 10000;
+
+    private final TaskActivitiesDataService taskActivitiesDataService;
+    private final TaskActivityStore store;
+
+    private final Map<Long, TaskActivity> tracked = new ConcurrentHashMap<>();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Long> released = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private volatile TransactionTemplate transactionTemplate;
+    private volatile ScheduledExecutorService flusher;
+
+    TaskActivityJournal(TaskActivitiesDataService taskActivitiesDataService, TaskActivityStore store) {
+        this.taskActivitiesDataService = taskActivitiesDataService;
+        this.store = store;
+    }
+
+    /**
+     * Sets the transaction manager used for writing changes. Every write runs in a new transaction. Without
+     * a transaction manager, writes run in the transactions of the data service.
+     *
+     * @param transactionManager  the transaction manager
+     */
+    void setTransactionManager(PlatformTransactionManager transactionManager) {
+        if (transactionManager == null) {
+            transactionTemplate = null;
+        } else {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate = template;
+        }
+    }
+
+    /**
+     * Starts writing changes in the background. Until the journal is started, changes are only written
+     * when {@link #flush()} is called or when the batch size is reached.
+     */
+    void start() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new FlusherThreadFactory());
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushInBackground();
+                }
+            }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops writing changes in the background and writes all waiting changes.
+     */
+    void stop() {
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+        tracked.clear();
+        released.clear();
+    }
+
+    /**
+     * Starts tracking the given activity, which has just been created in the database. If the activity was
+     * created in a transaction, it is tracked once the transaction commits, so changes are never written for
+     * an activity that was rolled back.
+     *
+     * @param activity  the created activity
+     */
+    void track(TaskActivity activity) {
+        if (tracked.size() >= MAX_TRACKED) {
+            return;
+        }
+
+        final TaskActivity copy = new TaskActivity(activity.getMessage(), copyOf(activity.getFields()),
+                activity.getTask(), activity.getActivityType(), null, null,
+                copyOf(activity.getTaskExecutionProgress()));
+        copy.setId(activity.getId());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    tracked.put(copy.getId(), copy);
+                }
+            });
+        } else {
+            tracked.put(copy.getId(), copy);
+        }
+    }
+
+    /**
+     * Returns the tracked copy of the activity with the given id. Changes of the copy must be made while holding
+     * its lock, after checking that the copy is still tracked with {@link #isTracked(TaskActivity)}, and reported
+     * with {@link #markChanged(TaskActivity)} before releasing the lock. Once the lock is released,
+     * {@link #flushIfNeeded()} must be called.
+     *
+     * @param activityId  the id of the activity
+     * @return the copy of the activity, null if the activity is not tracked
+     */
+    TaskActivity get(Long activityId) {
+        return (activityId == null) ? null : tracked.get(activityId);
+    }
+
+    /**
+     * Checks whether the given copy of an activity is still tracked by this journal.
+     *
+     * @param activity  the copy of the activity
+     * @return true if the activity is tracked, false otherwise
+     */
+    boolean isTracked(TaskActivity activity) {
+        return tracked.get(activity.getId()) == activity;
+    }
+
+    /**
+     * Reports a change of the given tracked activity.
+     *
+     * @param activity  the changed copy of the activity
+     */
+    void markChanged(TaskActivity activity) {
+        changed.add(activity.getId());
+    }
+
+    /**
+     * Writes the waiting changes if the batch size has been reached. The changes are written in the background,
+     * unless the journal is not started or too many changes are waiting.
+     */
+    void flushIfNeeded() {
+        int pending = changed.size();
+        ScheduledExecutorService executor = flusher;
+
+        if (pending >= MAX_PENDING || (pending >= BATCH_SIZE && executor == null)) {
+            flush();
+        } else if (pending >= BATCH_SIZE && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushInBackground();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the changes of the activity with the given id and stops tracking it. If the changes can not be
+     * written, the activity stays tracked and its changes are written with the next batch, after which it is
+     * no longer tracked.
+     *
+     * @param activityId  the id of the activity
+     */
+    void release(Long activityId) {
+        final TaskActivity activity = get(activityId);
+        if (activity == null) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            synchronized (activity) {
+                if (changed.remove(activityId)) {
+                    final TaskActivity state = snapshot(activity);
+                    try {
+                        write(new TransactionCallback<Void>() {
+                            @Override
+                            public Void doInTransaction(TransactionStatus status) {
+                                apply(state);
+                                return null;
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Unable to write task activity {}, retrying with the next batch",
+                                activityId, e);
+
+                        released.add(activityId);
+                        changed.add(activityId);
+                        return;
+                    }
+                }
+
+                tracked.remove(activityId);
+                released.remove(activityId);
+            }
+        }
+    }
+
+    /**
+     * Writes all waiting changes to the database.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            final List<TaskActivity> changedActivities = new ArrayList<>();
+
+            for (Iterator<Long> it = changed.iterator(); it.hasNext();) {
+                TaskActivity activity = tracked.get(it.next());
+                it.remove();
+
+                if (activity != null) {
+                    synchronized (activity) {
+                        changedActivities.add(snapshot(activity));
+                    }
+                }
+            }
+
+            if (changedActivities.isEmpty()) {
+                return;
+            }
+
+            try {
+                write(new TransactionCallback<Void>() {
+                    @Override
+                    public Void doInTransaction(TransactionStatus status) {
+                        for (TaskActivity activity : changedActivities) {
+                            apply(activity);
+                        }
+                        return null;
+                    }
+                });
+
+                forgetFinished(changedActivities);
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to write {} task activities, retrying with the next batch",
+                        changedActivities.size(), e);
+
+                for (TaskActivity activity : changedActivities) {
+                    changed.add(activity.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given callback in a new transaction.
+     *
+     * @param callback  the callback to run
+     * @param <T>  the type of the result
+     * @return the result of the callback
+     */
+    <T> T write(TransactionCallback<T> callback) {
+        TransactionTemplate template = transactionTemplate;
+        return (template == null) ? callback.doInTransaction(null) : template.execute(callback);
+    }
+
+    private void flushInBackground() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to write task activities", e);
+        }
+    }
+
+    private void apply(TaskActivity state) {
+        TaskActivity activity = taskActivitiesDataService.findById(state.getId());
+        if (activity == null) {
+            return;
+        }
+
+        TaskActivityType previousType = activity.getActivityType();
+
+        activity.setMessage(state.getMessage());
+        activity.setActivityType(state.getActivityType());
+        activity.setFields(state.getFields());
+
+        if (state.getStackTraceElement() != null) {
+            activity.setStackTraceElement(state.getStackTraceElement());
+        }
+
+        if (activity.getTaskExecutionProgress() != null && state.getTaskExecutionProgress() != null) {
+            activity.getTaskExecutionProgress().setActionsSucceeded(
+                    state.getTaskExecutionProgress().getActionsSucceeded());
+        }
+
+        taskActivitiesDataService.update(activity);
+
+        if (store != null) {
+            store.activityTypeChanged(activity, previousType);
+        }
+    }
+
+    private void forgetFinished(List<TaskActivity> written) {
+        for (TaskActivity state : written) {
+            Long id = state.getId();
+            TaskActivity activity = tracked.get(id);
+            if (activity != null) {
+                synchronized (activity) {
+                    boolean finished = state.getActivityType() != TaskActivityType.IN_PROGRESS
+                            || released.contains(id);
+                    if (finished && !changed.contains(id)) {
+                        tracked.remove(id);
+                        released.remove(id);
+                    }
+                }
+            }
+        }
+    }
+
+    private static TaskActivity snapshot(TaskActivity activity) {
+        TaskActivity snapshot = new TaskActivity(activity.getMessage(), copyOf(activity.getFields()),
+                activity.getTask(), activity.getActivityType(), activity.getStackTraceElement(), null,
+                copyOf(activity.getTaskExecutionProgress()));
+        snapshot.setId(activity.getId());
+        return snapshot;
+    }
+
+    private static List<String> copyOf(List<String> fields) {
+        return (fields == null) ? new ArrayList<String>() : new ArrayList<>(fields);
+    }
+
+    private static TaskExecutionProgress copyOf(TaskExecutionProgress progress) {
+        if (progress == null) {
+            return null;
+        }
+
+        TaskExecutionProgress copy = new TaskExecutionProgress(progress.getTotalActions());
+        copy.setActionsSucceeded(progress.getActionsSucceeded());
+        return copy;
+    }
+
+    private static class FlusherThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "motech-task-activity-journal");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.motechproject.tasks.service.impl;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.motechproject.config.SettingsFacade;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.mds.task.Task;
@@ -9,11 +11,21 @@ import org.motechproject.tasks.domain.mds.task.TaskActivityType;
 import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,6 +34,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * A {@link TaskActivityService} that stores task activities using MDS. The progress of task executions started in this
+ * MOTECH instance is kept in a {@link TaskActivityJournal}, which writes it to the database in batches, so task
+ * actions do not wait for the activity to be read and updated. The result of a finished execution is written right
+ * away. Activities are counted from the daily rollups kept by the {@link TaskActivityStore}, which also deletes
+ * the activities older than the configured retention period.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
 
@@ -29,11 +48,60 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     private static final String TASK_SUCCEEDED = "task.success.ok";
     private static final String TASK_DISABLED = "task.warning.taskDisabled";
 
+    private static final String RETENTION_DAYS_KEY = "task.activity.retention.days";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
+
     private TaskActivitiesDataService taskActivitiesDataService;
+    private SettingsFacade settings;
 
-    @Autowired
+    private final TaskActivityJournal journal;
+    private final TaskActivityStore store;
+
+    /**
+     * Creates the service without daily rollups, activities are counted one by one.
+     *
+     * @param taskActivitiesDataService  the data service for task activities
+     */
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
+        this(taskActivitiesDataService, null);
+    }
+
+    @Autowired
+    public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService,
+                                   TaskActivityRollupsDataService taskActivityRollupsDataService) {
         this.taskActivitiesDataService = taskActivitiesDataService;
+        this.store = (taskActivityRollupsDataService == null) ? null :
+                new TaskActivityStore(taskActivitiesDataService, taskActivityRollupsDataService);
+        this.journal = new TaskActivityJournal(taskActivitiesDataService, store);
+    }
+
+    @Autowired
+    public void setSettings(@Qualifier("tasksSettings") SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    @Autowired(required = false)
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        journal.setTransactionManager(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        journal.start();
+
+        if (store != null) {
+            store.start(getRetentionDays());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (store != null) {
+            store.stop();
+        }
+
+        journal.stop();
     }
 
     @Override
@@ -43,53 +111,95 @@ public class TaskActivityServiceImpl implements TaskActivityService {
         TaskActivity activity = taskActivitiesDataService.create(
                 new TaskActivity(TASK_IN_PROGRESS, Arrays.asList("0", String.valueOf(totalActions)), task.getId(),
                         TaskActivityType.IN_PROGRESS, null, parameters, new TaskExecutionProgress(totalActions)));
+        journal.track(activity);
         return activity.getId();
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public boolean addSuccessfulExecution(Long activityId) {
-        TaskActivity activity = taskActivitiesDataService.findById(activityId);
-        if (activity == null) {
-            return false;
-        }
+    public boolean addSuccessfulExecution(final Long activityId) {
+        TaskActivity tracked = journal.get(activityId);
 
-        TaskExecutionProgress progress = activity.getTaskExecutionProgress();
-        progress.addSuccess();
-        boolean taskFinished = progress.getActionsSucceeded() == progress.getTotalActions();
+        if (tracked != null) {
+            Boolean taskFinished = null;
 
-        if (taskFinished) {
-            activity.setActivityType(TaskActivityType.SUCCESS);
-            activity.setMessage(TASK_SUCCEEDED);
-            activity.getFields().clear();
+            synchronized (tracked) {
+                if (journal.isTracked(tracked)) {
+                    taskFinished = addSuccess(tracked);
+                    journal.markChanged(tracked);
+                }
+            }
+
+            if (taskFinished != null) {
+                if (taskFinished) {
+                    journal.release(activityId);
+                } else {
+                    journal.flushIfNeeded();
+                }
+                return taskFinished;
+            }
         }
 
-        updateTaskInProgressMessage(activity);
-        taskActivitiesDataService.update(activity);
+        return journal.write(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(TransactionStatus status) {
+                TaskActivity activity = taskActivitiesDataService.findById(activityId);
+                if (activity == null) {
+                    return false;
+                }
 
-        return taskFinished;
+                TaskActivityType previousType = activity.getActivityType();
+                boolean taskFinished = addSuccess(activity);
+                taskActivitiesDataService.update(activity);
+                activityTypeChanged(activity, previousType);
+
+                return taskFinished;
+            }
+        });
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void addFailedExecution(Long activityId, Throwable e) {
-        TaskActivity activity = taskActivitiesDataService.findById(activityId);
+    public void addFailedExecution(final Long activityId, final Throwable e) {
+        TaskActivity tracked = journal.get(activityId);
+
+        if (tracked != null) {
+            boolean handled = false;
 
-        if (activity == null){
-            return;
+            synchronized (tracked) {
+                if (journal.isTracked(tracked)) {
+                    if (addFailure(tracked, e)) {
+                        journal.markChanged(tracked);
+                    }
+                    handled = true;
+                }
+            }
+
+            if (handled) {
+                journal.release(activityId);
+                return;
+            }
         }
 
-        if (activity.getActivityType() != TaskActivityType.ERROR) {
-            activity.setMessage(e.getMessage());
-            activity.setActivityType(TaskActivityType.ERROR);
+        journal.write(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(TransactionStatus status) {
+                TaskActivity activity = taskActivitiesDataService.findById(activityId);
+                if (activity == null) {
+                    return null;
+                }
 
-            if (e instanceof TaskHandlerException) {
-                activity.setFields(((TaskHandlerException) e).getArgs());
+                TaskActivityType previousType = activity.getActivityType();
+                if (addFailure(activity, e)) {
+                    taskActivitiesDataService.update(activity);
+                    activityTypeChanged(activity, previousType);
+                }
+                return null;
             }
+        });
+    }
 
-            activity.setStackTraceElement(ExceptionUtils.getStackTrace(e));
-            taskActivitiesDataService.update(activity);
-        }
+    @Override
+    public void flushActivity(Long activityId) {
+        journal.release(activityId);
     }
 
     @Override
@@ -114,39 +224,139 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     @Override
     @Transactional
     public void deleteActivitiesForTask(Long taskId) {
+        journal.flush();
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
+
+        if (store != null) {
+            store.deleteRollups(taskId);
+        }
     }
 
     @Override
     @Transactional
     public TaskActivity getTaskActivityById(Long activityId) {
+        journal.release(activityId);
         return taskActivitiesDataService.findById(activityId);
     }
 
     @Override
     @Transactional
     public List<TaskActivity> getLatestActivities() {
+        journal.flush();
         return taskActivitiesDataService.retrieveAll(new QueryParams(1, 10, new Order("date", Order.Direction.DESC)));
     }
 
     @Override
     @Transactional
     public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypes, QueryParams queryParams) {
+        journal.flush();
         return taskActivitiesDataService.byTaskAndActivityTypes(taskId, activityTypes, queryParams);
     }
 
+    @Override
+    @Transactional
+    public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypes, Long before,
+                                                int limit) {
+        journal.flush();
+
+        if (store != null) {
+            return store.getActivities(taskId, activityTypes, before, limit);
+        }
+
+        List<TaskActivity> activities = new ArrayList<>();
+        for (TaskActivity activity : taskActivitiesDataService.byTaskAndActivityTypes(taskId, activityTypes,
+                new QueryParams(new Order("id", Order.Direction.DESC)))) {
+            if (activities.size() == limit) {
+                break;
+            }
+            if (before == null || activity.getId() < before) {
+                activities.add(activity);
+            }
+        }
+
+        return activities;
+    }
+
     @Override
     @Transactional
     public long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes) {
+        journal.flush();
+
+        if (store != null) {
+            return store.count(taskId, activityTypes);
+        }
+
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, activityTypes);
     }
 
     @Override
     @Transactional
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
-        return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
+        return getTaskActivitiesCount(taskId, new HashSet<>(Arrays.asList(type)));
+    }
+
+    /**
+     * Writes all changes buffered in the journal. Package-private for testing.
+     */
+    void flushJournal() {
+        journal.flush();
+    }
+
+    private boolean addSuccess(TaskActivity activity) {
+        TaskExecutionProgress progress = activity.getTaskExecutionProgress();
+        progress.addSuccess();
+        boolean taskFinished = progress.getActionsSucceeded() == progress.getTotalActions();
+
+        if (taskFinished) {
+            activity.setActivityType(TaskActivityType.SUCCESS);
+            activity.setMessage(TASK_SUCCEEDED);
+            activity.getFields().clear();
+        }
+
+        updateTaskInProgressMessage(activity);
+
+        return taskFinished;
+    }
+
+    private boolean addFailure(TaskActivity activity, Throwable e) {
+        if (activity.getActivityType() == TaskActivityType.ERROR) {
+            return false;
+        }
+
+        activity.setMessage(e.getMessage());
+        activity.setActivityType(TaskActivityType.ERROR);
+
+        if (e instanceof TaskHandlerException) {
+            activity.setFields(((TaskHandlerException) e).getArgs());
+        }
+
+        activity.setStackTraceElement(ExceptionUtils.getStackTrace(e));
+
+        return true;
+    }
+
+    private void activityTypeChanged(TaskActivity activity, TaskActivityType previousType) {
+        if (store != null) {
+            store.activityTypeChanged(activity, previousType);
+        }
+    }
+
+    private int getRetentionDays() {
+        String property = (settings == null) ? null : settings.getProperty(RETENTION_DAYS_KEY);
+        int days = 0;
+
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                days = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number. Task activities will be kept forever.",
+                        RETENTION_DAYS_KEY);
+            }
+        }
+
+        return days;
     }
 
     private void updateTaskInProgressMessage(TaskActivity activity) {
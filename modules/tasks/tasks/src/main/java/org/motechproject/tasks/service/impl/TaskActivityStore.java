@@ -0,0 +1,431 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.motechproject.commons.api.Range;
+import org.motechproject.commons.date.util.DateTimeSourceUtil;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+import org.motechproject.tasks.domain.mds.task.TaskActivity;
+import org.motechproject.tasks.domain.mds.task.TaskActivityRollup;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps task activities in daily partitions. The activities of every day that has passed are counted once, per task
+ * and activity type, and kept as {@link TaskActivityRollup}s, so counting the activities of a task only counts
+ * the activities of the days that were not rolled up yet. Days are rolled up {@value #ROLLUP_DELAY_DAYS} day after
+ * they end, giving tasks in progress the time to finish. If the type of an activity from a rolled up day changes
+ * afterwards, its rollups are corrected in the transaction that writes the change. A change written while the day
+ * of the activity is being rolled up can still be missed by the rollup.
+ * <p/>
+ * Activities are read in pages ordered from the newest, each page starting after the ID of the last activity of
+ * the previous page, so reading a page does not skip the activities of the previous pages. Activities older than
+ * the retention period are deleted a whole day at a time, together with the rollups of the day.
+ */
+class TaskActivityStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityStore.class);
+
+    static final int ROLLUP_DELAY_DAYS = 1;
+    static final int MAX_DAYS_PER_RUN = 31;
+    static final long MAINTENANCE_INTERVAL_MINUTES = 60;
+
+    private static final String ACTIVITY_TYPE_CLASS = TaskActivityType.class.getName();
+
+    private final TaskActivitiesDataService activitiesDataService;
+    private final TaskActivityRollupsDataService rollupsDataService;
+
+    private volatile ScheduledExecutorService maintainer;
+
+    TaskActivityStore(TaskActivitiesDataService activitiesDataService,
+                      TaskActivityRollupsDataService rollupsDataService) {
+        this.activitiesDataService = activitiesDataService;
+        this.rollupsDataService = rollupsDataService;
+    }
+
+    /**
+     * Starts rolling up days and deleting activities older than the retention period in the background, every
+     * {@value #MAINTENANCE_INTERVAL_MINUTES} minutes.
+     *
+     * @param retentionDays  the number of days for which activities are kept, activities are kept forever if
+     *                       it is not positive
+     */
+    synchronized void start(final int retentionDays) {
+        if (maintainer == null) {
+            maintainer = Executors.newSingleThreadScheduledExecutor(new MaintenanceThreadFactory());
+            maintainer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    maintain(retentionDays);
+                }
+            }, 1, MAINTENANCE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Stops the background maintenance.
+     */
+    synchronized void stop() {
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+            maintainer = null;
+        }
+    }
+
+    /**
+     * Deletes the activities older than the retention period and rolls up the days that have passed.
+     *
+     * @param retentionDays  the number of days for which activities are kept, activities are kept forever if
+     *                       it is not positive
+     */
+    void maintain(int retentionDays) {
+        try {
+            if (retentionDays > 0) {
+                purge(DateTimeSourceUtil.now().minusDays(retentionDays));
+            }
+            rollUp();
+        } catch (RuntimeException e) {
+            // another instance might have rolled up the same day, the next run continues from its rollups
+            LOGGER.error("Unable to maintain task activities", e);
+        }
+    }
+
+    /**
+     * Returns the activities of the given task, ordered from the newest.
+     *
+     * @param task  the ID of the task, not null
+     * @param types  the types of the activities, not null
+     * @param before  the ID of the last activity of the previous page, null for the first page
+     * @param limit  the maximum number of activities to return
+     * @return the activities
+     */
+    List<TaskActivity> getActivities(final Long task, final Set<TaskActivityType> types, final Long before,
+                                     final int limit) {
+        if (types.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<TaskActivity> activities = activitiesDataService.executeQuery(new QueryExecution<List<TaskActivity>>() {
+            @Override
+            public List<TaskActivity> execute(Query query, InstanceSecurityRestriction restriction) {
+                ActivityFilter filter = new ActivityFilter(task, types);
+                if (before != null) {
+                    filter.add("id < beforeId", "java.lang.Long beforeId", before);
+                }
+
+                filter.applyTo(query);
+                query.setOrdering("id descending");
+                query.setRange(0, limit);
+
+                return (List<TaskActivity>) QueryExecutor.executeWithArray(query, filter.values(), restriction);
+            }
+        });
+
+        return (activities == null) ? new ArrayList<TaskActivity>() : new ArrayList<>(activities);
+    }
+
+    /**
+     * Counts the activities of the given task.
+     *
+     * @param task  the ID of the task, not null
+     * @param types  the types of the activities, not null
+     * @return the number of the activities
+     */
+    long count(Long task, Set<TaskActivityType> types) {
+        if (types.isEmpty()) {
+            return 0;
+        }
+
+        List<TaskActivityRollup> rollups = rollupsDataService.byTask(task);
+        long count = countActivities(task, types, getRolledUpUntil(rollups));
+
+        for (TaskActivityRollup rollup : rollups) {
+            if (types.contains(rollup.getActivityType())) {
+                count += rollup.getActivityCount();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Rolls up the days that have passed and were not rolled up yet, at most {@value #MAX_DAYS_PER_RUN} days.
+     *
+     * @return the number of days rolled up
+     */
+    int rollUp() {
+        DateTime until = startOfDay(DateTimeSourceUtil.now()).minusDays(ROLLUP_DELAY_DAYS);
+        DateTime from = getRolledUpUntil();
+        int days = 0;
+
+        while (days < MAX_DAYS_PER_RUN) {
+            DateTime day = findFirstDay(from, until);
+            if (day == null) {
+                break;
+            }
+
+            rollUpDay(day);
+            from = day.plusDays(1);
+            ++days;
+        }
+
+        return days;
+    }
+
+    /**
+     * Deletes the activities and rollups of the days before the given date, at most {@value #MAX_DAYS_PER_RUN} days.
+     * Every day is deleted in a separate transaction.
+     *
+     * @param before  the date, activities from the day of this date are kept
+     * @return the number of days deleted
+     */
+    int purge(DateTime before) {
+        DateTime until = startOfDay(before);
+        int days = 0;
+
+        while (days < MAX_DAYS_PER_RUN) {
+            DateTime day = findFirstDay(null, until);
+            if (day == null) {
+                break;
+            }
+
+            long deleted = purgeDay(day);
+            LOGGER.info("Deleted {} task activities from {}", deleted, day);
+            ++days;
+        }
+
+        return days;
+    }
+
+    /**
+     * Corrects the rollups after the type of the given activity changed. Must be called in the transaction that
+     * writes the change, after the activity has been updated.
+     *
+     * @param activity  the activity, not null
+     * @param previousType  the type of the activity before the change
+     */
+    void activityTypeChanged(TaskActivity activity, TaskActivityType previousType) {
+        if (activity.getDate() == null || activity.getActivityType() == previousType) {
+            return;
+        }
+
+        // activities of the days that can not be rolled up yet, this is the case for almost all changes
+        if (!activity.getDate().isBefore(startOfDay(DateTimeSourceUtil.now()).minusDays(ROLLUP_DELAY_DAYS))) {
+            return;
+        }
+
+        DateTime rolledUpUntil = getRolledUpUntil(rollupsDataService.byTask(activity.getTask()));
+
+        if (rolledUpUntil != null && activity.getDate().isBefore(rolledUpUntil)) {
+            DateTime day = startOfDay(activity.getDate());
+
+            addToRollup(activity.getTask(), day, previousType, -1);
+            addToRollup(activity.getTask(), day, activity.getActivityType(), 1);
+        }
+    }
+
+    /**
+     * Deletes the rollups of the given task.
+     *
+     * @param task  the ID of the task
+     */
+    void deleteRollups(Long task) {
+        for (TaskActivityRollup rollup : rollupsDataService.byTask(task)) {
+            rollupsDataService.delete(rollup);
+        }
+    }
+
+    static DateTime startOfDay(DateTime date) {
+        return date.withZone(DateTimeZone.UTC).withTimeAtStartOfDay();
+    }
+
+    private DateTime getRolledUpUntil() {
+        List<TaskActivityRollup> latest = rollupsDataService.retrieveAll(
+                new QueryParams(1, 1, new Order(TaskActivityRollupsDataService.DATE, Order.Direction.DESC)));
+
+        return latest.isEmpty() ? null : startOfDay(latest.get(0).getDate()).plusDays(1);
+    }
+
+    /**
+     * Returns the end of the last day rolled up for a task. Days are rolled up in order, so all activities
+     * of the task before that are counted by its rollups and none of the activities after it are.
+     */
+    private static DateTime getRolledUpUntil(List<TaskActivityRollup> rollups) {
+        DateTime latest = null;
+
+        for (TaskActivityRollup rollup : rollups) {
+            if (latest == null || rollup.getDate().isAfter(latest)) {
+                latest = rollup.getDate();
+            }
+        }
+
+        return (latest == null) ? null : startOfDay(latest).plusDays(1);
+    }
+
+    private long countActivities(final Long task, final Set<TaskActivityType> types, final DateTime from) {
+        Long count = activitiesDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                ActivityFilter filter = new ActivityFilter(task, types);
+                if (from != null) {
+                    filter.add("date >= fromDate", "org.joda.time.DateTime fromDate", from);
+                }
+
+                filter.applyTo(query);
+                query.setResult("count(this)");
+
+                return (Long) QueryExecutor.executeWithArray(query, filter.values(), restriction);
+            }
+        });
+
+        return (count == null) ? 0 : count;
+    }
+
+    private DateTime findFirstDay(DateTime from, DateTime until) {
+        Range<DateTime> range = new Range<>(from == null ? new DateTime(0) : from, until.minusMillis(1));
+        List<TaskActivity> first = activitiesDataService.byDate(range,
+                new QueryParams(1, 1, new Order(TaskActivitiesDataService.DATE, Order.Direction.ASC)));
+
+        return first.isEmpty() ? null : startOfDay(first.get(0).getDate());
+    }
+
+    private void rollUpDay(final DateTime day) {
+        rollupsDataService.doInTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(TransactionStatus status) {
+                for (Object[] row : countActivitiesOfDay(day)) {
+                    if (row[1] == null) {
+                        continue;
+                    }
+                    rollupsDataService.create(new TaskActivityRollup((Long) row[0], day,
+                            (TaskActivityType) row[1], ((Number) row[2]).longValue()));
+                }
+                return null;
+            }
+        });
+    }
+
+    private Collection<Object[]> countActivitiesOfDay(final DateTime day) {
+        Collection<Object[]> rows = activitiesDataService.executeQuery(new QueryExecution<Collection<Object[]>>() {
+            @Override
+            public Collection<Object[]> execute(Query query, InstanceSecurityRestriction restriction) {
+                query.setFilter("date >= fromDate && date < toDate");
+                query.declareParameters("org.joda.time.DateTime fromDate, org.joda.time.DateTime toDate");
+                query.setResult("task, activityType, count(this)");
+                query.setGrouping("task, activityType");
+
+                return (Collection<Object[]>) QueryExecutor.executeWithArray(query,
+                        new Object[]{day, day.plusDays(1)}, restriction);
+            }
+        });
+
+        return (rows == null) ? Collections.<Object[]>emptyList() : rows;
+    }
+
+    private long purgeDay(final DateTime day) {
+        return rollupsDataService.doInTransaction(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                for (TaskActivityRollup rollup : rollupsDataService.byDate(new Range<>(day, day))) {
+                    rollupsDataService.delete(rollup);
+                }
+
+                return activitiesDataService.executeQuery(new QueryExecution<Long>() {
+                    @Override
+                    public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                        query.setFilter("date >= fromDate && date < toDate");
+                        query.declareParameters("org.joda.time.DateTime fromDate, org.joda.time.DateTime toDate");
+
+                        return QueryExecutor.executeDelete(query, new Object[]{day, day.plusDays(1)}, restriction);
+                    }
+                });
+            }
+        });
+    }
+
+    private void addToRollup(Long task, DateTime day, TaskActivityType type, long delta) {
+        if (type == null) {
+            return;
+        }
+
+        TaskActivityRollup rollup = rollupsDataService.byTaskDateAndActivityType(task, day, type);
+
+        if (rollup != null) {
+            rollup.setActivityCount(Math.max(0, rollup.getActivityCount() + delta));
+            rollupsDataService.update(rollup);
+        } else if (delta > 0) {
+            rollupsDataService.create(new TaskActivityRollup(task, day, type, delta));
+        }
+    }
+
+    private static class MaintenanceThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "motech-task-activity-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Builds the JDOQL filter selecting the activities of a task, of the given types.
+     */
+    private static final class ActivityFilter {
+
+        private final StringBuilder filter = new StringBuilder("task == taskId");
+        private final StringBuilder declarations = new StringBuilder("java.lang.Long taskId");
+        private final List<Object> values = new ArrayList<>();
+
+        private ActivityFilter(Long task, Set<TaskActivityType> types) {
+            values.add(task);
+
+            filter.append(" && (");
+            int i = 0;
+            for (TaskActivityType type : types) {
+                if (i > 0) {
+                    filter.append(" || ");
+                }
+                filter.append("activityType == type").append(i);
+                declarations.append(", ").append(ACTIVITY_TYPE_CLASS).append(" type").append(i);
+                values.add(type);
+                ++i;
+            }
+            filter.append(')');
+        }
+
+        private void add(String condition, String declaration, Object value) {
+            filter.append(" && ").append(condition);
+            declarations.append(", ").append(declaration);
+            values.add(value);
+        }
+
+        private void applyTo(Query query) {
+            query.setFilter(filter.toString());
+            query.declareParameters(declarations.toString());
+        }
+
+        private Object[] values() {
+            return values.toArray();
+        }
+    }
+}
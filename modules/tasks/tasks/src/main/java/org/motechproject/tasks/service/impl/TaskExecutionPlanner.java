@@ -0,0 +1,373 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.exception.TaskHandlerException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes the steps of a task - loading data sources, checking filters and executing actions - running the steps
+ * that do not depend on each other concurrently. A step depends on the steps it was explicitly made dependent on,
+ * usually the data sources (<code>{{ad.N...}}</code>) or post action parameters (<code>{{pa.N...}}</code>) it
+ * references. A barrier step depends on all steps before it and all steps after it depend on it.
+ * <p/>
+ * Steps are started in the order they were planned. Once a step fails or returns false, no further steps are
+ * started. The steps already running are allowed to finish and the failure of the first failed step, in the planned
+ * order, is reported. Steps are executed in the calling thread if the planner is not started, if only one step can
+ * run at a time or if the calling thread takes part in a transaction.
+ */
+class TaskExecutionPlanner {
+
+    static final int MAX_THREADS = 16;
+    static final int MAX_QUEUED_STEPS = 256;
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final Pattern DATA_SOURCE_REFERENCE = Pattern.compile(
+            "\\{\\{(?i:ad)\\.[a-zA-Z0-9\\-_]+\\.[\\.a-zA-Z0-9\\-_]+#([a-zA-Z0-9])\\."
+    );
+    private static final Pattern POST_ACTION_PARAMETER_REFERENCE = Pattern.compile(
+            "\\{\\{(?i:pa)\\.([a-zA-Z0-9\\-_]+)\\."
+    );
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * Starts the thread pool used for executing steps concurrently.
+     */
+    synchronized void start() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_STEPS), new StepThreadFactory(),
+                    new RunInCallerHandler());
+            pool.allowCoreThreadTimeOut(true);
+
+            executor = pool;
+        }
+    }
+
+    /**
+     * Stops the thread pool. Steps that are running are allowed to finish, further steps are executed
+     * in the calling thread.
+     */
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Executes the given steps.
+     *
+     * @param steps  the steps in the order they were planned, not null
+     * @return true if all steps were executed, false if a step returned false
+     * @throws TaskHandlerException if a step failed
+     */
+    boolean execute(List<Step> steps) throws TaskHandlerException {
+        ThreadPoolExecutor pool = executor;
+
+        if (pool == null || steps.size() < 2 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (Step step : steps) {
+                if (!step.execute()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return new Execution(steps, pool).run();
+    }
+
+    /**
+     * Returns the ids of data sources referenced in the given templates.
+     *
+     * @param templates  the templates, not null
+     * @return the ids of the referenced data sources
+     */
+    static Set<String> findDataSourceReferences(Collection<String> templates) {
+        return findReferences(DATA_SOURCE_REFERENCE, templates);
+    }
+
+    /**
+     * Returns the ids of post action parameters referenced in the given templates.
+     *
+     * @param templates  the templates, not null
+     * @return the ids of the referenced post action parameters
+     */
+    static Set<String> findPostActionParameterReferences(Collection<String> templates) {
+        return findReferences(POST_ACTION_PARAMETER_REFERENCE, templates);
+    }
+
+    private static Set<String> findReferences(Pattern pattern, Collection<String> templates) {
+        Set<String> references = new LinkedHashSet<>();
+
+        for (String template : templates) {
+            if (template != null) {
+                Matcher matcher = pattern.matcher(template);
+                while (matcher.find()) {
+                    references.add(matcher.group(1));
+                }
+            }
+        }
+
+        return references;
+    }
+
+    /**
+     * A single step of a task execution.
+     */
+    abstract static class Step {
+
+        private final Set<Integer> dependencies = new HashSet<>();
+        private boolean barrier;
+
+        /**
+         * Makes this step depend on the step with the given index. Dependencies on steps planned after this step
+         * are ignored.
+         *
+         * @param index  the index of the step
+         * @return this step
+         */
+        Step dependsOn(int index) {
+            dependencies.add(index);
+            return this;
+        }
+
+        /**
+         * Makes this step a barrier, depending on all steps before it, with all steps after it depending on it.
+         *
+         * @return this step
+         */
+        Step asBarrier() {
+            barrier = true;
+            return this;
+        }
+
+        /**
+         * Executes this step.
+         *
+         * @return true if the execution of further steps should continue, false otherwise
+         * @throws TaskHandlerException if the step failed
+         */
+        abstract boolean execute() throws TaskHandlerException;
+    }
+
+    /**
+     * The execution of a single list of steps.
+     */
+    private static final class Execution {
+
+        private final List<Step> steps;
+        private final List<List<Integer>> dependents;
+        private final int[] remaining;
+        private final Deque<Integer> ready = new ArrayDeque<>();
+        private final CompletionService<Outcome> completionService;
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        private int running;
+        private boolean stopped;
+        private boolean result = true;
+        private Outcome failure;
+
+        private Execution(List<Step> steps, ThreadPoolExecutor pool) {
+            this.steps = steps;
+            this.dependents = new ArrayList<>(steps.size());
+            this.remaining = new int[steps.size()];
+            this.completionService = new ExecutorCompletionService<>(pool);
+
+            int lastBarrier = -1;
+
+            for (int i = 0; i < steps.size(); ++i) {
+                Set<Integer> dependencies = new HashSet<>();
+                Step step = steps.get(i);
+
+                if (step.barrier) {
+                    for (int j = 0; j < i; ++j) {
+                        dependencies.add(j);
+                    }
+                } else {
+                    if (lastBarrier >= 0) {
+                        dependencies.add(lastBarrier);
+                    }
+                    for (Integer dependency : step.dependencies) {
+                        if (dependency >= 0 && dependency < i) {
+                            dependencies.add(dependency);
+                        }
+                    }
+                }
+
+                if (step.barrier) {
+                    lastBarrier = i;
+                }
+
+                dependents.add(new ArrayList<Integer>());
+                for (Integer dependency : dependencies) {
+                    dependents.get(dependency).add(i);
+                }
+
+                remaining[i] = dependencies.size();
+                if (remaining[i] == 0) {
+                    ready.add(i);
+                }
+            }
+        }
+
+        private boolean run() throws TaskHandlerException {
+            boolean interrupted = false;
+
+            try {
+                while (true) {
+                    while (!stopped && !ready.isEmpty()) {
+                        int index = ready.poll();
+
+                        if (running == 0 && ready.isEmpty()) {
+                            // the only step that can run now, no need to hand it over to another thread
+                            complete(executeStep(index));
+                        } else {
+                            completionService.submit(new StepCallable(index));
+                            ++running;
+                        }
+                    }
+
+                    if (running == 0) {
+                        break;
+                    }
+
+                    try {
+                        Future<Outcome> future = completionService.take();
+                        --running;
+                        complete(future.get());
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Unexpected failure of a task step", e.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (failure != null) {
+                rethrow(failure.error);
+            }
+
+            return result;
+        }
+
+        private void complete(Outcome outcome) {
+            if (outcome.error != null) {
+                if (failure == null || outcome.index < failure.index) {
+                    failure = outcome;
+                }
+                stopped = true;
+            } else if (!outcome.proceed) {
+                result = false;
+                stopped = true;
+            } else {
+                for (Integer dependent : dependents.get(outcome.index)) {
+                    if (--remaining[dependent] == 0) {
+                        ready.add(dependent);
+                    }
+                }
+            }
+        }
+
+        private Outcome executeStep(int index) {
+            try {
+                return new Outcome(index, steps.get(index).execute(), null);
+            } catch (TaskHandlerException | RuntimeException | Error e) {
+                return new Outcome(index, false, e);
+            }
+        }
+
+        private void rethrow(Throwable error) throws TaskHandlerException {
+            if (error instanceof TaskHandlerException) {
+                throw (TaskHandlerException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else {
+                throw (Error) error;
+            }
+        }
+
+        private final class StepCallable implements Callable<Outcome> {
+
+            private final int index;
+
+            private StepCallable(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public Outcome call() {
+                Thread thread = Thread.currentThread();
+                ClassLoader previous = thread.getContextClassLoader();
+
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    return executeStep(index);
+                } finally {
+                    thread.setContextClassLoader(previous);
+                }
+            }
+        }
+    }
+
+    private static final class Outcome {
+
+        private final int index;
+        private final boolean proceed;
+        private final Throwable error;
+
+        private Outcome(int index, boolean proceed, Throwable error) {
+            this.index = index;
+            this.proceed = proceed;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Executes steps in the calling thread once the queue is full or the pool has been stopped, so a step
+     * is never lost.
+     */
+    private static class RunInCallerHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            runnable.run();
+        }
+    }
+
+    private static class StepThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "motech-task-step-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
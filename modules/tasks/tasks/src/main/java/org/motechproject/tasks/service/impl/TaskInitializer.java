@@ -12,9 +12,12 @@ import org.motechproject.tasks.service.util.TaskFilterExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.motechproject.tasks.constants.TaskFailureCause.DATA_SOURCE;
 import static org.motechproject.tasks.constants.TaskFailureCause.FILTER;
@@ -36,6 +39,7 @@ class TaskInitializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskInitializer.class);
 
     private TaskContext taskContext;
+    private PrefetchedLookups prefetchedLookups;
 
     /**
      * Class constructor.
@@ -43,41 +47,148 @@ class TaskInitializer {
      * @param taskContext  the task context
      */
     TaskInitializer(TaskContext taskContext) {
+        this(taskContext, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param taskContext  the task context
+     * @param prefetchedLookups  the results of lookups executed up front, null if there are none
+     */
+    TaskInitializer(TaskContext taskContext, PrefetchedLookups prefetchedLookups) {
         this.taskContext = taskContext;
+        this.prefetchedLookups = prefetchedLookups;
     }
 
     /**
-     * Executes all config steps (loading data from data sources, checking filters) defined for this task.
+     * Executes the lookups of the data sources of the given task for a batch of trigger events up front, with
+     * a single {@link DataProvider#lookupAll(String, String, List)} call for every data source. Lookups with the
+     * same fields are executed once, whether the provider combines the others into fewer queries is up to the
+     * provider. Only data sources that are not referencing other data sources are looked up. Lookups that can not
+     * be executed up front are skipped, they are executed again with the task.
+     *
+     * @param contexts  the contexts of the task executions for the trigger events, not null
+     * @param dataProviders  the map of data providers
+     * @param prefetchedLookups  the results of the lookups, not null
+     */
+    static void prefetchLookups(List<TaskContext> contexts, Map<String, DataProvider> dataProviders,
+                                PrefetchedLookups prefetchedLookups) {
+        if (contexts.size() < 2 || dataProviders == null) {
+            return;
+        }
+
+        for (TaskConfigStep step : contexts.get(0).getTask().getTaskConfig().getSteps()) {
+            if (step instanceof DataSource) {
+                DataSource ds = (DataSource) step;
+                DataProvider provider = dataProviders.get(ds.getProviderName());
+
+                if (provider != null && TaskExecutionPlanner.findDataSourceReferences(getLookupValues(ds)).isEmpty()) {
+                    prefetchLookups(ds, provider, contexts, prefetchedLookups);
+                }
+            }
+        }
+    }
+
+    private static void prefetchLookups(DataSource ds, DataProvider provider, List<TaskContext> contexts,
+                                        PrefetchedLookups prefetchedLookups) {
+        Set<Map<String, String>> lookupFields = new LinkedHashSet<>();
+
+        for (TaskContext context : contexts) {
+            try {
+                Map<String, String> fields = getLookupFields(ds, new KeyEvaluator(context));
+                if (!prefetchedLookups.contains(ds, fields)) {
+                    lookupFields.add(fields);
+                }
+            } catch (TaskHandlerException | RuntimeException e) {
+                LOGGER.debug("Unable to evaluate lookup of data source: {}", ds.getName(), e);
+            }
+        }
+
+        if (lookupFields.size() < 2) {
+            return;
+        }
+
+        List<Map<String, String>> lookups = new ArrayList<>(lookupFields);
+
+        try {
+            List<Object> results = provider.lookupAll(ds.getType(), ds.getName(), lookups);
+
+            if (results != null && results.size() == lookups.size()) {
+                for (int i = 0; i < lookups.size(); ++i) {
+                    prefetchedLookups.put(ds, lookups.get(i), results.get(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Unable to execute lookups of data source: {}, executing them one by one", ds.getName(), e);
+        }
+    }
+
+    /**
+     * Executes all config steps (loading data from data sources, checking filters) defined for this task. Data sources
+     * that do not reference each other are loaded concurrently, filter sets are checked once all previous steps were
+     * executed.
      *
      * @param dataProviders  the map of data providers, not null or empty
+     * @param planner  the planner executing the steps, not null
      * @return  true if all steps were executed, false otherwise
      * @throws TaskHandlerException if there were error while handling task
      */
-    public boolean evalConfigSteps(Map<String, DataProvider> dataProviders) throws TaskHandlerException {
+    public boolean evalConfigSteps(final Map<String, DataProvider> dataProviders, TaskExecutionPlanner planner)
+            throws TaskHandlerException {
         LOGGER.info("Executing all config steps for task: {}", taskContext.getTask().getName());
-        Iterator<TaskConfigStep> iterator = taskContext.getTask().getTaskConfig().getSteps().iterator();
-        boolean result = true;
 
-        TaskFilterExecutor taskFilterExecutor = new TaskFilterExecutor();
-
-        while (result && iterator.hasNext()) {
-            TaskConfigStep step = iterator.next();
+        List<TaskExecutionPlanner.Step> steps = new ArrayList<>();
+        Map<String, Integer> dataSourceSteps = new HashMap<>();
 
+        for (TaskConfigStep step : taskContext.getTask().getTaskConfig().getSteps()) {
             if (step instanceof DataSource) {
-                DataSource ds = (DataSource) step;
-                taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(ds, dataProviders), ds.isFailIfDataNotFound());
-                LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
-            } else if (step instanceof FilterSet) {
-                try {
-                    FilterSet filterSet = (FilterSet) step;
-
-                    result = taskFilterExecutor.checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
-                } catch (RuntimeException e) {
-                    throw new TaskHandlerException(FILTER, "task.error.filterError", e);
+                final DataSource ds = (DataSource) step;
+                TaskExecutionPlanner.Step dataSourceStep = new TaskExecutionPlanner.Step() {
+                    @Override
+                    boolean execute() throws TaskHandlerException {
+                        taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(ds, dataProviders), ds.isFailIfDataNotFound());
+                        LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
+                        return true;
+                    }
+                };
+
+                for (String objectId : TaskExecutionPlanner.findDataSourceReferences(getLookupValues(ds))) {
+                    Integer dependency = dataSourceSteps.get(objectId);
+                    if (dependency == null) {
+                        // references a data source that is not loaded yet, keep the order of the steps
+                        dataSourceStep.asBarrier();
+                    } else {
+                        dataSourceStep.dependsOn(dependency);
+                    }
                 }
+
+                dataSourceSteps.put(String.valueOf(ds.getObjectId()), steps.size());
+                steps.add(dataSourceStep);
+            } else if (step instanceof FilterSet) {
+                final FilterSet filterSet = (FilterSet) step;
+                steps.add(new TaskExecutionPlanner.Step() {
+                    @Override
+                    boolean execute() throws TaskHandlerException {
+                        try {
+                            return new TaskFilterExecutor().checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
+                        } catch (RuntimeException e) {
+                            throw new TaskHandlerException(FILTER, "task.error.filterError", e);
+                        }
+                    }
+                }.asBarrier());
             }
         }
-        return result;
+
+        return planner.execute(steps);
+    }
+
+    private static List<String> getLookupValues(DataSource dataSource) {
+        List<String> values = new ArrayList<>();
+        for (Lookup lookup : dataSource.getLookup()) {
+            values.add(lookup.getValue());
+        }
+        return values;
     }
 
     private Object getDataSourceObject(DataSource dataSource, Map<String, DataProvider> providers)
@@ -96,12 +207,21 @@ class TaskInitializer {
             );
         }
 
-        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+        Map<String, String> lookupFields = getLookupFields(dataSource, new KeyEvaluator(taskContext));
+
+        if (prefetchedLookups != null && prefetchedLookups.contains(dataSource, lookupFields)) {
+            return prefetchedLookups.get(dataSource, lookupFields);
+        }
+
+        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+    }
+
+    private static Map<String, String> getLookupFields(DataSource dataSource, KeyEvaluator keyEvaluator)
+            throws TaskHandlerException {
         Map<String, String> lookupFields = new HashMap<>();
         for (Lookup lookup : dataSource.getLookup()) {
             lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
         }
-
-        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+        return lookupFields;
     }
 }
@@ -13,6 +13,7 @@ import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.osgi.web.tracker.NamedServiceTracker;
 import org.motechproject.osgi.web.util.WebBundleUtil;
 import org.motechproject.tasks.domain.mds.channel.ActionEvent;
 import org.motechproject.tasks.domain.mds.channel.Channel;
@@ -35,43 +36,55 @@ import org.motechproject.tasks.service.TaskDataProviderService;
 import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.TriggerEventService;
 import org.motechproject.tasks.service.TriggerHandler;
+import org.motechproject.tasks.service.util.TaskPlanCache;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PreDestroy;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
-import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_CACHE_INVALIDATE_SUBJECT;
 import static org.motechproject.tasks.service.util.HandlerPredicates.tasksWithRegisteredChannel;
 
 /**
  * A {@link TaskService} that manages CRUD operations for a {@link Task}.
  * Expects channel registered,updated and deregistered events to be raised so that the associated tasks can be revalidated.
+ * Active tasks of every trigger subject and the channels used for resolving actions are cached. The caches are
+ * dropped when a task definition is saved or deleted, when a channel is updated or deregistered and when bundles
+ * are installed or uninstalled, after the transaction making the change commits. Cached tasks are never modified,
+ * callers get their own copies. Loaded tasks are compiled into the {@link TaskPlanCache}, which is cleared together
+ * with the other caches. Changes are announced to the other MOTECH instances with a broadcast event.
  */
 @Service("taskService")
 public class TaskServiceImpl implements TaskService {
@@ -84,6 +97,20 @@ public class TaskServiceImpl implements TaskService {
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
     private BundleContext bundleContext;
+    private NamedServiceTracker<TasksEventParser> customParsers;
+
+    private volatile Map<String, List<Task>> activeTasksCache = new ConcurrentHashMap<>();
+    private volatile Map<String, Channel> channelCache = new ConcurrentHashMap<>();
+
+    private final BundleListener bundleListener = new BundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            // availability of channels depends on the installed bundles
+            if (event.getType() == BundleEvent.INSTALLED || event.getType() == BundleEvent.UNINSTALLED) {
+                invalidateCaches();
+            }
+        }
+    };
     private TaskMigrationManager taskMigrationManager;
 
 
@@ -95,6 +122,8 @@ public class TaskServiceImpl implements TaskService {
             "task.validation.error.providerObjectLookupNotExist"};
     public static final List<String> IGNORED_FIELDS = new ArrayList<>();
 
+    private static final int MAX_CACHED_SUBJECTS = 4096;
+
     static {
         Collections.addAll(
                 IGNORED_FIELDS, "validationErrors", "id", "creator", "creationDate", "owner",
@@ -135,7 +164,7 @@ public class TaskServiceImpl implements TaskService {
     @Override
     public ActionEvent getActionEventFor(TaskActionInformation taskActionInformation)
             throws ActionNotFoundException {
-        Channel channel = channelService.getChannel(taskActionInformation.getModuleName());
+        Channel channel = getCachedChannel(taskActionInformation.getModuleName());
         ActionEvent event = null;
 
         for (ActionEvent action : channel.getActionTaskEvents()) {
@@ -179,31 +208,27 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public List<Task> findActiveTasksForTriggerSubject(final String subject) {
-        List<Task> list = null;
-
-        if (isNotBlank(subject)) {
-            List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
-                @Override
-                public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
-                    String byTriggerSubject = "trigger.subject == param";
-                    String isTaskActive = "enabled == true";
-                    String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
-
-                    query.setFilter(filter);
-                    query.declareParameters("java.lang.String param");
-                    query.setOrdering("id asc");
+        if (StringUtils.isBlank(subject)) {
+            return new ArrayList<>();
+        }
 
-                    return (List) QueryExecutor.execute(query, subject, restriction);
-                }
-            });
-            if (enabledTasks != null) {
-                checkChannelAvailableInTasks(enabledTasks);
-                list = new ArrayList<>(enabledTasks);
-                CollectionUtils.filter(list, tasksWithRegisteredChannel());
+        // tasks loaded while the cache is being invalidated end up in the dropped map
+        Map<String, List<Task>> cache = activeTasksCache;
+        List<Task> cached = cache.get(subject);
+        if (cached == null) {
+            cached = Collections.unmodifiableList(loadActiveTasksForTriggerSubject(subject));
+            if (cache.size() < MAX_CACHED_SUBJECTS) {
+                cache.put(subject, cached);
             }
         }
 
-        return list == null ? new ArrayList<>() : list;
+        // the cached tasks are shared by all trigger handlers, so every caller gets its own copies to modify
+        List<Task> tasks = new ArrayList<>(cached.size());
+        for (Task task : cached) {
+            tasks.add(copyOf(task));
+        }
+
+        return tasks;
     }
 
     @Override
@@ -212,18 +237,9 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
-
-            for (ServiceReference<TasksEventParser> ref : references) {
-                TasksEventParser parser = bundleContext.getService(ref);
-                if (parser.getName().equals(name)) {
-                    return parser;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.");
+        TasksEventParser parser = (customParsers == null) ? null : customParsers.getService(name);
+        if (parser != null) {
+            return parser;
         }
 
         // If a non-null parser name has been found in the event parameter, yet it cannot be found in
@@ -248,6 +264,7 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        tasksChanged();
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
@@ -257,6 +274,7 @@ public class TaskServiceImpl implements TaskService {
         Channel channel = channelService.getChannel(moduleName);
 
         LOGGER.debug("Handling Channel update: {} for module: {}", channel.getDisplayName(), moduleName);
+        tasksChanged();
 
         List<Task> tasks = findTasksDependentOnModule(moduleName);
         for (Task task : tasks) {
@@ -272,6 +290,17 @@ public class TaskServiceImpl implements TaskService {
         }
     }
 
+    @MotechListener(subjects = CHANNEL_DEREGISTER_SUBJECT)
+    public void invalidateCachesAfterChannelDeregistration(MotechEvent event) {
+        LOGGER.debug("Handling Channel deregistration for module: {}", event.getParameters().get(CHANNEL_MODULE_NAME));
+        tasksChanged();
+    }
+
+    @MotechListener(subjects = TASK_CACHE_INVALIDATE_SUBJECT)
+    public void handleCacheInvalidation(MotechEvent event) {
+        invalidateCaches();
+    }
+
     @MotechListener(subjects = DATA_PROVIDER_UPDATE_SUBJECT)
     public void validateTasksAfterTaskDataProviderUpdate(MotechEvent event) {
         String providerName = event.getParameters().get(DATA_PROVIDER_NAME).toString();
@@ -378,6 +407,36 @@ public class TaskServiceImpl implements TaskService {
         return tasks;
     }
 
+    private List<Task> loadActiveTasksForTriggerSubject(final String subject) {
+        List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
+            @Override
+            public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
+                String byTriggerSubject = "trigger.subject == param";
+                String isTaskActive = "enabled == true";
+                String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
+
+                query.setFilter(filter);
+                query.declareParameters("java.lang.String param");
+                query.setOrdering("id asc");
+
+                return (List) QueryExecutor.execute(query, subject, restriction);
+            }
+        });
+
+        List<Task> list = new ArrayList<>();
+        if (enabledTasks != null) {
+            checkChannelAvailableInTasks(enabledTasks);
+            list.addAll(enabledTasks);
+            CollectionUtils.filter(list, tasksWithRegisteredChannel());
+        }
+
+        for (Task task : list) {
+            TaskPlanCache.compile(task);
+        }
+
+        return list;
+    }
+
     private Set<TaskError> validateTrigger(Task task) {
 
         LOGGER.debug("Validating trigger in task: {} with ID: {}", task.getName(), task.getId());
@@ -555,13 +614,15 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
-        tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+        Boolean definitionChanged = tasksDataService.doInTransaction(new TransactionCallback<Boolean>() {
             @Override
-            protected void doInTransactionWithoutResult(TransactionStatus status) {
+            public Boolean doInTransaction(TransactionStatus status) {
                 Task existing = tasksDataService.findById(task.getId());
 
                 if (null != existing) {
                     LOGGER.debug("Updating task: {} with ID: {}", existing.getName(), existing.getId());
+                    boolean changed = isDefinitionChanged(existing, task);
+
                     existing.setActions(task.getActions());
                     existing.setDescription(task.getDescription());
                     existing.setFailuresInRow(task.getFailuresInRow());
@@ -582,18 +643,109 @@ public class TaskServiceImpl implements TaskService {
                     checkChannelAvailableInTask(existing);
 
                     tasksDataService.update(existing);
+                    return changed;
                 } else {
                     LOGGER.debug("Creating task: {}", task.getName());
                     checkChannelAvailableInTask(task);
 
                     tasksDataService.create(task);
+                    return true;
                 }
             }
         });
 
+        // saving the outcome of an execution only changes the failure counter of the task
+        if (definitionChanged == null || definitionChanged) {
+            tasksChanged();
+        } else {
+            updateCachedFailuresInRow(task);
+        }
+
         LOGGER.info("Saved task: {}", task.getName());
     }
 
+    private boolean isDefinitionChanged(Task existing, Task task) {
+        return !existing.equals(task)
+                || existing.getNumberOfRetries() != task.getNumberOfRetries()
+                || existing.getRetryIntervalInMilliseconds() != task.getRetryIntervalInMilliseconds();
+    }
+
+    private void updateCachedFailuresInRow(Task task) {
+        Map<String, List<Task>> cache = activeTasksCache;
+
+        // cached tasks are never modified, the lists containing the task are replaced instead
+        for (Map.Entry<String, List<Task>> entry : cache.entrySet()) {
+            List<Task> updated = new ArrayList<>(entry.getValue());
+            boolean found = false;
+
+            for (int i = 0; i < updated.size(); i++) {
+                if (Objects.equals(updated.get(i).getId(), task.getId())) {
+                    Task copy = copyOf(updated.get(i));
+                    copy.setFailuresInRow(task.getFailuresInRow());
+                    updated.set(i, copy);
+                    found = true;
+                }
+            }
+
+            if (found) {
+                cache.replace(entry.getKey(), entry.getValue(), Collections.unmodifiableList(updated));
+            }
+        }
+    }
+
+    private Task copyOf(Task task) {
+        Task copy = new Task(task.getName(), task.getTrigger(), new ArrayList<>(task.getActions()),
+                task.getTaskConfig(), task.isEnabled(), task.hasRegisteredChannel());
+
+        copy.setId(task.getId());
+        copy.setDescription(task.getDescription());
+        copy.setFailuresInRow(task.getFailuresInRow());
+        copy.setValidationErrors(new HashSet<>(task.getValidationErrors()));
+        copy.setNumberOfRetries(task.getNumberOfRetries());
+        copy.setRetryIntervalInMilliseconds(task.getRetryIntervalInMilliseconds());
+
+        return copy;
+    }
+
+    private Channel getCachedChannel(String moduleName) {
+        Map<String, Channel> cache = channelCache;
+        Channel channel = cache.get(moduleName);
+
+        if (channel == null) {
+            channel = channelService.getChannel(moduleName);
+            if (channel != null) {
+                cache.put(moduleName, channel);
+            }
+        }
+
+        return channel;
+    }
+
+    private void tasksChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a reader invalidating earlier could load and cache the state from before the commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateAndBroadcast();
+                }
+            });
+        } else {
+            invalidateAndBroadcast();
+        }
+    }
+
+    private void invalidateAndBroadcast() {
+        invalidateCaches();
+        eventRelay.broadcastEventMessage(new MotechEvent(TASK_CACHE_INVALIDATE_SUBJECT));
+    }
+
+    private void invalidateCaches() {
+        activeTasksCache = new ConcurrentHashMap<>();
+        channelCache = new ConcurrentHashMap<>();
+        TaskPlanCache.clear();
+    }
+
     private void registerHandler(Task task) {
         // We cannot simply autowire trigger handler bean, since that would create
         // circular dependency between TaskService and TriggerHandler
@@ -658,6 +810,29 @@ public class TaskServiceImpl implements TaskService {
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(bundleListener);
+        }
+        this.customParsers = (bundleContext == null) ? null :
+                new NamedServiceTracker<TasksEventParser>(bundleContext, TasksEventParser.class) {
+                    @Override
+                    protected String getName(TasksEventParser parser) {
+                        return parser.getName();
+                    }
+                };
+    }
+
+    /**
+     * Stops tracking the custom event parsers and the installed bundles.
+     */
+    @PreDestroy
+    public void closeServiceTrackers() {
+        if (customParsers != null) {
+            customParsers.close();
+        }
+        if (bundleContext != null) {
+            bundleContext.removeBundleListener(bundleListener);
+        }
     }
 
     @Autowired
@@ -0,0 +1,227 @@
+package org.motechproject.tasks.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the parameters of trigger events with the same subject, delivered concurrently, and handles them as
+ * a single batch. The thread delivering the first event of a batch waits for the window of the batch to pass, or for
+ * the batch to hold {@value #MAX_BATCH_SIZE} events, and executes the batch. The threads delivering the other events
+ * of the batch wait until it is executed. Every event is therefore handled before the call delivering it returns,
+ * so events are only acknowledged once their tasks were executed, and batches are executed by the threads that
+ * deliver events, with their context class loaders. The outcome is kept for each event, a call fails only if its own
+ * event could not be handled, or if the whole batch could not be handled.
+ */
+class TaskTriggerBatcher {
+
+    static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Executes batches of trigger events.
+     */
+    interface BatchHandler {
+
+        /**
+         * Executes the tasks for the given batch of trigger events. A failure to handle one event does not stop
+         * the handling of the following events.
+         *
+         * @param triggerSubject  the subject of the trigger events
+         * @param parameters  the parameters of the trigger events, in the order the events were received
+         * @return the failures of the events, in the order of the parameters, null for the events that were handled
+         * @throws RuntimeException if none of the events could be handled
+         */
+        List<RuntimeException> handleBatch(String triggerSubject, List<Map<String, Object>> parameters);
+    }
+
+    private final BatchHandler handler;
+    private final Map<String, Batch> batches = new HashMap<>();
+
+    private long windowMillis;
+    private boolean started;
+
+    TaskTriggerBatcher(BatchHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Starts collecting trigger events.
+     *
+     * @param windowMillis  the time in milliseconds for which events are collected, must be positive
+     */
+    synchronized void start(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.started = true;
+    }
+
+    /**
+     * Stops collecting trigger events. Batches that are waiting are executed right away.
+     */
+    synchronized void stop() {
+        started = false;
+
+        for (Batch batch : batches.values()) {
+            batch.closed = true;
+        }
+        batches.clear();
+
+        notifyAll();
+    }
+
+    /**
+     * Handles a trigger event as part of the batch of its subject. Returns once the batch was executed.
+     *
+     * @param triggerSubject  the subject of the trigger event, not null
+     * @param parameters  the parameters of the trigger event
+     * @return true if the event was handled, false if it must be handled by the caller
+     * @throws RuntimeException if the event, or the whole batch of the event, could not be handled
+     */
+    boolean handle(String triggerSubject, Map<String, Object> parameters) {
+        Batch batch;
+        boolean leader;
+        int index;
+
+        synchronized (this) {
+            if (!started) {
+                return false;
+            }
+
+            batch = batches.get(triggerSubject);
+            leader = batch == null;
+
+            if (leader) {
+                batch = new Batch(System.currentTimeMillis() + windowMillis);
+                batches.put(triggerSubject, batch);
+            }
+
+            index = batch.parameters.size();
+            batch.parameters.add(parameters);
+
+            if (batch.parameters.size() >= MAX_BATCH_SIZE) {
+                // further events start a new batch
+                close(triggerSubject, batch);
+            }
+        }
+
+        if (leader) {
+            execute(triggerSubject, batch);
+        } else {
+            awaitExecution(batch);
+        }
+
+        RuntimeException failure = getFailure(batch, index);
+        if (failure != null) {
+            throw failure;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of events waiting for their batches to be executed. Package-private for testing.
+     *
+     * @return the number of waiting events
+     */
+    synchronized int getWaiting() {
+        int waiting = 0;
+        for (Batch batch : batches.values()) {
+            waiting += batch.parameters.size();
+        }
+        return waiting;
+    }
+
+    private void execute(String triggerSubject, Batch batch) {
+        synchronized (this) {
+            boolean interrupted = false;
+            long remaining = batch.deadline - System.currentTimeMillis();
+
+            while (!batch.closed && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+                remaining = batch.deadline - System.currentTimeMillis();
+            }
+
+            close(triggerSubject, batch);
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<RuntimeException> failures = null;
+        RuntimeException failure = null;
+
+        try {
+            failures = handler.handleBatch(triggerSubject, batch.parameters);
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            synchronized (this) {
+                batch.failures = failures;
+                batch.failure = failure;
+                batch.executed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized RuntimeException getFailure(Batch batch, int index) {
+        if (batch.failure != null) {
+            return batch.failure;
+        }
+
+        return (batch.failures == null || index >= batch.failures.size()) ? null : batch.failures.get(index);
+    }
+
+    private synchronized void awaitExecution(Batch batch) {
+        boolean interrupted = false;
+
+        while (!batch.executed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // the event is part of the batch, it is handled anyway
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close(String triggerSubject, Batch batch) {
+        if (batches.get(triggerSubject) == batch) {
+            batches.remove(triggerSubject);
+        }
+
+        if (!batch.closed) {
+            batch.closed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * A batch of trigger events. Guarded by the batcher, the parameters are no longer changed once the batch
+     * is closed. Once executed, it holds either the failure of the whole batch or the failures of its events.
+     */
+    private static final class Batch {
+
+        private final long deadline;
+        private final List<Map<String, Object>> parameters = new ArrayList<>();
+
+        private boolean closed;
+        private boolean executed;
+        private RuntimeException failure;
+        private List<RuntimeException> failures;
+
+        private Batch(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
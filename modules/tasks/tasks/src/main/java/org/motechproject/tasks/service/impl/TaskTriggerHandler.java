@@ -2,14 +2,17 @@ package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.commons.api.TasksEventParser;
+import org.motechproject.config.SettingsFacade;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
 import org.motechproject.tasks.constants.EventDataKeys;
 import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
 import org.motechproject.tasks.domain.mds.task.TaskActivity;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.service.TaskActivityService;
@@ -20,6 +23,7 @@ import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.ReflectionUtils;
@@ -27,6 +31,7 @@ import org.springframework.util.ReflectionUtils;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,12 +43,17 @@ import static org.motechproject.tasks.service.util.HandlerPredicates.withService
 
 /**
  * The <code>TaskTriggerHandler</code> receives events and executes tasks for which the trigger
- * event subject is the same as the received event subject.
+ * event subject is the same as the received event subject. If the <code>task.trigger.batch.window</code> setting is
+ * positive, events with the same subject delivered concurrently within that many milliseconds are handled together by
+ * a {@link TaskTriggerBatcher}: the tasks are resolved once for all of them and, unless an action of the tasks calls
+ * a service that might change the data looked up, data source lookups are passed to the data providers for all of
+ * them at once. Each delivery still returns only once its event was handled.
  */
 @Service("taskTriggerHandler")
 public class TaskTriggerHandler implements TriggerHandler {
 
     private static final String BEAN_NAME = "taskTriggerHandler";
+    private static final String TRIGGER_BATCH_WINDOW_KEY = "task.trigger.batch.window";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskTriggerHandler.class);
 
@@ -65,10 +75,33 @@ public class TaskTriggerHandler implements TriggerHandler {
     @Autowired
     private TasksPostExecutionHandler postExecutionHandler;
 
+    @Autowired
+    @Qualifier("tasksSettings")
+    private SettingsFacade settings;
+
+    @Autowired
+    private DataProviderLookupCache lookupCache;
+
     private Map<String, DataProvider> dataProviders;
 
+    private final TaskExecutionPlanner planner = new TaskExecutionPlanner();
+
+    private final TaskTriggerBatcher batcher = new TaskTriggerBatcher(new TaskTriggerBatcher.BatchHandler() {
+        @Override
+        public List<RuntimeException> handleBatch(String triggerSubject, List<Map<String, Object>> parameters) {
+            return handleTriggerBatch(triggerSubject, parameters);
+        }
+    });
+
     @PostConstruct
     public void init() {
+        planner.start();
+
+        long batchWindow = getTriggerBatchWindow();
+        if (batchWindow > 0) {
+            batcher.start(batchWindow);
+        }
+
         for (Task task : taskService.getAllTasks()) {
             registerHandlerFor(task.getTrigger().getEffectiveListenerSubject());
 
@@ -81,6 +114,8 @@ public class TaskTriggerHandler implements TriggerHandler {
     @PreDestroy
     public void preDestroy() {
         registryService.clearListenersForBean(BEAN_NAME);
+        batcher.stop();
+        planner.stop();
     }
 
     @Override
@@ -130,6 +165,11 @@ public class TaskTriggerHandler implements TriggerHandler {
         String triggerSubject = parser == null ? event.getSubject() : parser.parseEventSubject(event.getSubject(), eventParams);
         Map<String, Object> parameters = parser == null ? eventParams : parser.parseEventParameters(event.getSubject(), eventParams);
 
+        // returns once the batch of the event was handled
+        if (batcher.handle(triggerSubject, parameters)) {
+            return;
+        }
+
         List<Task> tasks = taskService.findActiveTasksForTriggerSubject(triggerSubject);
 
         // Handle all tasks one by one
@@ -161,19 +201,85 @@ public class TaskTriggerHandler implements TriggerHandler {
         handleTask(taskService.getTask(activity.getTask()), activity.getParameters(), true);
     }
 
+    private List<RuntimeException> handleTriggerBatch(String triggerSubject,
+                                                      List<Map<String, Object>> parametersList) {
+        LOGGER.info("Handling {} motech events with subject: {}", parametersList.size(), triggerSubject);
+
+        List<Task> tasks = taskService.findActiveTasksForTriggerSubject(triggerSubject);
+        PrefetchedLookups prefetchedLookups = null;
+
+        if (canPrefetchLookups(tasks)) {
+            prefetchedLookups = new PrefetchedLookups();
+
+            for (Task task : tasks) {
+                List<TaskContext> contexts = new ArrayList<>(parametersList.size());
+                for (Map<String, Object> parameters : parametersList) {
+                    contexts.add(new TaskContext(task, parameters, null, activityService) {
+                        @Override
+                        public void publishWarningActivity(String message, String field) {
+                            // warnings are published when the task is executed
+                        }
+                    });
+                }
+
+                TaskInitializer.prefetchLookups(contexts, dataProviders, prefetchedLookups);
+            }
+        }
+
+        // Handle all events one by one, skipping tasks disabled while handling previous events
+        List<RuntimeException> failures = new ArrayList<>(parametersList.size());
+        for (Map<String, Object> parameters : parametersList) {
+            RuntimeException failure = null;
+
+            try {
+                for (Task task : tasks) {
+                    if (task.isEnabled()) {
+                        handleTask(task, parameters, false, prefetchedLookups);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // only the delivery of this event fails, as it would without batching
+                failure = e;
+            }
+
+            failures.add(failure);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Checks whether lookups can be executed for a whole batch of trigger events up front. Actions sending events
+     * have their effects applied asynchronously, not before the lookups of the next event even without batching,
+     * but a service call might change the data found by the lookups of the following events.
+     */
+    private boolean canPrefetchLookups(List<Task> tasks) {
+        for (Task task : tasks) {
+            for (TaskActionInformation action : task.getActions()) {
+                if (executor.isServiceCall(action)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private void handleTask(Task task, Map<String, Object> parameters, boolean isRetry) {
+        handleTask(task, parameters, isRetry, null);
+    }
+
+    private void handleTask(Task task, Map<String, Object> parameters, boolean isRetry,
+                            PrefetchedLookups prefetchedLookups) {
         long activityId = activityService.addTaskStarted(task, parameters);
         Map<String, Object> metadata = prepareTaskMetadata(task.getId(), activityId, isRetry);
 
         TaskContext taskContext = new TaskContext(task, parameters, metadata, activityService);
-        TaskInitializer initializer = new TaskInitializer(taskContext);
+        TaskInitializer initializer = new TaskInitializer(taskContext, prefetchedLookups);
 
         try {
             LOGGER.info("Executing all actions from task: {}", task.getName());
-            if (initializer.evalConfigSteps(dataProviders)) {
-                for (int i = 0; i < task.getActions().size(); i++) {
-                    executor.execute(task, task.getActions().get(i), i, taskContext, activityId);
-                }
+            if (initializer.evalConfigSteps(dataProviders, planner)) {
+                planner.execute(planActions(task, taskContext, activityId));
             }
             LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
         } catch (TaskHandlerException e) {
@@ -183,13 +289,91 @@ public class TaskTriggerHandler implements TriggerHandler {
         }
     }
 
+    private List<TaskExecutionPlanner.Step> planActions(final Task task, final TaskContext taskContext, final long activityId) {
+        List<TaskExecutionPlanner.Step> steps = new ArrayList<>(task.getActions().size());
+        Integer lastEventAction = null;
+
+        for (int i = 0; i < task.getActions().size(); i++) {
+            final TaskActionInformation action = task.getActions().get(i);
+            final int actionIndex = i;
+
+            TaskExecutionPlanner.Step step = new TaskExecutionPlanner.Step() {
+                @Override
+                boolean execute() throws TaskHandlerException {
+                    executor.execute(task, action, actionIndex, taskContext, activityId);
+                    return true;
+                }
+            };
+
+            for (String objectId : TaskExecutionPlanner.findPostActionParameterReferences(action.getValues().values())) {
+                Integer dependency = getActionIndex(objectId);
+                if (dependency == null || dependency >= i) {
+                    // references a parameter that is not available yet, keep the order of the actions
+                    step.asBarrier();
+                } else {
+                    step.dependsOn(dependency);
+                }
+            }
+
+            // events are sent in the order of the actions
+            if (task.getActions().size() > 1 && !executor.isServiceCall(action)) {
+                if (lastEventAction != null) {
+                    step.dependsOn(lastEventAction);
+                }
+                lastEventAction = i;
+            }
+
+            steps.add(step);
+        }
+
+        return steps;
+    }
+
+    /**
+     * Returns the number of trigger events waiting for their batches to be handled. Package-private for testing.
+     *
+     * @return the number of waiting trigger events
+     */
+    int getWaitingTriggerEvents() {
+        return batcher.getWaiting();
+    }
+
+    private long getTriggerBatchWindow() {
+        String property = (settings == null) ? null : settings.getProperty(TRIGGER_BATCH_WINDOW_KEY);
+        long window = 0;
+
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                window = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number. Trigger events will not be batched.",
+                        TRIGGER_BATCH_WINDOW_KEY);
+            }
+        }
+
+        return window;
+    }
+
+    private Integer getActionIndex(String objectId) {
+        try {
+            return Integer.valueOf(objectId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     @Override
     public void addDataProvider(DataProvider provider) {
         if (dataProviders == null) {
             dataProviders = new HashMap<>();
         }
 
-        dataProviders.put(provider.getName(), provider);
+        if (lookupCache == null) {
+            dataProviders.put(provider.getName(), provider);
+        } else {
+            lookupCache.clear();
+            dataProviders.put(provider.getName(), lookupCache.wrap(provider));
+        }
     }
 
     @Override
@@ -197,6 +381,10 @@ public class TaskTriggerHandler implements TriggerHandler {
         if (MapUtils.isNotEmpty(dataProviders)) {
             dataProviders.remove(taskDataProviderId);
         }
+
+        if (lookupCache != null) {
+            lookupCache.clear();
+        }
     }
 
     void setDataProviders(Map<String, DataProvider> dataProviders) {
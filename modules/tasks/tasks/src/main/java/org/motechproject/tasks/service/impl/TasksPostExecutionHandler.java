@@ -26,6 +26,7 @@ import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_STACK_TR
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TASK_ID;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TASK_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TRIGGER_DISABLED;
+import static org.motechproject.tasks.constants.EventDataKeys.TASK_ID;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_RETRY;
 import static org.motechproject.tasks.constants.EventSubjects.createHandlerFailureSubject;
 import static org.motechproject.tasks.constants.EventSubjects.createHandlerSuccessSubject;
@@ -69,7 +70,8 @@ public class TasksPostExecutionHandler {
     public void handleActionExecuted(Map<String, Object> params, Map<String, Object> metadata, Long activityId) {
         boolean taskFinished = activityService.addSuccessfulExecution(activityId);
         if (taskFinished) {
-            Long taskId = activityService.getTaskActivityById(activityId).getTask();
+            Long taskId = (metadata != null && metadata.get(TASK_ID) != null) ? (Long) metadata.get(TASK_ID) :
+                    activityService.getTaskActivityById(activityId).getTask();
             Task task = taskService.getTask(taskId);
 
             handleSuccess(params, metadata, task);
@@ -0,0 +1,117 @@
+package org.motechproject.tasks.service.util;
+
+import org.joda.time.DateTime;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.mds.ParameterType;
+import org.motechproject.tasks.domain.mds.task.Filter;
+import org.motechproject.tasks.domain.mds.task.OperatorType;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A filter with its key, manipulations, operator and expression parsed. The expression is parsed according to
+ * the type of the filter up front, so checking the filter does not parse it again. An expression that can not be parsed
+ * is parsed again when it is used, failing the same way it would without compiling the filter.
+ */
+final class CompiledFilter {
+
+    private final KeyInformation key;
+    private final List<Manipulation> manipulations;
+    private final OperatorType operatorType;
+    private final boolean expressionNeeded;
+    private final String expression;
+
+    private final BigDecimal numberExpression;
+    private final DateTime dateExpression;
+    private final Integer integerExpression;
+    private final boolean booleanExpression;
+
+    private CompiledFilter(Filter filter) {
+        this.key = KeyInformation.parse(filter.getKey());
+        this.manipulations = Manipulation.resolveAll(key.getManipulations());
+        this.operatorType = OperatorType.fromString(filter.getOperator());
+        this.expressionNeeded = OperatorType.needExpression(filter.getOperator());
+
+        this.expression = filter.getExpression();
+
+        ParameterType type = filter.getType();
+        boolean date = type == ParameterType.DATE;
+
+        this.numberExpression = (type != null && type.isNumber()) ? parseNumber(expression) : null;
+        this.dateExpression = date ? parseDate(expression) : null;
+        this.integerExpression = date ? parseInteger(expression) : null;
+        this.booleanExpression = Boolean.parseBoolean(expression);
+    }
+
+    /**
+     * Compiles the given filter.
+     *
+     * @param filter  the filter, not null
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the key of the filter is malformed
+     */
+    static CompiledFilter compile(Filter filter) {
+        return new CompiledFilter(filter);
+    }
+
+    KeyInformation getKey() {
+        return key;
+    }
+
+    List<Manipulation> getManipulations() {
+        return manipulations;
+    }
+
+    OperatorType getOperatorType() {
+        return operatorType;
+    }
+
+    boolean isExpressionNeeded() {
+        return expressionNeeded;
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    BigDecimal getNumberExpression() {
+        return (numberExpression == null) ? new BigDecimal(expression) : numberExpression;
+    }
+
+    DateTime getDateExpression() {
+        return (dateExpression == null) ? DateTime.parse(expression) : dateExpression;
+    }
+
+    int getIntegerExpression() {
+        return (integerExpression == null) ? Integer.valueOf(expression) : integerExpression;
+    }
+
+    boolean getBooleanExpression() {
+        return booleanExpression;
+    }
+
+    private static BigDecimal parseNumber(String expression) {
+        try {
+            return (expression == null) ? null : new BigDecimal(expression);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static DateTime parseDate(String expression) {
+        try {
+            return (expression == null) ? null : DateTime.parse(expression);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Integer parseInteger(String expression) {
+        try {
+            return (expression == null) ? null : Integer.valueOf(expression);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
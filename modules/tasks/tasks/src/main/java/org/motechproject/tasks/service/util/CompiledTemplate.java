@@ -0,0 +1,106 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.exception.TaskHandlerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+/**
+ * A template split into literal text and keys, with the manipulations of every key resolved. Keys are found the
+ * same way {@link KeyInformation#parseAll(String)} finds them, so evaluating the template only requires looking up
+ * the values of the keys and joining them with the literal text.
+ */
+final class CompiledTemplate {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("\\{\\{((.*?))(\\}\\})(?![^(]*\\))");
+
+    private final String template;
+    private final String[] literals;
+    private final List<KeyInformation> keys;
+    private final List<List<Manipulation>> manipulations;
+
+    private CompiledTemplate(String template, String[] literals, List<KeyInformation> keys,
+                             List<List<Manipulation>> manipulations) {
+        this.template = template;
+        this.literals = literals;
+        this.keys = keys;
+        this.manipulations = manipulations;
+    }
+
+    /**
+     * Compiles the given template.
+     *
+     * @param template  the template, not null
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template contains a malformed key
+     */
+    static CompiledTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<KeyInformation> keys = new ArrayList<>();
+        List<List<Manipulation>> manipulations = new ArrayList<>();
+
+        Matcher matcher = KEY_PATTERN.matcher(isEmpty(template) ? "" : template);
+        int end = 0;
+
+        while (matcher.find()) {
+            KeyInformation key = KeyInformation.parse(matcher.group(1));
+
+            literals.add(template.substring(end, matcher.start()));
+            keys.add(key);
+            manipulations.add(Manipulation.resolveAll(key.getManipulations()));
+
+            end = matcher.end();
+        }
+
+        if (keys.isEmpty()) {
+            return new CompiledTemplate(template, null, Collections.<KeyInformation>emptyList(),
+                    Collections.<List<Manipulation>>emptyList());
+        }
+
+        literals.add(template.substring(end));
+
+        return new CompiledTemplate(template, literals.toArray(new String[literals.size()]),
+                Collections.unmodifiableList(keys), manipulations);
+    }
+
+    /**
+     * Returns the keys used in this template, in order of their appearance.
+     *
+     * @return the keys of the template
+     */
+    List<KeyInformation> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Evaluates this template by replacing the keys with their manipulated values.
+     *
+     * @param keyEvaluator  the evaluator providing the values of the keys, not null
+     * @return the evaluated template
+     * @throws TaskHandlerException if there was problem while retrieving or manipulating a value
+     */
+    String evaluate(KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        if (keys.isEmpty()) {
+            return template;
+        }
+
+        StringBuilder builder = new StringBuilder(template.length());
+
+        for (int i = 0; i < keys.size(); ++i) {
+            builder.append(literals[i]);
+
+            Object value = keyEvaluator.getValue(keys.get(i));
+            String stringValue = value != null ? value.toString() : "";
+
+            builder.append(keyEvaluator.manipulateValue(manipulations.get(i), stringValue));
+        }
+
+        return builder.append(literals[keys.size()]).toString();
+    }
+}
@@ -10,7 +10,7 @@ public class DataSourceObject {
     private String objectId;
     private Object objectValue;
     private boolean failIfNotFound;
-    private boolean nullWarningPublished;
+    private volatile boolean nullWarningPublished;
 
     /**
      * Class constructor.
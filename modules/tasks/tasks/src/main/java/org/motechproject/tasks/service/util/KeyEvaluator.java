@@ -17,28 +17,15 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.motechproject.tasks.domain.KeyInformation.ADDITIONAL_DATA_PREFIX;
 import static org.motechproject.tasks.domain.KeyInformation.POST_ACTION_PARAMETER_PREFIX;
 import static org.motechproject.tasks.domain.KeyInformation.TRIGGER_PREFIX;
-import static org.motechproject.tasks.domain.KeyInformation.parseAll;
 import static org.motechproject.tasks.constants.TaskFailureCause.POST_ACTION_PARAMETER;
 import static org.motechproject.tasks.constants.TaskFailureCause.TRIGGER;
 
 /**
  * KeyEvaluator evaluates the value of a key in the context of a task which is used to execute filters and actions.
+ * Templates are evaluated using their compiled form, kept by the {@link TaskPlanCache}.
  */
 public class KeyEvaluator {
 
-    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
-    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
-    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
-    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
-    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
-    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
-    private static final int MINUS_DAYS_PATTERN_BEGIN_INDEX = 10;
-    private static final int PLUS_HOURS_PATTERN_BEGIN_INDEX = 10;
-    private static final int MINUS_HOURS_PATTERN_BEGIN_INDEX = 11;
-    private static final int PLUS_MINUTES_PATTERN_BEGIN_INDEX = 12;
-    private static final int MINUS_MINUTES_PATTERN_BEGIN_INDEX = 13;
-    private static final int PARSE_DATE_PATTERN_BEGIN_INDEX = 10;
-
     private TaskContext taskContext;
 
     /**
@@ -58,20 +45,18 @@ public class KeyEvaluator {
      * @throws TaskHandlerException if there was problem while manipulating the value
      */
     public String evaluateTemplateString(String template) throws TaskHandlerException {
-        String conversionTemplate = template;
-
-        for (KeyInformation key : parseAll(template)) {
-            Object value = getValue(key);
-            String stringValue = value != null ? value.toString() : "";
-
-            stringValue = manipulateValue(key.getManipulations(), stringValue);
-
-            conversionTemplate = conversionTemplate.replace(
-                    String.format("{{%s}}", key.getOriginalKey()), stringValue
-            );
-        }
+        return (template == null) ? null : TaskPlanCache.getTemplate(template).evaluate(this);
+    }
 
-        return conversionTemplate;
+    /**
+     * Returns the keys used in the given template, in order of their appearance.
+     *
+     * @param template  the template, not null
+     * @return the keys of the template
+     * @throws IllegalArgumentException if the template contains a malformed key
+     */
+    public List<KeyInformation> getTemplateKeys(String template) {
+        return TaskPlanCache.getTemplate(template).getKeys();
     }
 
     /**
@@ -120,8 +105,12 @@ public class KeyEvaluator {
      * @throws TaskHandlerException if there were problems while retrieving the value
      */
     public Object getManipulatedValue(KeyInformation keyInformation) throws TaskHandlerException {
+        return getManipulatedValue(keyInformation, Manipulation.resolveAll(keyInformation.getManipulations()));
+    }
+
+    Object getManipulatedValue(KeyInformation keyInformation, List<Manipulation> manipulations)
+            throws TaskHandlerException {
         Object value = getValue(keyInformation);
-        List<String> manipulations = keyInformation.getManipulations();
         if (manipulations.size() > 0) {
             String stringValue = value != null ? value.toString() : "";
             value = manipulateValue(manipulations, stringValue);
@@ -129,28 +118,11 @@ public class KeyEvaluator {
         return value;
     }
 
-    private String manipulateValue(List<String> manipulations, String value) throws TaskHandlerException {
+    String manipulateValue(List<Manipulation> manipulations, String value) throws TaskHandlerException {
         String manipulateValue = value;
-        for (String manipulation : manipulations) {
-            if (manipulation.contains("format")) {
-                String formatElements = manipulation.substring(FORMAT_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-
-                if (isNotBlank(formatElements)) {
-                    String[] items = formatElements.split(",");
-
-                    for (int i = 0; i < items.length; ++i) {
-                        String item = items[i];
-
-                        if (item.startsWith("{{") && item.endsWith("}}")) {
-                            item = item.substring(2, item.length() - 2);
-                            KeyInformation subKey = KeyInformation.parse(item);
-                            Object subValue = getValue(subKey);
-                            items[i] = subValue != null ? subValue.toString() : "";
-                        }
-                    }
-
-                    manipulateValue = String.format(manipulateValue, items);
-                }
+        for (Manipulation manipulation : manipulations) {
+            if (manipulation.getKind() == Manipulation.Kind.FORMAT) {
+                manipulateValue = formatManipulation(manipulation, manipulateValue);
             } else {
                 try {
                     manipulateValue = manipulate(manipulation, manipulateValue);
@@ -158,9 +130,9 @@ public class KeyEvaluator {
                     String msg = e.getMessage();
 
                     if ("task.warning.manipulation".equalsIgnoreCase(msg)) {
-                        taskContext.publishWarningActivity(msg, manipulation);
+                        taskContext.publishWarningActivity(msg, manipulation.getManipulation());
                     } else {
-                        throw new TaskHandlerException(TRIGGER, msg, e, manipulation);
+                        throw new TaskHandlerException(TRIGGER, msg, e, manipulation.getManipulation());
                     }
                 }
             }
@@ -168,78 +140,105 @@ public class KeyEvaluator {
         return manipulateValue;
     }
 
-    String manipulate(String manipulation, String value) {
-        String lowerCase = manipulation.toLowerCase();
-        String result = value;
-
-        if (lowerCase.contains("join")) {
-            result = joinManipulation(value, manipulation);
-        } else if (lowerCase.contains("datetime")) {
-            try {
-                result = datetimeManipulation(value, manipulation);
-            } catch (IllegalArgumentException e) {
-                throw new MotechException("error.date.format", e);
+    private String formatManipulation(Manipulation manipulation, String value) throws TaskHandlerException {
+        String formatElements = manipulation.getArgument();
+
+        if (isNotBlank(formatElements)) {
+            String[] items = manipulation.getFormatItems();
+            Object[] args = new Object[items.length];
+
+            for (int i = 0; i < items.length; ++i) {
+                KeyInformation subKey = manipulation.getFormatKey(i);
+
+                if (subKey == null) {
+                    args[i] = items[i];
+                } else {
+                    Object subValue = getValue(subKey);
+                    args[i] = subValue != null ? subValue.toString() : "";
+                }
             }
-        } else if (lowerCase.contains("substring")) {
-            result = substringManipulation(value, manipulation);
-        } else if (lowerCase.contains("split")) {
-            result = splitManipulation(value, manipulation);
-        } else if (lowerCase.contains("parsedate")) {
-            result = parseDate(value, manipulation);
-        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
-            result = dateTimeChangeManipulation(value, lowerCase);
-        } else {
-            result = simpleManipulations(value, lowerCase.replace("()", ""));
+
+            return String.format(value, args);
+        }
+
+        return value;
+    }
+
+    String manipulate(String manipulation, String value) {
+        return manipulate(Manipulation.resolveFunction(manipulation), value);
+    }
+
+    private String manipulate(Manipulation manipulation, String value) {
+        String result;
+
+        switch (manipulation.getKind()) {
+            case JOIN:
+                result = joinManipulation(value, manipulation.getArgument());
+                break;
+            case DATETIME:
+                try {
+                    result = datetimeManipulation(value, manipulation.getArgument());
+                } catch (IllegalArgumentException e) {
+                    throw new MotechException("error.date.format", e);
+                }
+                break;
+            case SUBSTRING:
+                result = substringManipulation(value, manipulation.getArgument());
+                break;
+            case SPLIT:
+                result = splitManipulation(value, manipulation.getArgument());
+                break;
+            case PARSE_DATE:
+                result = parseDate(value, manipulation.getArgument());
+                break;
+            case PLUS_DAYS:
+                result = new DateTime(value).plusDays(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case MINUS_DAYS:
+                result = new DateTime(value).minusDays(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case PLUS_HOURS:
+                result = new DateTime(value).plusHours(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case MINUS_HOURS:
+                result = new DateTime(value).minusHours(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case PLUS_MINUTES:
+                result = new DateTime(value).plusMinutes(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case MINUS_MINUTES:
+                result = new DateTime(value).minusMinutes(Integer.parseInt(manipulation.getArgument())).toString();
+                break;
+            case SIMPLE:
+                result = simpleManipulations(value, manipulation.getArgument());
+                break;
+            default:
+                throw new MotechException("task.warning.manipulation");
         }
 
         return result;
     }
 
-    private String parseDate(String value, String manipulation) {
-        String pattern = manipulation.substring(PARSE_DATE_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+    private String parseDate(String value, String pattern) {
         DateTimeFormatter formatter = DateTimeFormat.forPattern(pattern);
         DateTime dateTime = formatter.parseDateTime(value);
 
         return dateTime.toString("yyyy-MM-dd HH:mm Z");
     }
 
-    private String joinManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(JOIN_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+    private String joinManipulation(String value, String pattern) {
         String[] splitValue = value.split(" ");
 
         return StringUtils.join(splitValue, pattern);
     }
 
-    private String datetimeManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(DATETIME_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+    private String datetimeManipulation(String value, String pattern) {
         DateTimeFormatter targetFormat = DateTimeFormat.forPattern(pattern);
 
         return targetFormat.print(new DateTime(value));
     }
 
-    private String dateTimeChangeManipulation(String value, String manipulation) {
-        String result = value;
-
-        if (manipulation.contains("plusdays")) {
-            result = plusDaysManipulation(value, manipulation);
-        } else if (manipulation.contains("minusdays")) {
-            result = minusDaysManipulation(value, manipulation);
-        } else if (manipulation.contains("plushours")) {
-            result = plusHoursManipulation(value, manipulation);
-        } else if (manipulation.contains("minushours")) {
-            result = minusHoursManipulation(value, manipulation);
-        } else if (manipulation.contains("plusminutes")) {
-            result = plusMinutesManipulation(value, manipulation);
-        } else if (manipulation.contains("minusminutes")) {
-            result = minusMinutesManipulation(value, manipulation);
-        } else {
-            throw new MotechException("task.warning.manipulation");
-        }
-        return result;
-    }
-
-    private String substringManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(SUBSTRING_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+    private String substringManipulation(String value, String pattern) {
         String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
         int[] indexes = new int[splitValue.length];
 
@@ -257,8 +256,7 @@ public class KeyEvaluator {
         }
     }
 
-    private String splitManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(SPLIT_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
+    private String splitManipulation(String value, String pattern) {
         String[] splitValue = pattern.split(",");
         String regex = splitValue[0];
         int idx = Integer.parseInt(splitValue[1]);
@@ -266,48 +264,6 @@ public class KeyEvaluator {
         return value.split(regex)[idx];
     }
 
-    private String plusDaysManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(PLUS_DAYS_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.plusDays(Integer.parseInt(pattern)).toString();
-    }
-
-    private String minusDaysManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(MINUS_DAYS_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.minusDays(Integer.parseInt(pattern)).toString();
-    }
-
-    private String plusHoursManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(PLUS_HOURS_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.plusHours(Integer.parseInt(pattern)).toString();
-    }
-
-    private String minusHoursManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(MINUS_HOURS_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.minusHours(Integer.parseInt(pattern)).toString();
-    }
-
-    private String plusMinutesManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(PLUS_MINUTES_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.plusMinutes(Integer.parseInt(pattern)).toString();
-    }
-
-    private String minusMinutesManipulation(String value, String manipulation) {
-        String pattern = manipulation.substring(MINUS_MINUTES_PATTERN_BEGIN_INDEX, manipulation.length() - 1);
-        DateTime dateTime = new DateTime(value);
-
-        return dateTime.minusMinutes(Integer.parseInt(pattern)).toString();
-    }
-
     private String simpleManipulations(String value, String manipulation) {
         String result;
         switch (manipulation) {
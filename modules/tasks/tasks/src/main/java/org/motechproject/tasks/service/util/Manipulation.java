@@ -0,0 +1,212 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * A single manipulation of a key, resolved from its string representation, for example <code>substring(5,7)</code>.
+ * The kind of the manipulation and its argument are resolved once, so applying the manipulation does not require
+ * parsing it again. Malformed manipulations are resolved as well, applying them fails the same way as applying
+ * the string representation would.
+ */
+final class Manipulation {
+
+    /**
+     * The kinds of manipulations.
+     */
+    enum Kind {
+        FORMAT(7), JOIN(5), DATETIME(9), SUBSTRING(10), SPLIT(6), PARSE_DATE(10),
+        PLUS_DAYS(9), MINUS_DAYS(10), PLUS_HOURS(10), MINUS_HOURS(11), PLUS_MINUTES(12), MINUS_MINUTES(13),
+        UNKNOWN_DATE_CHANGE(0), SIMPLE(0);
+
+        private final int argumentBeginIndex;
+
+        Kind(int argumentBeginIndex) {
+            this.argumentBeginIndex = argumentBeginIndex;
+        }
+    }
+
+    private final String manipulation;
+    private final Kind kind;
+    private final String source;
+    private final String argument;
+    private final String[] formatItems;
+    private final KeyInformation[] formatKeys;
+
+    private Manipulation(String manipulation, Kind kind, String source) {
+        this.manipulation = manipulation;
+        this.kind = kind;
+        this.source = source;
+        this.argument = extractArgument(kind, source);
+
+        if (kind == Kind.FORMAT && isNotBlank(argument)) {
+            formatItems = argument.split(",");
+            formatKeys = new KeyInformation[formatItems.length];
+
+            for (int i = 0; i < formatItems.length; ++i) {
+                formatKeys[i] = parseFormatKey(formatItems[i]);
+            }
+        } else {
+            formatItems = null;
+            formatKeys = null;
+        }
+    }
+
+    /**
+     * Resolves all given manipulations, as applied to a value of a key.
+     *
+     * @param manipulations  the string representations of the manipulations, not null
+     * @return the resolved manipulations
+     */
+    static List<Manipulation> resolveAll(List<String> manipulations) {
+        if (manipulations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Manipulation> resolved = new ArrayList<>(manipulations.size());
+        for (String manipulation : manipulations) {
+            resolved.add(resolve(manipulation));
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves a manipulation applied to a value of a key.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the resolved manipulation
+     */
+    static Manipulation resolve(String manipulation) {
+        return manipulation.contains("format")
+                ? new Manipulation(manipulation, Kind.FORMAT, manipulation)
+                : resolveFunction(manipulation);
+    }
+
+    /**
+     * Resolves a manipulation other than <code>format</code>.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the resolved manipulation
+     */
+    static Manipulation resolveFunction(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        Manipulation resolved;
+
+        if (lowerCase.contains("join")) {
+            resolved = new Manipulation(manipulation, Kind.JOIN, manipulation);
+        } else if (lowerCase.contains("datetime")) {
+            resolved = new Manipulation(manipulation, Kind.DATETIME, manipulation);
+        } else if (lowerCase.contains("substring")) {
+            resolved = new Manipulation(manipulation, Kind.SUBSTRING, manipulation);
+        } else if (lowerCase.contains("split")) {
+            resolved = new Manipulation(manipulation, Kind.SPLIT, manipulation);
+        } else if (lowerCase.contains("parsedate")) {
+            resolved = new Manipulation(manipulation, Kind.PARSE_DATE, manipulation);
+        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
+            resolved = new Manipulation(manipulation, resolveDateChange(lowerCase), lowerCase);
+        } else {
+            resolved = new Manipulation(manipulation, Kind.SIMPLE, lowerCase.replace("()", ""));
+        }
+
+        return resolved;
+    }
+
+    String getManipulation() {
+        return manipulation;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the argument of this manipulation, the text between its parentheses. For simple manipulations
+     * this is the name of the manipulation.
+     *
+     * @return the argument of the manipulation
+     * @throws IndexOutOfBoundsException if the manipulation is too short to contain an argument
+     */
+    String getArgument() {
+        return (argument == null) ? source.substring(kind.argumentBeginIndex, source.length() - 1) : argument;
+    }
+
+    /**
+     * Returns the items of the <code>format</code> manipulation.
+     *
+     * @return the format items, null if the manipulation has no items
+     */
+    String[] getFormatItems() {
+        return formatItems;
+    }
+
+    /**
+     * Returns the key referenced by the format item with the given index.
+     *
+     * @param index  the index of the format item
+     * @return the key, null if the item is not a key
+     * @throws IllegalArgumentException if the item is a malformed key
+     */
+    KeyInformation getFormatKey(int index) {
+        KeyInformation key = formatKeys[index];
+        String item = formatItems[index];
+
+        if (key == null && isKey(item)) {
+            key = KeyInformation.parse(item.substring(2, item.length() - 2));
+        }
+
+        return key;
+    }
+
+    private static Kind resolveDateChange(String lowerCase) {
+        Kind kind;
+
+        if (lowerCase.contains("plusdays")) {
+            kind = Kind.PLUS_DAYS;
+        } else if (lowerCase.contains("minusdays")) {
+            kind = Kind.MINUS_DAYS;
+        } else if (lowerCase.contains("plushours")) {
+            kind = Kind.PLUS_HOURS;
+        } else if (lowerCase.contains("minushours")) {
+            kind = Kind.MINUS_HOURS;
+        } else if (lowerCase.contains("plusminutes")) {
+            kind = Kind.PLUS_MINUTES;
+        } else if (lowerCase.contains("minusminutes")) {
+            kind = Kind.MINUS_MINUTES;
+        } else {
+            kind = Kind.UNKNOWN_DATE_CHANGE;
+        }
+
+        return kind;
+    }
+
+    private static String extractArgument(Kind kind, String source) {
+        if (kind == Kind.SIMPLE) {
+            return source;
+        } else if (kind == Kind.UNKNOWN_DATE_CHANGE || kind.argumentBeginIndex > source.length() - 1) {
+            return null;
+        }
+        return source.substring(kind.argumentBeginIndex, source.length() - 1);
+    }
+
+    private static KeyInformation parseFormatKey(String item) {
+        if (!isKey(item)) {
+            return null;
+        }
+
+        try {
+            return KeyInformation.parse(item.substring(2, item.length() - 2));
+        } catch (IllegalArgumentException e) {
+            // reported when the manipulation is applied
+            return null;
+        }
+    }
+
+    private static boolean isKey(String item) {
+        return item.startsWith("{{") && item.endsWith("}}");
+    }
+}
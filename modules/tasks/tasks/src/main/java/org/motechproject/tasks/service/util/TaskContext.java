@@ -11,12 +11,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TaskContext holds task trigger event and data provider lookup objects that are used while executing filters/actions.
+ * Data source objects and post action parameters can be added by steps of the task executed concurrently.
  */
 public class TaskContext {
 
@@ -41,8 +42,8 @@ public class TaskContext {
         this.parameters = parameters;
         this.metadata = metadata;
         this.activityService = activityService;
-        this.dataSourceObjects = new HashSet<>();
-        this.postActionParameters = new HashSet<>();
+        this.dataSourceObjects = ConcurrentHashMap.newKeySet();
+        this.postActionParameters = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -5,7 +5,6 @@ import org.joda.time.Days;
 import org.joda.time.Months;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.tasks.domain.mds.task.Filter;
-import org.motechproject.tasks.domain.KeyInformation;
 import org.motechproject.tasks.domain.mds.task.LogicalOperator;
 import org.motechproject.tasks.domain.mds.task.OperatorType;
 import org.motechproject.tasks.domain.mds.ParameterType;
@@ -19,7 +18,6 @@ import java.util.List;
 import java.util.Map;
 
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
-import static org.motechproject.tasks.domain.KeyInformation.parse;
 
 /**
  * The <code>TaskFilterExecutor</code> applies a list of filters in a #{@link TaskContext}.
@@ -32,6 +30,8 @@ import static org.motechproject.tasks.domain.KeyInformation.parse;
  * <li><b>manipulate</b> - executed the given manipulation on the given string value.</li>
  * </ul>
  * <p/>
+ * Filters are checked using their compiled form, kept by the {@link TaskPlanCache}, so their keys and
+ * expressions are not parsed for every event.
  */
 public class TaskFilterExecutor {
 
@@ -61,12 +61,13 @@ public class TaskFilterExecutor {
         }
 
         boolean filterCheck = false;
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+
         for (Filter filter : filters) {
-            KeyInformation key = parse(filter.getKey());
+            CompiledFilter compiledFilter = TaskPlanCache.getFilter(filter);
             Object value;
             try {
-                KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
-                value = keyEvaluator.getManipulatedValue(key);
+                value = keyEvaluator.getManipulatedValue(compiledFilter.getKey(), compiledFilter.getManipulations());
             } catch (TaskHandlerException e) {
                 if (TaskFailureCause.DATA_SOURCE.equals(e.getFailureCause())) {
                     throw e;    // data source lookups disable the task
@@ -79,7 +80,7 @@ public class TaskFilterExecutor {
                 LOGGER.error("Unable to retrieve value for filter", e);
             }
 
-            filterCheck = value != null && checkValue(filter, value);
+            filterCheck = value != null && checkValue(filter.getType(), compiledFilter, value);
 
             if (!filter.isNegationOperator()) {
                 filterCheck = !filterCheck;
@@ -102,8 +103,7 @@ public class TaskFilterExecutor {
                 (logicalOperator == LogicalOperator.OR && filterCheck);
     }
 
-    private boolean checkValue(Filter filter, Object value) {
-        ParameterType type = filter.getType();
+    private boolean checkValue(ParameterType type, CompiledFilter filter, Object value) {
         boolean filterCheck;
 
         if (type.isString()) {
@@ -121,8 +121,8 @@ public class TaskFilterExecutor {
         return filterCheck;
     }
 
-    private boolean checkFilterForString(Filter filter, String param) {
-        OperatorType operatorType = OperatorType.fromString(filter.getOperator());
+    private boolean checkFilterForString(CompiledFilter filter, String param) {
+        OperatorType operatorType = filter.getOperatorType();
         String expression = filter.getExpression();
         boolean result = false;
 
@@ -154,15 +154,15 @@ public class TaskFilterExecutor {
         return result;
     }
 
-    private boolean checkFilterForNumber(Filter filter, BigDecimal param) {
-        OperatorType operatorType = OperatorType.fromString(filter.getOperator());
+    private boolean checkFilterForNumber(CompiledFilter filter, BigDecimal param) {
+        OperatorType operatorType = filter.getOperatorType();
         boolean result = false;
         int compare;
 
         if (operatorType == null || operatorType == OperatorType.EXIST) {
             compare = 0;
         } else {
-            compare = param.compareTo(new BigDecimal(filter.getExpression()));
+            compare = param.compareTo(filter.getNumberExpression());
         }
 
         if (operatorType != null) {
@@ -187,10 +187,10 @@ public class TaskFilterExecutor {
         return result;
     }
 
-    private boolean checkFilterForBoolean(Filter filter, Boolean param) {
-        OperatorType operatorType = OperatorType.fromString(filter.getOperator());
+    private boolean checkFilterForBoolean(CompiledFilter filter, Boolean param) {
+        OperatorType operatorType = filter.getOperatorType();
         boolean result = false;
-        boolean expressionValue = Boolean.parseBoolean(filter.getExpression());
+        boolean expressionValue = filter.getBooleanExpression();
 
         if (operatorType != null) {
             switch (operatorType) {
@@ -211,14 +211,13 @@ public class TaskFilterExecutor {
         return result;
     }
 
-    private boolean checkFilterForDate(Filter filter, DateTime param) {
-        return OperatorType.needExpression(filter.getOperator())
-                ? checkFilterForDate(param, filter.getOperator(), filter.getExpression())
-                : checkFilterForDate(param, filter.getOperator());
+    private boolean checkFilterForDate(CompiledFilter filter, DateTime param) {
+        return filter.isExpressionNeeded()
+                ? checkFilterForDateExpression(filter, param)
+                : checkFilterForDateOperator(filter.getOperatorType(), param);
     }
 
-    private boolean checkFilterForDate(DateTime param, String operator) {
-        OperatorType operatorType = OperatorType.fromString(operator);
+    private boolean checkFilterForDateOperator(OperatorType operatorType, DateTime param) {
         boolean result = false;
 
         if (operatorType != null) {
@@ -240,32 +239,32 @@ public class TaskFilterExecutor {
         return result;
     }
 
-    private boolean checkFilterForDate(DateTime param, String operator, String expression) {
-        OperatorType operatorType = OperatorType.fromString(operator);
+    private boolean checkFilterForDateExpression(CompiledFilter filter, DateTime param) {
+        OperatorType operatorType = filter.getOperatorType();
         boolean result = false;
 
         if (operatorType != null) {
             switch (operatorType) {
                 case EQUALS:
-                    result = param.isEqual(DateTime.parse(expression));
+                    result = param.isEqual(filter.getDateExpression());
                     break;
                 case AFTER:
-                    result = param.isAfter(DateTime.parse(expression));
+                    result = param.isAfter(filter.getDateExpression());
                     break;
                 case BEFORE:
-                    result = param.isBefore(DateTime.parse(expression));
+                    result = param.isBefore(filter.getDateExpression());
                     break;
                 case LESS_DAYS_FROM_NOW:
-                    result = countNumberOfDays(param) < Integer.valueOf(expression);
+                    result = countNumberOfDays(param) < filter.getIntegerExpression();
                     break;
                 case LESS_MONTHS_FROM_NOW:
-                    result = countNumberOfMonths(param) < Integer.valueOf(expression);
+                    result = countNumberOfMonths(param) < filter.getIntegerExpression();
                     break;
                 case MORE_DAYS_FROM_NOW:
-                    result = countNumberOfDays(param) > Integer.valueOf(expression);
+                    result = countNumberOfDays(param) > filter.getIntegerExpression();
                     break;
                 case MORE_MONTHS_FROM_NOW:
-                    result = countNumberOfMonths(param) > Integer.valueOf(expression);
+                    result = countNumberOfMonths(param) > filter.getIntegerExpression();
                     break;
                 default:
                     result = false;
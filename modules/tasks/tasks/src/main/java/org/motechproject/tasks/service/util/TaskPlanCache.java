@@ -0,0 +1,150 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.domain.mds.task.DataSource;
+import org.motechproject.tasks.domain.mds.task.Filter;
+import org.motechproject.tasks.domain.mds.task.FilterSet;
+import org.motechproject.tasks.domain.mds.task.Lookup;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
+import org.motechproject.tasks.domain.mds.task.TaskConfigStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the execution plans of tasks: their templates and filters, compiled into a form that can be evaluated
+ * without parsing them again. Compiled templates and filters are keyed by their content, so a changed task never
+ * uses the plan of its previous version. Tasks are compiled when they are loaded for execution and the cache is
+ * cleared whenever task definitions change. Templates and filters that were not compiled up front are compiled
+ * on first use. Each cache keeps at most {@value #MAX_CACHED_ENTRIES} entries, the least recently used ones are
+ * dropped first.
+ */
+public final class TaskPlanCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPlanCache.class);
+
+    private static final int MAX_CACHED_ENTRIES = 8192;
+
+    private static volatile Map<String, CompiledTemplate> templates = newCache();
+    private static volatile Map<List<Object>, CompiledFilter> filters = newCache();
+
+    private TaskPlanCache() {
+    }
+
+    /**
+     * Compiles the templates and filters of the given task. Templates and filters that can not be compiled are
+     * skipped, the errors are reported when the task is executed.
+     *
+     * @param task  the task to compile, not null
+     */
+    public static void compile(Task task) {
+        try {
+            if (task.getTaskConfig() != null) {
+                for (TaskConfigStep step : task.getTaskConfig().getSteps()) {
+                    compileStep(step);
+                }
+            }
+
+            if (task.getActions() != null) {
+                for (TaskActionInformation action : task.getActions()) {
+                    for (String template : action.getValues().values()) {
+                        compileTemplate(template);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Unable to compile task: {}", task.getName(), e);
+        }
+    }
+
+    /**
+     * Removes all compiled templates and filters.
+     */
+    public static void clear() {
+        templates = newCache();
+        filters = newCache();
+    }
+
+    /**
+     * Returns the compiled form of the given template, compiling it if necessary.
+     *
+     * @param template  the template, not null
+     * @return the compiled template
+     * @throws IllegalArgumentException if the template contains a malformed key
+     */
+    static CompiledTemplate getTemplate(String template) {
+        Map<String, CompiledTemplate> cache = templates;
+        CompiledTemplate compiled = cache.get(template);
+
+        if (compiled == null) {
+            compiled = CompiledTemplate.compile(template);
+            cache.put(template, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the compiled form of the given filter, compiling it if necessary.
+     *
+     * @param filter  the filter, not null
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the key of the filter is malformed
+     */
+    static CompiledFilter getFilter(Filter filter) {
+        List<Object> key = Arrays.<Object>asList(filter.getKey(), filter.getType(), filter.getOperator(),
+                filter.getExpression());
+
+        Map<List<Object>, CompiledFilter> cache = filters;
+        CompiledFilter compiled = cache.get(key);
+
+        if (compiled == null) {
+            compiled = CompiledFilter.compile(filter);
+            cache.put(key, compiled);
+        }
+
+        return compiled;
+    }
+
+    private static <K, V> Map<K, V> newCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2962137658442617542L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_CACHED_ENTRIES;
+            }
+        });
+    }
+
+    private static void compileStep(TaskConfigStep step) {
+        if (step instanceof DataSource) {
+            for (Lookup lookup : ((DataSource) step).getLookup()) {
+                compileTemplate(lookup.getValue());
+            }
+        } else if (step instanceof FilterSet) {
+            for (Filter filter : ((FilterSet) step).getFilters()) {
+                try {
+                    getFilter(filter);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.debug("Unable to compile filter: {}", filter.getDisplayName(), e);
+                }
+            }
+        }
+    }
+
+    private static void compileTemplate(String template) {
+        if (template != null) {
+            try {
+                getTemplate(template);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Unable to compile template: {}", template, e);
+            }
+        }
+    }
+}
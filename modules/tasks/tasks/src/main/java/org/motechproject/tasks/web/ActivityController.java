@@ -12,6 +12,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
@@ -24,6 +25,8 @@ import java.util.Set;
 @Controller
 public class ActivityController {
 
+    private static final int DEFAULT_LIMIT = 100;
+
     private TaskActivityService activityService;
     private TriggerHandler taskTriggerHandler;
 
@@ -72,6 +75,24 @@ public class ActivityController {
         }
     }
 
+    /**
+     * Returns the activities for task with the given ID, starting after the activity with the given ID. The ID of
+     * the last returned activity is used for retrieving the next activities.
+     *
+     * @param taskId  the ID of the task
+     * @param before  the ID of the last activity retrieved, null for the newest activities
+     * @param settings  the grid settings, the number of rows is used as the number of activities to return
+     * @return  the list of activities
+     */
+    @RequestMapping(value = "/activity/{taskId}/cursor", method = RequestMethod.GET)
+    @ResponseBody
+    public List<TaskActivity> getTaskActivitiesBefore(@PathVariable Long taskId,
+                                                      @RequestParam(required = false) Long before,
+                                                      GridSettings settings) {
+        int limit = (settings.getRows() == null) ? DEFAULT_LIMIT : settings.getRows();
+        return activityService.getTaskActivities(taskId, settings.getTypesFromString(), before, limit);
+    }
+
     /**
      * Returns the count of specified activity types for the task with the given ID.
      *
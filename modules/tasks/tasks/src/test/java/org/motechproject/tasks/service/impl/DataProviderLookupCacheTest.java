@@ -0,0 +1,182 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.commons.api.DataProvider;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.service.EntityService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.tasks.constants.EventDataKeys.LOOKUP_CACHE_OBJECT_TYPE;
+import static org.motechproject.tasks.constants.EventSubjects.LOOKUP_CACHE_INVALIDATE_SUBJECT;
+
+public class DataProviderLookupCacheTest {
+
+    private static final String TYPE = "org.motechproject.test.Patient";
+    private static final String OTHER_TYPE = "org.motechproject.test.Visit";
+    private static final String LOOKUP = "findById";
+
+    @Mock
+    private SettingsFacade settings;
+
+    @Mock
+    private EventRelay eventRelay;
+
+    @Mock
+    private EventListenerRegistryService registryService;
+
+    @Mock
+    private EntityService entityService;
+
+    @Mock
+    private DataProvider provider;
+
+    private DataProviderLookupCache cache;
+
+    private DataProvider cachingProvider;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(settings.getProperty("task.lookup.cache.ttl")).thenReturn("60");
+        when(settings.getProperty("task.lookup.cache.ttl." + OTHER_TYPE)).thenReturn("0");
+        when(provider.getName()).thenReturn("data-services");
+        when(entityService.getEntityByClassName(TYPE)).thenReturn(new EntityDto(TYPE, "Patient", "test", null,
+                null, null));
+
+        cache = new DataProviderLookupCache(settings, eventRelay, registryService, entityService);
+        cachingProvider = cache.wrap(provider);
+    }
+
+    @Test
+    public void shouldCacheFoundObjects() {
+        Object patient = new Object();
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(patient);
+
+        assertEquals(patient, cachingProvider.lookup(TYPE, LOOKUP, fields("1")));
+        assertEquals(patient, cachingProvider.lookup(TYPE, LOOKUP, fields("1")));
+
+        verify(provider, times(1)).lookup(TYPE, LOOKUP, fields("1"));
+    }
+
+    @Test
+    public void shouldNotCacheMissingObjectsOrDisabledTypes() {
+        when(provider.lookup(OTHER_TYPE, LOOKUP, fields("1"))).thenReturn(new Object());
+
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        cachingProvider.lookup(OTHER_TYPE, LOOKUP, fields("1"));
+        cachingProvider.lookup(OTHER_TYPE, LOOKUP, fields("1"));
+
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields("1"));
+        verify(provider, times(2)).lookup(OTHER_TYPE, LOOKUP, fields("1"));
+    }
+
+    @Test
+    public void shouldLookupOnlyMissingObjects() {
+        Object first = new Object();
+        Object second = new Object();
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(first);
+        when(provider.lookupAll(TYPE, LOOKUP, asList(fields("2")))).thenReturn(asList(second));
+
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        List<Object> results = cachingProvider.lookupAll(TYPE, LOOKUP, asList(fields("1"), fields("2")));
+
+        assertEquals(asList(first, second), results);
+        verify(provider).lookupAll(TYPE, LOOKUP, asList(fields("2")));
+    }
+
+    @Test
+    public void shouldListenOnCrudEventsOfCachedEntitiesOnce() {
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(new Object());
+        when(provider.lookup(TYPE, LOOKUP, fields("2"))).thenReturn(new Object());
+
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        cachingProvider.lookup(TYPE, LOOKUP, fields("2"));
+        cachingProvider.lookup(OTHER_TYPE, LOOKUP, fields("1"));
+
+        verify(registryService).registerListener(any(EventListener.class), eq("mds.crud.test.Patient.*"));
+        verify(registryService, times(1)).registerListener(any(EventListener.class), anyString());
+        verify(entityService, never()).getEntityByClassName(OTHER_TYPE);
+    }
+
+    @Test
+    public void shouldNotListenOnCrudEventsWhenCachingIsDisabled() {
+        when(settings.getProperty("task.lookup.cache.ttl")).thenReturn(null);
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(new Object());
+
+        cache = new DataProviderLookupCache(settings, eventRelay, registryService, entityService);
+        cache.wrap(provider).lookup(TYPE, LOOKUP, fields("1"));
+
+        verify(registryService, never()).registerListener(any(EventListener.class), anyString());
+        verify(entityService, never()).getEntityByClassName(anyString());
+    }
+
+    @Test
+    public void shouldInvalidateTypeOnCrudEvent() {
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(new Object());
+
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        cache.handleCrudEvent(crudEvent(TYPE));
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields("1"));
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(LOOKUP_CACHE_INVALIDATE_SUBJECT, captor.getValue().getSubject());
+        assertEquals(TYPE, captor.getValue().getParameters().get(LOOKUP_CACHE_OBJECT_TYPE));
+    }
+
+    @Test
+    public void shouldNotBroadcastInvalidationForTypesNotCached() {
+        cache.handleCrudEvent(crudEvent(OTHER_TYPE));
+
+        verify(eventRelay, never()).broadcastEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldClearCacheOnInvalidationWithoutType() {
+        when(provider.lookup(TYPE, LOOKUP, fields("1"))).thenReturn(new Object());
+
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+        cache.handleCacheInvalidation(new MotechEvent(LOOKUP_CACHE_INVALIDATE_SUBJECT));
+        cachingProvider.lookup(TYPE, LOOKUP, fields("1"));
+
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields("1"));
+    }
+
+    private MotechEvent crudEvent(String type) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(ENTITY_CLASS, type);
+        return new MotechEvent("mds.crud.test.Patient.UPDATE", params);
+    }
+
+    private Map<String, String> fields(String id) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("id", id);
+        return fields;
+    }
+}
@@ -20,6 +20,7 @@ import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 
 import java.util.HashMap;
@@ -33,6 +34,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.motechproject.tasks.domain.mds.ParameterType.MAP;
@@ -79,14 +81,14 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod").setActionParameters(new TreeSet<ActionParameter>()).build();
         actionEvent.setActionParameters(new TreeSet<>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -99,7 +101,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldNotRaiseEventIfActionHasSubjectAndService_IfServiceIsAvailable() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -107,7 +109,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(new TestService());
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
@@ -121,7 +123,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException {
+    public void shouldInvokeServiceIfActionHasService() throws ActionNotFoundException, TaskHandlerException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -129,7 +131,7 @@ public class TaskActionExecutorTest {
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
         ServiceReference serviceReference = mock(ServiceReference.class);
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         TestService testService = new TestService();
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
@@ -143,6 +145,31 @@ public class TaskActionExecutorTest {
         assertTrue(testService.serviceMethodInvoked());
     }
 
+    @Test
+    public void shouldLookupServiceOnceForManyExecutions() throws Exception {
+        TaskActionInformation actionInformation = prepareTaskActionInformationWithService("testKey", "value");
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(prepareActionEventWithService());
+
+        ServiceReference serviceReference = mock(ServiceReference.class);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
+        TestService testService = new TestService();
+        when(bundleContext.getService(serviceReference)).thenReturn(testService);
+
+        Task task = new Task();
+        task.addAction(actionInformation);
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay, postExecutionHandler);
+        taskActionExecutor.setBundleContext(bundleContext);
+
+        for (int i = 0; i < 3; ++i) {
+            taskActionExecutor.execute(task, actionInformation, 0, new TaskContext(task, new HashMap<>(), new HashMap<>(), activityService), TASK_ACTIVITY_ID);
+        }
+
+        assertTrue(testService.serviceMethodInvoked());
+        verify(bundleContext, times(1)).getServiceReferences("serviceInterface", null);
+        verify(bundleContext, times(1)).getService(serviceReference);
+    }
+
     @Test(expected = TaskHandlerException.class)
     public void shouldThrowExceptionIfBundleContextIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
@@ -176,7 +203,7 @@ public class TaskActionExecutorTest {
     }
 
     @Test
-    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
+    public void shouldAddActivityNotificationIfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException, InvalidSyntaxException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
         ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
                 .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
@@ -184,7 +211,7 @@ public class TaskActionExecutorTest {
         actionEvent.setActionParameters(new TreeSet<>());
         when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(null);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(null);
 
         Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
 
@@ -224,7 +251,7 @@ public class TaskActionExecutorTest {
 
         ServiceReference serviceReference = mock(ServiceReference.class);
 
-        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("serviceInterface", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(new TestService());
 
         Task task = new Task();
@@ -7,6 +7,7 @@ import org.mockito.Mock;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
 import org.motechproject.tasks.domain.mds.task.TaskActivity;
 import org.motechproject.tasks.domain.mds.task.TaskActivityType;
 import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
@@ -17,6 +18,7 @@ import org.motechproject.tasks.service.TaskActivityService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +27,9 @@ import java.util.Set;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -97,6 +101,92 @@ public class TaskActivityServiceImplTest {
         assertActivity(messageKey, Collections.<String>emptyList(), TASK_ID, TaskActivityType.SUCCESS, null, null, activity);
     }
 
+    @Test
+    public void shouldBufferProgressOfStartedTasks() {
+        TaskActivity created = createInProgress();
+        created.setId(TASK_ACTIVITY_ID);
+        created.setTaskExecutionProgress(new TaskExecutionProgress(2));
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenReturn(created);
+
+        TaskActivity stored = createInProgress();
+        stored.setId(TASK_ACTIVITY_ID);
+        stored.setTaskExecutionProgress(new TaskExecutionProgress(2));
+        when(taskActivitiesDataService.findById(TASK_ACTIVITY_ID)).thenReturn(stored);
+
+        task.setActions(asList(new TaskActionInformation(), new TaskActionInformation()));
+
+        assertEquals((long) TASK_ACTIVITY_ID, activityService.addTaskStarted(task, new HashMap<String, Object>()));
+        assertFalse(activityService.addSuccessfulExecution(TASK_ACTIVITY_ID));
+
+        verify(taskActivitiesDataService, never()).findById(TASK_ACTIVITY_ID);
+        verify(taskActivitiesDataService, never()).update(any(TaskActivity.class));
+
+        assertTrue(activityService.addSuccessfulExecution(TASK_ACTIVITY_ID));
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService).update(captor.capture());
+
+        assertEquals(2, captor.getValue().getTaskExecutionProgress().getActionsSucceeded());
+        assertActivity("task.success.ok", Collections.<String>emptyList(), TASK_ID, SUCCESS, null, null, captor.getValue());
+
+        ((TaskActivityServiceImpl) activityService).flushJournal();
+
+        verify(taskActivitiesDataService, times(1)).update(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldRetryWritingReleasedActivityWithNextBatch() {
+        TaskActivity created = createInProgress();
+        created.setId(TASK_ACTIVITY_ID);
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenReturn(created);
+
+        TaskActivity stored = createInProgress();
+        stored.setId(TASK_ACTIVITY_ID);
+        when(taskActivitiesDataService.findById(TASK_ACTIVITY_ID)).thenReturn(stored);
+        when(taskActivitiesDataService.update(any(TaskActivity.class)))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(stored);
+
+        task.setActions(asList(new TaskActionInformation()));
+
+        activityService.addTaskStarted(task, new HashMap<String, Object>());
+        assertTrue(activityService.addSuccessfulExecution(TASK_ACTIVITY_ID));
+
+        verify(taskActivitiesDataService, times(1)).update(any(TaskActivity.class));
+
+        ((TaskActivityServiceImpl) activityService).flushJournal();
+        ((TaskActivityServiceImpl) activityService).flushJournal();
+
+        verify(taskActivitiesDataService, times(2)).update(any(TaskActivity.class));
+        assertEquals(SUCCESS, stored.getActivityType());
+    }
+
+    @Test
+    public void shouldWriteFailureOfStartedTaskRightAway() {
+        TaskActivity created = createInProgress();
+        created.setId(TASK_ACTIVITY_ID);
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenReturn(created);
+
+        TaskActivity stored = createInProgress();
+        stored.setId(TASK_ACTIVITY_ID);
+        when(taskActivitiesDataService.findById(TASK_ACTIVITY_ID)).thenReturn(stored);
+
+        task.setActions(asList(new TaskActionInformation()));
+        TaskHandlerException exception = new TaskHandlerException(TRIGGER, "error.notFoundTrigger", ERROR_FIELD.get(0));
+
+        activityService.addTaskStarted(task, new HashMap<String, Object>());
+        activityService.addFailedExecution(TASK_ACTIVITY_ID, exception);
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService).update(captor.capture());
+        assertActivity("error.notFoundTrigger", ERROR_FIELD, TASK_ID, ERROR, getStackTrace(exception), null, captor.getValue());
+
+        activityService.flushActivity(TASK_ACTIVITY_ID);
+        ((TaskActivityServiceImpl) activityService).flushJournal();
+
+        verify(taskActivitiesDataService, times(1)).update(any(TaskActivity.class));
+    }
+
     @Test
     public void shouldAddTaskWarningActivity() {
         String messageKey = "task.warning.taskDisabled";
@@ -0,0 +1,111 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.tasks.domain.mds.task.TaskActivity;
+import org.motechproject.tasks.domain.mds.task.TaskActivityRollup;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityRollupsDataService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskActivityStoreTest {
+
+    private static final Long TASK_ID = 12L;
+    private static final DateTime DAY = new DateTime(2016, 3, 10, 0, 0, DateTimeZone.UTC);
+
+    @Mock
+    private TaskActivitiesDataService activitiesDataService;
+
+    @Mock
+    private TaskActivityRollupsDataService rollupsDataService;
+
+    private TaskActivityStore store;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        store = new TaskActivityStore(activitiesDataService, rollupsDataService);
+    }
+
+    @Test
+    public void shouldCountRolledUpDaysFromRollups() {
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(asList(
+                new TaskActivityRollup(TASK_ID, DAY.minusDays(1), TaskActivityType.SUCCESS, 10),
+                new TaskActivityRollup(TASK_ID, DAY, TaskActivityType.ERROR, 3),
+                new TaskActivityRollup(TASK_ID, DAY, TaskActivityType.WARNING, 100)));
+        when(activitiesDataService.executeQuery(any(QueryExecution.class))).thenReturn(5L);
+
+        long count = store.count(TASK_ID, EnumSet.of(TaskActivityType.SUCCESS, TaskActivityType.ERROR));
+
+        assertEquals(18, count);
+    }
+
+    @Test
+    public void shouldCountActivitiesWithoutRollups() {
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(Collections.<TaskActivityRollup>emptyList());
+        when(activitiesDataService.executeQuery(any(QueryExecution.class))).thenReturn(7L);
+
+        assertEquals(7, store.count(TASK_ID, EnumSet.of(TaskActivityType.SUCCESS)));
+        verify(rollupsDataService, never()).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldNotQueryForNoActivityTypes() {
+        assertEquals(0, store.count(TASK_ID, EnumSet.noneOf(TaskActivityType.class)));
+        assertEquals(new ArrayList<TaskActivity>(),
+                store.getActivities(TASK_ID, EnumSet.noneOf(TaskActivityType.class), null, 10));
+
+        verify(activitiesDataService, never()).executeQuery(any(QueryExecution.class));
+    }
+
+    @Test
+    public void shouldCorrectRollupWhenTypeOfRolledUpActivityChanges() {
+        TaskActivityRollup inProgress = new TaskActivityRollup(TASK_ID, DAY, TaskActivityType.IN_PROGRESS, 2);
+        TaskActivity activity = new TaskActivity("message", TASK_ID, TaskActivityType.SUCCESS);
+        activity.setDate(DAY.plusHours(5));
+
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(asList(inProgress));
+        when(rollupsDataService.byTaskDateAndActivityType(TASK_ID, DAY, TaskActivityType.IN_PROGRESS))
+                .thenReturn(inProgress);
+
+        store.activityTypeChanged(activity, TaskActivityType.IN_PROGRESS);
+
+        assertEquals(1, inProgress.getActivityCount());
+        verify(rollupsDataService).update(inProgress);
+        verify(rollupsDataService).create(new TaskActivityRollup(TASK_ID, DAY, TaskActivityType.SUCCESS, 1));
+    }
+
+    @Test
+    public void shouldNotCorrectRollupsOfDayNotRolledUpForTask() {
+        TaskActivity activity = new TaskActivity("message", TASK_ID, TaskActivityType.SUCCESS);
+        activity.setDate(DAY.plusHours(5));
+
+        when(rollupsDataService.retrieveAll(any(QueryParams.class))).thenReturn(
+                asList(new TaskActivityRollup(TASK_ID + 1, DAY.plusDays(1), TaskActivityType.SUCCESS, 3)));
+        when(rollupsDataService.byTask(TASK_ID)).thenReturn(
+                asList(new TaskActivityRollup(TASK_ID, DAY.minusDays(1), TaskActivityType.SUCCESS, 2)));
+
+        store.activityTypeChanged(activity, TaskActivityType.IN_PROGRESS);
+
+        verify(rollupsDataService, never()).create(any(TaskActivityRollup.class));
+        verify(rollupsDataService, never()).update(any(TaskActivityRollup.class));
+    }
+}
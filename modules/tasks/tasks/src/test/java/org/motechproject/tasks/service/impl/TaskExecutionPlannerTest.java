@@ -0,0 +1,144 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.exception.TaskHandlerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.motechproject.tasks.constants.TaskFailureCause.ACTION;
+import static org.motechproject.tasks.constants.TaskFailureCause.DATA_SOURCE;
+
+public class TaskExecutionPlannerTest {
+
+    private TaskExecutionPlanner planner;
+
+    private List<Integer> executed;
+
+    @Before
+    public void setUp() {
+        planner = new TaskExecutionPlanner();
+        planner.start();
+
+        executed = Collections.synchronizedList(new ArrayList<Integer>());
+    }
+
+    @After
+    public void tearDown() {
+        planner.stop();
+    }
+
+    @Test
+    public void shouldExecuteIndependentStepsConcurrently() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        List<TaskExecutionPlanner.Step> steps = new ArrayList<>();
+
+        for (int i = 0; i < 2; ++i) {
+            final int index = i;
+            steps.add(new TaskExecutionPlanner.Step() {
+                @Override
+                boolean execute() throws TaskHandlerException {
+                    latch.countDown();
+                    try {
+                        // both steps must be running at the same time to pass the latch
+                        assertTrue(latch.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    executed.add(index);
+                    return true;
+                }
+            });
+        }
+
+        assertTrue(planner.execute(steps));
+        assertEquals(2, executed.size());
+    }
+
+    @Test
+    public void shouldKeepOrderOfDependentSteps() throws Exception {
+        List<TaskExecutionPlanner.Step> steps = asList(step(0), step(1), step(2), step(3));
+        steps.get(2).dependsOn(0);
+        steps.get(3).dependsOn(2);
+
+        assertTrue(planner.execute(steps));
+
+        assertEquals(4, executed.size());
+        assertTrue(executed.indexOf(0) < executed.indexOf(2));
+        assertTrue(executed.indexOf(2) < executed.indexOf(3));
+    }
+
+    @Test
+    public void shouldNotExecuteStepsAfterBarrierReturningFalse() throws Exception {
+        TaskExecutionPlanner.Step barrier = new TaskExecutionPlanner.Step() {
+            @Override
+            boolean execute() {
+                executed.add(2);
+                return false;
+            }
+        }.asBarrier();
+
+        assertFalse(planner.execute(asList(step(0), step(1), barrier, step(3), step(4))));
+
+        assertEquals(3, executed.size());
+        assertEquals(Integer.valueOf(2), executed.get(2));
+    }
+
+    @Test
+    public void shouldReportFailureOfFirstFailedStep() {
+        List<TaskExecutionPlanner.Step> steps = asList(step(0), failingStep(new TaskHandlerException(DATA_SOURCE, "first")),
+                step(2), failingStep(new TaskHandlerException(ACTION, "second")));
+
+        try {
+            planner.execute(steps);
+            fail("Expected TaskHandlerException");
+        } catch (TaskHandlerException e) {
+            assertEquals(DATA_SOURCE, e.getFailureCause());
+        }
+    }
+
+    @Test
+    public void shouldExecuteStepsInOrderWhenNotStarted() throws Exception {
+        planner.stop();
+
+        assertTrue(planner.execute(asList(step(0), step(1), step(2))));
+        assertEquals(asList(0, 1, 2), executed);
+    }
+
+    @Test
+    public void shouldFindReferencesInTemplates() {
+        assertEquals(Collections.singleton("1"), TaskExecutionPlanner.findDataSourceReferences(
+                asList("{{trigger.externalId}}-{{ad.12345.TestObjectField#1.id}}", null)));
+        assertEquals(asList("0", "2"), new ArrayList<>(TaskExecutionPlanner.findPostActionParameterReferences(
+                asList("{{pa.0.id}}", "{{trigger.name?format({{pa.2.name}})}}"))));
+    }
+
+    private TaskExecutionPlanner.Step step(final int index) {
+        return new TaskExecutionPlanner.Step() {
+            @Override
+            boolean execute() {
+                executed.add(index);
+                return true;
+            }
+        };
+    }
+
+    private TaskExecutionPlanner.Step failingStep(final TaskHandlerException exception) {
+        return new TaskExecutionPlanner.Step() {
+            @Override
+            boolean execute() throws TaskHandlerException {
+                throw exception;
+            }
+        };
+    }
+}
@@ -71,6 +71,7 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -87,6 +88,7 @@ import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAM
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_CACHE_INVALIDATE_SUBJECT;
 
 public class TaskServiceImplTest {
 
@@ -407,6 +409,54 @@ public class TaskServiceImplTest {
         assertEquals(asList(t), tasks);
     }
 
+    @Test
+    public void shouldCacheActiveTasksForTriggerSubject() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(t.getId())).thenReturn(t);
+
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+
+        taskService.deleteTask(t.getId());
+
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+
+        verify(tasksDataService, times(2)).executeQuery(Matchers.<QueryExecution<Object>>any());
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(TASK_CACHE_INVALIDATE_SUBJECT, captor.getValue().getSubject());
+
+        taskService.handleCacheInvalidation(captor.getValue());
+
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+
+        verify(tasksDataService, times(3)).executeQuery(Matchers.<QueryExecution<Object>>any());
+    }
+
+    @Test
+    public void shouldReturnCopiesOfCachedTasks() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(12345L);
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+
+        Task first = taskService.findActiveTasksForTriggerSubject(trigger.getSubject()).get(0);
+        first.setEnabled(false);
+        first.incrementFailuresInRow();
+
+        Task second = taskService.findActiveTasksForTriggerSubject(trigger.getSubject()).get(0);
+
+        assertNotSame(first, second);
+        assertTrue(second.isEnabled());
+        assertEquals(0, second.getFailuresInRow());
+    }
+
     @Test
     public void shouldGetTaskById() {
         long taskId = 12345L;
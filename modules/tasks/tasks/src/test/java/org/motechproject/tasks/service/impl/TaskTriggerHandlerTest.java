@@ -10,6 +10,8 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.config.SettingsFacade;
 import org.motechproject.event.MotechEvent;
@@ -51,13 +53,20 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static ch.lambdaj.Lambda.extract;
 import static ch.lambdaj.Lambda.on;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
@@ -851,6 +860,125 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
         assertNull(motechEventParameters.get("delivery_time"));
     }
 
+    @Test
+    public void shouldHandleBatchOfTriggerEvents() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        task.getTaskConfig().add(new DataSource(TASK_DATA_PROVIDER_NAME, 4L, 1L, "TestObjectField", "id", asList(new Lookup("id", "{{trigger.externalId}}")), true));
+
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+        when(dataProvider.lookupAll(eq("TestObjectField"), eq("id"), any(List.class)))
+                .thenReturn(asList((Object) new TestObjectField(), new TestObjectField()));
+        when(settingsFacade.getProperty("task.trigger.batch.window")).thenReturn("60000");
+
+        handler.init();
+
+        MotechEvent secondEvent = createEvent();
+        secondEvent.getParameters().put("externalId", 987654321);
+
+        ExecutorService deliveries = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = deliveries.submit(deliver(createEvent()));
+            Future<?> second = deliveries.submit(deliver(secondEvent));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (handler.getWaitingTriggerEvents() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // the deliveries wait until their batch is handled
+            assertEquals(2, handler.getWaitingTriggerEvents());
+            assertFalse(first.isDone());
+            verify(taskActivityService, never()).addTaskStarted(any(Task.class), anyMap());
+
+            // waiting batches are handled when the handler is destroyed
+            handler.preDestroy();
+
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            deliveries.shutdownNow();
+        }
+
+        verify(taskService).findActiveTasksForTriggerSubject(TRIGGER_SUBJECT);
+        verify(dataProvider).lookupAll(eq("TestObjectField"), eq("id"), any(List.class));
+        verify(dataProvider, never()).lookup(anyString(), anyString(), anyMap());
+        verify(taskActivityService, times(2)).addTaskStarted(eq(task), anyMap());
+        verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldFailOnlyTheEventThatFailedInBatch() throws Exception {
+        final Integer failingId = 987654321;
+
+        setTriggerEvent();
+        setActionEvent();
+
+        task.getTaskConfig().add(new DataSource(TASK_DATA_PROVIDER_NAME, 4L, 1L, "TestObjectField", "id", asList(new Lookup("id", "{{trigger.externalId}}")), true));
+
+        when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+        when(dataProvider.lookupAll(eq("TestObjectField"), eq("id"), any(List.class))).thenAnswer(new Answer<List<Object>>() {
+            @Override
+            public List<Object> answer(InvocationOnMock invocation) {
+                List<Object> found = new ArrayList<>();
+                for (int i = 0; i < ((List) invocation.getArguments()[2]).size(); i++) {
+                    found.add(new TestObjectField());
+                }
+                return found;
+            }
+        });
+        when(taskActivityService.addTaskStarted(any(Task.class), anyMap())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                Map parameters = (Map) invocation.getArguments()[1];
+                if (failingId.equals(parameters.get("externalId"))) {
+                    throw new IllegalStateException("Unable to store the activity");
+                }
+                return TASK_ACTIVITY_ID;
+            }
+        });
+        when(settingsFacade.getProperty("task.trigger.batch.window")).thenReturn("60000");
+
+        handler.init();
+
+        MotechEvent secondEvent = createEvent();
+        secondEvent.getParameters().put("externalId", failingId);
+        MotechEvent thirdEvent = createEvent();
+        thirdEvent.getParameters().put("externalId", 555);
+
+        ExecutorService deliveries = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> first = deliveries.submit(deliver(createEvent()));
+            Future<?> second = deliveries.submit(deliver(secondEvent));
+            Future<?> third = deliveries.submit(deliver(thirdEvent));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (handler.getWaitingTriggerEvents() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, handler.getWaitingTriggerEvents());
+
+            handler.preDestroy();
+
+            first.get(5, TimeUnit.SECONDS);
+            third.get(5, TimeUnit.SECONDS);
+            try {
+                second.get(5, TimeUnit.SECONDS);
+                fail("Expected the delivery of the second event to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            deliveries.shutdownNow();
+        }
+
+        verify(taskActivityService, times(3)).addTaskStarted(eq(task), anyMap());
+        verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
+    }
+
     @Test
     public void shouldNotExecuteServiceMethodIfBundleContextIsNull() throws Exception {
         setTriggerEvent();
@@ -879,7 +1007,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference(anyString())).thenReturn(null);
+        when(bundleContext.getServiceReferences(anyString(), anyString())).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -900,7 +1028,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -921,7 +1049,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -942,7 +1070,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(serviceReference);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(new ServiceReference<?>[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(testService);
 
         handler.setBundleContext(bundleContext);
@@ -964,7 +1092,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -990,7 +1118,7 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
 
         when(taskService.findActiveTasksForTriggerSubject(TRIGGER_SUBJECT)).thenReturn(tasks);
         when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
-        when(bundleContext.getServiceReference("TestService")).thenReturn(null);
+        when(bundleContext.getServiceReferences("TestService", null)).thenReturn(null);
 
         handler.setBundleContext(bundleContext);
         handler.handle(createEvent());
@@ -1310,4 +1438,12 @@ public class TaskTriggerHandlerTest extends TasksTestBase {
         return map;
     }
 
+    private Runnable deliver(final MotechEvent event) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                handler.handle(event);
+            }
+        };
+    }
 }
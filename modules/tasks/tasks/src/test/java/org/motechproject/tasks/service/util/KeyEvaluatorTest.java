@@ -7,6 +7,9 @@ import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 
 import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class KeyEvaluatorTest {
 
@@ -41,6 +44,25 @@ public class KeyEvaluatorTest {
         assertEquals(now.minusMinutes(20).toString(), keyEvaluator.manipulate("minusMinutes(20)", toString));
     }
 
+    @Test
+    public void shouldEvaluateTemplates() throws Exception {
+        TaskContext taskContext = mock(TaskContext.class);
+        when(taskContext.getTriggerValue("message")).thenReturn("ala has a cat");
+        when(taskContext.getTriggerValue("name")).thenReturn("Ala");
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+
+        String template = "Hello {{trigger.name?toUpper}}, {{trigger.message?join(-)?substring(4)}}!";
+
+        assertEquals("Hello ALA, has-a-cat!", keyEvaluator.evaluateTemplateString(template));
+        assertEquals("Hello ALA, has-a-cat!", keyEvaluator.evaluateTemplateString(template));
+        assertEquals("%s: Ala", keyEvaluator.evaluateTemplateString("%s: {{trigger.name}}"));
+        assertEquals("Ala, cat", keyEvaluator.evaluateTemplateString("{{trigger.name?format({{trigger.message}})}}, cat"));
+        assertEquals("no keys", keyEvaluator.evaluateTemplateString("no keys"));
+        assertEquals("Ala", keyEvaluator.evaluateTemplateString("{{trigger.name?undefined}}"));
+
+        verify(taskContext).publishWarningActivity("task.warning.manipulation", "undefined");
+    }
+
     @Test(expected = MotechException.class)
     public void shouldThrowExceptionWhenManipulationIsUnknown(){
         new KeyEvaluator(null).manipulate("undefined", "something");
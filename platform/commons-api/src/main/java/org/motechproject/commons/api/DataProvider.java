@@ -1,5 +1,7 @@
 package org.motechproject.commons.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +33,28 @@ public interface DataProvider {
      */
     Object lookup(String type, String lookupName, Map<String, String> lookupFields);
 
+    /**
+     * Returns objects matching the given conditions, one for every map of lookup fields. The result for
+     * the given maps of lookup fields is the same as the result of {@link #lookup(String, String, Map)} called for
+     * every map. Data providers able to execute many lookups at once should override this method, by default
+     * the lookups are executed one by one.
+     *
+     * @param type  the type of searched objects
+     * @param lookupName  the name of used lookup
+     * @param lookupFields  the list of maps of fields names and expected values
+     * @return the list of objects matching conditions, in the order of the given maps, null for maps without
+     *         a matching object
+     */
+    default List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupFields) {
+        List<Object> result = new ArrayList<>(lookupFields.size());
+
+        for (Map<String, String> fields : lookupFields) {
+            result.add(lookup(type, lookupName, fields));
+        }
+
+        return result;
+    }
+
     /**
      * Checks if given type is supported by the {@code DataProvider}.
      *
@@ -1,5 +1,7 @@
 package org.motechproject.event.listener;
 
+import java.util.List;
+
 /**
  * The <code>EventConsumerInfo</code> interface provides methods for getting information about ActiveMQ Event Consumers.
  */
@@ -11,4 +13,11 @@ public interface EventConsumerInfo {
      * @return true if Event Consumers are running, false otherwise
      */
     boolean isRunning();
+
+    /**
+     * Returns the statistics of the consumer lanes configured on this instance.
+     *
+     * @return the statistics of the lanes, empty if there are no lanes
+     */
+    List<EventLaneStatistics> getLaneStatistics();
 }
@@ -0,0 +1,172 @@
+package org.motechproject.event.listener;
+
+/**
+ * Metrics of the events with a single subject, or of the events handled by a single listener.
+ * Latency percentiles are estimated from a histogram and are accurate to a factor of two.
+ */
+public class EventHandlingMetrics {
+
+    private String name;
+    private long published;
+    private long handled;
+    private long failed;
+    private long redelivered;
+    private long discarded;
+    private int inFlight;
+    private double rate;
+    private double averageLatency;
+    private double maxLatency;
+    private double medianLatency;
+    private double latency95th;
+    private double latency99th;
+
+    public EventHandlingMetrics() {
+    }
+
+    public EventHandlingMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the event subject or the identifier of the listener
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the number of events sent, always 0 for listeners
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    public void setPublished(long published) {
+        this.published = published;
+    }
+
+    /**
+     * @return the number of events successfully handled
+     */
+    public long getHandled() {
+        return handled;
+    }
+
+    public void setHandled(long handled) {
+        this.handled = handled;
+    }
+
+    /**
+     * @return the number of failed handling attempts
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return the number of events scheduled for redelivery
+     */
+    public long getRedelivered() {
+        return redelivered;
+    }
+
+    public void setRedelivered(long redelivered) {
+        this.redelivered = redelivered;
+    }
+
+    /**
+     * @return the number of discarded events
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    public void setDiscarded(long discarded) {
+        this.discarded = discarded;
+    }
+
+    /**
+     * @return the number of events currently being handled
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * @return the number of handling attempts per second, since the metrics are collected
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @return the average handling time, in milliseconds
+     */
+    public double getAverageLatency() {
+        return averageLatency;
+    }
+
+    public void setAverageLatency(double averageLatency) {
+        this.averageLatency = averageLatency;
+    }
+
+    /**
+     * @return the longest handling time, in milliseconds
+     */
+    public double getMaxLatency() {
+        return maxLatency;
+    }
+
+    public void setMaxLatency(double maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * @return the median handling time, in milliseconds
+     */
+    public double getMedianLatency() {
+        return medianLatency;
+    }
+
+    public void setMedianLatency(double medianLatency) {
+        this.medianLatency = medianLatency;
+    }
+
+    /**
+     * @return the 95th percentile of the handling time, in milliseconds
+     */
+    public double getLatency95th() {
+        return latency95th;
+    }
+
+    public void setLatency95th(double latency95th) {
+        this.latency95th = latency95th;
+    }
+
+    /**
+     * @return the 99th percentile of the handling time, in milliseconds
+     */
+    public double getLatency99th() {
+        return latency99th;
+    }
+
+    public void setLatency99th(double latency99th) {
+        this.latency99th = latency99th;
+    }
+}
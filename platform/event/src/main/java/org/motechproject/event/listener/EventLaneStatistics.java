@@ -0,0 +1,139 @@
+package org.motechproject.event.listener;
+
+import java.util.List;
+
+/**
+ * Statistics of a single consumer lane, as seen by this MOTECH instance.
+ */
+public class EventLaneStatistics {
+
+    private String name;
+    private List<String> subjects;
+    private int priority;
+    private int activeConsumers;
+    private int depth;
+    private int inProgress;
+    private long processed;
+    private long failed;
+    private double averageHandlingTime;
+    private double throughput;
+
+    public EventLaneStatistics() {
+    }
+
+    public EventLaneStatistics(String name, List<String> subjects, int priority) {
+        this.name = name;
+        this.subjects = subjects;
+        this.priority = priority;
+    }
+
+    /**
+     * @return the name of the lane
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the subjects consumed by the lane
+     */
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    public void setSubjects(List<String> subjects) {
+        this.subjects = subjects;
+    }
+
+    /**
+     * @return the priority of the lane
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return the number of consumers of the lane currently running on this instance
+     */
+    public int getActiveConsumers() {
+        return activeConsumers;
+    }
+
+    public void setActiveConsumers(int activeConsumers) {
+        this.activeConsumers = activeConsumers;
+    }
+
+    /**
+     * @return the number of messages waiting in the broker for the lane, or -1 if it could not be determined
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return the number of events currently handled by the lane on this instance
+     */
+    public int getInProgress() {
+        return inProgress;
+    }
+
+    public void setInProgress(int inProgress) {
+        this.inProgress = inProgress;
+    }
+
+    /**
+     * @return the number of events successfully handled by the lane on this instance
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    /**
+     * @return the number of events whose handling by the lane failed on this instance
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return the average handling time of an event, in milliseconds
+     */
+    public double getAverageHandlingTime() {
+        return averageHandlingTime;
+    }
+
+    public void setAverageHandlingTime(double averageHandlingTime) {
+        this.averageHandlingTime = averageHandlingTime;
+    }
+
+    /**
+     * @return the number of events handled per second, since the lane was started
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+}
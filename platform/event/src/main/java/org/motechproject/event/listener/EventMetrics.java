@@ -0,0 +1,119 @@
+package org.motechproject.event.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics of the events relayed by this MOTECH instance, since the start of the instance or the last reset.
+ */
+public class EventMetrics {
+
+    private long collectedSince;
+    private int inFlight;
+    private long published;
+    private long handled;
+    private long failed;
+    private long redelivered;
+    private long discarded;
+    private List<EventHandlingMetrics> subjects = new ArrayList<>();
+    private List<EventHandlingMetrics> listeners = new ArrayList<>();
+
+    /**
+     * @return the time since which the metrics are collected, in milliseconds since the epoch
+     */
+    public long getCollectedSince() {
+        return collectedSince;
+    }
+
+    public void setCollectedSince(long collectedSince) {
+        this.collectedSince = collectedSince;
+    }
+
+    /**
+     * @return the number of events currently handled by listeners
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * @return the number of events sent to the queue or the topic
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    public void setPublished(long published) {
+        this.published = published;
+    }
+
+    /**
+     * @return the number of events successfully handled by listeners
+     */
+    public long getHandled() {
+        return handled;
+    }
+
+    public void setHandled(long handled) {
+        this.handled = handled;
+    }
+
+    /**
+     * @return the number of times a listener failed to handle an event
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return the number of events scheduled for redelivery after a failure
+     */
+    public long getRedelivered() {
+        return redelivered;
+    }
+
+    public void setRedelivered(long redelivered) {
+        this.redelivered = redelivered;
+    }
+
+    /**
+     * @return the number of events discarded after reaching the maximum redelivery count
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    public void setDiscarded(long discarded) {
+        this.discarded = discarded;
+    }
+
+    /**
+     * @return the metrics of every event subject
+     */
+    public List<EventHandlingMetrics> getSubjects() {
+        return subjects;
+    }
+
+    public void setSubjects(List<EventHandlingMetrics> subjects) {
+        this.subjects = subjects;
+    }
+
+    /**
+     * @return the metrics of every event listener
+     */
+    public List<EventHandlingMetrics> getListeners() {
+        return listeners;
+    }
+
+    public void setListeners(List<EventHandlingMetrics> listeners) {
+        this.listeners = listeners;
+    }
+}
@@ -0,0 +1,20 @@
+package org.motechproject.event.listener;
+
+/**
+ * The <code>EventMetricsService</code> interface provides access to the metrics of the events relayed
+ * by this MOTECH instance.
+ */
+public interface EventMetricsService {
+
+    /**
+     * Returns a snapshot of the event metrics, collected since the start of the instance or the last reset.
+     *
+     * @return the event metrics
+     */
+    EventMetrics getMetrics();
+
+    /**
+     * Resets all counters and latency histograms.
+     */
+    void reset();
+}
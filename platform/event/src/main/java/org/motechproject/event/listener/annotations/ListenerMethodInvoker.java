@@ -0,0 +1,90 @@
+package org.motechproject.event.listener.annotations;
+
+import org.motechproject.event.MotechEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes the handler method of a <code>MotechListener</code> proxy. The method is resolved to a
+ * <code>MethodHandle</code> bound to the listener bean once, when the proxy is created, so handling an event does
+ * not go through reflective dispatch. If the method can not be accessed through a method handle, the invoker
+ * falls back to reflection.
+ */
+final class ListenerMethodInvoker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ListenerMethodInvoker.class);
+
+    private static final MethodType EVENT_HANDLER_TYPE = MethodType.methodType(void.class, MotechEvent.class);
+    private static final MethodType SPREAD_HANDLER_TYPE = MethodType.methodType(void.class, Object[].class);
+
+    private final Object bean;
+    private final Method method;
+    private final MethodHandle eventHandle;
+    private final MethodHandle spreadHandle;
+
+    ListenerMethodInvoker(Object bean, Method method) {
+        this.bean = bean;
+        this.method = method;
+
+        MethodHandle eventMethodHandle = null;
+        MethodHandle spreadMethodHandle = null;
+
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method).bindTo(bean);
+
+            if (handle.type().parameterCount() == 1 && handle.type().parameterType(0).isAssignableFrom(MotechEvent.class)) {
+                eventMethodHandle = handle.asType(EVENT_HANDLER_TYPE);
+            }
+
+            spreadMethodHandle = handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, handle.type().parameterCount())
+                    .asType(SPREAD_HANDLER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            LOGGER.debug("Unable to create method handle for {}, using reflection", method, e);
+        }
+
+        this.eventHandle = eventMethodHandle;
+        this.spreadHandle = spreadMethodHandle;
+    }
+
+    /**
+     * Invokes a handler method taking the event as its only argument.
+     *
+     * @param event the event to pass to the handler
+     */
+    void invoke(MotechEvent event) {
+        if (eventHandle == null) {
+            ReflectionUtils.invokeMethod(method, bean, event);
+            return;
+        }
+
+        try {
+            eventHandle.invokeExact(event);
+        } catch (Throwable t) { //NO CHECKSTYLE IllegalCatch
+            ReflectionUtils.rethrowRuntimeException(t);
+        }
+    }
+
+    /**
+     * Invokes the handler method with the given arguments.
+     *
+     * @param args the arguments to pass to the handler
+     */
+    void invoke(Object[] args) {
+        if (spreadHandle == null) {
+            ReflectionUtils.invokeMethod(method, bean, args);
+            return;
+        }
+
+        try {
+            spreadHandle.invokeExact(args);
+        } catch (Throwable t) { //NO CHECKSTYLE IllegalCatch
+            ReflectionUtils.rethrowRuntimeException(t);
+        }
+    }
+}
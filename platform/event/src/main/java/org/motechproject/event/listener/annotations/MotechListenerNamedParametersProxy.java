@@ -2,50 +2,72 @@ package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
 import org.springframework.util.Assert;
-import org.springframework.util.ReflectionUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the type of <code>MotechListener</code> proxy where handler is a method with
  * parameters defined by the {@link org.motechproject.event.listener.annotations.MotechParam}
- * annotation.
+ * annotation. The names and types of the parameters are read once, when the proxy is created.
  *
  * @author yyonkov
  */
 public class MotechListenerNamedParametersProxy extends MotechListenerAbstractProxy {
 
+    private final ListenerMethodInvoker invoker;
+    private final Class<?>[] paramTypes;
+    private final String[] paramNames;
+    private final String bindingError;
+
     /**
       * @see org.motechproject.event.listener.annotations.MotechListenerAbstractProxy#MotechListenerAbstractProxy(String, Object, java.lang.reflect.Method)
       */
     public MotechListenerNamedParametersProxy(String name, Object bean, Method method) {
         super(name, bean, method);
+        this.invoker = new ListenerMethodInvoker(bean, method);
+        this.paramTypes = method.getParameterTypes();
+        this.paramNames = new String[paramTypes.length];
+        this.bindingError = readParameterNames(method.getParameterAnnotations());
     }
 
     @Override
     public void callHandler(MotechEvent event) {
-        ReflectionUtils.invokeMethod(getMethod(), getBean(), getParameters(event).toArray());
+        invoker.invoke(getParameters(event));
     }
 
-    private List<Object> getParameters(MotechEvent event) {
-        List<Object> args = new ArrayList<Object>();
-        Class<?>[] paramTypes = getMethod().getParameterTypes();
-        Annotation[][] paramAnnotations = getMethod().getParameterAnnotations();
-        Assert.isTrue(paramTypes.length == paramAnnotations.length);
+    private Object[] getParameters(MotechEvent event) {
+        // invalid handlers are reported when called, not when registered
+        Assert.isNull(bindingError, bindingError);
+
+        Map<String, Object> parameters = event.getParameters();
+        Object[] args = new Object[paramTypes.length];
         for (int i = 0; i < paramTypes.length; i++) {
             Class<?> t = paramTypes[i];
-            Assert.notEmpty(paramAnnotations[i], "MotechParam(name) annotation is required for each parameter.");
-            //TODO now assuming only MotechParam annotation is present...
-            Assert.isAssignable(MotechParam.class, paramAnnotations[i][0].getClass());
-            MotechParam annotation = (MotechParam) paramAnnotations[i][0];
-            Object arg = event.getParameters().get(annotation.value());
-            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null parameter passed.", i, annotation.value()));
+            Object arg = parameters.get(paramNames[i]);
+            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null parameter passed.", i, paramNames[i]));
             Assert.isAssignable(t, arg.getClass(), String.format("Parameter #%d expected subtypes of %s passed %s.", i, t.getName(), arg.getClass().getName()));
-            args.add(arg);
+            args[i] = arg;
         }
         return args;
     }
+
+    private String readParameterNames(Annotation[][] paramAnnotations) {
+        if (paramTypes.length != paramAnnotations.length) {
+            return String.format("Method %s has %d parameters but %d parameter annotation sets.",
+                    getMethod().getName(), paramTypes.length, paramAnnotations.length);
+        }
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramAnnotations[i].length == 0) {
+                return "MotechParam(name) annotation is required for each parameter.";
+            }
+            //TODO now assuming only MotechParam annotation is present...
+            if (!(paramAnnotations[i][0] instanceof MotechParam)) {
+                return paramAnnotations[i][0].getClass() + " is not assignable to " + MotechParam.class;
+            }
+            paramNames[i] = ((MotechParam) paramAnnotations[i][0]).value();
+        }
+        return null;
+    }
 }
@@ -1,10 +1,13 @@
 package org.motechproject.event.listener.impl;
 
 import org.motechproject.event.listener.EventConsumerInfo;
+import org.motechproject.event.listener.EventLaneStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.jms.JmsMessageDrivenEndpoint;
 
+import java.util.List;
+
 /**
  * Default implementation of EventConsumerInfo interface
  *
@@ -14,10 +17,16 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
 
     private JmsMessageDrivenEndpoint queueEndpoint;
     private JmsMessageDrivenEndpoint topicEndpoint;
+    private EventLaneConsumers laneConsumers;
 
     @Override
     public boolean isRunning() {
-        return queueEndpoint.isRunning() && topicEndpoint.isRunning();
+        return queueEndpoint.isRunning() && topicEndpoint.isRunning() && laneConsumers.isRunning();
+    }
+
+    @Override
+    public List<EventLaneStatistics> getLaneStatistics() {
+        return laneConsumers.getStatistics();
     }
 
     @Autowired
@@ -31,4 +40,9 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
     public void setTopicEndpoint(JmsMessageDrivenEndpoint topicEndpoint) {
         this.topicEndpoint = topicEndpoint;
     }
+
+    @Autowired
+    public void setLaneConsumers(EventLaneConsumers laneConsumers) {
+        this.laneConsumers = laneConsumers;
+    }
 }
@@ -0,0 +1,87 @@
+package org.motechproject.event.listener.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Definition of a consumer lane. A lane consumes queue events with matching subjects using its own consumers,
+ * so that a flood of events in one lane does not starve the others. Subjects ending with a wildcard match all
+ * subjects with the given prefix.
+ */
+public class EventLane {
+
+    private static final String WILDCARD = "*";
+
+    private final String name;
+    private final List<String> subjects;
+    private final int priority;
+    private final String concurrency;
+    private final int backlog;
+
+    private final List<String> exactSubjects = new ArrayList<>();
+    private final List<String> subjectPrefixes = new ArrayList<>();
+
+    /**
+     * @param name the name of the lane, used in message selectors
+     * @param subjects the subjects consumed by the lane
+     * @param priority the priority of the lane, between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+     * @param concurrency the number of consumers, either as <code>max</code> or <code>min-max</code>
+     * @param backlog the maximum number of messages buffered by a single consumer of the lane
+     */
+    public EventLane(String name, List<String> subjects, int priority, String concurrency, int backlog) {
+        this.name = name;
+        this.subjects = Collections.unmodifiableList(new ArrayList<>(subjects));
+        this.priority = Math.min(Thread.MAX_PRIORITY, Math.max(Thread.MIN_PRIORITY, priority));
+        this.concurrency = concurrency;
+        this.backlog = Math.max(1, backlog);
+
+        for (String subject : subjects) {
+            if (subject.endsWith(WILDCARD)) {
+                subjectPrefixes.add(subject.substring(0, subject.length() - 1));
+            } else {
+                exactSubjects.add(subject);
+            }
+        }
+    }
+
+    /**
+     * Checks whether events with the given subject belong to this lane.
+     *
+     * @param subject the subject of the event
+     * @return true if the subject matches the lane, false otherwise
+     */
+    public boolean matches(String subject) {
+        if (exactSubjects.contains(subject)) {
+            return true;
+        }
+
+        for (String prefix : subjectPrefixes) {
+            if (subject.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getConcurrency() {
+        return concurrency;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+}
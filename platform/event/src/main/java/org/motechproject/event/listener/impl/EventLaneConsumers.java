@@ -0,0 +1,229 @@
+package org.motechproject.event.listener.impl;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventLaneStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jms.core.BrowserCallback;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the consumers of the lanes defined by the {@link EventLaneRouter}. Each lane gets its own listener container,
+ * which consumes only the messages of the lane from the event queue. The threads of a lane run with the priority
+ * of the lane and each consumer prefetches at most the backlog of the lane, so messages that are not being handled
+ * stay in the broker, available to other instances. Received events are relayed just like the events consumed
+ * by the default queue consumers.
+ */
+public class EventLaneConsumers implements DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneConsumers.class);
+
+    private static final int MAX_COUNTED_DEPTH = 10000;
+
+    private final List<LaneConsumer> consumers = new ArrayList<>();
+    private final JmsTemplate jmsTemplate;
+
+    public EventLaneConsumers(EventLaneRouter eventLaneRouter, ConnectionFactory connectionFactory, String queueName,
+                              MessageConverter messageConverter, ServerEventRelay eventRelay) {
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+
+        for (EventLane lane : eventLaneRouter.getLanes()) {
+            ActiveMQQueue destination = new ActiveMQQueue(queueName + "?consumer.prefetchSize=" + lane.getBacklog());
+            String selector = eventLaneRouter.getSelector(lane);
+
+            LaneConsumer consumer = new LaneConsumer(lane, selector, new ActiveMQQueue(queueName), messageConverter, eventRelay);
+
+            SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("motech-event-lane-" + lane.getName() + "-");
+            taskExecutor.setThreadPriority(lane.getPriority());
+
+            DefaultMessageListenerContainer container = consumer.getContainer();
+            container.setConnectionFactory(connectionFactory);
+            container.setDestination(destination);
+            container.setMessageSelector(selector);
+            container.setSessionTransacted(true);
+            container.setConcurrency(lane.getConcurrency());
+            container.setTaskExecutor(taskExecutor);
+            container.setAutoStartup(false);
+            container.setBeanName("eventLane-" + lane.getName());
+            container.setMessageListener(consumer);
+
+            consumers.add(consumer);
+        }
+    }
+
+    /**
+     * Starts the consumers of all lanes.
+     */
+    public void start() {
+        for (LaneConsumer consumer : consumers) {
+            if (!consumer.getContainer().isRunning()) {
+                consumer.start();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the consumers of all lanes are running.
+     *
+     * @return true if all lanes are running, false otherwise
+     */
+    public boolean isRunning() {
+        for (LaneConsumer consumer : consumers) {
+            if (!consumer.getContainer().isRunning()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the statistics of all lanes. The depth of a lane is counted by browsing the event queue,
+     * up to {@value #MAX_COUNTED_DEPTH} messages.
+     *
+     * @return the statistics of the lanes
+     */
+    public List<EventLaneStatistics> getStatistics() {
+        List<EventLaneStatistics> statistics = new ArrayList<>();
+        for (LaneConsumer consumer : consumers) {
+            statistics.add(consumer.getStatistics(countDepth(consumer)));
+        }
+        return statistics;
+    }
+
+    @Override
+    public void destroy() {
+        for (LaneConsumer consumer : consumers) {
+            consumer.getContainer().shutdown();
+        }
+    }
+
+    private int countDepth(LaneConsumer consumer) {
+        try {
+            return jmsTemplate.browseSelected(consumer.getQueue(), consumer.getSelector(), new BrowserCallback<Integer>() {
+                @Override
+                public Integer doInJms(Session session, QueueBrowser browser) throws JMSException {
+                    int depth = 0;
+                    Enumeration messages = browser.getEnumeration();
+                    while (messages.hasMoreElements() && depth < MAX_COUNTED_DEPTH) {
+                        messages.nextElement();
+                        depth++;
+                    }
+                    return depth;
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to count messages waiting in event lane {}", consumer.getLane().getName(), e);
+            return -1;
+        }
+    }
+
+    /**
+     * Consumes the messages of a single lane and keeps its counters.
+     */
+    private static class LaneConsumer implements MessageListener {
+
+        private final EventLane lane;
+        private final String selector;
+        private final ActiveMQQueue queue;
+        private final MessageConverter messageConverter;
+        private final ServerEventRelay eventRelay;
+        private final DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong handlingTime = new AtomicLong();
+        private volatile long startTime;
+
+        LaneConsumer(EventLane lane, String selector, ActiveMQQueue queue, MessageConverter messageConverter,
+                     ServerEventRelay eventRelay) {
+            this.lane = lane;
+            this.selector = selector;
+            this.queue = queue;
+            this.messageConverter = messageConverter;
+            this.eventRelay = eventRelay;
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            long start = System.nanoTime();
+            inProgress.incrementAndGet();
+
+            try {
+                MotechEvent event = (MotechEvent) messageConverter.fromMessage(message);
+                eventRelay.relayQueueEvent(event);
+                processed.incrementAndGet();
+            } catch (JMSException e) {
+                failed.incrementAndGet();
+                throw JmsUtils.convertJmsAccessException(e);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                throw e;
+            } finally {
+                inProgress.decrementAndGet();
+                handlingTime.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        void start() {
+            if (!container.isActive()) {
+                container.afterPropertiesSet();
+            }
+            startTime = System.currentTimeMillis();
+            container.start();
+        }
+
+        EventLaneStatistics getStatistics(int depth) {
+            EventLaneStatistics statistics = new EventLaneStatistics(lane.getName(), lane.getSubjects(), lane.getPriority());
+
+            long handled = processed.get() + failed.get();
+            long runningMillis = System.currentTimeMillis() - startTime;
+
+            statistics.setActiveConsumers(container.getActiveConsumerCount());
+            statistics.setDepth(depth);
+            statistics.setInProgress(inProgress.get());
+            statistics.setProcessed(processed.get());
+            statistics.setFailed(failed.get());
+            statistics.setAverageHandlingTime((handled == 0) ? 0 :
+                    (double) TimeUnit.NANOSECONDS.toMillis(handlingTime.get()) / handled);
+            statistics.setThroughput((startTime == 0 || runningMillis <= 0) ? 0 :
+                    handled * (double) TimeUnit.SECONDS.toMillis(1) / runningMillis);
+
+            return statistics;
+        }
+
+        EventLane getLane() {
+            return lane;
+        }
+
+        String getSelector() {
+            return selector;
+        }
+
+        ActiveMQQueue getQueue() {
+            return queue;
+        }
+
+        DefaultMessageListenerContainer getContainer() {
+            return container;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.motechproject.event.listener.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns queue events to consumer lanes. Lanes are read from the ActiveMQ configuration:
+ * <pre>
+ * jms.lanes=sms,critical
+ * jms.lane.sms.subjects=org.motechproject.sms.*
+ * jms.lane.sms.priority=3
+ * jms.lane.sms.concurrency=1-2
+ * jms.lane.sms.backlog=100
+ * </pre>
+ * The name of the lane is stored in the {@link #LANE_PROPERTY} property of every message sent to the event queue,
+ * which allows the consumers of each lane to pick only their own messages using a JMS selector. If a subject
+ * matches more than one lane, the lane with the highest priority is used. Events not matching any lane are
+ * consumed by the default queue consumers.
+ */
+public class EventLaneRouter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneRouter.class);
+
+    /**
+     * The name of the message property holding the name of the lane.
+     */
+    public static final String LANE_PROPERTY = "motechEventLane";
+
+    private static final String LANES_KEY = "jms.lanes";
+    private static final String LANE_KEY_PREFIX = "jms.lane.";
+    private static final String NO_LANE = "";
+    private static final int MAX_CACHED_SUBJECTS = 4096;
+
+    private static final int DEFAULT_PRIORITY = Thread.NORM_PRIORITY;
+    private static final String DEFAULT_CONCURRENCY = "1";
+    private static final int DEFAULT_BACKLOG = 100;
+
+    private final List<EventLane> lanes = new ArrayList<>();
+    private final ConcurrentMap<String, String> subjectLanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param activeMqConfig the ActiveMQ configuration, containing the lane definitions
+     */
+    public EventLaneRouter(Properties activeMqConfig) {
+        for (String name : StringUtils.split(activeMqConfig.getProperty(LANES_KEY, ""), ',')) {
+            String laneName = name.trim();
+            if (StringUtils.isAlphanumeric(laneName) && !laneName.isEmpty()) {
+                lanes.add(readLane(activeMqConfig, laneName));
+            } else if (!laneName.isEmpty()) {
+                LOGGER.error("Ignoring event lane {}, lane names can contain only letters and digits", laneName);
+            }
+        }
+
+        Collections.sort(lanes, new Comparator<EventLane>() {
+            @Override
+            public int compare(EventLane lane, EventLane other) {
+                return Integer.compare(other.getPriority(), lane.getPriority());
+            }
+        });
+    }
+
+    /**
+     * Returns the configured lanes, starting with the highest priority.
+     *
+     * @return the list of lanes
+     */
+    public List<EventLane> getLanes() {
+        return Collections.unmodifiableList(lanes);
+    }
+
+    /**
+     * Returns the name of the lane consuming events with the given subject.
+     *
+     * @param subject the subject of the event
+     * @return the name of the lane, null if the event should be consumed by the default consumers
+     */
+    public String getLane(String subject) {
+        if (lanes.isEmpty()) {
+            return null;
+        }
+
+        String lane = subjectLanes.get(subject);
+        if (lane == null) {
+            lane = NO_LANE;
+            for (EventLane candidate : lanes) {
+                if (candidate.matches(subject)) {
+                    lane = candidate.getName();
+                    break;
+                }
+            }
+            if (subjectLanes.size() < MAX_CACHED_SUBJECTS) {
+                subjectLanes.putIfAbsent(subject, lane);
+            }
+        }
+
+        return (NO_LANE.equals(lane)) ? null : lane;
+    }
+
+    /**
+     * Returns the JMS selector used by the consumers of the given lane.
+     *
+     * @param lane the lane
+     * @return the message selector
+     */
+    public String getSelector(EventLane lane) {
+        return String.format("%s = '%s'", LANE_PROPERTY, lane.getName());
+    }
+
+    /**
+     * Returns the JMS selector used by the default consumers. It matches all messages which do not belong
+     * to any of the lanes known to this instance.
+     *
+     * @return the message selector, empty if there are no lanes
+     */
+    public String getDefaultSelector() {
+        if (lanes.isEmpty()) {
+            return "";
+        }
+
+        List<String> names = new ArrayList<>();
+        for (EventLane lane : lanes) {
+            names.add("'" + lane.getName() + "'");
+        }
+
+        return String.format("%s IS NULL OR %s NOT IN (%s)", LANE_PROPERTY, LANE_PROPERTY, StringUtils.join(names, ", "));
+    }
+
+    private EventLane readLane(Properties config, String name) {
+        String prefix = LANE_KEY_PREFIX + name + ".";
+
+        List<String> subjects = new ArrayList<>();
+        for (String subject : StringUtils.split(config.getProperty(prefix + "subjects", ""), ',')) {
+            if (StringUtils.isNotBlank(subject)) {
+                subjects.add(subject.trim());
+            }
+        }
+
+        int priority = readInt(config, prefix + "priority", DEFAULT_PRIORITY);
+        String concurrency = config.getProperty(prefix + "concurrency", DEFAULT_CONCURRENCY).trim();
+        int backlog = readInt(config, prefix + "backlog", DEFAULT_BACKLOG);
+
+        LOGGER.info("Event lane {}: subjects {}, priority {}, concurrency {}, backlog {}",
+                name, subjects, priority, concurrency, backlog);
+
+        return new EventLane(name, subjects, priority, concurrency, backlog);
+    }
+
+    private int readInt(Properties config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("Invalid value {} of {}, using {}", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -4,22 +4,25 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
- import org.springframework.stereotype.Service;
+import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Set;
 
 /**
  * Implementation of the {@link EventListenerRegistryService} interface.
- * Acts as a registry for all scheduled event listeners.
+ * Acts as a registry for all scheduled event listeners. Listeners are kept in a tree, which is only modified
+ * while holding the registry lock. Lookups are served from an immutable {@link EventSubjectIndex}
+ * snapshot, which is swapped whenever the registered listeners change.
  */
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerRegistry.class);
 
     private EventListenerTree listenerTree = new EventListenerTree();
+    private volatile EventSubjectIndex subjectIndex = new EventSubjectIndex(listenerTree);
 
-    public void registerListener(EventListener listener, List<String> subjects) {
+    public synchronized void registerListener(EventListener listener, List<String> subjects) {
 
         if (listener == null) {
             throw new IllegalArgumentException("Invalid attempt to register a null EventListener");
@@ -29,13 +32,42 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             throw new IllegalArgumentException("Invalid attempt to register for null subjects");
         }
 
-        // Add the listener to the list of those interested in each event type
-        for (String subject : subjects) {
-            registerListener(listener, subject);
+        try {
+            // Add the listener to the list of those interested in each event type
+            for (String subject : subjects) {
+                addListener(listener, subject);
+            }
+        } finally {
+            if (!subjects.isEmpty()) {
+                rebuildIndex();
+            }
         }
     }
 
-    public void registerListener(EventListener listener, String subject) {
+    public synchronized void registerListener(EventListener listener, String subject) {
+        addListener(listener, subject);
+        rebuildIndex();
+    }
+
+    public Set<EventListener> getListeners(String subject) {
+        return subjectIndex.getListeners(subject);
+    }
+
+    public boolean hasListener(String subject) {
+        return subjectIndex.hasListener(subject);
+    }
+
+    public int getListenerCount(String subject) {
+        return subjectIndex.getListenerCount(subject);
+    }
+
+    public synchronized void clearListenersForBean(String beanName) {
+        LOGGER.debug("Clearing listeners for bean: {}", beanName);
+        listenerTree.removeAllListeners(beanName);
+        rebuildIndex();
+    }
+
+    private void addListener(EventListener listener, String subject) {
         if (listener == null) {
             throw new IllegalArgumentException("Invalid attempt to register a null EventListener");
         }
@@ -51,20 +83,7 @@ public class EventListenerRegistry implements EventListenerRegistryService {
         listenerTree.addListener(listener, subject);
     }
 
-    public Set<EventListener> getListeners(String subject) {
-        return listenerTree.getListeners(subject);
-    }
-
-    public boolean hasListener(String subject) {
-        return listenerTree.hasListener(subject);
-    }
-
-    public int getListenerCount(String subject) {
-        return listenerTree.getListenerCount(subject);
-    }
-
-    public void clearListenersForBean(String beanName) {
-        LOGGER.debug("Clearing listeners for bean: {}", beanName);
-        listenerTree.removeAllListeners(beanName);
+    private void rebuildIndex() {
+        subjectIndex = new EventSubjectIndex(listenerTree);
     }
 }
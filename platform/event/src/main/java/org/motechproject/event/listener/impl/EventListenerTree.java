@@ -4,10 +4,10 @@ import org.motechproject.event.listener.EventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static org.springframework.util.CollectionUtils.isEmpty;
@@ -21,7 +21,7 @@ public class EventListenerTree {
 
     private static final String SPLIT_REGEX = "\\.";
 
-    private List<EventListenerTree> children = new ArrayList<>();
+    private Map<String, EventListenerTree> children = new LinkedHashMap<>();
     private EventListenerTree parent;
 
     private String pathElement;
@@ -295,26 +295,38 @@ public class EventListenerTree {
     }
 
     private EventListenerTree getChild(String pathElement) {
-        EventListenerTree ret = null;
+        return (children == null) ? null : children.get(pathElement);
+    }
 
-        if (children != null) {
-            for (EventListenerTree n : children) {
-                if (n.getPathElement().equals(pathElement)) {
-                    ret = n;
-                    break;
-                }
-            }
+    private void addChild(EventListenerTree child) {
+        if (children == null) {
+            children = new LinkedHashMap<>();
         }
 
-        return ret;
+        children.put(child.getPathElement(), child);
     }
 
-    private void addChild(EventListenerTree child) {
-        if (children == null) {
-            children = new ArrayList<EventListenerTree>();
+    /**
+     * Creates a deep copy of this tree. The listener sets of every node in the copy are initialized eagerly,
+     * so read operations on a copy that is never modified afterwards are safe to call from multiple threads.
+     *
+     * @return the copy of this tree
+     */
+    public EventListenerTree copy() {
+        return copy(null);
+    }
+
+    private EventListenerTree copy(EventListenerTree newParent) {
+        EventListenerTree copy = new EventListenerTree(pathElement, newParent);
+
+        copy.listeners = (listeners == null) ? new HashSet<EventListener>() : new HashSet<>(listeners);
+        copy.wildcardListeners = (wildcardListeners == null) ? new HashSet<EventListener>() : new HashSet<>(wildcardListeners);
+
+        for (EventListenerTree child : children.values()) {
+            copy.addChild(child.copy(copy));
         }
 
-        children.add(child);
+        return copy;
     }
 
     /**
@@ -322,7 +334,7 @@ public class EventListenerTree {
      */
     public void removeAllListeners(String beanName) {
 
-        for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+        for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
             EventListenerTree child = listenerIterator.next();
             if (child.removeListeners(beanName) && child.removeEmptyChildWithWildcardListeners()) {
                 listenerIterator.remove();
@@ -335,7 +347,7 @@ public class EventListenerTree {
         if (children.size() == 0) {
             return this.getAllListeners().size() == 0;
         } else {
-            for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+            for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
                 EventListenerTree child = listenerIterator.next();
                 if (!child.removeEmptyChildWithWildcardListeners() || isEmpty(wildcardListeners)) {
                     return false;
@@ -369,7 +381,7 @@ public class EventListenerTree {
                 }
             }
         }
-        for (EventListenerTree childTree : children) {
+        for (EventListenerTree childTree : children.values()) {
             if (childTree.removeListeners(beanName)) {
                 removed = true;
             }
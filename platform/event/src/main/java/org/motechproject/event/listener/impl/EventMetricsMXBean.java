@@ -0,0 +1,50 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.listener.EventMetrics;
+
+/**
+ * The management interface of the event metrics, registered in the platform MBean server under
+ * {@value EventMetricsRecorder#OBJECT_NAME}.
+ */
+public interface EventMetricsMXBean {
+
+    /**
+     * @return the metrics of all subjects and listeners
+     */
+    EventMetrics getMetrics();
+
+    /**
+     * @return the number of events currently handled by listeners
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of events sent to the queue or the topic
+     */
+    long getPublished();
+
+    /**
+     * @return the number of events successfully handled by listeners
+     */
+    long getHandled();
+
+    /**
+     * @return the number of times a listener failed to handle an event
+     */
+    long getFailed();
+
+    /**
+     * @return the number of events scheduled for redelivery after a failure
+     */
+    long getRedelivered();
+
+    /**
+     * @return the number of events discarded after reaching the maximum redelivery count
+     */
+    long getDiscarded();
+
+    /**
+     * Resets all counters and latency histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,361 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.listener.EventHandlingMetrics;
+import org.motechproject.event.listener.EventMetrics;
+import org.motechproject.event.listener.EventMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the metrics of the events relayed by the {@link ServerEventRelay}: the number of published, handled,
+ * failed, redelivered and discarded events, the number of events in flight and the handling latency, for every
+ * subject and every listener. All counters are striped, so recording does not block the threads handling events.
+ * At most {@value #MAX_TRACKED_NAMES} subjects and listeners are tracked separately, the remaining ones are
+ * accounted under {@value #OTHER}. The metrics are also available through JMX.
+ */
+@Component
+public class EventMetricsRecorder implements EventMetricsService, EventMetricsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventMetricsRecorder.class);
+
+    /**
+     * The name under which the metrics are registered in the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    private static final int MAX_TRACKED_NAMES = 1024;
+    private static final String OTHER = "(other)";
+
+    private static final Comparator<EventHandlingMetrics> BY_NAME = new Comparator<EventHandlingMetrics>() {
+        @Override
+        public int compare(EventHandlingMetrics one, EventHandlingMetrics other) {
+            return one.getName().compareTo(other.getName());
+        }
+    };
+
+    private volatile Metrics metrics = new Metrics();
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    @PostConstruct
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    @PreDestroy
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Records events sent to the queue or the topic.
+     *
+     * @param subject the subject of the events
+     * @param count the number of events
+     */
+    public void published(String subject, int count) {
+        metrics.subject(subject).published.add(count);
+    }
+
+    /**
+     * Records the start of handling an event by a listener. The returned timer must be stopped once the
+     * listener returns.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener
+     * @return the timer measuring the handling
+     */
+    public HandlingTimer handlingStarted(String subject, String listener) {
+        Metrics current = metrics;
+        return new HandlingTimer(current.subject(subject), current.listener(listener));
+    }
+
+    /**
+     * Records an event scheduled for redelivery after a failure.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which failed to handle the event
+     */
+    public void redelivered(String subject, String listener) {
+        Metrics current = metrics;
+        current.subject(subject).redelivered.increment();
+        current.listener(listener).redelivered.increment();
+    }
+
+    /**
+     * Records an event discarded after reaching the maximum redelivery count.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which failed to handle the event
+     */
+    public void discarded(String subject, String listener) {
+        Metrics current = metrics;
+        current.subject(subject).discarded.increment();
+        current.listener(listener).discarded.increment();
+    }
+
+    @Override
+    public EventMetrics getMetrics() {
+        Metrics current = metrics;
+        EventMetrics snapshot = new EventMetrics();
+        long elapsedMillis = System.currentTimeMillis() - current.startTime;
+
+        snapshot.setCollectedSince(current.startTime);
+
+        for (Map.Entry<String, Stats> entry : current.subjects.entrySet()) {
+            EventHandlingMetrics subject = entry.getValue().toMetrics(entry.getKey(), elapsedMillis);
+            snapshot.getSubjects().add(subject);
+
+            snapshot.setInFlight(snapshot.getInFlight() + subject.getInFlight());
+            snapshot.setPublished(snapshot.getPublished() + subject.getPublished());
+            snapshot.setHandled(snapshot.getHandled() + subject.getHandled());
+            snapshot.setFailed(snapshot.getFailed() + subject.getFailed());
+            snapshot.setRedelivered(snapshot.getRedelivered() + subject.getRedelivered());
+            snapshot.setDiscarded(snapshot.getDiscarded() + subject.getDiscarded());
+        }
+
+        for (Map.Entry<String, Stats> entry : current.listeners.entrySet()) {
+            snapshot.getListeners().add(entry.getValue().toMetrics(entry.getKey(), elapsedMillis));
+        }
+
+        Collections.sort(snapshot.getSubjects(), BY_NAME);
+        Collections.sort(snapshot.getListeners(), BY_NAME);
+
+        return snapshot;
+    }
+
+    @Override
+    public int getInFlight() {
+        return getMetrics().getInFlight();
+    }
+
+    @Override
+    public long getPublished() {
+        return getMetrics().getPublished();
+    }
+
+    @Override
+    public long getHandled() {
+        return getMetrics().getHandled();
+    }
+
+    @Override
+    public long getFailed() {
+        return getMetrics().getFailed();
+    }
+
+    @Override
+    public long getRedelivered() {
+        return getMetrics().getRedelivered();
+    }
+
+    @Override
+    public long getDiscarded() {
+        return getMetrics().getDiscarded();
+    }
+
+    @Override
+    public void reset() {
+        metrics = new Metrics();
+    }
+
+    /**
+     * Measures the handling of a single event by a single listener.
+     */
+    public static final class HandlingTimer {
+        private final Stats subject;
+        private final Stats listener;
+        private final long startTime;
+        private boolean stopped;
+
+        private HandlingTimer(Stats subject, Stats listener) {
+            this.subject = subject;
+            this.listener = listener;
+            this.startTime = System.nanoTime();
+
+            subject.inFlight.increment();
+            listener.inFlight.increment();
+        }
+
+        /**
+         * Records the end of the handling. Only the first call has any effect.
+         *
+         * @param success true if the listener handled the event, false if it failed
+         */
+        public void stop(boolean success) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+
+            long latency = System.nanoTime() - startTime;
+            subject.record(latency, success);
+            listener.record(latency, success);
+        }
+    }
+
+    /**
+     * The metrics collected since the start or the last reset.
+     */
+    private static final class Metrics {
+        private final long startTime = System.currentTimeMillis();
+        private final ConcurrentMap<String, Stats> subjects = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Stats> listeners = new ConcurrentHashMap<>();
+
+        Stats subject(String subject) {
+            return stats(subjects, subject);
+        }
+
+        Stats listener(String listener) {
+            return stats(listeners, listener);
+        }
+
+        private Stats stats(ConcurrentMap<String, Stats> map, String name) {
+            Stats stats = map.get(name);
+            if (stats == null) {
+                String key = (name == null || map.size() >= MAX_TRACKED_NAMES) ? OTHER : name;
+                stats = map.get(key);
+                if (stats == null) {
+                    Stats created = new Stats();
+                    stats = map.putIfAbsent(key, created);
+                    if (stats == null) {
+                        stats = created;
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * The counters and the latency histogram of a single subject or listener. Latencies are counted in buckets
+     * growing by powers of two, starting at one microsecond.
+     */
+    private static final class Stats {
+        private static final int BUCKETS = 40;
+
+        private final LongAdder published = new LongAdder();
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder redelivered = new LongAdder();
+        private final LongAdder discarded = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder totalLatency = new LongAdder();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Stats() {
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long latency, boolean success) {
+            inFlight.decrement();
+            if (success) {
+                handled.increment();
+            } else {
+                failed.increment();
+            }
+
+            totalLatency.add(latency);
+            histogram[bucket(latency)].increment();
+
+            long max = maxLatency.get();
+            while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                max = maxLatency.get();
+            }
+        }
+
+        EventHandlingMetrics toMetrics(String name, long elapsedMillis) {
+            EventHandlingMetrics metrics = new EventHandlingMetrics(name);
+
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram[i].sum();
+                count += counts[i];
+            }
+
+            metrics.setPublished(published.sum());
+            metrics.setHandled(handled.sum());
+            metrics.setFailed(failed.sum());
+            metrics.setRedelivered(redelivered.sum());
+            metrics.setDiscarded(discarded.sum());
+            metrics.setInFlight((int) Math.max(0, inFlight.sum()));
+            metrics.setRate((elapsedMillis <= 0) ? 0 : count * (double) TimeUnit.SECONDS.toMillis(1) / elapsedMillis);
+            metrics.setAverageLatency((count == 0) ? 0 : toMillis(totalLatency.sum()) / count);
+            metrics.setMaxLatency(toMillis(maxLatency.get()));
+            metrics.setMedianLatency(percentile(counts, count, 0.5));
+            metrics.setLatency95th(percentile(counts, count, 0.95));
+            metrics.setLatency99th(percentile(counts, count, 0.99));
+
+            return metrics;
+        }
+
+        private double percentile(long[] counts, long count, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // the upper bound of the bucket, but never more than the longest latency seen
+                    return Math.min(toMillis(TimeUnit.MICROSECONDS.toNanos(1L << i)), toMillis(maxLatency.get()));
+                }
+            }
+            return toMillis(maxLatency.get());
+        }
+
+        private static int bucket(long latency) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(latency);
+            int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+            return Math.min(bucket, BUCKETS - 1);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.listener.EventListener;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable snapshot of the {@link EventListenerTree}, used for resolving listeners of event subjects.
+ * The listener set resolved for a given subject, wildcard matches included, is computed once and cached,
+ * so subsequent lookups for the same subject are lock-free and do not allocate. A new index is created
+ * by the {@link EventListenerRegistry} every time the registered listeners change, which drops the cache.
+ */
+public final class EventSubjectIndex {
+
+    /**
+     * The maximum number of subjects for which resolved listeners are cached. Subjects resolved after
+     * reaching this limit are still computed correctly, but are not cached.
+     */
+    public static final int MAX_CACHED_SUBJECTS = 4096;
+
+    private final EventListenerTree tree;
+    private final ConcurrentMap<String, Set<EventListener>> resolvedListeners = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an index from the given tree. The tree is copied, so further changes to it will not be
+     * reflected by this index.
+     *
+     * @param tree the tree to create the snapshot from
+     */
+    public EventSubjectIndex(EventListenerTree tree) {
+        this.tree = tree.copy();
+    }
+
+    /**
+     * Returns the unmodifiable set of listeners for the given subject.
+     *
+     * @param subject the subject of the event
+     * @return the matching event listeners, never null
+     * @see org.motechproject.event.listener.EventListenerRegistryService#getListeners(String)
+     */
+    public Set<EventListener> getListeners(String subject) {
+        Set<EventListener> listeners = resolvedListeners.get(subject);
+
+        if (listeners == null) {
+            listeners = Collections.unmodifiableSet(tree.getListeners(subject));
+
+            if (resolvedListeners.size() < MAX_CACHED_SUBJECTS) {
+                Set<EventListener> existing = resolvedListeners.putIfAbsent(subject, listeners);
+                if (existing != null) {
+                    listeners = existing;
+                }
+            }
+        }
+
+        return listeners;
+    }
+
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#hasListener(String)
+     */
+    public boolean hasListener(String subject) {
+        return !getListeners(subject).isEmpty();
+    }
+
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#getListenerCount(String)
+     */
+    public int getListenerCount(String subject) {
+        return tree.getListenerCount(subject);
+    }
+}
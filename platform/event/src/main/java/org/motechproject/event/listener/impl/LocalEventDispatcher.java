@@ -0,0 +1,154 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the delivery of events handled within this MOTECH instance, without going through the message broker.
+ * Deliveries are executed on a bounded thread pool, configured through the {@link MotechEventConfig}. Delayed
+ * deliveries, used for redelivering failed events, are kept by a separate timer until they are due.
+ * It also decides which subjects are delivered locally.
+ */
+@Component
+public class LocalEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventDispatcher.class);
+
+    private static final String WILDCARD = "*";
+
+    private final List<String> localSubjects = new ArrayList<>();
+    private final List<String> localSubjectPrefixes = new ArrayList<>();
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    @Autowired
+    public LocalEventDispatcher(MotechEventConfig motechEventConfig) {
+        for (String subject : motechEventConfig.getLocalDeliverySubjects()) {
+            if (subject.endsWith(WILDCARD)) {
+                localSubjectPrefixes.add(subject.substring(0, subject.length() - 1));
+            } else {
+                localSubjects.add(subject);
+            }
+        }
+
+        int threads = Math.max(1, motechEventConfig.getLocalDeliveryThreads());
+        int queueSize = Math.max(1, motechEventConfig.getLocalDeliveryQueueSize());
+
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new NamedThreadFactory("motech-local-event-"));
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("motech-local-event-timer-"));
+
+        if (isEnabled()) {
+            LOGGER.info("Events with subjects {} will be delivered locally", motechEventConfig.getLocalDeliverySubjects());
+        }
+    }
+
+    /**
+     * Checks whether any subjects are configured for local delivery.
+     *
+     * @return true if local delivery is enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return !localSubjects.isEmpty() || !localSubjectPrefixes.isEmpty();
+    }
+
+    /**
+     * Checks whether events with the given subject should be delivered locally.
+     *
+     * @param subject the subject of the event
+     * @return true if the event should be delivered locally, false if it should go through the message broker
+     */
+    public boolean isLocalSubject(String subject) {
+        if (localSubjects.contains(subject)) {
+            return true;
+        }
+
+        for (String prefix : localSubjectPrefixes) {
+            if (subject.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Submits the given delivery for execution.
+     *
+     * @param delivery the delivery to be executed
+     * @return true if the delivery was accepted, false if the queue is full or the dispatcher was shut down
+     */
+    public boolean dispatch(Runnable delivery) {
+        try {
+            executor.execute(delivery);
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Local event delivery rejected", e);
+            return false;
+        }
+    }
+
+    /**
+     * Submits the given delivery for execution after the given delay. If the delivery can not be accepted once it
+     * is due, the fallback is executed instead.
+     *
+     * @param delivery the delivery to be executed
+     * @param fallback executed if the delivery is rejected
+     * @param delayMillis the delay in milliseconds
+     */
+    public void dispatchLater(final Runnable delivery, final Runnable fallback, long delayMillis) {
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                if (!dispatch(delivery)) {
+                    fallback.run();
+                }
+            }
+        };
+
+        try {
+            timer.schedule(dispatch, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Delayed local event delivery rejected", e);
+            fallback.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdown();
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -10,9 +10,8 @@ import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.motechproject.osgi.web.tracker.NamedServiceTracker;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
-import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventHandler;
@@ -21,14 +20,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Handles incoming scheduled events and relays those events to the appropriate event listeners.
- * It is also used for publishing events in the ActiveMQ.
+ * It is also used for publishing events in the ActiveMQ. Events with subjects configured for local delivery
+ * are handed to the listeners of this instance directly through the {@link LocalEventDispatcher}, bypassing the
+ * broker. Locally delivered events are not persisted, but follow the same redelivery rules as queue events.
  */
 @Component("eventRelay")
 public class ServerEventRelay implements EventRelay, EventHandler {
@@ -40,16 +45,37 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private OutboundEventGateway outboundEventGateway;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
-    private BundleContext bundleContext;
+    private NamedServiceTracker<EventCallbackService> callbackServices;
+    private LocalEventDispatcher localEventDispatcher;
+    private EventMetricsRecorder eventMetrics;
 
     @Autowired
     public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin, BundleContext bundleContext) {
+                            EventAdmin osgiEventAdmin, BundleContext bundleContext, LocalEventDispatcher localEventDispatcher,
+                            EventMetricsRecorder eventMetrics) {
         this.outboundEventGateway = outboundEventGateway;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
-        this.bundleContext = bundleContext;
+        this.callbackServices = (bundleContext == null) ? null :
+                new NamedServiceTracker<EventCallbackService>(bundleContext, EventCallbackService.class) {
+                    @Override
+                    protected String getName(EventCallbackService service) {
+                        return service.getName();
+                    }
+                };
+        this.localEventDispatcher = localEventDispatcher;
+        this.eventMetrics = eventMetrics;
+    }
+
+    /**
+     * Stops tracking the callback services.
+     */
+    @PreDestroy
+    public void closeServiceTrackers() {
+        if (callbackServices != null) {
+            callbackServices.close();
+        }
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
@@ -62,7 +88,14 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             // We need to split the message for each listener to ensure the work units
             // are completed individually. Therefore, if a message fails it will be
             // re-distributed to another server without being lost
-            splitEvent(event, listeners);
+            List<MotechEvent> enrichedEventMessages = splitEvent(event, listeners);
+            eventMetrics.published(event.getSubject(), enrichedEventMessages.size());
+
+            if (localEventDispatcher.isEnabled() && localEventDispatcher.isLocalSubject(event.getSubject())) {
+                dispatchLocally(enrichedEventMessages);
+            } else {
+                sendToQueue(enrichedEventMessages);
+            }
         }
     }
 
@@ -76,6 +109,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         if (!listeners.isEmpty() || proxyInOsgi(event)) {
             event.setBroadcast(true);
             outboundEventGateway.broadcastEventMessage(event);
+            eventMetrics.published(event.getSubject(), 1);
         }
     }
 
@@ -91,7 +125,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             EventListener listener = getEventListener(event, messageDestination);
             if (null != listener) {
                 MotechEvent e = copyMotechEvent(event);
-                handleQueueEvent(listener, e);
+                handleQueueEvent(listener, e, false);
             } else {
                 LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", messageDestination, event);
             }
@@ -154,18 +188,77 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         }
     }
 
-    private void handleQueueEvent(EventListener listener, MotechEvent event) {
+    /**
+     * Delivers the event, which was split for a single listener, within this MOTECH instance.
+     *
+     * @param event the event being delivered
+     */
+    private void relayLocalEvent(MotechEvent event) {
+        EventListener listener = getEventListener(event, event.getMessageDestination());
+        if (null == listener) {
+            LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", event.getMessageDestination(), event);
+            return;
+        }
+
+        try {
+            handleQueueEvent(listener, event, true);
+        } catch (RuntimeException e) {
+            // there is no message consumer to rethrow to, a discarded event has been already logged
+            if (!event.isDiscarded()) {
+                LOGGER.error("Local delivery of event with subject {} failed", event.getSubject(), e);
+            }
+        }
+    }
+
+    private void dispatchLocally(List<MotechEvent> events) {
+        for (MotechEvent event : events) {
+            if (event.getId() == null) {
+                event.setId(UUID.randomUUID());
+            }
+
+            if (!localEventDispatcher.dispatch(localDelivery(event))) {
+                LOGGER.warn("Local delivery queue is full, sending event with subject {} through the broker", event.getSubject());
+                outboundEventGateway.sendEventMessage(event);
+            }
+        }
+    }
+
+    private void redeliverLocally(final MotechEvent event) {
+        long delay = motechEventConfig.getMessageRedeliveryDelayMillis(event.getMessageRedeliveryCount());
+
+        localEventDispatcher.dispatchLater(localDelivery(event), new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.warn("Local delivery queue is full, redelivering event with subject {} through the broker", event.getSubject());
+                outboundEventGateway.sendEventMessage(event);
+            }
+        }, delay);
+    }
+
+    private Runnable localDelivery(final MotechEvent event) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                relayLocalEvent(event);
+            }
+        };
+    }
+
+    private void handleQueueEvent(EventListener listener, MotechEvent event, boolean local) {
         EventCallbackService callbackService = findCallbackService(event.getCallbackName());
         ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        EventMetricsRecorder.HandlingTimer timer = eventMetrics.handlingStarted(event.getSubject(), listener.getIdentifier());
 
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
             listener.handle(event);
+            timer.stop(true);
             if (callbackService != null) {
                 callbackService.successCallback(event);
             }
         } catch (RuntimeException e) {
+            timer.stop(false);
             LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
 
             if (callbackService == null || callbackService.failureCallback(event, e.getCause())) {
@@ -174,12 +267,18 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
                 if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                     event.setDiscarded(true);
+                    eventMetrics.discarded(event.getSubject(), listener.getIdentifier());
                     LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
                     throw e;
                 }
 
                 event.incrementMessageRedeliveryCount();
-                outboundEventGateway.sendEventMessage(event);
+                eventMetrics.redelivered(event.getSubject(), listener.getIdentifier());
+                if (local) {
+                    redeliverLocally(event);
+                } else {
+                    outboundEventGateway.sendEventMessage(event);
+                }
             } else {
                 LOGGER.info("Event failure callback service {} has prevented redelivery of failed event with subject {}.",
                         callbackService.getName(), event.getSubject());
@@ -195,18 +294,9 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<EventCallbackService>> references = bundleContext.getServiceReferences(EventCallbackService.class, null);
-
-            for (ServiceReference<EventCallbackService> ref : references) {
-                EventCallbackService callback = bundleContext.getService(ref);
-                if (callback.getName().equals(callbackName)) {
-                    return callback;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.", e);
+        EventCallbackService callback = (callbackServices == null) ? null : callbackServices.getService(callbackName);
+        if (callback != null) {
+            return callback;
         }
 
         // If a non-null callback name has been provided, yet it cannot be found in
@@ -220,16 +310,21 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 
         do {
+            EventMetricsRecorder.HandlingTimer timer = eventMetrics.handlingStarted(event.getSubject(), listener.getIdentifier());
             try {
                 Object target = MotechProxyUtils.getTargetIfProxied(listener);
                 Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
                 listener.handle(event);
+                timer.stop(true);
                 break;
             } catch (RuntimeException e) {
+                timer.stop(false);
                 if (retryCount < maxRetryCount) {
+                    eventMetrics.redelivered(event.getSubject(), listener.getIdentifier());
                     LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
                             event.toString(), listener.getIdentifier()), e);
                 } else {
+                    eventMetrics.discarded(event.getSubject(), listener.getIdentifier());
                     LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
                             event.toString(), listener.getIdentifier()), e);
                     break;
@@ -247,8 +342,10 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      *
      * @param event     Event message to be split
      * @param listeners A list of listeners for this given message that will be used as message destinations
+     * @return the messages for each of the listeners
      */
-    private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
+    private List<MotechEvent> splitEvent(MotechEvent event, Set<EventListener> listeners) {
+        List<MotechEvent> enrichedEventMessages = new ArrayList<>(listeners.size());
         MotechEvent enrichedEventMessage;
         Map<String, Object> parameters;
 
@@ -258,7 +355,18 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             enrichedEventMessage = new MotechEvent(event.getSubject(), parameters, event.getCallbackName());
             enrichedEventMessage.setMetadata(event.getMetadata());
             enrichedEventMessage.setMessageDestination(listener.getIdentifier());
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            enrichedEventMessages.add(enrichedEventMessage);
+        }
+
+        return enrichedEventMessages;
+    }
+
+    private void sendToQueue(List<MotechEvent> enrichedEventMessages) {
+        // a fan-out to multiple listeners is published in one transaction
+        if (enrichedEventMessages.size() == 1) {
+            outboundEventGateway.sendEventMessage(enrichedEventMessages.get(0));
+        } else {
+            outboundEventGateway.sendEventMessages(enrichedEventMessages);
         }
     }
 
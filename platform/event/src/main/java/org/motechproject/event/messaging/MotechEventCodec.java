@@ -0,0 +1,38 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+import java.io.IOException;
+
+/**
+ * Encodes <code>MotechEvent</code>s into the binary form sent to the ActiveMQ broker and decodes them back.
+ * Codecs are identified by their names, which are carried along with the encoded messages, so that the receiving
+ * end can always pick the right codec. Events sent without a codec are transferred using Java serialization.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Returns the name of this codec. It must be unique among all codecs used by the event system.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Encodes the given event.
+     *
+     * @param motechEvent the event to be encoded
+     * @return the encoded event
+     * @throws IOException if the event could not be encoded
+     */
+    byte[] encode(MotechEvent motechEvent) throws IOException;
+
+    /**
+     * Decodes an event previously encoded by this codec.
+     *
+     * @param bytes the encoded event
+     * @return the decoded event
+     * @throws IOException if the event could not be decoded
+     */
+    MotechEvent decode(byte[] bytes) throws IOException;
+}
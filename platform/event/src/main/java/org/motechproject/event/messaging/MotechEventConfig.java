@@ -1,20 +1,35 @@
 package org.motechproject.event.messaging;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Accesses the <code>MotechEventConfig</code> variables.
  */
 @Component
 public class MotechEventConfig {
 
+    private static final long MILLIS_PER_SEC = 1000L;
+
     @Value("${motech.message.max.redelivery.count:3}")
     private int messageMaxRedeliveryCount;
 
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.event.local.subjects:}")
+    private String localDeliverySubjects;
+
+    @Value("${motech.event.local.threads:4}")
+    private int localDeliveryThreads;
+
+    @Value("${motech.event.local.queue.size:1000}")
+    private int localDeliveryQueueSize;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +51,52 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns the delay (in milliseconds) before the given redelivery of a message. The delay grows exponentially
+     * with the number of redeliveries, as described in {@link #getMessageRedeliveryDelay()}.
+     *
+     * @param redeliveryCount the number of the redelivery, starting from 1
+     * @return the delay in milliseconds
+     */
+    public long getMessageRedeliveryDelayMillis(long redeliveryCount) {
+        Double delay = messageRedeliveryDelay * MILLIS_PER_SEC * Math.pow(2, redeliveryCount - 1);
+        return delay.longValue();
+    }
+
+    /**
+     * Returns the subjects of events, which are delivered to the listeners of this MOTECH instance directly,
+     * without being sent to the message broker. A subject ending with a wildcard matches all subjects starting
+     * with the given prefix, for example <code>org.motechproject.sms.*</code>.
+     *
+     * @return the list of subjects delivered locally, empty if local delivery is disabled
+     */
+    public List<String> getLocalDeliverySubjects() {
+        List<String> subjects = new ArrayList<>();
+        for (String subject : StringUtils.split(StringUtils.defaultString(localDeliverySubjects), ',')) {
+            if (StringUtils.isNotBlank(subject)) {
+                subjects.add(subject.trim());
+            }
+        }
+        return subjects;
+    }
+
+    /**
+     * Returns the number of threads used for delivering events locally.
+     *
+     * @return the number of local delivery threads
+     */
+    public int getLocalDeliveryThreads() {
+        return localDeliveryThreads;
+    }
+
+    /**
+     * Returns the maximum number of events waiting for local delivery. Events that do not fit in the queue
+     * are sent through the message broker.
+     *
+     * @return the size of the local delivery queue
+     */
+    public int getLocalDeliveryQueueSize() {
+        return localDeliveryQueueSize;
+    }
 }
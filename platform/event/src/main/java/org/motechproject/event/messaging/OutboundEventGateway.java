@@ -2,6 +2,8 @@ package org.motechproject.event.messaging;
 
 import org.motechproject.event.MotechEvent;
 
+import java.util.List;
+
 /**
  * Sends <code>MotechEvent</code> to the ActiveMQ broker, the implementation is generated by Spring Integration.
  */
@@ -17,6 +19,16 @@ public interface OutboundEventGateway {
      */
     void sendEventMessage(MotechEvent motechEvent);
 
+    /**
+     *  Sends the messages of all given events to the message queue in a single
+     *  transaction. Either all events are published, or none of them. This should be
+     *  preferred over multiple calls to {@link #sendEventMessage(MotechEvent)} when
+     *  sending many events at once.
+     *
+     * @param motechEvents the events to be sent
+     */
+    void sendEventMessages(List<MotechEvent> motechEvents);
+
     /**
      *  Broadcast the motechEvent's message as a payload to the message channel
      *  defined in the Spring Integration configuration file. The channel is
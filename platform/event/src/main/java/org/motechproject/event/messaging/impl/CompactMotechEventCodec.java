@@ -0,0 +1,421 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary codec for <code>MotechEvent</code>s. Values of the parameter and metadata maps are written with
+ * a one byte type tag followed by their binary representation. Common types (strings, numbers, booleans, dates,
+ * UUIDs, byte arrays, lists and maps of those) are encoded directly, any other value is written using Java
+ * serialization. Subjects present in the optional subject dictionary are written as their index in the dictionary.
+ * Both the sending and the receiving end must use the same dictionary.
+ */
+public class CompactMotechEventCodec implements MotechEventCodec {
+
+    public static final String NAME = "compact";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final int FLAG_INVALID = 1;
+    private static final int FLAG_DISCARDED = 1 << 1;
+    private static final int FLAG_BROADCAST = 1 << 2;
+    private static final int FLAG_HAS_ID = 1 << 3;
+
+    private static final int NO_DICTIONARY_ENTRY = -1;
+    private static final int MAX_DICTIONARY_SIZE = Short.MAX_VALUE;
+    private static final int NULL_LENGTH = -1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_SHORT = 6;
+    private static final byte TAG_BYTE = 7;
+    private static final byte TAG_BOOLEAN = 8;
+    private static final byte TAG_CHARACTER = 9;
+    private static final byte TAG_BIG_DECIMAL = 10;
+    private static final byte TAG_BIG_INTEGER = 11;
+    private static final byte TAG_DATE = 12;
+    private static final byte TAG_UUID = 13;
+    private static final byte TAG_BYTES = 14;
+    private static final byte TAG_LIST = 15;
+    private static final byte TAG_MAP = 16;
+    private static final byte TAG_SERIALIZED = 17;
+
+    private final List<String> subjects;
+    private final Map<String, Integer> subjectIndexes;
+
+    public CompactMotechEventCodec() {
+        this(new String[0]);
+    }
+
+    /**
+     * Creates a codec using the given subject dictionary. Blank entries are ignored.
+     *
+     * @param subjectDictionary the subjects to be encoded as indexes, the order of entries matters
+     */
+    public CompactMotechEventCodec(String[] subjectDictionary) {
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+
+        if (subjectDictionary != null) {
+            for (String subject : subjectDictionary) {
+                String trimmed = StringUtils.trimToNull(subject);
+                if (trimmed != null && !indexes.containsKey(trimmed) && dictionary.size() < MAX_DICTIONARY_SIZE) {
+                    indexes.put(trimmed, dictionary.size());
+                    dictionary.add(trimmed);
+                }
+            }
+        }
+
+        this.subjects = Collections.unmodifiableList(dictionary);
+        this.subjectIndexes = Collections.unmodifiableMap(indexes);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(MotechEvent motechEvent) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+
+            UUID id = motechEvent.getId();
+            out.writeByte(flags(motechEvent, id));
+            if (id != null) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+
+            out.writeInt(motechEvent.getMessageRedeliveryCount());
+            writeSubject(out, motechEvent.getSubject());
+            writeString(out, motechEvent.getMessageDestination());
+            writeString(out, motechEvent.getCallbackName());
+            writeMap(out, motechEvent.getMetadata());
+            writeMap(out, motechEvent.getParameters());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version of an encoded event: " + version);
+            }
+
+            int flags = in.readByte();
+            UUID id = ((flags & FLAG_HAS_ID) != 0) ? new UUID(in.readLong(), in.readLong()) : null;
+
+            int redeliveryCount = in.readInt();
+            String subject = readSubject(in);
+            String messageDestination = readString(in);
+            String callbackName = readString(in);
+            Map<String, Object> metadata = readStringKeyedMap(in);
+            Map<String, Object> parameters = readStringKeyedMap(in);
+
+            MotechEvent motechEvent = new MotechEvent(subject, parameters, callbackName, metadata);
+            motechEvent.setId(id);
+            motechEvent.setInvalid((flags & FLAG_INVALID) != 0);
+            motechEvent.setDiscarded((flags & FLAG_DISCARDED) != 0);
+            motechEvent.setBroadcast((flags & FLAG_BROADCAST) != 0);
+            motechEvent.setMessageRedeliveryCount(redeliveryCount);
+            motechEvent.setMessageDestination(messageDestination);
+
+            return motechEvent;
+        }
+    }
+
+    private int flags(MotechEvent motechEvent, UUID id) {
+        int flags = 0;
+        if (motechEvent.isInvalid()) {
+            flags |= FLAG_INVALID;
+        }
+        if (motechEvent.isDiscarded()) {
+            flags |= FLAG_DISCARDED;
+        }
+        if (motechEvent.isBroadcast()) {
+            flags |= FLAG_BROADCAST;
+        }
+        if (id != null) {
+            flags |= FLAG_HAS_ID;
+        }
+        return flags;
+    }
+
+    private void writeSubject(DataOutputStream out, String subject) throws IOException {
+        Integer index = subjectIndexes.get(subject);
+        if (index == null) {
+            out.writeShort(NO_DICTIONARY_ENTRY);
+            writeString(out, subject);
+        } else {
+            out.writeShort(index);
+        }
+    }
+
+    private String readSubject(DataInputStream in) throws IOException {
+        int index = in.readShort();
+        if (index == NO_DICTIONARY_ENTRY) {
+            return readString(in);
+        } else if (index < 0 || index >= subjects.size()) {
+            throw new IOException("Subject index " + index + " is not present in the subject dictionary");
+        }
+        return subjects.get(index);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return (bytes == null) ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        if (map == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readStringKeyedMap(DataInputStream in) throws IOException {
+        return (Map) readMap(in);
+    }
+
+    private Map<Object, Object> readMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private void writeList(DataOutputStream out, List<?> list) throws IOException {
+        out.writeInt(list.size());
+        for (Object element : list) {
+            writeValue(out, element);
+        }
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(in));
+        }
+        return list;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException { //NO CHECKSTYLE CyclomaticComplexity
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TAG_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value.getClass() == BigDecimal.class) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value.getClass() == BigInteger.class) {
+            out.writeByte(TAG_BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(TAG_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof UUID) {
+            out.writeByte(TAG_UUID);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        } else if (value instanceof byte[]) {
+            out.writeByte(TAG_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value.getClass() == ArrayList.class) {
+            out.writeByte(TAG_LIST);
+            writeList(out, (List<?>) value);
+        } else if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+            out.writeByte(TAG_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else {
+            out.writeByte(TAG_SERIALIZED);
+            writeBytes(out, serialize(value));
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException { //NO CHECKSTYLE CyclomaticComplexity
+        byte tag = in.readByte();
+
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_CHARACTER:
+                return in.readChar();
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case TAG_BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case TAG_DATE:
+                return new Date(in.readLong());
+            case TAG_UUID:
+                return new UUID(in.readLong(), in.readLong());
+            case TAG_BYTES:
+                return readBytes(in);
+            case TAG_LIST:
+                return readList(in);
+            case TAG_MAP:
+                return readMap(in);
+            case TAG_SERIALIZED:
+                return deserialize(readBytes(in));
+            default:
+                throw new IOException("Unknown value type tag: " + tag);
+        }
+    }
+
+    private byte[] serialize(Object value) throws IOException {
+        if (!(value instanceof Serializable)) {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to deserialize event value", e);
+        }
+    }
+
+    /**
+     * Resolves classes using the context class loader of the current thread first, falling back to
+     * the class loader of this bundle.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // try with the default class loader
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.log4j.Logger;
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.List;
+
+/**
+ * Publishes a batch of <code>MotechEvent</code>s to the given destination using a single transacted JMS session.
+ * All messages of the batch are sent through one producer and committed once, so the whole batch costs a single
+ * round-trip to the broker. Each event goes through the same transformation and message conversion as events sent
+ * one by one through the {@link org.motechproject.event.messaging.OutboundEventGateway}.
+ */
+public class MotechEventBatchPublisher {
+
+    private static final Logger LOGGER = Logger.getLogger(MotechEventBatchPublisher.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final Destination destination;
+    private final MotechEventTransformer eventTransformer;
+    private final MessageConverter messageConverter;
+    private final JmsTemplate jmsTemplate;
+
+    public MotechEventBatchPublisher(ConnectionFactory connectionFactory, Destination destination,
+                                     MotechEventTransformer eventTransformer, MessageConverter messageConverter) {
+        this.connectionFactory = connectionFactory;
+        this.destination = destination;
+        this.eventTransformer = eventTransformer;
+        this.messageConverter = messageConverter;
+
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
+    }
+
+    /**
+     * Sends all given events in one transaction. If sending any of the events fails, none of them is published.
+     *
+     * @param motechEvents the events to be sent
+     */
+    public void sendEventMessages(final List<MotechEvent> motechEvents) {
+        if (motechEvents == null || motechEvents.isEmpty()) {
+            return;
+        }
+
+        jmsTemplate.execute(new SessionCallback<Void>() {
+            @Override
+            public Void doInJms(Session session) throws JMSException {
+                send(session, motechEvents);
+                return null;
+            }
+        }, true);
+    }
+
+    private void send(Session session, List<MotechEvent> motechEvents) throws JMSException {
+        // If the session takes part in an already running transaction, for example the one of the consumer
+        // handling the current event, it will be committed along with that transaction
+        boolean commit = session.getTransacted() && !ConnectionFactoryUtils.isSessionTransactional(session, connectionFactory);
+        MessageProducer producer = session.createProducer(destination);
+
+        try {
+            for (MotechEvent motechEvent : motechEvents) {
+                MotechEvent event = eventTransformer.transform(motechEvent);
+                producer.send(messageConverter.toMessage(event, session));
+            }
+
+            if (commit) {
+                session.commit();
+            }
+
+            LOGGER.debug("Published a batch of " + motechEvents.size() + " events");
+        } catch (JMSException | RuntimeException e) {
+            if (commit) {
+                JmsUtils.rollbackIfNecessary(session);
+            }
+            throw e;
+        } finally {
+            JmsUtils.closeMessageProducer(producer);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.log4j.Logger;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.EventLaneRouter;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts <code>MotechEvent</code>s to JMS messages and back. Events are encoded with the active
+ * {@link MotechEventCodec} and carried as a <code>BytesMessage</code>, with the name of the codec stored in the
+ * {@link #CODEC_PROPERTY} message property. If the name of the active codec is {@link #JAVA_SERIALIZATION}, events
+ * are sent as <code>ObjectMessage</code>s using Java serialization. Incoming messages are always decoded using the
+ * codec they were encoded with, so nodes using different codecs can exchange events, as long as every codec is
+ * known on the receiving end. Also sets the <code>AMQ_SCHEDULED_DELAY</code> of messages carrying redelivered events
+ * and the consumer lane of the event, if it belongs to one.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    /**
+     * The name of the message property holding the name of the codec used for encoding the message.
+     */
+    public static final String CODEC_PROPERTY = "motechEventCodec";
+
+    /**
+     * The name of the Java serialization fallback.
+     */
+    public static final String JAVA_SERIALIZATION = "java";
+
+    private static final Logger LOGGER = Logger.getLogger(MotechEventMessageConverter.class);
+
+    private final Map<String, MotechEventCodec> codecs = new HashMap<>();
+    private final MotechEventCodec activeCodec;
+    private final MotechEventHeaderMapper eventHeaderMapper;
+    private final EventLaneRouter eventLaneRouter;
+    private final MessageConverter serializationConverter = new SimpleMessageConverter();
+
+    /**
+     * @param codecs all codecs that can be used for decoding incoming messages
+     * @param activeCodecName the name of the codec used for encoding outgoing messages, or {@link #JAVA_SERIALIZATION}
+     * @param eventHeaderMapper the mapper used for setting the redelivery delay of messages
+     * @param eventLaneRouter the router assigning events to consumer lanes
+     */
+    public MotechEventMessageConverter(List<MotechEventCodec> codecs, String activeCodecName,
+                                       MotechEventHeaderMapper eventHeaderMapper, EventLaneRouter eventLaneRouter) {
+        for (MotechEventCodec codec : codecs) {
+            this.codecs.put(codec.getName(), codec);
+        }
+
+        if (JAVA_SERIALIZATION.equals(activeCodecName)) {
+            this.activeCodec = null;
+        } else if (this.codecs.containsKey(activeCodecName)) {
+            this.activeCodec = this.codecs.get(activeCodecName);
+        } else {
+            throw new IllegalArgumentException("Unknown Motech event codec: " + activeCodecName);
+        }
+
+        this.eventHeaderMapper = eventHeaderMapper;
+        this.eventLaneRouter = eventLaneRouter;
+
+        LOGGER.info("Using " + activeCodecName + " codec for sending Motech events");
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (!(object instanceof MotechEvent)) {
+            return serializationConverter.toMessage(object, session);
+        }
+
+        MotechEvent motechEvent = (MotechEvent) object;
+        Message message;
+
+        if (activeCodec == null) {
+            message = serializationConverter.toMessage(motechEvent, session);
+        } else {
+            BytesMessage bytesMessage = session.createBytesMessage();
+            bytesMessage.writeBytes(encode(motechEvent));
+            bytesMessage.setStringProperty(CODEC_PROPERTY, activeCodec.getName());
+            message = bytesMessage;
+        }
+
+        eventHeaderMapper.setScheduledDelay(motechEvent, message);
+
+        String lane = (eventLaneRouter == null || motechEvent.isBroadcast()) ? null :
+                eventLaneRouter.getLane(motechEvent.getSubject());
+        if (lane != null) {
+            message.setStringProperty(EventLaneRouter.LANE_PROPERTY, lane);
+        }
+
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        String codecName = message.getStringProperty(CODEC_PROPERTY);
+        if (codecName == null || !(message instanceof BytesMessage)) {
+            return serializationConverter.fromMessage(message);
+        }
+
+        MotechEventCodec codec = codecs.get(codecName);
+        if (codec == null) {
+            throw new MessageConversionException("Unable to decode a message encoded with unknown codec " + codecName);
+        }
+
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+
+        try {
+            return codec.decode(bytes);
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to decode a message using codec " + codecName, e);
+        }
+    }
+
+    private byte[] encode(MotechEvent motechEvent) {
+        try {
+            return activeCodec.encode(motechEvent);
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to encode " + motechEvent + " using codec " + activeCodec.getName(), e);
+        }
+    }
+}
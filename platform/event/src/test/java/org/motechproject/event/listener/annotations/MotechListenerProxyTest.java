@@ -0,0 +1,108 @@
+package org.motechproject.event.listener.annotations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MotechListenerProxyTest {
+
+    private Handlers handlers;
+
+    @Before
+    public void setUp() {
+        handlers = new Handlers();
+    }
+
+    @Test
+    public void shouldPassEventToHandler() throws NoSuchMethodException {
+        MotechEvent event = new MotechEvent("subject");
+
+        new MotechListenerEventProxy("event", handlers, Handlers.class.getMethod("handleEvent", MotechEvent.class))
+                .handle(event);
+
+        assertSame(event, handlers.event);
+    }
+
+    @Test
+    public void shouldPassNamedParametersToHandler() throws NoSuchMethodException {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("id", "id0012");
+        event.getParameters().put("count", 3);
+
+        new MotechListenerNamedParametersProxy("named", handlers,
+                Handlers.class.getMethod("handleParameters", String.class, int.class)).handle(event);
+
+        assertEquals("id0012", handlers.id);
+        assertEquals(3, handlers.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailWhenNamedParameterIsMissing() throws NoSuchMethodException {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("id", "id0012");
+
+        new MotechListenerNamedParametersProxy("named", handlers,
+                Handlers.class.getMethod("handleParameters", String.class, int.class)).handle(event);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailWhenParameterIsNotAnnotated() throws NoSuchMethodException {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put("id", "id0012");
+
+        new MotechListenerNamedParametersProxy("named", handlers,
+                Handlers.class.getMethod("handleUnnamed", String.class)).handle(event);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowRuntimeExceptionsOfHandler() throws NoSuchMethodException {
+        new MotechListenerEventProxy("failing", handlers, Handlers.class.getMethod("fail", MotechEvent.class))
+                .handle(new MotechEvent("subject"));
+    }
+
+    @Test
+    public void shouldWrapCheckedExceptionsOfHandler() throws NoSuchMethodException {
+        try {
+            new MotechListenerEventProxy("failing", handlers, Handlers.class.getMethod("failChecked", MotechEvent.class))
+                    .handle(new MotechEvent("subject"));
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            return;
+        }
+        throw new AssertionError("Exception of the handler was not rethrown");
+    }
+
+    public static class Handlers {
+        private MotechEvent event;
+        private String id;
+        private int count;
+
+        public void handleEvent(MotechEvent event) {
+            this.event = event;
+        }
+
+        public void handleParameters(@MotechParam("id") String id, @MotechParam("count") int count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        public void handleUnnamed(String id) {
+            this.id = id;
+        }
+
+        public void fail(MotechEvent event) {
+            throw new IllegalStateException("failed");
+        }
+
+        public void failChecked(MotechEvent event) throws IOException {
+            throw new IOException("failed");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventLaneRouterTest {
+
+    private EventLaneRouter router;
+
+    @Before
+    public void setUp() {
+        Properties config = new Properties();
+        config.setProperty("jms.lanes", "sms, critical, in-valid");
+        config.setProperty("jms.lane.sms.subjects", "org.motechproject.sms.*");
+        config.setProperty("jms.lane.sms.priority", "3");
+        config.setProperty("jms.lane.sms.concurrency", "1-2");
+        config.setProperty("jms.lane.sms.backlog", "50");
+        config.setProperty("jms.lane.critical.subjects", "org.motechproject.sms.critical, org.motechproject.alert.*");
+        config.setProperty("jms.lane.critical.priority", "9");
+
+        router = new EventLaneRouter(config);
+    }
+
+    @Test
+    public void shouldReadLanesOrderedByPriority() {
+        List<EventLane> lanes = router.getLanes();
+
+        assertEquals(2, lanes.size());
+        assertEquals("critical", lanes.get(0).getName());
+        assertEquals(9, lanes.get(0).getPriority());
+        assertEquals("1", lanes.get(0).getConcurrency());
+        assertEquals("sms", lanes.get(1).getName());
+        assertEquals("1-2", lanes.get(1).getConcurrency());
+        assertEquals(50, lanes.get(1).getBacklog());
+    }
+
+    @Test
+    public void shouldRouteSubjectsToLanes() {
+        assertEquals("sms", router.getLane("org.motechproject.sms.send"));
+        assertEquals("critical", router.getLane("org.motechproject.sms.critical"));
+        assertEquals("critical", router.getLane("org.motechproject.alert.raised"));
+        assertNull(router.getLane("org.motechproject.email.send"));
+        assertNull(router.getLane("org.motechproject.email.send"));
+    }
+
+    @Test
+    public void shouldBuildSelectors() {
+        assertEquals("motechEventLane = 'sms'", router.getSelector(router.getLanes().get(1)));
+        assertEquals("motechEventLane IS NULL OR motechEventLane NOT IN ('critical', 'sms')", router.getDefaultSelector());
+        assertEquals("", new EventLaneRouter(new Properties()).getDefaultSelector());
+    }
+}
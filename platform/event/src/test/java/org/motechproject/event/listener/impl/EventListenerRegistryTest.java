@@ -18,6 +18,7 @@ import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -249,6 +250,37 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void shouldReturnRegisteredListenersAfterSubjectWasResolved() {
+        EventListener sel = new SampleEventListener();
+        EventListener se2 = new OtherSampleEventListener();
+
+        registry.registerListener(sel, "org.motechproject.server.someevent");
+        assertEquals(1, registry.getListeners("org.motechproject.server.someevent").size());
+
+        registry.registerListener(se2, "org.motechproject.server.*");
+
+        Set<EventListener> el = registry.getListeners("org.motechproject.server.someevent");
+        assertEquals(2, el.size());
+        assertTrue(el.contains(sel));
+        assertTrue(el.contains(se2));
+    }
+
+    @Test
+    public void shouldReturnSameListenerSetForRepeatedLookups() {
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.*");
+
+        assertSame(registry.getListeners("org.motechproject.server.someevent"),
+                registry.getListeners("org.motechproject.server.someevent"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowModifyingReturnedListeners() {
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.someevent");
+
+        registry.getListeners("org.motechproject.server.someevent").add(new FooEventListener());
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
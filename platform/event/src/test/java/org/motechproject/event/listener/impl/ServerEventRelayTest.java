@@ -13,6 +13,7 @@ import org.motechproject.event.domain.BuggyListener;
 import org.motechproject.event.exception.CallbackServiceNotFoundException;
 import org.motechproject.event.listener.EventCallbackService;
 import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventMetrics;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
 import org.osgi.framework.BundleContext;
@@ -23,6 +24,7 @@ import org.osgi.service.event.EventAdmin;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.core.Is.is;
@@ -30,8 +32,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -74,11 +78,18 @@ public class ServerEventRelayTest {
     @Mock
     private EventCallbackService callbackService;
 
+    @Mock
+    private LocalEventDispatcher localEventDispatcher;
+
+    private EventMetricsRecorder eventMetrics;
+
     private ServerEventRelay eventRelay;
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin, bundleContext);
+        eventMetrics = new EventMetricsRecorder();
+        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin, bundleContext,
+                localEventDispatcher, eventMetrics);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -98,7 +109,8 @@ public class ServerEventRelayTest {
         motechEvent.setCallbackName(TEST_SERVICE_CALLBACK);
         setUpListeners(SUBJECT, eventListener);
 
-        when(bundleContext.getServiceReferences(EventCallbackService.class, null)).thenReturn(Arrays.asList(serviceReference));
+        when(bundleContext.getServiceReferences(EventCallbackService.class.getName(), null))
+                .thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(callbackService);
         when(callbackService.getName()).thenReturn(TEST_SERVICE_CALLBACK);
 
@@ -126,7 +138,8 @@ public class ServerEventRelayTest {
         motechEvent.setCallbackName(TEST_SERVICE_CALLBACK);
         setUpListeners(SUBJECT, eventListener);
 
-        when(bundleContext.getServiceReferences(EventCallbackService.class, null)).thenReturn(Arrays.asList(serviceReference));
+        when(bundleContext.getServiceReferences(EventCallbackService.class.getName(), null))
+                .thenReturn(new ServiceReference[]{serviceReference});
         when(bundleContext.getService(serviceReference)).thenReturn(callbackService);
         when(callbackService.getName()).thenReturn(TEST_SERVICE_CALLBACK);
         RuntimeException initCause = new RuntimeException();
@@ -152,15 +165,75 @@ public class ServerEventRelayTest {
         setUpListeners(SUBJECT, eventListener, secondaryEventListener);
         eventRelay.sendEventMessage(motechEvent);
 
+        ArgumentCaptor<List> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboundEventGateway).sendEventMessages(argumentCaptor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> capturedEvents = argumentCaptor.getValue();
+        assertEquals(2, capturedEvents.size());
+        assertEquals(capturedEvents.get(0).getMessageDestination(), LISTENER_IDENTIFIER);
+        assertEquals(capturedEvents.get(1).getMessageDestination(), SECONDARY_LISTENER_IDENTIFIER);
+    }
+
+    @Test
+    public void shouldSendSingleMessageWhenThereIsOneListener() throws Exception {
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener);
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+        verify(outboundEventGateway, never()).sendEventMessages(any(List.class));
+
+        assertEquals(LISTENER_IDENTIFIER, argumentCaptor.getValue().getMessageDestination());
+    }
+
+    @Test
+    public void shouldDeliverLocalSubjectsWithoutBroker() throws Exception {
+        setUpLocalDelivery(true);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(argumentCaptor.capture());
+        verify(secondaryEventListener).handle(any(MotechEvent.class));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+        verify(outboundEventGateway, never()).sendEventMessages(any(List.class));
+
+        assertEquals(LISTENER_IDENTIFIER, argumentCaptor.getValue().getMessageDestination());
+        assertEquals("value", argumentCaptor.getValue().getParameters().get("test"));
+    }
+
+    @Test
+    public void shouldSendLocalSubjectsThroughBrokerWhenLocalDeliveryIsFull() throws Exception {
+        setUpLocalDelivery(false);
+        MotechEvent motechEvent = createEvent();
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(motechEvent);
+
         ArgumentCaptor<MotechEvent> argumentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
-        verify(outboundEventGateway, times(2)).sendEventMessage(argumentCaptor.capture());
-        MotechEvent capturedEvent;
+        verify(outboundEventGateway).sendEventMessage(argumentCaptor.capture());
+        verify(eventListener, never()).handle(any(MotechEvent.class));
 
-        capturedEvent = argumentCaptor.getAllValues().get(0);
-        assertEquals(capturedEvent.getMessageDestination(), LISTENER_IDENTIFIER);
+        assertEquals(LISTENER_IDENTIFIER, argumentCaptor.getValue().getMessageDestination());
+    }
 
-        capturedEvent = argumentCaptor.getAllValues().get(1);
-        assertEquals(capturedEvent.getMessageDestination(), SECONDARY_LISTENER_IDENTIFIER);
+    @Test
+    public void shouldRedeliverFailedLocalEventsLocally() throws Exception {
+        setUpLocalDelivery(true);
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        when(motechEventConfig.getMessageRedeliveryDelayMillis(1)).thenReturn(1000L);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        verify(eventListener, times(3)).handle(any(MotechEvent.class));
+        verify(localEventDispatcher).dispatchLater(any(Runnable.class), any(Runnable.class), eq(1000L));
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -244,6 +317,29 @@ public class ServerEventRelayTest {
         assertFalse(handled.getValue());
     }
 
+    @Test
+    public void shouldRecordMetricsOfHandledEvents() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        doThrow(new RuntimeException()).doNothing().when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.relayQueueEvent(createEvent(LISTENER_IDENTIFIER));
+        eventRelay.relayQueueEvent(createEvent(LISTENER_IDENTIFIER));
+
+        EventMetrics metrics = eventMetrics.getMetrics();
+        assertEquals(1, metrics.getHandled());
+        assertEquals(1, metrics.getFailed());
+        assertEquals(1, metrics.getRedelivered());
+        assertEquals(0, metrics.getDiscarded());
+        assertEquals(0, metrics.getInFlight());
+
+        assertEquals(1, metrics.getSubjects().size());
+        assertEquals(SUBJECT, metrics.getSubjects().get(0).getName());
+        assertEquals(1, metrics.getListeners().size());
+        assertEquals(LISTENER_IDENTIFIER, metrics.getListeners().get(0).getName());
+        assertEquals(1, metrics.getListeners().get(0).getHandled());
+    }
+
     @Test
     public void shouldProxyBroadcastEventsInOSGi() {
         Map<String, Object> params =  new HashMap<>();
@@ -270,6 +366,27 @@ public class ServerEventRelayTest {
         return new MotechEvent(SUBJECT, parameters);
     }
 
+    private void setUpLocalDelivery(final boolean accepting) {
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.isLocalSubject(SUBJECT)).thenReturn(true);
+        when(localEventDispatcher.dispatch(any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocationOnMock) throws Throwable {
+                if (accepting) {
+                    ((Runnable) invocationOnMock.getArguments()[0]).run();
+                }
+                return accepting;
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
+                ((Runnable) invocationOnMock.getArguments()[0]).run();
+                return null;
+            }
+        }).when(localEventDispatcher).dispatchLater(any(Runnable.class), any(Runnable.class), anyLong());
+    }
+
     private void setUpListeners(String subject, EventListener... listeners) {
         when(registry.getListeners(eq(subject))).thenReturn(new LinkedHashSet<>(Arrays.asList(listeners)));
     }
@@ -0,0 +1,103 @@
+package org.motechproject.event.messaging.impl;
+
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactMotechEventCodecTest {
+
+    private static final String SUBJECT = "org.motechproject.server.someevent";
+
+    @Test
+    public void shouldEncodeAndDecodeEvent() throws IOException {
+        CompactMotechEventCodec codec = new CompactMotechEventCodec();
+
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("key", 1L);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "value");
+        parameters.put("int", 5);
+        parameters.put("long", 6L);
+        parameters.put("double", 1.5);
+        parameters.put("boolean", true);
+        parameters.put("decimal", new BigDecimal("12.345"));
+        parameters.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        parameters.put("date", new Date(1000L));
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("list", new ArrayList<>(Arrays.asList("a", 2, null)));
+        parameters.put("map", nested);
+        parameters.put("serialized", Locale.US);
+        parameters.put("null", null);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("meta", "data");
+
+        MotechEvent event = new MotechEvent(SUBJECT, parameters, "callback", metadata);
+        event.setId(UUID.randomUUID());
+        event.setInvalid(true);
+        event.setMessageRedeliveryCount(2);
+        event.setMessageDestination("destination");
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+    }
+
+    @Test
+    public void shouldDecodeByteArrayParameters() throws IOException {
+        CompactMotechEventCodec codec = new CompactMotechEventCodec();
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("bytes", new byte[]{1, 2, 3});
+
+        MotechEvent decoded = codec.decode(codec.encode(new MotechEvent(SUBJECT, parameters)));
+
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) decoded.getParameters().get("bytes"));
+    }
+
+    @Test
+    public void shouldEncodeSubjectsFromDictionaryAsIndexes() throws IOException {
+        CompactMotechEventCodec codec = new CompactMotechEventCodec();
+        CompactMotechEventCodec dictionaryCodec = new CompactMotechEventCodec(new String[]{"other.subject", SUBJECT});
+
+        MotechEvent event = new MotechEvent(SUBJECT);
+
+        byte[] plain = codec.encode(event);
+        byte[] withDictionary = dictionaryCodec.encode(event);
+
+        assertTrue(withDictionary.length < plain.length);
+        assertEquals(SUBJECT, dictionaryCodec.decode(withDictionary).getSubject());
+        assertEquals(SUBJECT, dictionaryCodec.decode(plain).getSubject());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailForUnknownDictionaryIndex() throws IOException {
+        CompactMotechEventCodec dictionaryCodec = new CompactMotechEventCodec(new String[]{SUBJECT});
+
+        new CompactMotechEventCodec().decode(dictionaryCodec.encode(new MotechEvent(SUBJECT)));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailForNonSerializableValues() throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("object", new Object());
+
+        new CompactMotechEventCodec().encode(new MotechEvent(SUBJECT, parameters));
+    }
+}
@@ -1,6 +1,7 @@
 package org.motechproject.mds.web.controller;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -47,11 +48,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 import static org.apache.commons.lang.CharEncoding.UTF_8;
 
@@ -254,6 +257,7 @@ public class InstanceController extends MdsController {
     public void exportEntityInstances(@PathVariable Long entityId, GridSettings settings,
                                       @RequestParam String exportRecords,
                                       @RequestParam String outputFormat,
+                                      @RequestParam(defaultValue = "false") boolean gzip,
                                       HttpServletResponse response) throws IOException {
         if (!Constants.ExportFormat.isValidFormat(outputFormat)) {
             throw new IllegalArgumentException("Invalid export format: " + outputFormat);
@@ -274,7 +278,22 @@ public class InstanceController extends MdsController {
 
         QueryParams queryParams = new QueryParams(1, pageSize, QueryParamsBuilder.buildOrderList(settings, fieldMap));
 
-        if (Constants.ExportFormat.PDF.equals(outputFormat)) {
+        if (gzip) {
+            // the browser decompresses the file while it is downloaded
+            response.setHeader("Content-Encoding", "gzip");
+            GZIPOutputStream gzipOutput = new GZIPOutputStream(response.getOutputStream());
+            try {
+                if (Constants.ExportFormat.PDF.equals(outputFormat)) {
+                    csvImportExportService.exportPdf(entityId, gzipOutput, settings.getLookup(), queryParams,
+                            settings.getSelectedFields(), fieldMap);
+                } else {
+                    csvImportExportService.exportCsv(entityId, new OutputStreamWriter(gzipOutput, UTF_8),
+                            settings.getLookup(), queryParams, settings.getSelectedFields(), fieldMap);
+                }
+            } finally {
+                IOUtils.closeQuietly(gzipOutput);
+            }
+        } else if (Constants.ExportFormat.PDF.equals(outputFormat)) {
             csvImportExportService.exportPdf(entityId, response.getOutputStream(), settings.getLookup(), queryParams,
                     settings.getSelectedFields(), fieldMap);
         } else {
@@ -12,6 +12,7 @@ import org.motechproject.mds.exception.rest.RestNotSupportedException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.web.exception.InvalidParameterException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +30,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.jdo.JDOUserException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -89,6 +91,41 @@ public class MdsRestController  {
         return doGet(entityName, null, null, requestParams, null);
     }
 
+    @RequestMapping(value = "/stream/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET)
+    public void stream(@PathVariable String moduleName, @PathVariable String namespace,
+                       @PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                       HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, namespace, requestParams, response);
+    }
+
+    @RequestMapping(value = "/stream/{moduleName}/{entityName}", method = RequestMethod.GET)
+    public void stream(@PathVariable String moduleName, @PathVariable String entityName,
+                       @RequestParam Map<String, String> requestParams, HttpServletResponse response) throws IOException {
+        doStream(entityName, moduleName, null, requestParams, response);
+    }
+
+    @RequestMapping(value = "/stream/{entityName}", method = RequestMethod.GET)
+    public void stream(@PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                       HttpServletResponse response) throws IOException {
+        doStream(entityName, null, null, requestParams, response);
+    }
+
+    private void doStream(String entityName, String moduleName, String namespace, Map<String, String> requestParams,
+                          HttpServletResponse response) throws IOException {
+        debugRequest("GET (stream)", entityName, moduleName, namespace);
+
+        RestCursor cursor = ParamParser.buildCursor(requestParams);
+        Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        // instances are written to the response while they are read from the database
+        restFacade.stream(cursor, includeBlob != null && includeBlob, response.getOutputStream());
+    }
+
     private Object doGet(String entityName, String moduleName, String namespace,
                        Map<String, String> requestParams, String pathLookupName) {
         debugRequest("GET", entityName, moduleName, namespace);
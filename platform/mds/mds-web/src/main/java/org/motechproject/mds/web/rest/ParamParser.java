@@ -2,6 +2,7 @@ package org.motechproject.mds.web.rest;
 
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.web.exception.InvalidParameterException;
 
@@ -20,6 +21,8 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String AFTER = "after";
+    public static final String INCLUDE_TOTAL_COUNT = "includeTotalCount";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -48,6 +51,25 @@ public final class ParamParser {
         return new QueryParams(page, pageSize, order);
     }
 
+    public static RestCursor buildCursor(Map<String, String> requestParams) {
+        int pageSize;
+
+        try {
+            pageSize = getInteger(requestParams, PAGE_SIZE, 20);
+        } catch (NumberFormatException e) {
+            throw new InvalidParameterException("Given page size is not a number!", e);
+        }
+
+        if (pageSize <= 0) {
+            throw new InvalidParameterException("Given page size is not a positive number!");
+        }
+
+        Boolean includeTotalCount = getBoolean(requestParams, INCLUDE_TOTAL_COUNT);
+
+        return new RestCursor(requestParams.get(SORT_BY), requestParams.get(AFTER), pageSize,
+                includeTotalCount != null && includeTotalCount);
+    }
+
     public static String getLookupName(Map<String, String> requestParams) {
         return requestParams.get(LOOKUP_NAME);
     }
@@ -66,23 +88,27 @@ public final class ParamParser {
     }
 
     public static Boolean getIncludeBlob(Map<String, String> requestParams) {
+        return getBoolean(requestParams, INCLUDE_BLOB);
+    }
+
+    private static Boolean getBoolean(Map<String, String> requestParams, String key) {
 
-        Boolean includeBlob = null;
+        Boolean result = null;
 
-        if (requestParams.containsKey(INCLUDE_BLOB)) {
+        if (requestParams.containsKey(key)) {
 
-            String value = requestParams.get(INCLUDE_BLOB);
+            String value = requestParams.get(key);
 
             if (value.toLowerCase().equals("true")) {
-                includeBlob = Boolean.TRUE;
+                result = Boolean.TRUE;
             } else if (value.toLowerCase().equals("false")) {
-                includeBlob = Boolean.FALSE;
+                result = Boolean.FALSE;
             } else {
-                throw new InvalidParameterException("The \"includeBlob\" is neither \"true\" nor \"false\"");
+                throw new InvalidParameterException(String.format("The \"%s\" is neither \"true\" nor \"false\"", key));
             }
         }
 
-        return includeBlob;
+        return result;
     }
 
     private static Integer getInteger(Map<String, String> requestParams, String key, Integer defaultVal) {
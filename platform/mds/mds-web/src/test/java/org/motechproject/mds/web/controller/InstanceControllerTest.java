@@ -1,5 +1,6 @@
 package org.motechproject.mds.web.controller;
 
+import org.apache.commons.io.IOUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -7,7 +8,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportExportService;
@@ -24,11 +27,16 @@ import org.motechproject.testing.utils.rest.RestTestUtil;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
@@ -36,7 +44,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.server.request.MockMvcRequestBuilders.post;
@@ -77,7 +88,7 @@ public class InstanceControllerTest {
         GridSettings gridSettings = new GridSettings();
         gridSettings.setLookup("lookup");
 
-        instanceController.exportEntityInstances(1L, gridSettings, "all", "csv", response);
+        instanceController.exportEntityInstances(1L, gridSettings, "all", "csv", false, response);
 
         verify(instanceService).verifyEntityAccess(1L);
         verify(csvImportExportService).exportCsv(eq(1L), eq(writer), eq("lookup"), captor.capture(), any(List.class), any(Map.class));
@@ -105,7 +116,7 @@ public class InstanceControllerTest {
         gridSettings.setSelectedFields(asList("id", "date"));
         gridSettings.setLookup("lookup");
 
-        instanceController.exportEntityInstances(1L, gridSettings, "50", "csv", response);
+        instanceController.exportEntityInstances(1L, gridSettings, "50", "csv", false, response);
 
         verify(instanceService).verifyEntityAccess(1L);
         verify(csvImportExportService).exportCsv(eq(1L), eq(writer), eq("lookup"), queryParamsCaptor.capture(), listCaptor.capture(), any(Map.class));
@@ -124,6 +135,34 @@ public class InstanceControllerTest {
         assertTrue(listCaptor.getValue().contains("date"));
     }
 
+    @Test
+    public void shouldExportInstancesAsGzippedCsv() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+        });
+        doAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                Writer csvWriter = (Writer) invocation.getArguments()[1];
+                csvWriter.write("ID\r\n1\r\n");
+                csvWriter.flush();
+                return 1L;
+            }
+        }).when(csvImportExportService).exportCsv(eq(1L), any(Writer.class), anyString(), any(QueryParams.class),
+                any(List.class), any(Map.class));
+
+        instanceController.exportEntityInstances(1L, new GridSettings(), "all", "csv", true, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response, never()).getWriter();
+        assertEquals("ID\r\n1\r\n", IOUtils.toString(new GZIPInputStream(
+                new ByteArrayInputStream(output.toByteArray())), "UTF-8"));
+    }
+
     @Test
     public void shouldRetrieveRelatedFieldValues() throws Exception {
         Records<BasicEntityRecord> records = new Records<>(2, 5, 7, recordsList());
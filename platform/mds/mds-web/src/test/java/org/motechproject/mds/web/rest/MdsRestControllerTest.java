@@ -18,6 +18,7 @@ import org.motechproject.mds.exception.rest.RestNotSupportedException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.rest.RestProjection;
 import org.motechproject.mds.rest.RestResponse;
 import org.motechproject.mds.util.Order;
@@ -27,6 +28,7 @@ import org.springframework.test.web.server.setup.MockMvcBuilders;
 
 import javax.validation.ConstraintViolationException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +36,10 @@ import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
@@ -98,6 +103,41 @@ public class MdsRestControllerTest {
         testRead(ENTITY_NAME, MODULE_NAME, NAMESPACE);
     }
 
+    @Test
+    public void shouldStreamInstancesAfterTheGivenValue() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE)).thenReturn(restFacade);
+
+        mockMvc.perform(
+                get("/rest/stream/" + MODULE_NAME + "/" + NAMESPACE + "/" + ENTITY_NAME +
+                        "?sort=name&after=John&pageSize=50&includeTotalCount=true")
+        ).andExpect(status().isOk());
+
+        ArgumentCaptor<RestCursor> captor = ArgumentCaptor.forClass(RestCursor.class);
+        verify(restFacade).stream(captor.capture(), eq(false), any(OutputStream.class));
+
+        assertEquals(NAME_FIELD, captor.getValue().getField());
+        assertEquals("John", captor.getValue().getAfter());
+        assertEquals(50, captor.getValue().getPageSize());
+        assertTrue(captor.getValue().isIncludeTotalCount());
+    }
+
+    @Test
+    public void shouldStreamInstancesByIdByDefault() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, null, null)).thenReturn(restFacade);
+
+        mockMvc.perform(
+                get("/rest/stream/" + ENTITY_NAME + "?includeBlob=true")
+        ).andExpect(status().isOk());
+
+        ArgumentCaptor<RestCursor> captor = ArgumentCaptor.forClass(RestCursor.class);
+        verify(restFacade).stream(captor.capture(), eq(true), any(OutputStream.class));
+
+        assertEquals("id", captor.getValue().getField());
+        assertNull(captor.getValue().getAfter());
+        assertEquals(20, captor.getValue().getPageSize());
+        assertFalse(captor.getValue().isIncludeTotalCount());
+    }
+
     // POST
 
     @Test
@@ -18,6 +18,9 @@ public interface EntityInfrastructureBuilder {
      * {@link org.motechproject.mds.util.ClassName#getRepositoryName(String)},
      * {@link org.motechproject.mds.util.ClassName#getInterfaceName(String)},
      * {@link org.motechproject.mds.util.ClassName#getServiceClassName(String)}, respectively.
+     * It also builds the {@link org.motechproject.mds.util.FieldAccessor} classes for the entity,
+     * unless it is a DDE, and for its history and trash classes. Their names are generated by
+     * {@link org.motechproject.mds.util.ClassName#getAccessorName(String)}.
      *
      * @param entity an instance of {@link org.motechproject.mds.domain.Entity}
      * @param schemaHolder the current MDS schema holder
@@ -38,7 +38,7 @@ import static javassist.bytecode.SignatureAttribute.TypeParameter;
 
 /**
  * The <code>EntityInfrastructureBuilder</code> class is responsible for building infrastructure for a given entity:
- * repository, interface and service classes. These classes are created only if they are not present
+ * repository, interface, service and field accessor classes. These classes are created only if they are not present
  * in the classpath. This implementation uses javassist in order to construct the classes.
  */
 @Component
@@ -46,6 +46,7 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
     private static final Logger LOGGER = LoggerFactory.getLogger(EntityInfrastructureBuilderImpl.class);
 
     private final ClassPool classPool = MotechClassPool.getDefault();
+    private final FieldAccessorBuilder accessorBuilder = new FieldAccessorBuilder(classPool);
 
     private BundleContext bundleContext;
 
@@ -79,9 +80,35 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
         );
         list.add(new ClassData(serviceClassName, serviceCode));
 
+        // create the field accessors, the accessor of a DDE would not be visible from its bundle
+        if (null != entity) {
+            if (!entity.isDDE()) {
+                addAccessor(list, className);
+            }
+            if (entity.isRecordHistory()) {
+                addAccessor(list, ClassName.getHistoryClassName(className));
+            }
+            addAccessor(list, ClassName.getTrashClassName(className));
+        }
+
         return list;
     }
 
+    private void addAccessor(List<ClassData> list, String className) {
+        CtClass definition = classPool.getOrNull(className);
+
+        if (null != definition) {
+            String accessorClassName = ClassName.getAccessorName(className);
+
+            try {
+                byte[] accessorCode = accessorBuilder.build(accessorClassName, definition);
+                list.add(new ClassData(accessorClassName, accessorCode));
+            } catch (NotFoundException | CannotCompileException | IOException e) {
+                throw new EntityInfrastructureException(accessorClassName, e);
+            }
+        }
+    }
+
     private byte[] getRepositoryCode(String repositoryClassName, String typeName, Integer fetchDepth) {
         try {
             CtClass superClass = classPool.getCtClass(MotechDataRepository.class.getName());
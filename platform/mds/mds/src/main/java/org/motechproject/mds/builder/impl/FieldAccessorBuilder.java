@@ -0,0 +1,208 @@
+package org.motechproject.mds.builder.impl;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.CtNewMethod;
+import javassist.CtPrimitiveType;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.PropertyUtil;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The <code>FieldAccessorBuilder</code> class creates an implementation of {@link FieldAccessor} for the given
+ * class. The implementation calls the getters and setters of the class directly, for each field that has
+ * both a getter and a setter. Other fields, and values that are null for a primitive field or do not match the type
+ * of the field, are read and written through {@link PropertyUtil}, which converts or skips them.
+ */
+class FieldAccessorBuilder {
+    private static final String GETTER_PREFIX = "get";
+    private static final String BOOLEAN_GETTER_PREFIX = "is";
+    private static final String SETTER_PREFIX = "set";
+
+    private final ClassPool classPool;
+
+    FieldAccessorBuilder(ClassPool classPool) {
+        this.classPool = classPool;
+    }
+
+    byte[] build(String accessorClassName, CtClass definition)
+            throws NotFoundException, CannotCompileException, IOException {
+        Map<String, CtMethod> getters = new TreeMap<>();
+        Map<String, CtMethod> setters = new TreeMap<>();
+        findAccessorMethods(definition, getters, setters);
+
+        // we only use the fields that can be both read and written
+        getters.keySet().retainAll(setters.keySet());
+        setters.keySet().retainAll(getters.keySet());
+
+        // if the class is already declared we defrost it, so that it can be replaced
+        CtClass existing = classPool.getOrNull(accessorClassName);
+        if (existing != null) {
+            existing.defrost();
+        }
+
+        CtClass accessor = classPool.makeClass(accessorClassName);
+        accessor.addInterface(classPool.getCtClass(FieldAccessor.class.getName()));
+
+        accessor.addField(CtField.make(fieldNamesField(getters), accessor));
+        accessor.addMethod(CtNewMethod.make(
+                "public java.util.Set getFieldNames() { return FIELD_NAMES; }", accessor));
+        accessor.addMethod(CtNewMethod.make(getMethod(definition, getters), accessor));
+        accessor.addMethod(CtNewMethod.make(setMethod(definition, setters), accessor));
+
+        return accessor.toBytecode();
+    }
+
+    private void findAccessorMethods(CtClass definition, Map<String, CtMethod> getters,
+                                     Map<String, CtMethod> setters) throws NotFoundException {
+        List<CtMethod> methods = new ArrayList<>();
+        for (CtMethod method : definition.getMethods()) {
+            int modifiers = method.getModifiers();
+            int accessFlags = method.getMethodInfo2().getAccessFlags();
+
+            // bridge methods would make the getters and setters ambiguous
+            if (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers)
+                    && (accessFlags & (AccessFlag.BRIDGE | AccessFlag.SYNTHETIC)) == 0) {
+                methods.add(method);
+            }
+        }
+
+        for (CtMethod method : methods) {
+            String name = method.getName();
+            CtClass returnType = method.getReturnType();
+
+            if (method.getParameterTypes().length > 0) {
+                continue;
+            }
+
+            if (isAccessorName(name, GETTER_PREFIX) && returnType != CtClass.voidType && !"getClass".equals(name)) {
+                getters.put(propertyName(name, GETTER_PREFIX), method);
+            } else if (isAccessorName(name, BOOLEAN_GETTER_PREFIX) && returnType == CtClass.booleanType) {
+                getters.put(propertyName(name, BOOLEAN_GETTER_PREFIX), method);
+            }
+        }
+
+        for (CtMethod method : methods) {
+            String name = method.getName();
+            CtClass[] paramTypes = method.getParameterTypes();
+
+            if (paramTypes.length != 1 || !isAccessorName(name, SETTER_PREFIX)
+                    || method.getReturnType() != CtClass.voidType) {
+                continue;
+            }
+
+            // with overloaded setters, we use the one taking the type returned by the getter
+            String field = propertyName(name, SETTER_PREFIX);
+            CtMethod getter = getters.get(field);
+            if (getter != null && getter.getReturnType().getName().equals(paramTypes[0].getName())) {
+                setters.put(field, method);
+            }
+        }
+    }
+
+    private boolean isAccessorName(String methodName, String prefix) {
+        return methodName.startsWith(prefix) && methodName.length() > prefix.length();
+    }
+
+    private String fieldNamesField(Map<String, CtMethod> getters) {
+        StringBuilder names = new StringBuilder();
+        for (String field : getters.keySet()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append('"').append(field).append('"');
+        }
+
+        return String.format("private static final java.util.Set FIELD_NAMES = java.util.Collections.unmodifiableSet(" +
+                "new java.util.LinkedHashSet(java.util.Arrays.asList(new String[]{%s})));", names);
+    }
+
+    private String getMethod(CtClass definition, Map<String, CtMethod> getters) throws NotFoundException {
+        StringBuilder body = new StringBuilder();
+        body.append("public Object get(Object instance, String field) {");
+        body.append(definition.getName()).append(" target = (").append(definition.getName()).append(") instance;");
+
+        for (Map.Entry<String, CtMethod> entry : getters.entrySet()) {
+            CtMethod getter = entry.getValue();
+            String value = "target." + getter.getName() + "()";
+
+            body.append("if (\"").append(entry.getKey()).append("\".equals(field)) { return ")
+                    .append(box(getter.getReturnType(), value)).append("; }");
+        }
+
+        // fields without a getter and a setter are read as before
+        body.append("return ").append(PropertyUtil.class.getName()).append(".safeGetProperty(instance, field);");
+        body.append('}');
+
+        return body.toString();
+    }
+
+    private String setMethod(CtClass definition, Map<String, CtMethod> setters) throws NotFoundException {
+        StringBuilder body = new StringBuilder();
+        body.append("public void set(Object instance, String field, Object value) {");
+        body.append(definition.getName()).append(" target = (").append(definition.getName()).append(") instance;");
+
+        String safeSet = PropertyUtil.class.getName() + ".safeSetProperty(instance, field, value);";
+
+        for (Map.Entry<String, CtMethod> entry : setters.entrySet()) {
+            CtMethod setter = entry.getValue();
+            CtClass paramType = setter.getParameterTypes()[0];
+
+            // values the setter can not take are written as before
+            body.append("if (\"").append(entry.getKey()).append("\".equals(field)) { ")
+                    .append("if (").append(accepts(paramType, "value")).append(") { target.")
+                    .append(setter.getName()).append('(').append(unbox(paramType, "value")).append("); return; } ")
+                    .append(safeSet).append(" return; }");
+        }
+
+        // fields without a getter and a setter are written as before
+        body.append(safeSet);
+        body.append('}');
+
+        return body.toString();
+    }
+
+    private String box(CtClass type, String value) {
+        if (type.isPrimitive()) {
+            CtPrimitiveType primitiveType = (CtPrimitiveType) type;
+            return String.format("%s.valueOf(%s)", primitiveType.getWrapperName(), value);
+        } else {
+            return value;
+        }
+    }
+
+    private String accepts(CtClass type, String value) {
+        if (type.isPrimitive()) {
+            CtPrimitiveType primitiveType = (CtPrimitiveType) type;
+            return String.format("%s instanceof %s", value, primitiveType.getWrapperName());
+        } else {
+            return String.format("%s == null || %s instanceof %s", value, value, type.getName());
+        }
+    }
+
+    private String unbox(CtClass type, String value) {
+        if (type.isPrimitive()) {
+            CtPrimitiveType primitiveType = (CtPrimitiveType) type;
+            return String.format("((%s) %s).%s()", primitiveType.getWrapperName(), value,
+                    primitiveType.getGetMethodName());
+        } else {
+            return String.format("(%s) %s", type.getName(), value);
+        }
+    }
+
+    private String propertyName(String methodName, String prefix) {
+        return Introspector.decapitalize(methodName.substring(prefix.length()));
+    }
+}
@@ -18,6 +18,8 @@ public class CsvImportResults implements Serializable {
     private final String entityModule;
     private final String entityNamespace;
     private final Map<Integer, String> rowErrors;
+    private final int committedRows;
+    private final double rowsPerSecond;
 
     /**
      * @param entity entity for which this import was performed
@@ -27,6 +29,19 @@ public class CsvImportResults implements Serializable {
      */
     public CsvImportResults(EntityDto entity, List<Long> newInstanceIDs, List<Long> updatedInstanceIDs,
                             Map<Integer, String> rowErrors) {
+        this(entity, newInstanceIDs, updatedInstanceIDs, rowErrors, 0, 0);
+    }
+
+    /**
+     * @param entity entity for which this import was performed
+     * @param newInstanceIDs a list of IDs for instances that were newly created during import
+     * @param updatedInstanceIDs a list of IDs for instances that were updated during import
+     * @param rowErrors a list of errors thrown during import
+     * @param committedRows the number of rows, not counting the header, committed by an import in chunks
+     * @param rowsPerSecond the number of rows imported per second
+     */
+    public CsvImportResults(EntityDto entity, List<Long> newInstanceIDs, List<Long> updatedInstanceIDs,
+                            Map<Integer, String> rowErrors, int committedRows, double rowsPerSecond) {
         this.entityClassName = entity.getClassName();
         this.entityName = entity.getName();
         this.entityModule = entity.getModule();
@@ -34,6 +49,8 @@ public class CsvImportResults implements Serializable {
         this.newInstanceIDs = newInstanceIDs;
         this.updatedInstanceIDs = updatedInstanceIDs;
         this.rowErrors = rowErrors;
+        this.committedRows = committedRows;
+        this.rowsPerSecond = rowsPerSecond;
     }
 
     /**
@@ -108,4 +125,21 @@ public class CsvImportResults implements Serializable {
     public Map<Integer, String> getRowErrors() {
         return rowErrors;
     }
+
+    /**
+     * Returns the number of rows, not counting the header, that were committed by an import in chunks,
+     * including the rows skipped because they were imported before. This is the first row to use
+     * when resuming the import.
+     * @return the number of committed rows, 0 if the import was not committed in chunks
+     */
+    public int getCommittedRows() {
+        return committedRows;
+    }
+
+    /**
+     * @return the number of rows imported per second, 0 if the import was not committed in chunks
+     */
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
 }
@@ -0,0 +1,76 @@
+package org.motechproject.mds.dto;
+
+import java.io.Serializable;
+
+/**
+ * This class holds the settings of a CSV import that is committed in chunks. Each chunk of rows is imported
+ * in a separate transaction, after the values of its rows were parsed by a pool of threads. An import that
+ * failed can be resumed by skipping the rows that were already committed, as reported by
+ * {@link CsvImportResults#getCommittedRows()} or
+ * {@link org.motechproject.mds.exception.csv.CsvImportException#getCommittedRows()}.
+ */
+public class CsvImportSettings implements Serializable {
+
+    private static final long serialVersionUID = -3571436839127826427L;
+
+    /**
+     * The default number of rows imported in a single transaction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int firstRow;
+
+    /**
+     * @return the number of rows imported in a single transaction
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize the number of rows imported in a single transaction, must be positive
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive, was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the number of threads parsing the values of the rows
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount the number of threads parsing the values of the rows, must be positive
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be positive, was " + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return the number of rows, not counting the header, that are skipped because they were already imported
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * @param firstRow the number of rows, not counting the header, that are skipped because they were already
+     *                 imported, 0 to import the whole file
+     */
+    public void setFirstRow(int firstRow) {
+        if (firstRow < 0) {
+            throw new IllegalArgumentException("The first row cannot be negative, was " + firstRow);
+        }
+        this.firstRow = firstRow;
+    }
+}
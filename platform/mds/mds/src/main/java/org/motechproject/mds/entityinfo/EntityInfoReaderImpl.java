@@ -4,27 +4,37 @@ import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.motechproject.mds.exception.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.bundle.MdsBundleHelper;
+import org.motechproject.mds.service.JarGeneratorService;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Implementation of the {@link EntityInfoReader} which reads entity information from json
  * files from the META-INF/entity-info directory inside the classpath. Used by mds-entities bundle,
- * which has all entity schema packed inside of it.
+ * which has all entity schema packed inside of it. The entity info of all entities is read once,
+ * when the bundle starts. Regenerating the bundle creates a new reader, with the new schema.
  */
 public class EntityInfoReaderImpl implements EntityInfoReader {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityInfoReaderImpl.class);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
     private Map<Long, String> idMapping = new HashMap<>();
 
+    private volatile Map<String, EntityInfo> entityInfos = Collections.emptyMap();
+
     public EntityInfoReaderImpl(Map<Long, String> idMapping) {
         this.idMapping = idMapping;
     }
@@ -32,18 +42,33 @@ public class EntityInfoReaderImpl implements EntityInfoReader {
     @Autowired
     private BundleContext bundleContext;
 
-    @Override
-    public EntityInfo getEntityInfo(String entityClassName) {
-        String file = "META-INF/entity-info/" + entityClassName + ".json";
-
-        // the file is inside the entities bundle
+    /**
+     * Reads the entity info of all entities from the entities bundle, replacing the entity info
+     * read before.
+     */
+    @PostConstruct
+    public void init() {
+        Map<String, EntityInfo> infos = new HashMap<>();
         ClassLoader entitiesCl = getMdsEntitiesBundleClassLoader();
 
-        try (InputStream in = entitiesCl.getResourceAsStream(file)) {
-            return objectMapper.readValue(in, EntityInfo.class);
-        } catch (IOException e) {
-            throw new IllegalStateException("Unable to read entity info for " + entityClassName, e);
+        for (String entityClassName : idMapping.values()) {
+            try {
+                infos.put(entityClassName, readEntityInfo(entitiesCl, entityClassName));
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to read entity info for {}", entityClassName, e);
+            }
         }
+
+        entityInfos = Collections.unmodifiableMap(infos);
+    }
+
+    @Override
+    public EntityInfo getEntityInfo(String entityClassName) {
+        EntityInfo entityInfo = entityInfos.get(entityClassName);
+
+        return (entityInfo == null)
+                ? readEntityInfo(getMdsEntitiesBundleClassLoader(), entityClassName)
+                : entityInfo;
     }
 
     public EntityInfo getEntityInfo(Long entityId) {
@@ -60,6 +85,17 @@ public class EntityInfoReaderImpl implements EntityInfoReader {
         return idMapping.values();
     }
 
+    private EntityInfo readEntityInfo(ClassLoader entitiesCl, String entityClassName) {
+        // the file is inside the entities bundle
+        String file = JarGeneratorService.ENTITY_INFO_DIR + entityClassName + ".json";
+
+        try (InputStream in = entitiesCl.getResourceAsStream(file)) {
+            return objectMapper.readValue(in, EntityInfo.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read entity info for " + entityClassName, e);
+        }
+    }
+
     private ClassLoader getMdsEntitiesBundleClassLoader() {
         Bundle bundle = MdsBundleHelper.findMdsEntitiesBundle(bundleContext);
         return bundle.adapt(BundleWiring.class).getClassLoader();
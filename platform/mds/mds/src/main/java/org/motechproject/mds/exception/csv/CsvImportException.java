@@ -9,11 +9,34 @@ public class CsvImportException extends MdsException {
 
     private static final long serialVersionUID = -982424055742014159L;
 
+    private final Integer committedRows;
+
     public CsvImportException(String message) {
         super(message);
+        this.committedRows = null;
     }
 
     public CsvImportException(String message, Throwable cause) {
+        this(message, cause, null);
+    }
+
+    /**
+     * Constructs a new exception for an import committed in chunks.
+     *
+     * @param message the error message for the logs
+     * @param cause the cause of the exception
+     * @param committedRows the number of rows, not counting the header, committed before the failure
+     */
+    public CsvImportException(String message, Throwable cause, Integer committedRows) {
         super(message, cause);
+        this.committedRows = committedRows;
+    }
+
+    /**
+     * @return the number of rows, not counting the header, committed before the failure, or null if the import
+     * was not committed in chunks
+     */
+    public Integer getCommittedRows() {
+        return committedRows;
     }
 }
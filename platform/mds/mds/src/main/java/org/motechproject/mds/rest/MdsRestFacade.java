@@ -4,6 +4,7 @@ import org.motechproject.mds.exception.rest.RestLookupExecutionForbiddenExceptio
 import org.motechproject.mds.query.QueryParams;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -27,6 +28,20 @@ public interface MdsRestFacade<T> {
      */
     RestResponse get(QueryParams queryParams, boolean includeBlob);
 
+    /**
+     * Streams entity instances for REST, writing them as JSON to the given output stream while they are read from
+     * the database. This will only include fields that are visible for REST. The response contains metadata, the
+     * instances and the value of the cursor field of the last instance, to be used for retrieving the next page.
+     * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit READ access via REST and {@link IllegalArgumentException} if the cursor field is neither
+     * the id nor a unique field visible for REST.
+     *
+     * @param cursor the position of the page in the instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param output the stream to write the response to
+     */
+    void stream(RestCursor cursor, boolean includeBlob, OutputStream output);
+
     /**
      * Retrieves a single instance for REST. This will only include fields that are visible for REST.
      * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
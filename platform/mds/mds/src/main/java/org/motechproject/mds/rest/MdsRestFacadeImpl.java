@@ -1,6 +1,8 @@
 package org.motechproject.mds.rest;
 
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.module.SimpleModule;
@@ -20,19 +22,32 @@ import org.motechproject.mds.exception.rest.RestLookupNotFoundException;
 import org.motechproject.mds.exception.rest.RestNoLookupResultException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.query.CustomOperatorProperty;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.query.RestrictionProperty;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.FieldAccessors;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.SecurityUtil;
+import org.motechproject.mds.util.TypeHelper;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.jdo.Query;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -50,6 +65,10 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    // the number of instances streamed, for which blobs are retrieved with a single query
+    private static final int BLOB_BATCH_SIZE = 100;
+    private static final int STREAM_FETCH_SIZE = 100;
+
     private MotechDataService<T> dataService;
     private EntityInfoReader entityInfoReader;
 
@@ -63,6 +82,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private List<String> restFields;
     private List<String> blobFields;
+    private Map<String, String> cursorFieldTypes;
 
     private RestOptionsDto restOptions;
 
@@ -88,6 +108,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         readLookups(entity);
         readFieldsExposedByRest(fieldMap);
         readBlobFieldsExposedByRest(fieldMap);
+        readCursorFields(fieldMap);
     }
 
     @Override
@@ -107,6 +128,57 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
                 RestProjection.createProjectionCollection(values, restFields, blobFields));
     }
 
+    @Override
+    @Transactional
+    public void stream(RestCursor cursor, boolean includeBlob, OutputStream output) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        String fieldType = cursorFieldTypes.get(cursor.getField());
+        if (fieldType == null) {
+            throw new IllegalArgumentException("Unable to stream instances of " + entityClass.getName() + " by "
+                    + cursor.getField() + ", only the id and unique fields can be used");
+        }
+
+        Object after = (cursor.getAfter() == null) ? null : TypeHelper.parse(cursor.getAfter(), fieldType);
+        Collection<T> values = dataService.executeQuery(new KeysetQueryExecution(cursor, fieldType, after));
+
+        try {
+            JsonGenerator generator = OBJECT_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+
+            generator.writeStartObject();
+            writeMetadata(generator, cursor);
+
+            generator.writeArrayFieldStart("data");
+            List<T> batch = new ArrayList<>();
+            T last = null;
+            int count = 0;
+            for (T value : values) {
+                batch.add(value);
+                if (batch.size() >= BLOB_BATCH_SIZE) {
+                    writeProjections(generator, batch, includeBlob);
+                    batch.clear();
+                }
+                last = value;
+                count++;
+            }
+            writeProjections(generator, batch, includeBlob);
+            generator.writeEndArray();
+
+            // a page that is not full is the last one
+            Object next = (last == null || count < cursor.getPageSize())
+                    ? null
+                    : FieldAccessors.forClass(last.getClass()).get(last, cursor.getField());
+            generator.writeStringField("next", (next == null) ? null : next.toString());
+
+            generator.writeEndObject();
+            generator.flush();
+        } catch (IOException e) {
+            throw new RestInternalException("Unable to stream instances of " + entityClass.getName(), e);
+        }
+    }
+
     @Override
     @Transactional
     public RestResponse get(Long id, boolean includeBlob) {
@@ -213,6 +285,68 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private void writeMetadata(JsonGenerator generator, RestCursor cursor) throws IOException {
+        generator.writeObjectFieldStart("metadata");
+        generator.writeStringField("entity", entityName);
+        generator.writeStringField("className", entityClass.getName());
+        generator.writeStringField("module", moduleName);
+        generator.writeStringField("namespace", namespace);
+        if (cursor.isIncludeTotalCount()) {
+            generator.writeNumberField("totalCount", dataService.count());
+        }
+        generator.writeNumberField("pageSize", cursor.getPageSize());
+        generator.writeStringField("cursor", cursor.getField());
+        generator.writeEndObject();
+    }
+
+    private void writeProjections(JsonGenerator generator, List<T> values, boolean includeBlob) throws IOException {
+        Map<Object, Map<String, Object>> blobs = (includeBlob && !blobFields.isEmpty())
+                ? getBlobs(values)
+                : Collections.<Object, Map<String, Object>>emptyMap();
+
+        for (T value : values) {
+            Object id = FieldAccessors.forClass(value.getClass()).get(value, Constants.Util.ID_FIELD_NAME);
+            Map<String, Object> blobValues = blobs.get(id);
+            generator.writeObject(RestProjection.createProjection(value, restFields, blobFields,
+                    (blobValues == null) ? Collections.<String, Object>emptyMap() : blobValues));
+        }
+        generator.flush();
+    }
+
+    private Map<Object, Map<String, Object>> getBlobs(List<T> values) {
+        final List<Object> ids = new ArrayList<>(values.size());
+        for (T value : values) {
+            ids.add(FieldAccessors.forClass(value.getClass()).get(value, Constants.Util.ID_FIELD_NAME));
+        }
+
+        Map<Object, Map<String, Object>> blobs = new HashMap<>();
+        if (ids.isEmpty()) {
+            return blobs;
+        }
+
+        Collection<Object[]> rows = dataService.executeQuery(new QueryExecution<Collection<Object[]>>() {
+            @Override
+            public Collection<Object[]> execute(Query query, InstanceSecurityRestriction restriction) {
+                // the instances were already retrieved with the restriction applied
+                query.setResult(Constants.Util.ID_FIELD_NAME + ", " + StringUtils.join(blobFields, ", "));
+                query.setFilter("ids.contains(" + Constants.Util.ID_FIELD_NAME + ")");
+                query.declareParameters("java.util.Collection ids");
+
+                return (Collection<Object[]>) query.execute(ids);
+            }
+        });
+
+        for (Object[] row : rows) {
+            Map<String, Object> blobValues = new HashMap<>();
+            for (int i = 0; i < blobFields.size(); ++i) {
+                blobValues.put(blobFields.get(i), row[i + 1]);
+            }
+            blobs.put(row[0], blobValues);
+        }
+
+        return blobs;
+    }
+
     private RestOperationNotSupportedException operationNotSupportedEx(String operation) {
         return new RestOperationNotSupportedException(String.format("%s operation not supported for entity: %s",
                 operation, entityClass));
@@ -287,10 +421,57 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private void readCursorFields(Map<String, FieldDto> fieldMap) {
+        cursorFieldTypes = new HashMap<>();
+        cursorFieldTypes.put(Constants.Util.ID_FIELD_NAME, Long.class.getName());
+        for (String restFieldName : restFields) {
+            FieldDto field = fieldMap.get(restFieldName);
+            if (field.getBasic().isUnique() && !field.getType().isBlob()) {
+                cursorFieldTypes.put(restFieldName, field.getType().getTypeClass());
+            }
+        }
+    }
+
     private Set<String> fieldsToUpdate() {
         // we don't want to be updating auto generated fields
         Set<String> fields = new HashSet<>(restFields);
         fields.removeAll(Arrays.asList(Constants.Util.GENERATED_FIELD_NAMES));
         return fields;
     }
+
+    /**
+     * Retrieves the page of instances following the cursor, without loading all of them at once.
+     */
+    private class KeysetQueryExecution implements QueryExecution<Collection<T>> {
+
+        private final RestCursor cursor;
+        private final String fieldType;
+        private final Object after;
+
+        KeysetQueryExecution(RestCursor cursor, String fieldType, Object after) {
+            this.cursor = cursor;
+            this.fieldType = fieldType;
+            this.after = after;
+        }
+
+        @Override
+        public Collection<T> execute(Query query, InstanceSecurityRestriction restriction) {
+            List<Property> properties = new ArrayList<>();
+            if (after != null) {
+                properties.add(new CustomOperatorProperty<>(cursor.getField(), after, fieldType, ">"));
+            }
+            if (restriction != null && !restriction.isEmpty()) {
+                properties.add(new RestrictionProperty(restriction, SecurityUtil.getUsername()));
+            }
+
+            QueryUtil.useFilter(query, properties);
+            query.setOrdering(cursor.getField() + " ascending");
+            query.setRange(0, cursor.getPageSize());
+            // instances are read while they are written, instead of loading the whole result at once
+            query.getFetchPlan().setFetchSize(STREAM_FETCH_SIZE);
+            query.addExtension("datanucleus.query.resultCacheType", "none");
+
+            return (Collection<T>) QueryExecutor.executeWithArray(query, properties);
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package org.motechproject.mds.rest;
+
+import org.motechproject.mds.util.Constants;
+
+/**
+ * The <code>RestCursor</code> class represents a position in the instances of an entity, used when streaming
+ * instances over REST. Instances are ordered ascending by the cursor field, which must be the id or a unique
+ * field, and a page contains the instances following the value of the field of the last instance from the
+ * previous page. Unlike paging with an offset, the database does not have to skip the instances from all previous
+ * pages.
+ *
+ * @see org.motechproject.mds.rest.MdsRestFacade#stream(RestCursor, boolean, java.io.OutputStream)
+ */
+public class RestCursor {
+
+    private final String field;
+
+    private final String after;
+
+    private final int pageSize;
+
+    private final boolean includeTotalCount;
+
+    /**
+     * Constructor.
+     *
+     * @param field the name of the field to order the instances by, id if blank
+     * @param after the value of the field of the last instance from the previous page, null for the first page
+     * @param pageSize the maximum number of instances to return
+     * @param includeTotalCount true if the total number of instances should be counted
+     */
+    public RestCursor(String field, String after, int pageSize, boolean includeTotalCount) {
+        this.field = (field == null || field.trim().isEmpty()) ? Constants.Util.ID_FIELD_NAME : field;
+        this.after = after;
+        this.pageSize = pageSize;
+        this.includeTotalCount = includeTotalCount;
+    }
+
+    /**
+     * @return the name of the field to order the instances by
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the value of the field of the last instance from the previous page, null for the first page
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * @return the maximum number of instances to return
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return true if the total number of instances should be counted
+     */
+    public boolean isIncludeTotalCount() {
+        return includeTotalCount;
+    }
+}
@@ -2,12 +2,14 @@ package org.motechproject.mds.rest;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.ArrayUtils;
-import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.FieldAccessors;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The <code>RestProjection</code> class represents entity fields projection onto entity fields exposed
@@ -30,8 +32,9 @@ public class RestProjection extends LinkedHashMap<String, Object> {
 
     public static <T> RestProjection createProjection(T element, List<String> fields, List<String> blobFields) {
         RestProjection projection = new RestProjection();
+        FieldAccessor accessor = FieldAccessors.forClass(element.getClass());
         for (String field : fields) {
-            Object value = PropertyUtil.safeGetProperty(element, field);
+            Object value = accessor.get(element, field);
             if (blobFields.contains(field)) {
                 value = Base64.encodeBase64(ArrayUtils.toPrimitive((Byte[]) value));
             }
@@ -39,4 +42,31 @@ public class RestProjection extends LinkedHashMap<String, Object> {
         }
         return projection;
     }
+
+    /**
+     * Creates a projection of the given element, taking the values of blob fields from the given map instead
+     * of the element, so that blobs that were not loaded with the element are not loaded one by one.
+     *
+     * @param element the element to create a projection of
+     * @param fields the names of the fields exposed over REST
+     * @param blobFields the names of the blob fields exposed over REST
+     * @param blobValues the values of the blob fields of the element, by field name, empty to skip blobs
+     * @param <T> the entity class
+     * @return the projection of the element
+     */
+    public static <T> RestProjection createProjection(T element, List<String> fields, List<String> blobFields,
+                                                      Map<String, Object> blobValues) {
+        RestProjection projection = new RestProjection();
+        FieldAccessor accessor = FieldAccessors.forClass(element.getClass());
+        for (String field : fields) {
+            Object value;
+            if (blobFields.contains(field)) {
+                value = Base64.encodeBase64(ArrayUtils.toPrimitive((Byte[]) blobValues.get(field)));
+            } else {
+                value = accessor.get(element, field);
+            }
+            projection.put(field, value);
+        }
+        return projection;
+    }
 }
@@ -1,6 +1,7 @@
 package org.motechproject.mds.service;
 
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.query.QueryParams;
 
 import java.io.OutputStream;
@@ -226,4 +227,41 @@ public interface CsvImportExportService {
      * @return IDs of instances updated/added during import
      */
     CsvImportResults importCsv(String entityClassName, Reader reader, String fileName, boolean continueOnError);
+
+    /**
+     * Import instances from a CSV file in chunks, each chunk of rows is committed in a separate transaction.
+     * The number of committed rows is sent with both the success and the failure event, so that a failed import
+     * can be resumed by setting it as the first row of the settings. History records and CRUD events are still
+     * created for every row. Must not be called within a transaction.
+     * @param entityId id of the entity for which the instances will be imported
+     * @param reader the reader that will be used for reading the file contents
+     * @param fileName the name of the CSV file
+     * @param importCustomizer the customizer that will be used during import
+     * @param settings the chunk size, thread count and the first row of the import
+     * @param continueOnError if true, import will continue with next row if exception was encountered,
+     *                        if false, import process will stop and throw a
+     *                        {@link org.motechproject.mds.exception.csv.CsvImportException}
+     * @return IDs of instances updated/added during import
+     */
+    CsvImportResults importCsv(long entityId, Reader reader, String fileName, CsvImportCustomizer importCustomizer,
+                               CsvImportSettings settings, boolean continueOnError);
+
+    /**
+     * Import instances from a CSV file in chunks, each chunk of rows is committed in a separate transaction.
+     * The number of committed rows is sent with both the success and the failure event, so that a failed import
+     * can be resumed by setting it as the first row of the settings. History records and CRUD events are still
+     * created for every row. Must not be called within a transaction.
+     * @param entityClassName class name of the entity for which the instances will be imported
+     * @param reader the reader that will be used for reading the file contents
+     * @param fileName the name of the CSV file
+     * @param importCustomizer the customizer that will be used during import
+     * @param settings the chunk size, thread count and the first row of the import
+     * @param continueOnError if true, import will continue with next row if exception was encountered,
+     *                        if false, import process will stop and throw a
+     *                        {@link org.motechproject.mds.exception.csv.CsvImportException}
+     * @return IDs of instances updated/added during import
+     */
+    CsvImportResults importCsv(String entityClassName, Reader reader, String fileName,
+                               CsvImportCustomizer importCustomizer, CsvImportSettings settings,
+                               boolean continueOnError);
 }
@@ -134,14 +134,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         final T createdInstance = repository.create(object);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-            @Override
-            public void afterCommit() {
-                if (allowCreateEvent) {
-                    sendEvent((Long) getId(createdInstance), CREATE);
-                }
-            }
-        });
+        registerEvent(createdInstance, CREATE);
 
         return createdInstance;
     }
@@ -180,14 +173,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             updateModificationData(object);
             final T updatedInstance = repository.update(object);
 
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCommit() {
-                    if (allowUpdateEvent) {
-                        sendEvent((Long) getId(updatedInstance), UPDATE);
-                    }
-                }
-            });
+            registerEvent(updatedInstance, UPDATE);
 
             return updatedInstance;
         }
@@ -232,14 +218,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
             updateModificationData(fromDbInstance);
 
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCommit() {
-                    if (allowUpdateEvent) {
-                        sendEvent((Long) getId(fromDbInstance), UPDATE);
-                    }
-                }
-            });
+            registerEvent(fromDbInstance, UPDATE);
             result = fromDbInstance;
         }
 
@@ -532,6 +511,18 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return restriction;
     }
 
+    private void registerEvent(T instance, CrudEventType action) {
+        PendingEvents pendingEvents = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pendingEvents == null) {
+            // a single synchronization sends the events of all instances saved in the transaction
+            pendingEvents = new PendingEvents();
+            TransactionSynchronizationManager.registerSynchronization(pendingEvents);
+            TransactionSynchronizationManager.bindResource(this, pendingEvents);
+        }
+
+        pendingEvents.add(instance, action);
+    }
+
     private void sendEvent(Long id, CrudEventType action) {
         String subject = createSubject(module, namespace, entityName, action);
         Map<String, Object> params = buildEventParams(module, namespace, entityName, getClassType().getName(), id);
@@ -592,4 +583,33 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void setEntityInfoReader(EntityInfoReader entityInfoReader) {
         this.entityInfoReader = entityInfoReader;
     }
+
+    /**
+     * This TX sync sends the CRUD events of the instances created or updated in a TX, once the TX is committed.
+     * The ids are read after the commit, since they can be assigned only when the instances are flushed.
+     */
+    private class PendingEvents extends TransactionSynchronizationAdapter {
+        private final List<T> instances = new ArrayList<>();
+        private final List<CrudEventType> actions = new ArrayList<>();
+
+        void add(T instance, CrudEventType action) {
+            instances.add(instance);
+            actions.add(action);
+        }
+
+        @Override
+        public void afterCommit() {
+            for (int i = 0; i < instances.size(); i++) {
+                CrudEventType action = actions.get(i);
+                if ((action == CREATE && allowCreateEvent) || (action == UPDATE && allowUpdateEvent)) {
+                    sendEvent((Long) getId(instances.get(i)), action);
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(DefaultMotechDataService.this);
+        }
+    }
 }
@@ -25,6 +25,13 @@ public interface TableWriter extends AutoCloseable {
      */
     void writeHeader(String[] headers) throws IOException;
 
+    /**
+     * Writes the rows written so far to the underlying output. Called after each chunk of exported instances,
+     * so that the next chunk is read only once the output accepted the previous one.
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
     /**
      * {@inheritDoc}
      */
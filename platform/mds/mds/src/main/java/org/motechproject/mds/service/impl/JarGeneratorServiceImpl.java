@@ -349,6 +349,15 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
                         }
                     }
 
+                    // insert the field accessors, there is none for the entity class of a DDE
+                    addClass(output, ClassName.getAccessorName(className));
+                    if (historyClassData != null) {
+                        addClass(output, ClassName.getAccessorName(historyClassData.getClassName()));
+                    }
+                    if (trashClassData != null) {
+                        addClass(output, ClassName.getAccessorName(trashClassData.getClassName()));
+                    }
+
                     information.add(info);
                 }
             }
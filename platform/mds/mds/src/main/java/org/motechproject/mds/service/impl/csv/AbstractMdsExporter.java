@@ -8,19 +8,32 @@ import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.exception.csv.DataExportException;
 import org.motechproject.mds.exception.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.query.CustomOperatorProperty;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.query.RestrictionProperty;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TableWriter;
-import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.FieldAccessors;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.SecurityUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,9 +44,14 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * Instances are read in chunks, each chunk is written out before the next one is read. Every chunk is retrieved
+ * in its own transaction of the data service, which detaches its instances on commit, so the persistence manager
+ * does not hold the instances exported before.
  */
 public abstract class AbstractMdsExporter {
 
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -67,16 +85,18 @@ public abstract class AbstractMdsExporter {
         try {
             writer.writeHeader(orderedHeaders);
 
-            long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
-
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
+            boolean paged = params != null && params.isPagingSet();
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
+            long rowsExported;
+            if (!paged && StringUtils.isBlank(lookupName) && isOrderedById(params)) {
+                rowsExported = exportChunksById(dataService, writer, fieldMap, orderedHeaders, exportCustomizer);
+            } else if (!paged) {
+                rowsExported = exportChunksByPage(dataService, entityInfo, writer, fieldMap, orderedHeaders, lookupName,
+                        params, lookupFields, exportCustomizer);
+            } else {
+                // a single page is bounded by its size already
+                List<Object> instances = retrieveInstances(dataService, entityInfo, lookupName, params, lookupFields);
+                rowsExported = writeChunk(writer, fieldMap, instances, orderedHeaders, exportCustomizer);
             }
 
             return rowsExported;
@@ -85,6 +105,98 @@ public abstract class AbstractMdsExporter {
         }
     }
 
+    private long exportChunksById(MotechDataService dataService, TableWriter writer, Map<String, FieldDto> fieldMap,
+                                  String[] headers, CsvExportCustomizer exportCustomizer) throws IOException {
+        long rowsExported = 0;
+        Long lastId = null;
+
+        // each chunk starts after the last exported id, so the database never skips the rows exported before
+        List<Object> chunk;
+        do {
+            chunk = (List<Object>) dataService.executeQuery(new ExportChunkQueryExecution(lastId));
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+
+            Object last = chunk.get(chunk.size() - 1);
+            lastId = (Long) FieldAccessors.forClass(last.getClass()).get(last, Constants.Util.ID_FIELD_NAME);
+
+            rowsExported += writeChunk(writer, fieldMap, chunk, headers, exportCustomizer);
+        } while (chunk.size() >= EXPORT_CHUNK_SIZE && lastId != null);
+
+        return rowsExported;
+    }
+
+    private long exportChunksByPage(MotechDataService dataService, EntityInfo entityInfo, TableWriter writer,
+                                    Map<String, FieldDto> fieldMap, String[] headers, String lookupName,
+                                    QueryParams params, Map<String, Object> lookupFields,
+                                    CsvExportCustomizer exportCustomizer) throws IOException {
+        List<Order> orderList = new ArrayList<>();
+        if (params != null) {
+            orderList.addAll(params.getOrderList());
+        }
+        // pages must not overlap, so the instances are also ordered by id
+        if (!containsOrderOnId(orderList)) {
+            orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+
+        long rowsExported = 0;
+        int page = 1;
+
+        List<Object> chunk;
+        do {
+            QueryParams chunkParams = new QueryParams(page++, EXPORT_CHUNK_SIZE, orderList);
+            chunk = retrieveInstances(dataService, entityInfo, lookupName, chunkParams, lookupFields);
+            if (chunk == null) {
+                break;
+            }
+
+            rowsExported += writeChunk(writer, fieldMap, chunk, headers, exportCustomizer);
+        } while (chunk.size() >= EXPORT_CHUNK_SIZE);
+
+        return rowsExported;
+    }
+
+    private List<Object> retrieveInstances(MotechDataService dataService, EntityInfo entityInfo, String lookupName,
+                                           QueryParams params, Map<String, Object> lookupFields) {
+        return StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
+                mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
+    }
+
+    private long writeChunk(TableWriter writer, Map<String, FieldDto> fieldMap, List<Object> chunk, String[] headers,
+                            CsvExportCustomizer exportCustomizer) throws IOException {
+        Map<String, String> row = new HashMap<>();
+        for (Object instance : chunk) {
+            buildCsvRow(row, fieldMap, instance, headers, exportCustomizer);
+            writer.writeRow(row, headers);
+        }
+
+        // the next chunk is read only after this one was written out
+        writer.flush();
+
+        return chunk.size();
+    }
+
+    private boolean isOrderedById(QueryParams params) {
+        if (params == null) {
+            return true;
+        }
+
+        List<Order> orderList = params.getOrderList();
+        return orderList.isEmpty() || (orderList.size() == 1
+                && Constants.Util.ID_FIELD_NAME.equals(orderList.get(0).getField())
+                && orderList.get(0).getDirection() == Order.Direction.ASC);
+    }
+
+    private boolean containsOrderOnId(List<Order> orderList) {
+        for (Order order : orderList) {
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected EntityInfo getEntity(long entityId) {
         EntityInfo entityInfo = entityInfoReader.getEntityInfo(entityId);
         if (entityInfo == null) {
@@ -132,10 +244,11 @@ public abstract class AbstractMdsExporter {
     private void buildCsvRow(Map<String, String> row, Map<String, FieldDto> fieldMap, Object instance, String[] headers,
                              CsvExportCustomizer exportCustomizer) {
         row.clear();
+        FieldAccessor accessor = FieldAccessors.forClass(instance.getClass());
         for (String fieldName : headers) {
             FieldDto field = fieldMap.get(fieldName);
 
-            Object value = PropertyUtil.safeGetProperty(instance, field.getBasic().getName());
+            Object value = accessor.get(instance, field.getBasic().getName());
             String csvValue = exportCustomizer.formatField(field, value);
 
             row.put(fieldName, csvValue);
@@ -153,4 +266,36 @@ public abstract class AbstractMdsExporter {
     protected EntityInfoReader getEntityInfoReader() {
         return entityInfoReader;
     }
+
+    /**
+     * Retrieves the chunk of instances following the given id, ordered by id.
+     */
+    private static class ExportChunkQueryExecution implements QueryExecution<List<Object>> {
+
+        private final Long lastId;
+
+        ExportChunkQueryExecution(Long lastId) {
+            this.lastId = lastId;
+        }
+
+        @Override
+        public List<Object> execute(Query query, InstanceSecurityRestriction restriction) {
+            List<Property> properties = new ArrayList<>();
+            if (lastId != null) {
+                properties.add(new CustomOperatorProperty<>(Constants.Util.ID_FIELD_NAME, lastId,
+                        Long.class.getName(), ">"));
+            }
+            if (restriction != null && !restriction.isEmpty()) {
+                properties.add(new RestrictionProperty(restriction, SecurityUtil.getUsername()));
+            }
+
+            QueryUtil.useFilter(query, properties);
+            query.setOrdering(Constants.Util.ID_FIELD_NAME + " ascending");
+            query.setRange(0, EXPORT_CHUNK_SIZE);
+            query.getFetchPlan().setFetchSize(EXPORT_CHUNK_SIZE);
+            query.addExtension("datanucleus.query.resultCacheType", "none");
+
+            return new ArrayList<>((Collection<Object>) QueryExecutor.executeWithArray(query, properties));
+        }
+    }
 }
@@ -2,8 +2,10 @@ package org.motechproject.mds.service.impl.csv;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.event.CrudEventBuilder;
+import org.motechproject.mds.exception.csv.CsvImportException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.CsvImportCustomizer;
@@ -194,6 +196,50 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         return importResults;
     }
 
+    @Override
+    public CsvImportResults importCsv(long entityId, Reader reader, String fileName,
+                                      CsvImportCustomizer importCustomizer, CsvImportSettings settings,
+                                      boolean continueOnError) {
+        LOGGER.debug("Importing instances of entity with ID: {} in chunks of {} rows", entityId,
+                settings.getChunkSize());
+
+        CsvImportResults importResults;
+        try {
+            importResults = csvImporterExporter.importCsv(entityId, reader, importCustomizer, settings,
+                    continueOnError);
+        } catch (RuntimeException e) {
+            EntityDto entity = entityService.getEntity(entityId);
+            sendImportFailureEvent(entity, fileName, e);
+            throw e;
+        }
+
+        sendImportSuccessEvent(importResults, fileName);
+
+        return importResults;
+    }
+
+    @Override
+    public CsvImportResults importCsv(String entityClassName, Reader reader, String fileName,
+                                      CsvImportCustomizer importCustomizer, CsvImportSettings settings,
+                                      boolean continueOnError) {
+        LOGGER.debug("Importing instances of entity: {} in chunks of {} rows", entityClassName,
+                settings.getChunkSize());
+
+        CsvImportResults importResults;
+        try {
+            importResults = csvImporterExporter.importCsv(entityClassName, reader, importCustomizer, settings,
+                    continueOnError);
+        } catch (RuntimeException e) {
+            EntityDto entity = entityService.getEntityByClassName(entityClassName);
+            sendImportFailureEvent(entity, fileName, e);
+            throw e;
+        }
+
+        sendImportSuccessEvent(importResults, fileName);
+
+        return importResults;
+    }
+
     private void sendImportFailureEvent(EntityDto entity, String fileName, RuntimeException e) {
         Map<String, Object> params = new HashMap<>();
 
@@ -203,6 +249,11 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         params.put(Constants.MDSEvents.CSV_IMPORT_FAILURE_STACKTRACE, ExceptionUtils.getStackTrace(e));
         params.put(Constants.MDSEvents.CSV_IMPORT_FILENAME, fileName);
 
+        // rows committed before a failure of a chunked import
+        if (e instanceof CsvImportException && ((CsvImportException) e).getCommittedRows() != null) {
+            params.put(Constants.MDSEvents.CSV_IMPORT_COMMITTED_ROWS, ((CsvImportException) e).getCommittedRows());
+        }
+
         String subject = CrudEventBuilder.createSubject(entity.getModule(), entity.getNamespace(), entity.getName(),
                 Constants.MDSEvents.CSV_IMPORT_FAILURE);
 
@@ -225,6 +276,7 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         params.put(Constants.MDSEvents.CSV_IMPORT_CREATED_COUNT, importResults.newInstanceCount());
         params.put(Constants.MDSEvents.CSV_IMPORT_UPDATED_COUNT, importResults.updatedInstanceCount());
         params.put(Constants.MDSEvents.CSV_IMPORT_TOTAL_COUNT, importResults.totalNumberOfImportedInstances());
+        params.put(Constants.MDSEvents.CSV_IMPORT_COMMITTED_ROWS, importResults.getCommittedRows());
         params.put(Constants.MDSEvents.CSV_IMPORT_FILENAME, fileName);
 
         String subject = CrudEventBuilder.createSubject(entityModule, entityNamespace, entityName,
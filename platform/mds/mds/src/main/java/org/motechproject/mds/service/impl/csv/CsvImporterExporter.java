@@ -4,6 +4,7 @@ import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.MetadataDto;
@@ -19,23 +20,34 @@ import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
-import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.FieldAccessors;
 import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
@@ -92,6 +104,51 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return importCsv(entityInfo, reader, continueOnError);
     }
 
+    /**
+     * Imports instances of the given entity to the database in chunks. Each chunk of rows is imported in
+     * a separate transaction, so rows from the chunks committed before a failure stay in the database.
+     * The values of the rows are parsed in parallel, relationships are resolved in the transaction of the chunk.
+     * History records and CRUD events are still created for every row, as in a regular import. The import must
+     * not be called within a transaction, since its chunks would not be committed separately.
+     * @param entityId the ID of the entity for which instances will be imported
+     * @param reader reader from which the csv file will be read
+     * @param importCustomizer the customizer that will be used during instance import from rows
+     * @param settings the chunk size, thread count and the first row of the import
+     * @param continueOnError if true, import will continue with next row if exception was encountered,
+     *                        if false, import process will stop and throw a {@link CsvImportException}
+     *                        containing the number of committed rows
+     * @return IDs of instances updated/added during import, the number of committed rows and the import rate
+     * @throws IllegalStateException if a transaction is active
+     */
+    public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer,
+                                      CsvImportSettings settings, boolean continueOnError) {
+        EntityInfo entityInfo = getEntity(entityId);
+        return importCsvInChunks(entityInfo, reader, importCustomizer, settings, continueOnError);
+    }
+
+    /**
+     * Imports instances of the given entity to the database in chunks. Each chunk of rows is imported in
+     * a separate transaction, so rows from the chunks committed before a failure stay in the database.
+     * The values of the rows are parsed in parallel, relationships are resolved in the transaction of the chunk.
+     * History records and CRUD events are still created for every row, as in a regular import. The import must
+     * not be called within a transaction, since its chunks would not be committed separately.
+     * @param entityClassName the class name of the entity for which instances will be imported
+     * @param reader reader from which the csv file will be read
+     * @param importCustomizer the customizer that will be used during instance import from rows
+     * @param settings the chunk size, thread count and the first row of the import
+     * @param continueOnError if true, import will continue with next row if exception was encountered,
+     *                        if false, import process will stop and throw a {@link CsvImportException}
+     *                        containing the number of committed rows
+     * @return IDs of instances updated/added during import, the number of committed rows and the import rate
+     * @throws IllegalStateException if a transaction is active
+     */
+    public CsvImportResults importCsv(final String entityClassName, final Reader reader,
+                                      CsvImportCustomizer importCustomizer, CsvImportSettings settings,
+                                      boolean continueOnError) {
+        EntityInfo entityInfo = getEntity(entityClassName);
+        return importCsvInChunks(entityInfo, reader, importCustomizer, settings, continueOnError);
+    }
+
     /**
      * Exports entity instances to a CSV file.
      * @param entityId id of the entity for which the instances will be exported
@@ -234,8 +291,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
                                        boolean continueOnError) {
         final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
 
-        Map<String, FieldDto> fieldCacheMap = new HashMap<>();
-
         try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
 
             List<Long> newInstanceIDs = new ArrayList<>();
@@ -247,12 +302,16 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             int rowNum = 0;
 
             final String headers[] = csvMapReader.getHeader(true);
+            final Map<String, FieldDto> fieldMap = findFields(headers, entityInfo.getFieldDtos(), importCustomizer,
+                    dataService.getClassType());
 
             while ((row = csvMapReader.read(headers)) != null) {
                 rowNum++;
                 try {
                     // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(entityInfo.getEntity(), row, headers, fieldCacheMap, entityInfo.getFieldDtos(), dataService, importCustomizer);
+                    Map<String, Object> values = parseRow(entityInfo.getEntity(), row, fieldMap,
+                            dataService.getClassType().getClassLoader(), true);
+                    RowImportResult rowImportResult = importInstanceFromRow(row, fieldMap, values, dataService, importCustomizer);
                     Long id = rowImportResult.getId();
 
                     // put its ID in the correct list
@@ -276,8 +335,207 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private RowImportResult importInstanceFromRow(EntityDto entityDto, Map<String, String> row, String[] headers, Map<String, FieldDto> fieldMap, List<FieldDto> fields,
-                                                  MotechDataService dataService, CsvImportCustomizer importCustomizer) {
+    private CsvImportResults importCsvInChunks(final EntityInfo entityInfo, final Reader reader,
+                                               final CsvImportCustomizer importCustomizer, CsvImportSettings settings,
+                                               final boolean continueOnError) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // the chunks would join the active transaction and the committed rows would be reported too early
+            throw new IllegalStateException("A chunked CSV import can not be run within a transaction");
+        }
+
+        final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
+        final EntityDto entity = entityInfo.getEntity();
+        final ClassLoader entityCl = dataService.getClassType().getClassLoader();
+
+        final List<Long> newInstanceIDs = new ArrayList<>();
+        final List<Long> updatedInstanceIDs = new ArrayList<>();
+        final Map<Integer, String> exceptions = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(settings.getThreadCount(), new CsvImportThreadFactory());
+        long startTime = System.currentTimeMillis();
+        int committedRows = settings.getFirstRow();
+
+        try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            final String[] headers = csvMapReader.getHeader(true);
+            final Map<String, FieldDto> fieldMap = findFields(headers, entityInfo.getFieldDtos(), importCustomizer,
+                    dataService.getClassType());
+
+            // rows committed by a previous import are skipped
+            for (int i = 0; i < settings.getFirstRow() && csvMapReader.read(headers) != null; i++) {
+                LOGGER.trace("Skipping row {}, already imported", i + 1);
+            }
+
+            List<Map<String, String>> chunk;
+            while (!(chunk = readChunk(csvMapReader, headers, settings.getChunkSize())).isEmpty()) {
+                final List<ParsedRow> parsedRows = parseChunk(executor, settings.getThreadCount(), entity, chunk,
+                        committedRows, fieldMap, entityCl);
+
+                try {
+                    ChunkImportResult chunkResult = dataService.doInTransaction(new TransactionCallback<ChunkImportResult>() {
+                        @Override
+                        public ChunkImportResult doInTransaction(TransactionStatus status) {
+                            return importChunk(parsedRows, fieldMap, dataService, importCustomizer, continueOnError);
+                        }
+                    });
+
+                    // the results are only kept once the chunk is committed
+                    newInstanceIDs.addAll(chunkResult.getNewInstanceIDs());
+                    updatedInstanceIDs.addAll(chunkResult.getUpdatedInstanceIDs());
+                    exceptions.putAll(chunkResult.getExceptions());
+                } catch (RuntimeException e) {
+                    String msg = String.format("Unable to import rows %d-%d of %s, %d rows were committed",
+                            committedRows + 1, committedRows + chunk.size(), entityInfo.getClassName(), committedRows);
+                    throw new CsvImportException(msg, e, committedRows);
+                }
+
+                committedRows += chunk.size();
+
+                LOGGER.info("Committed {} rows of {}, {} rows/s", committedRows, entityInfo.getClassName(),
+                        rowsPerSecond(committedRows - settings.getFirstRow(), startTime));
+            }
+
+            return new CsvImportResults(entity, newInstanceIDs, updatedInstanceIDs, exceptions, committedRows,
+                    rowsPerSecond(committedRows - settings.getFirstRow(), startTime));
+        } catch (IOException e) {
+            throw new CsvImportException("IO Error when importing CSV", e, committedRows);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Map<String, String>> readChunk(CsvMapReader csvMapReader, String[] headers, int chunkSize)
+            throws IOException {
+        List<Map<String, String>> chunk = new ArrayList<>(chunkSize);
+
+        Map<String, String> row;
+        while (chunk.size() < chunkSize && (row = csvMapReader.read(headers)) != null) {
+            chunk.add(row);
+        }
+
+        return chunk;
+    }
+
+    private List<ParsedRow> parseChunk(ExecutorService executor, int threadCount, final EntityDto entity,
+                                       final List<Map<String, String>> chunk, final int firstRowNum,
+                                       final Map<String, FieldDto> fieldMap, final ClassLoader entityCl) {
+        int sliceSize = (chunk.size() + threadCount - 1) / threadCount;
+        List<Future<List<ParsedRow>>> slices = new ArrayList<>(threadCount);
+
+        // each thread parses a continuous slice of the chunk, so that the order of rows is kept
+        for (int sliceStart = 0; sliceStart < chunk.size(); sliceStart += sliceSize) {
+            final int from = sliceStart;
+            final int to = Math.min(sliceStart + sliceSize, chunk.size());
+
+            slices.add(executor.submit(new Callable<List<ParsedRow>>() {
+                @Override
+                public List<ParsedRow> call() {
+                    List<ParsedRow> parsedRows = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        parsedRows.add(parseRow(entity, chunk.get(i), firstRowNum + i + 1, fieldMap, entityCl));
+                    }
+                    return parsedRows;
+                }
+            }));
+        }
+
+        List<ParsedRow> parsedRows = new ArrayList<>(chunk.size());
+        try {
+            for (Future<List<ParsedRow>> slice : slices) {
+                parsedRows.addAll(slice.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Interrupted while parsing CSV rows", e, firstRowNum);
+        } catch (ExecutionException e) {
+            throw new CsvImportException("Unable to parse CSV rows", e.getCause(), firstRowNum);
+        }
+
+        return parsedRows;
+    }
+
+    private ParsedRow parseRow(EntityDto entity, Map<String, String> row, int rowNum, Map<String, FieldDto> fieldMap,
+                               ClassLoader entityCl) {
+        try {
+            // relationships require the database, they are parsed in the transaction of the chunk
+            return new ParsedRow(rowNum, row, parseRow(entity, row, fieldMap, entityCl, false), null);
+        } catch (RuntimeException e) {
+            return new ParsedRow(rowNum, row, null, e);
+        }
+    }
+
+    private ChunkImportResult importChunk(List<ParsedRow> parsedRows, Map<String, FieldDto> fieldMap,
+                                          MotechDataService dataService, CsvImportCustomizer importCustomizer,
+                                          boolean continueOnError) {
+        ChunkImportResult chunkResult = new ChunkImportResult();
+
+        for (ParsedRow parsedRow : parsedRows) {
+            try {
+                if (parsedRow.getError() != null) {
+                    throw parsedRow.getError();
+                }
+
+                RowImportResult rowImportResult = importInstanceFromRow(parsedRow.getRow(), fieldMap,
+                        parsedRow.getValues(), dataService, importCustomizer);
+
+                if (rowImportResult.isNewInstance()) {
+                    chunkResult.getNewInstanceIDs().add(rowImportResult.getId());
+                } else {
+                    chunkResult.getUpdatedInstanceIDs().add(rowImportResult.getId());
+                }
+            } catch (RuntimeException e) {
+                if (continueOnError) {
+                    chunkResult.getExceptions().put(parsedRow.getRowNum(), e.getMessage());
+                } else {
+                    throw e;
+                }
+            }
+        }
+
+        return chunkResult;
+    }
+
+    private double rowsPerSecond(int rows, long startTime) {
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        return rows * 1000.0 / millis;
+    }
+
+    private Map<String, FieldDto> findFields(String[] headers, List<FieldDto> fields,
+                                             CsvImportCustomizer importCustomizer, Class entityClass) {
+        Map<String, FieldDto> fieldMap = new LinkedHashMap<>();
+
+        for (String fieldName : headers) {
+            FieldDto field = importCustomizer.findField(fieldName, fields);
+
+            if (field == null) {
+                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                        fieldName, entityClass.getName());
+            } else {
+                fieldMap.put(fieldName, field);
+            }
+        }
+
+        return fieldMap;
+    }
+
+    private Map<String, Object> parseRow(EntityDto entityDto, Map<String, String> row, Map<String, FieldDto> fieldMap,
+                                         ClassLoader entityCl, boolean withRelationships) {
+        Map<String, Object> values = new HashMap<>();
+
+        for (Map.Entry<String, FieldDto> entry : fieldMap.entrySet()) {
+            String fieldName = entry.getKey();
+            FieldDto field = entry.getValue();
+
+            if (row.containsKey(fieldName) && (withRelationships || !field.getType().isRelationship())) {
+                values.put(fieldName, parseValue(entityDto, row.get(fieldName), field, entityCl));
+            }
+        }
+
+        return values;
+    }
+
+    private RowImportResult importInstanceFromRow(Map<String, String> row, Map<String, FieldDto> fieldMap,
+                                                  Map<String, Object> values, MotechDataService dataService,
+                                                  CsvImportCustomizer importCustomizer) {
         Class entityClass = dataService.getClassType();
 
         boolean isNewInstance = true;
@@ -295,23 +553,22 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
         }
 
-        for (String fieldName : headers) {
-            FieldDto field = findField(fieldName, fields, fieldMap, importCustomizer);
-
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
-            }
+        FieldAccessor accessor = FieldAccessors.forClass(instance.getClass());
+        for (Map.Entry<String, FieldDto> entry : fieldMap.entrySet()) {
+            String fieldName = entry.getKey();
+            FieldDto field = entry.getValue();
 
             if (row.containsKey(fieldName)) {
                 String csvValue = row.get(fieldName);
 
-                Object parsedValue = parseValue(entityDto, csvValue, field, entityClass.getClassLoader());
+                // values not parsed before are relationships
+                Object parsedValue = values.containsKey(fieldName)
+                        ? values.get(fieldName)
+                        : parseRelationshipValue(csvValue, field);
 
                 try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+                    accessor.set(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
+                } catch (RuntimeException e) {
                     String msg = String.format("Error when processing field: %s, value in CSV file is %s",
                             fieldName, csvValue);
                     throw new CsvImportException(msg, e);
@@ -326,19 +583,14 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             importedInstance = importCustomizer.doUpdate(instance, dataService);
         }
 
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
+        Long importedId = null == importedInstance
+                ? null
+                : (Long) FieldAccessors.forClass(importedInstance.getClass())
+                        .get(importedInstance, Constants.Util.ID_FIELD_NAME);
 
         return new RowImportResult(importedId, isNewInstance);
     }
 
-    private FieldDto findField(String fieldName, List<FieldDto> fields, Map<String, FieldDto> fieldMap, CsvImportCustomizer importCustomizer) {
-        if (!fieldMap.containsKey(fieldName)) {
-            FieldDto field = importCustomizer.findField(fieldName, fields);
-            fieldMap.put(fieldName, field);
-        }
-        return fieldMap.get(fieldName);
-    }
-
     private Object parseValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader entityCl) {
         final TypeDto type = field.getType();
 
@@ -445,4 +697,74 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             return newInstance;
         }
     }
+
+    /**
+     * This class represents a single row of a chunk, with the values parsed before the chunk is imported.
+     * If the row could not be parsed, it contains the error instead of the values.
+     */
+    private static class ParsedRow {
+        private final int rowNum;
+        private final Map<String, String> row;
+        private final Map<String, Object> values;
+        private final RuntimeException error;
+
+        public ParsedRow(int rowNum, Map<String, String> row, Map<String, Object> values, RuntimeException error) {
+            this.rowNum = rowNum;
+            this.row = row;
+            this.values = values;
+            this.error = error;
+        }
+
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        public Map<String, String> getRow() {
+            return row;
+        }
+
+        public Map<String, Object> getValues() {
+            return values;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * This class represents a result of a single chunk import, kept only after the chunk is committed.
+     */
+    private static class ChunkImportResult {
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+
+        public List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
+        }
+
+        public List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
+        }
+
+        public Map<Integer, String> getExceptions() {
+            return exceptions;
+        }
+    }
+
+    /**
+     * Creates the daemon threads parsing the rows of a chunked import, so that they never block the shutdown
+     * of the entities bundle.
+     */
+    private static class CsvImportThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mds-csv-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
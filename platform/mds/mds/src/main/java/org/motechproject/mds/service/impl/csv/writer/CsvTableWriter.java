@@ -35,4 +35,9 @@ public class CsvTableWriter implements TableWriter {
     public void writeHeader(String[] headers) throws IOException {
         csvMapWriter.writeHeader(headers);
     }
+
+    @Override
+    public void flush() throws IOException {
+        csvMapWriter.flush();
+    }
 }
@@ -81,6 +81,11 @@ public class PdfTableWriter implements TableWriter {
         }
     }
 
+    @Override
+    public void flush() {
+        // the widths of the columns depend on all rows, so the table is written out only when closed
+    }
+
     @Override
     public void close() {
         try {
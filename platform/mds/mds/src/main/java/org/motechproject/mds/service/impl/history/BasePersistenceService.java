@@ -1,9 +1,12 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.datanucleus.enhancer.Persistable;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.ServiceUtil;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.FieldAccessors;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.TypeHelper;
 import org.osgi.framework.BundleContext;
@@ -15,6 +18,11 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.jdo.PersistenceManagerFactory;
 import java.beans.PropertyDescriptor;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * The <code>BasePersistenceService</code> class provides utility methods for communication
@@ -27,10 +35,29 @@ public abstract class BasePersistenceService {
     private BundleContext bundleContext;
     private ApplicationContext appContext;
 
+    /**
+     * The properties of a class that its field accessor does not handle, because they lack a getter or a setter.
+     */
+    private static final ClassValue<Set<String>> PROPERTIES_WITHOUT_ACCESSOR = new ClassValue<Set<String>>() {
+        @Override
+        protected Set<String> computeValue(Class<?> type) {
+            Set<String> accessorFields = FieldAccessors.forClass(type).getFieldNames();
+            Set<String> properties = new LinkedHashSet<>();
+
+            for (PropertyDescriptor descriptor : PropertyUtil.getPropertyDescriptors(type)) {
+                if (!accessorFields.contains(descriptor.getName())) {
+                    properties.add(descriptor.getName());
+                }
+            }
+
+            return Collections.unmodifiableSet(properties);
+        }
+    };
+
     private final RelationshipConverter relConverter = new RelationshipConverter();
 
     protected Long getInstanceId(Object instance) {
-        Object value = PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+        Object value = FieldAccessors.forClass(instance.getClass()).get(instance, Constants.Util.ID_FIELD_NAME);
         Number id = null;
 
         if (value instanceof Number) {
@@ -52,18 +79,83 @@ public abstract class BasePersistenceService {
             }
         }
 
-        PropertyUtil.copyProperties(recordInstance, instance, relConverter);
-        // the regular copy ignores auto generated fields, we want to copy a subset of them
-        PropertyUtil.copyProperties(recordInstance, instance, relConverter, Constants.Util.RECORD_FIELDS_TO_COPY);
+        FieldAccessor instanceAccessor = FieldAccessors.forClass(instance.getClass());
+        FieldAccessor recordAccessor = FieldAccessors.forClass(recordInstance.getClass());
+        Set<String> recordFields = recordAccessor.getFieldNames();
+        Set<String> remainingFields = new HashSet<>();
+
+        for (String field : instanceAccessor.getFieldNames()) {
+            if (!shouldCopyToRecord(field)) {
+                continue;
+            }
+
+            if (recordFields.contains(field)) {
+                Object value = relConverter.convert(instanceAccessor.get(instance, field));
+                recordAccessor.set(recordInstance, field, value);
+            } else {
+                remainingFields.add(field);
+            }
+        }
+
+        for (String field : PROPERTIES_WITHOUT_ACCESSOR.get(instance.getClass())) {
+            if (shouldCopyToRecord(field)) {
+                remainingFields.add(field);
+            }
+        }
+
+        // fields without a getter or a setter are copied as before, through the fields themselves
+        if (!remainingFields.isEmpty()) {
+            PropertyUtil.copyProperties(recordInstance, instance, relConverter, remainingFields);
+        }
 
         return recordInstance;
     }
 
+    /**
+     * Checks whether any of the fields of the instance differ from the fields of the record. Relationship
+     * fields are compared by the ids of the related instances.
+     *
+     * @param instance the instance
+     * @param record the history or trash record of the instance
+     * @return true if any field was changed, false otherwise
+     */
+    protected boolean hasChangedFields(Object instance, Object record) {
+        FieldAccessor instanceAccessor = FieldAccessors.forClass(instance.getClass());
+        FieldAccessor recordAccessor = FieldAccessors.forClass(record.getClass());
+        Set<String> recordFields = recordAccessor.getFieldNames();
+
+        for (String field : instanceAccessor.getFieldNames()) {
+            // skip the id field
+            if (Constants.Util.ID_FIELD_NAME.equals(field) || !recordFields.contains(field)) {
+                continue;
+            }
+
+            Object newValue = relConverter.convert(instanceAccessor.get(instance, field));
+            Object oldValue = relConverter.convert(recordAccessor.get(record, field));
+
+            if (!Objects.equals(newValue, oldValue)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean shouldCopyToRecord(String field) {
+        // auto generated fields are not copied, except for a subset of them
+        if (Constants.Util.RECORD_FIELDS_TO_COPY.contains(field)) {
+            return true;
+        }
+
+        return !ArrayUtils.contains(Constants.Util.GENERATED_FIELD_NAMES, field)
+                && !Constants.Util.INSTANCE_VERSION_FIELD_NAME.equals(field);
+    }
+
     protected Collection<Long> convertToIdsCollection(Collection collection) {
         Collection<Long> idColl = TypeHelper.suggestAndCreateCollectionImplementation(collection.getClass());
 
         for (Object obj : collection) {
-            idColl.add((Long) PropertyUtil.safeGetProperty(obj, Constants.Util.ID_FIELD_NAME));
+            idColl.add((Long) FieldAccessors.forClass(obj.getClass()).get(obj, Constants.Util.ID_FIELD_NAME));
         }
 
         return idColl;
@@ -81,10 +173,6 @@ public abstract class BasePersistenceService {
         return persistenceManagerFactory;
     }
 
-    protected RelationshipConverter getRelConverter() {
-        return relConverter;
-    }
-
     @Autowired
     @Qualifier("persistenceManagerFactory")
     public void setPersistenceManagerFactory(PersistenceManagerFactory persistenceManagerFactory) {
@@ -113,6 +201,10 @@ public abstract class BasePersistenceService {
     private class RelationshipConverter implements PropertyUtil.ValueConverter {
         @Override
         public Object convert(Object value, PropertyDescriptor descriptor) {
+            return convert(value);
+        }
+
+        public Object convert(Object value) {
             if (value instanceof Collection) {
                 Collection coll = (Collection) value;
 
@@ -128,7 +220,7 @@ public abstract class BasePersistenceService {
                 }
             } else if (value instanceof Persistable) {
                 // 1:1 or M:1 relationship, just copy the id
-                return PropertyUtil.safeGetProperty(value, Constants.Util.ID_FIELD_NAME);
+                return FieldAccessors.forClass(value.getClass()).get(value, Constants.Util.ID_FIELD_NAME);
             } else {
                 // regular field
                 return value;
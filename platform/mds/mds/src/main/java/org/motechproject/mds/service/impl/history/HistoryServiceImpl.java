@@ -7,8 +7,9 @@ import org.motechproject.mds.query.PropertyBuilder;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.service.HistoryService;
+import org.motechproject.mds.util.FieldAccessor;
+import org.motechproject.mds.util.FieldAccessors;
 import org.motechproject.mds.util.Order;
-import org.motechproject.mds.util.PropertyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
@@ -131,8 +132,7 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
                 return true;
             } else {
                 // check if any fields changed
-                List<String> changedFields = PropertyUtil.findChangedFields(instance, latestHistoryRev, getRelConverter());
-                return !changedFields.isEmpty();
+                return hasChangedFields(instance, latestHistoryRev);
             }
         }
     }
@@ -152,13 +152,13 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
 
     private void setHistoryProperties(Object newHistoryObj, Object realCurrentObj) {
         // creates connection between instance object and history object
+        FieldAccessor historyAccessor = FieldAccessors.forClass(newHistoryObj.getClass());
         Long id = getInstanceId(realCurrentObj);
-        PropertyUtil.safeSetProperty(newHistoryObj,
-                HistoryTrashClassHelper.currentVersion(newHistoryObj.getClass()), id);
+        historyAccessor.set(newHistoryObj, HistoryTrashClassHelper.currentVersion(newHistoryObj.getClass()), id);
 
         // add current entity schema version
         Long schemaVersion = getCurrentSchemaVersion(realCurrentObj.getClass().getName());
-        PropertyUtil.safeSetProperty(newHistoryObj,
+        historyAccessor.set(newHistoryObj,
                 HistoryTrashClassHelper.historySchemaVersion(newHistoryObj.getClass()), schemaVersion);
     }
 
@@ -15,9 +15,10 @@ import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.Constants;
-import org.motechproject.osgi.web.util.OSGiServiceUtils;
+import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
@@ -25,12 +26,19 @@ import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class responsible for all actions connected with registering MDS data provider in Task module.
+ * The entities and lookups used by the data provider are resolved once for every version of the MDS schema, they are
+ * resolved again after the data provider is updated with a new schema. Data services are resolved again once they
+ * are unregistered.
  */
 @Component("mdsDataProvider")
 public class MDSDataProvider extends AbstractDataProvider {
@@ -44,6 +52,10 @@ public class MDSDataProvider extends AbstractDataProvider {
     private ServiceRegistration serviceRegistration;
     private EntityService entityService;
 
+    private final Map<String, EntityDto> entities = new ConcurrentHashMap<>();
+    private final Map<List<Object>, LookupInfo> lookups = new ConcurrentHashMap<>();
+    private final Map<String, ServiceInfo> services = new ConcurrentHashMap<>();
+
     @Autowired
     public MDSDataProvider(ResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
@@ -64,9 +76,18 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
     }
 
+    @Override
+    public List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupMaps) {
+        if (FIND_BY_ID_LOOKUP.equals(lookupName)) {
+            return findAllById(type, lookupMaps);
+        } else {
+            return findAllUsingLookup(type, lookupName, lookupMaps);
+        }
+    }
+
     @Override
     public boolean supports(String type) {
-        return entityService.getEntityByClassName(type) != null;
+        return getEntity(type) != null;
     }
 
     @Override
@@ -91,6 +112,10 @@ public class MDSDataProvider extends AbstractDataProvider {
     }
 
     public void updateDataProvider(SchemaHolder schemaHolder) {
+        // entities and lookups are resolved again for the new schema
+        entities.clear();
+        lookups.clear();
+
         setBody(mdsDataProviderBuilder.generateDataProvider(schemaHolder));
         // we unregister the service, then register again
         if (serviceRegistration != null) {
@@ -111,29 +136,92 @@ public class MDSDataProvider extends AbstractDataProvider {
     }
 
     private Object findUsingLookup(String type, String lookupName, Map<String, String> lookupMap) {
-        Object obj = null;
+        LookupExecutor executor = getLookupExecutor(type, lookupName);
+        return (executor == null) ? null : getSingleResult(type, executor.execute(lookupMap));
+    }
+
+    private List<Object> findAllUsingLookup(String type, String lookupName, List<Map<String, String>> lookupMaps) {
+        // the entity, lookup and service are resolved once for all lookups, but every lookup still runs its own
+        // query, only lookups by instance id are combined into a single query
+        LookupExecutor executor = getLookupExecutor(type, lookupName);
+        List<Object> results = new ArrayList<>(lookupMaps.size());
 
-        LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
-        if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
+        for (Map<String, String> lookupMap : lookupMaps) {
+            results.add((executor == null) ? null : getSingleResult(type, executor.execute(lookupMap)));
         }
 
-        if (entity != null && lookup != null) {
-            String serviceName = MotechClassPool.getInterfaceName(type);
-            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
+        return results;
+    }
 
-            if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+    private LookupExecutor getLookupExecutor(String type, String lookupName) {
+        LookupExecutor executor = null;
+        LookupInfo lookupInfo = getLookup(type, lookupName);
 
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
+        if (lookupInfo != null) {
+            String serviceName = MotechClassPool.getInterfaceName(type);
+            MotechDataService service = getService(serviceName);
 
-                obj = executor.execute(lookupMap);
+            if (service != null) {
+                executor = new LookupExecutor(service, lookupInfo.lookup, lookupInfo.fieldsByName);
             } else {
                 getLogger().error("Service %s not found", serviceName);
             }
         }
 
+        return executor;
+    }
+
+    private EntityDto getEntity(String type) {
+        EntityDto entity = entities.get(type);
+
+        if (entity == null) {
+            entity = entityService.getEntityByClassName(type);
+            if (entity != null) {
+                entities.put(type, entity);
+            }
+        }
+
+        return entity;
+    }
+
+    private LookupInfo getLookup(String type, String lookupName) {
+        List<Object> key = Arrays.<Object>asList(type, lookupName);
+        LookupInfo lookupInfo = lookups.get(key);
+
+        if (lookupInfo == null) {
+            EntityDto entity = getEntity(type);
+            LookupDto lookup = (entity == null) ? null : entityService.getLookupByName(entity.getId(), lookupName);
+
+            if (lookup != null) {
+                lookupInfo = new LookupInfo(lookup, entityService.getLookupFieldsMapping(entity.getId(), lookupName));
+                lookups.put(key, lookupInfo);
+            }
+        }
+
+        return lookupInfo;
+    }
+
+    private MotechDataService getService(String serviceName) {
+        ServiceInfo serviceInfo = services.get(serviceName);
+
+        // the reference of an unregistered service has no bundle
+        if (serviceInfo == null || serviceInfo.reference.getBundle() == null) {
+            serviceInfo = null;
+            services.remove(serviceName);
+
+            ServiceReference reference = bundleContext.getServiceReference(serviceName);
+            MotechDataService service = (reference == null) ? null : (MotechDataService) bundleContext.getService(reference);
+
+            if (service != null) {
+                serviceInfo = new ServiceInfo(reference, service);
+                services.put(serviceName, serviceInfo);
+            }
+        }
+
+        return (serviceInfo == null) ? null : serviceInfo.service;
+    }
+
+    private Object getSingleResult(String type, Object obj) {
         // we allow executing lookups that return multiple objects
         // if such a lookup returns more then 1 object we throw an exception
         Object result = null;
@@ -156,7 +244,7 @@ public class MDSDataProvider extends AbstractDataProvider {
     private Object findById(String type, String idParam) {
         Long id = parseId(idParam);
         String serviceName = MotechClassPool.getInterfaceName(type);
-        MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
+        MotechDataService service = getService(serviceName);
         if (null != service) {
             return service.findById(id);
         } else {
@@ -165,6 +253,33 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
     }
 
+    private List<Object> findAllById(String type, List<Map<String, String>> lookupMaps) {
+        List<Long> ids = new ArrayList<>(lookupMaps.size());
+        for (Map<String, String> lookupMap : lookupMaps) {
+            ids.add(parseId(lookupMap.get(ID_LOOKUP_FIELD)));
+        }
+
+        String serviceName = MotechClassPool.getInterfaceName(type);
+        MotechDataService service = getService(serviceName);
+        Map<Object, Object> instancesById = new HashMap<>();
+
+        if (null != service) {
+            // a single query for all instances
+            for (Object instance : service.findByIds(new HashSet<>(ids))) {
+                instancesById.put(PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME), instance);
+            }
+        } else {
+            getLogger().error("Service %s not found", serviceName);
+        }
+
+        List<Object> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            results.add(instancesById.get(id));
+        }
+
+        return results;
+    }
+
     private Long parseId(String idParam) {
         try {
             return Long.parseLong(idParam);
@@ -194,4 +309,26 @@ public class MDSDataProvider extends AbstractDataProvider {
     public void setEntityService(EntityService entityService) {
         this.entityService = entityService;
     }
+
+    private static final class LookupInfo {
+
+        private final LookupDto lookup;
+        private final Map<String, FieldDto> fieldsByName;
+
+        private LookupInfo(LookupDto lookup, Map<String, FieldDto> fieldsByName) {
+            this.lookup = lookup;
+            this.fieldsByName = fieldsByName;
+        }
+    }
+
+    private static final class ServiceInfo {
+
+        private final ServiceReference reference;
+        private final MotechDataService service;
+
+        private ServiceInfo(ServiceReference reference, MotechDataService service) {
+            this.reference = reference;
+            this.service = service;
+        }
+    }
 }
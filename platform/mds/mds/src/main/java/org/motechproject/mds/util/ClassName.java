@@ -130,6 +130,23 @@ public final class ClassName {
         return String.format("%s.%sServiceImpl", packageName, getSimpleName(className));
     }
 
+    /**
+     * Retrieves fully qualified class name of the {@link org.motechproject.mds.util.FieldAccessor}
+     * generated for the given class.
+     *
+     * @param className entity, history or trash class name
+     * @return fully qualified field accessor class name
+     */
+    public static String getAccessorName(String className) {
+        String packageName = getPackage(className);
+        if (StringUtils.isBlank(packageName) || Constants.PackagesGenerated.ENTITY.equals(packageName)) {
+            packageName = Constants.PackagesGenerated.ACCESSOR;
+        } else {
+            packageName += ".mdsaccessor";
+        }
+        return String.format("%s.%sAccessor", packageName, getSimpleName(className));
+    }
+
     /**
      * Returns the Spring bean name for the service class.
      * @param className the name of the service class
@@ -155,6 +155,13 @@ public final class Constants {
          */
         public static final String SERVICE_IMPL = SERVICE + ".impl";
 
+        /**
+         * Constant <code>ACCESSOR</code> presents a package for generated field accessor classes.
+         *
+         * @see #ENTITY
+         */
+        public static final String ACCESSOR = ENTITY + ".accessor";
+
         private PackagesGenerated() {
         }
     }
@@ -575,6 +582,7 @@ public final class Constants {
         public static final String CSV_IMPORT_CREATED_COUNT = CSV_IMPORT_PREFIX + "created_count";
         public static final String CSV_IMPORT_UPDATED_COUNT = CSV_IMPORT_PREFIX + "updated_count";
         public static final String CSV_IMPORT_TOTAL_COUNT = CSV_IMPORT_PREFIX + "total_count";
+        public static final String CSV_IMPORT_COMMITTED_ROWS = CSV_IMPORT_PREFIX + "committed_rows";
         public static final String CSV_IMPORT_FAILURE_MSG = CSV_IMPORT_PREFIX + "failure_message";
         public static final String CSV_IMPORT_FAILURE_STACKTRACE = CSV_IMPORT_PREFIX + "failure_stacktrace";
         public static final String CSV_IMPORT_FILENAME = CSV_IMPORT_PREFIX + "filename";
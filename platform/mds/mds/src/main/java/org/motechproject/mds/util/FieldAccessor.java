@@ -0,0 +1,37 @@
+package org.motechproject.mds.util;
+
+import java.util.Set;
+
+/**
+ * The <code>FieldAccessor</code> reads and writes the fields of instances of a single class. MDS generates
+ * an implementation for each entity class, that calls the getters and setters of the class directly, so that
+ * instances can be read and written without bean introspection. The implementation for a class can be retrieved
+ * using {@link FieldAccessors#forClass(Class)}.
+ */
+public interface FieldAccessor {
+
+    /**
+     * Returns the names of the fields that have both a getter and a setter in the class.
+     *
+     * @return the names of the fields
+     */
+    Set<String> getFieldNames();
+
+    /**
+     * Returns the value of the given field of the instance.
+     *
+     * @param instance the instance to read the field from
+     * @param field the name of the field
+     * @return the value of the field
+     */
+    Object get(Object instance, String field);
+
+    /**
+     * Sets the value of the given field of the instance.
+     *
+     * @param instance the instance to write the field to
+     * @param field the name of the field
+     * @param value the new value of the field
+     */
+    void set(Object instance, String field, Object value);
+}
@@ -0,0 +1,95 @@
+package org.motechproject.mds.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyDescriptor;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The <code>FieldAccessors</code> util class provides the {@link FieldAccessor} for a class. The accessor
+ * generated by MDS is loaded by the class loader of the class, which is the class loader of the entities bundle
+ * for entities defined by the users and for history and trash classes. Classes that have no generated accessor
+ * visible from their class loader, like entities defined by developers, use an accessor that reads and writes
+ * fields through {@link PropertyUtil}. The accessor is resolved only once for each class.
+ */
+public final class FieldAccessors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FieldAccessors.class);
+
+    private static final ClassValue<FieldAccessor> ACCESSORS = new ClassValue<FieldAccessor>() {
+        @Override
+        protected FieldAccessor computeValue(Class<?> type) {
+            return loadAccessor(type);
+        }
+    };
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * Returns the accessor for the fields of the given class.
+     *
+     * @param clazz the class of the instances that will be accessed
+     * @return the generated accessor of the class, or an accessor using reflection if there is none
+     */
+    public static FieldAccessor forClass(Class<?> clazz) {
+        return ACCESSORS.get(clazz);
+    }
+
+    private static FieldAccessor loadAccessor(Class<?> clazz) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        String accessorName = ClassName.getAccessorName(clazz.getName());
+
+        if (null != classLoader) {
+            try {
+                Class<?> accessorClass = classLoader.loadClass(accessorName);
+                if (FieldAccessor.class.isAssignableFrom(accessorClass)) {
+                    return (FieldAccessor) accessorClass.newInstance();
+                }
+            } catch (ClassNotFoundException | NoClassDefFoundError e) {
+                LOGGER.trace("No generated field accessor for {}", clazz.getName());
+            } catch (InstantiationException | IllegalAccessException e) {
+                LOGGER.error("Unable to create the field accessor {}", accessorName, e);
+            }
+        }
+
+        return new ReflectionFieldAccessor(clazz);
+    }
+
+    /**
+     * An implementation of {@link FieldAccessor} that reads and writes fields through {@link PropertyUtil}.
+     * Used for classes without a generated accessor.
+     */
+    private static class ReflectionFieldAccessor implements FieldAccessor {
+        private final Set<String> fieldNames;
+
+        ReflectionFieldAccessor(Class<?> clazz) {
+            Set<String> names = new LinkedHashSet<>();
+
+            for (PropertyDescriptor descriptor : PropertyUtil.getPropertyDescriptors(clazz)) {
+                if (null != descriptor.getReadMethod() && null != descriptor.getWriteMethod()) {
+                    names.add(descriptor.getName());
+                }
+            }
+
+            fieldNames = Collections.unmodifiableSet(names);
+        }
+
+        @Override
+        public Set<String> getFieldNames() {
+            return fieldNames;
+        }
+
+        @Override
+        public Object get(Object instance, String field) {
+            return PropertyUtil.safeGetProperty(instance, field);
+        }
+
+        @Override
+        public void set(Object instance, String field, Object value) {
+            PropertyUtil.safeSetProperty(instance, field, value);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.springframework.core.io.ResourceLoader;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,9 @@ import java.util.Map;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -135,6 +138,48 @@ public class MdsDataProviderTest {
         assertEquals("found by id", record.getValue());
     }
 
+    @Test
+    public void shouldExecuteManyLookups() {
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        List<Object> result = dataProvider.lookupAll(Record.class.getName(), "singleLookup", asList(lookupMap, lookupMap));
+
+        assertEquals(2, result.size());
+        assertEquals("single", ((Record) result.get(0)).getValue());
+        assertEquals("single", ((Record) result.get(1)).getValue());
+    }
+
+    @Test
+    public void shouldFindManyByInstanceId() {
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put(ID_LOOKUP_FIELD, INSTANCE_ID.toString());
+
+        Map<String, String> missingLookupMap = new HashMap<>();
+        missingLookupMap.put(ID_LOOKUP_FIELD, "2");
+
+        List<Object> result = dataProvider.lookupAll(Record.class.getName(), FIND_BY_ID_LOOKUP,
+                asList(lookupMap, missingLookupMap));
+
+        assertEquals(2, result.size());
+        assertEquals("found by ids", ((Record) result.get(0)).getValue());
+        assertNull(result.get(1));
+    }
+
+    @Test
+    public void shouldResolveLookupOnce() {
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+        Object result = dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+
+        assertEquals("single", ((Record) result).getValue());
+        verify(entityService).getEntityByClassName(Record.class.getName());
+        verify(entityService).getLookupByName(ENTITY_ID, "singleLookup");
+        verify(entityService).getLookupFieldsMapping(ENTITY_ID, "singleLookup");
+    }
+
     @Test
     public void shouldFindByRelatedField() {
         Map<String, String> lookupMap = new HashMap<>();
@@ -173,6 +218,14 @@ public class MdsDataProviderTest {
             return record;
         }
 
+        @Override
+        public List<Record> findByIds(Collection<Long> ids) {
+            assertTrue(ids.contains(INSTANCE_ID));
+            Record record = new Record();
+            record.setValue("found by ids");
+            return asList(record);
+        }
+
         public List<Record> relatedLookup(String value) {
             assertEquals(VALUE, value);
             Record record = new Record();
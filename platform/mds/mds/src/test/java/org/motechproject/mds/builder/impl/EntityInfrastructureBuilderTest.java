@@ -21,6 +21,7 @@ import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.MotechDataRepository;
 import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.FieldAccessor;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -31,6 +32,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -42,6 +44,8 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
@@ -54,6 +58,7 @@ public class EntityInfrastructureBuilderTest {
     private static final String SAMPLE_REPOSITORY = "org.motechproject.mds.builder.mdsrepositoryimpl.AllSamples";
     private static final String SAMPLE_INTERFACE = "org.motechproject.mds.builder.mdsservice.SampleService";
     private static final String SAMPLE_SERVICE = "org.motechproject.mds.builder.mdsserviceimpl.SampleServiceImpl";
+    private static final String SAMPLE_ACCESSOR = "org.motechproject.mds.builder.mdsaccessor.SampleAccessor";
 
     private static final String SAMPLE_WITH_LOOKUPS_SERVICE = "org.motechproject.mds.builder.mdsserviceimpl.SampleWithLookupsServiceImpl";
     private static final String SAMPLE_WITH_LOOKUPS_INTERFACE = "org.motechproject.mds.builder.mdsservice.SampleWithLookupsService";
@@ -149,6 +154,36 @@ public class EntityInfrastructureBuilderTest {
         verifyFetchDepthInRepository(mdsClassLoaderImpl.loadClass(SAMPLE_WITH_LOOKUPS_REPOSITORY), -1);
     }
 
+    @Test
+    public void shouldCreateFieldAccessor() throws Exception {
+        MDSClassLoader mdsClassLoaderImpl = MDSClassLoader.getStandaloneInstance(getClass().getClassLoader());
+
+        EntityDto entity = new EntityDto(Sample.class.getName());
+        List<ClassData> data = entityInfrastructureBuilder.buildInfrastructure(entity, schemaHolder);
+
+        for (ClassData classData : data) {
+            if (SAMPLE_ACCESSOR.equals(classData.getClassName())) {
+                mdsClassLoaderImpl.safeDefineClass(classData.getClassName(), classData.getBytecode());
+            }
+        }
+
+        FieldAccessor accessor = (FieldAccessor) mdsClassLoaderImpl.loadClass(SAMPLE_ACCESSOR).newInstance();
+
+        assertEquals(new HashSet<>(asList("id", "notInDefFg", "oneToManyName", "oneToOneName")),
+                accessor.getFieldNames());
+
+        Sample sample = new Sample();
+        Sample related = new Sample();
+        accessor.set(sample, "id", 7L);
+        accessor.set(sample, "oneToOneName", related);
+
+        assertEquals(7L, sample.getId().longValue());
+        assertSame(related, sample.getOneToOneName());
+        assertEquals(7L, accessor.get(sample, "id"));
+        assertSame(related, accessor.get(sample, "oneToOneName"));
+        assertNull(accessor.get(sample, "oneToManyName"));
+    }
+
     private void verifySingleLookup(Class<?> serviceClass) throws NoSuchMethodException {
         Method method = getLookupWithoutParams(serviceClass);
         assertEquals(SampleWithLookups.class, method.getReturnType());
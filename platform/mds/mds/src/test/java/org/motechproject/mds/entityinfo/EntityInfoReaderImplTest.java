@@ -0,0 +1,100 @@
+package org.motechproject.mds.entityinfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.exception.entity.EntityNotFoundException;
+import org.motechproject.mds.util.Constants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleWiring;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityInfoReaderImplTest {
+
+    private static final String ENTITY_CLASS = "org.motechproject.mds.test.Patient";
+    private static final String OTHER_ENTITY_CLASS = "org.motechproject.mds.test.Clinic";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle entitiesBundle;
+
+    @Mock
+    private BundleWiring bundleWiring;
+
+    @Mock
+    private ClassLoader entitiesClassLoader;
+
+    @InjectMocks
+    private EntityInfoReaderImpl entityInfoReader = new EntityInfoReaderImpl(idMapping());
+
+    @Before
+    public void setUp() {
+        when(bundleContext.getBundles()).thenReturn(new Bundle[]{entitiesBundle});
+        when(entitiesBundle.getSymbolicName()).thenReturn(Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME);
+        when(entitiesBundle.adapt(BundleWiring.class)).thenReturn(bundleWiring);
+        when(bundleWiring.getClassLoader()).thenReturn(entitiesClassLoader);
+        when(entitiesClassLoader.getResourceAsStream(anyString())).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) {
+                return new ByteArrayInputStream("{\"serviceName\":\"patientService\"}".getBytes());
+            }
+        });
+    }
+
+    @Test
+    public void shouldReadEntityInfoOnlyOnce() {
+        entityInfoReader.init();
+
+        EntityInfo entityInfo = entityInfoReader.getEntityInfo(ENTITY_CLASS);
+
+        assertEquals("patientService", entityInfo.getServiceName());
+        assertSame(entityInfo, entityInfoReader.getEntityInfo(ENTITY_CLASS));
+        assertSame(entityInfo, entityInfoReader.getEntityInfo(1L));
+        verify(entitiesClassLoader, times(2)).getResourceAsStream(anyString());
+    }
+
+    @Test
+    public void shouldReplaceEntityInfoWhenReadAgain() {
+        entityInfoReader.init();
+        EntityInfo entityInfo = entityInfoReader.getEntityInfo(OTHER_ENTITY_CLASS);
+
+        entityInfoReader.init();
+
+        assertEquals(entityInfo.getServiceName(), entityInfoReader.getEntityInfo(OTHER_ENTITY_CLASS).getServiceName());
+        verify(entitiesClassLoader, times(4)).getResourceAsStream(anyString());
+    }
+
+    @Test(expected = EntityNotFoundException.class)
+    public void shouldThrowExceptionForUnknownEntityId() {
+        entityInfoReader.init();
+
+        entityInfoReader.getEntityInfo(3L);
+    }
+
+    private static Map<Long, String> idMapping() {
+        Map<Long, String> idMapping = new HashMap<>();
+        idMapping.put(1L, ENTITY_CLASS);
+        idMapping.put(2L, OTHER_ENTITY_CLASS);
+        return idMapping;
+    }
+}
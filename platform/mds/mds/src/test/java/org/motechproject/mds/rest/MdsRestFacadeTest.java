@@ -25,6 +25,7 @@ import org.motechproject.mds.exception.rest.RestLookupExecutionForbiddenExceptio
 import org.motechproject.mds.exception.rest.RestLookupNotFoundException;
 import org.motechproject.mds.exception.rest.RestNoLookupResultException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
@@ -53,6 +54,8 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -360,6 +363,66 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldStreamInstancesWithBlobsRetrievedAtOnce() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        Record recordTwo = testRecord();
+        recordTwo.setId(2L);
+        when(dataService.executeQuery(any(QueryExecution.class)))
+                .thenReturn(asList(recordOne, recordTwo))
+                .thenReturn(asList(new Object[]{1L, blobFieldValue}, new Object[]{2L, null}));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.stream(new RestCursor(null, "0", 2, false), true, output);
+
+        Map<?, ?> result = objectMapper.readValue(output.toByteArray(), Map.class);
+        Map<?, ?> metadata = (Map<?, ?>) result.get("metadata");
+        List<?> data = (List<?>) result.get("data");
+
+        assertEquals(ENTITY_NAME, metadata.get("entity"));
+        assertEquals(2, metadata.get("pageSize"));
+        assertFalse(metadata.containsKey("totalCount"));
+        assertEquals(2, data.size());
+        assertEquals(recordOne.getValue(), ((Map<?, ?>) data.get(0)).get(VALUE_FIELD));
+        assertArrayEquals(encodedBlobField, Base64.decodeBase64((String) ((Map<?, ?>) data.get(0)).get(BLOB_FIELD)));
+        assertNull(((Map<?, ?>) data.get(1)).get(BLOB_FIELD));
+        assertEquals("2", result.get("next"));
+
+        verify(dataService, times(2)).executeQuery(any(QueryExecution.class));
+        verify(dataService, never()).getDetachedField(any(Record.class), anyString());
+        verify(dataService, never()).count();
+    }
+
+    @Test
+    public void shouldNotReturnNextValueForLastPage() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        when(dataService.executeQuery(any(QueryExecution.class))).thenReturn(asList(recordOne));
+        when(dataService.count()).thenReturn(1L);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.stream(new RestCursor("id", null, 20, true), false, output);
+
+        Map<?, ?> result = objectMapper.readValue(output.toByteArray(), Map.class);
+
+        assertEquals(1, ((Map<?, ?>) result.get("metadata")).get("totalCount"));
+        assertEquals(1, ((List<?>) result.get("data")).size());
+        assertNull(result.get("next"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotStreamInstancesByFieldThatIsNotUnique() {
+        setUpCrudAccess(false, true, false, false);
+
+        mdsRestFacade.stream(new RestCursor(VALUE_FIELD, null, 20, false), false, new ByteArrayOutputStream());
+    }
+
+    @Test(expected = RestOperationNotSupportedException.class)
+    public void shouldThrowExceptionForStreamIfReadNotSupported() {
+        setUpCrudAccess(true, false, true, true);
+
+        mdsRestFacade.stream(new RestCursor(null, null, 20, false), false, new ByteArrayOutputStream());
+    }
+
     // bad input exceptions verifications
 
     @Test(expected = RestBadBodyFormatException.class)
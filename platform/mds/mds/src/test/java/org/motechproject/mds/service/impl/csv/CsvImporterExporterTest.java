@@ -13,15 +13,19 @@ import org.mockito.stubbing.Answer;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.UIDisplayFieldComparator;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.exception.csv.CsvImportException;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
+import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.records.Record2;
@@ -29,7 +33,11 @@ import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.jdo.FetchPlan;
+import javax.jdo.Query;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -40,11 +48,13 @@ import java.util.Map;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -109,6 +119,12 @@ public class CsvImporterExporterTest {
     @Mock
     private MDSLookupService mdsLookupService;
 
+    @Mock
+    private Query query;
+
+    @Mock
+    private FetchPlan fetchPlan;
+
     @Before
     public void setUp() {
         MotechClassPool.registerServiceInterface(ENTITY_CLASSNAME, DATA_SERVICE_CLASSNAME);
@@ -141,18 +157,54 @@ public class CsvImporterExporterTest {
 
     @Test
     public void shouldExportAllInstancesAsCsv() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer);
 
         assertEquals(INSTANCE_COUNT, result);
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
+        verify(motechDataService, never()).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldExportAllInstancesInChunks() {
+        List<Record2> firstChunk = new ArrayList<>();
+        List<Record2> secondChunk = new ArrayList<>();
+        for (long i = 0; i < 1500; i++) {
+            Record2 record = new Record2();
+            record.setId(i);
+            record.setValue("value " + i);
+            if (i < 1000) {
+                firstChunk.add(record);
+            } else {
+                secondChunk.add(record);
+            }
+        }
+
+        when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(firstChunk, secondChunk);
+        StringWriter writer = new StringWriter();
+
+        long result = csvImporterExporter.exportCsv(ENTITY_ID, writer);
+
+        assertEquals(1500, result);
+        ArgumentCaptor<QueryExecution> captor = ArgumentCaptor.forClass(QueryExecution.class);
+        verify(motechDataService, times(2)).executeQuery(captor.capture());
+
+        // the second chunk starts after the last id of the first one
+        when(query.getFetchPlan()).thenReturn(fetchPlan);
+        when(query.executeWithArray(anyVararg())).thenReturn(new ArrayList<>());
+        captor.getAllValues().get(1).execute(query, null);
+
+        verify(query).setFilter("id > param0");
+        verify(query).setOrdering("id ascending");
+        verify(query).setRange(0, 1000);
+        verify(query).executeWithArray(999L);
     }
 
     @Test
     public void shouldUseExportCustomizer() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer, csvExportCustomizer);
@@ -239,6 +291,97 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldImportInstancesInChunks() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new TransactionAnswer());
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, csvImportCustomizer(),
+                importSettings(7, 3, 0), CONTINUE_ON_ERROR);
+
+        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        verify(motechDataService, times(3)).doInTransaction(any(TransactionCallback.class));
+        verify(motechDataService, times(INSTANCE_COUNT)).create(captor.capture());
+
+        assertEquals(testInstances(IdMode.EMPTY_ID_COLUMN), captor.getAllValues());
+        assertEquals(listFromRangeInclusive(0, 19), results.getNewInstanceIDs());
+        assertEquals(INSTANCE_COUNT, results.getCommittedRows());
+        assertEquals(0, results.getRowErrors().size());
+    }
+
+    @Test
+    public void shouldSkipCommittedRowsWhenImportingInChunks() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new TransactionAnswer());
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, csvImportCustomizer(),
+                importSettings(10, 2, 15), CONTINUE_ON_ERROR);
+
+        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        verify(motechDataService, times(1)).doInTransaction(any(TransactionCallback.class));
+        verify(motechDataService, times(5)).create(captor.capture());
+
+        assertEquals(testInstances(IdMode.EMPTY_ID_COLUMN).subList(15, INSTANCE_COUNT), captor.getAllValues());
+        assertEquals(INSTANCE_COUNT, results.getCommittedRows());
+    }
+
+    @Test
+    public void shouldReportRowErrorsOfAllChunksWhenContinuingOnError() {
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new TransactionAnswer());
+
+        // rows 4, 8 and 12 are invalid
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID,
+                new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID)), csvImportCustomizer(),
+                importSettings(2, 2, 0), true);
+
+        assertEquals(17, results.totalNumberOfImportedInstances());
+        assertEquals(3, results.getRowErrors().size());
+        assertTrue(results.getRowErrors().containsKey(4));
+        assertEquals(INSTANCE_COUNT, results.getCommittedRows());
+    }
+
+    @Test
+    public void shouldReportCommittedRowsWhenChunkFails() {
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new TransactionAnswer());
+
+        // the fourth row is invalid, so the second chunk fails
+        try {
+            csvImporterExporter.importCsv(ENTITY_ID, new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID)),
+                    csvImportCustomizer(), importSettings(2, 2, 0), false);
+            fail("Expected the import to fail");
+        } catch (CsvImportException e) {
+            assertEquals(Integer.valueOf(2), e.getCommittedRows());
+        }
+
+        verify(motechDataService, times(2)).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotImportInChunksWithinTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            csvImporterExporter.importCsv(ENTITY_ID,
+                    new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN)), csvImportCustomizer(),
+                    importSettings(7, 3, 0), CONTINUE_ON_ERROR);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    private CsvImportCustomizer csvImportCustomizer() {
+        return new DefaultCsvImportCustomizer();
+    }
+
+    private CsvImportSettings importSettings(int chunkSize, int threadCount, int firstRow) {
+        CsvImportSettings settings = new CsvImportSettings();
+        settings.setChunkSize(chunkSize);
+        settings.setThreadCount(threadCount);
+        settings.setFirstRow(firstRow);
+        return settings;
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
@@ -398,6 +541,14 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private class TransactionAnswer implements Answer<Object> {
+
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+        }
+    }
+
     private enum IdMode {
         INCLUDE_ID, EMPTY_ID_COLUMN, NO_ID_COLUMN, INVALID
     }
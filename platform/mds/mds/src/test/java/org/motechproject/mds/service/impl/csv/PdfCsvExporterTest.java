@@ -14,6 +14,7 @@ import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.records.Record2;
 import org.osgi.framework.BundleContext;
@@ -28,6 +29,7 @@ import java.util.List;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -166,7 +168,7 @@ public class PdfCsvExporterTest {
             instances.add(instance2);
         }
 
-        when(dataService.retrieveAll(null)).thenReturn(instances);
+        when(dataService.executeQuery(any(QueryExecution.class))).thenReturn(instances);
     }
 
     private void writePdfToFile() {
@@ -69,4 +69,18 @@ public class ClassNameTest {
         assertEquals("org.motechproject.admin.mds.mdsservice.UserService", ClassName.getInterfaceName("org.motechproject.admin.mds.User"));
         assertEquals("org.motechproject.email.domain.mdsservice.EmailService", ClassName.getInterfaceName("org.motechproject.email.domain.Email"));
     }
+
+    @Test
+    public void shouldGenerateCorrectAccessorNames() {
+        //EUDE
+        assertEquals("org.motechproject.mds.entity.accessor.ExampleAccessor", ClassName.getAccessorName("Example"));
+        assertEquals("org.motechproject.mds.entity.accessor.ExampleAccessor",
+                ClassName.getAccessorName("org.motechproject.mds.entity.Example"));
+        assertEquals("org.motechproject.mds.entity.history.mdsaccessor.Example__HistoryAccessor",
+                ClassName.getAccessorName("org.motechproject.mds.entity.history.Example__History"));
+
+        //DDE
+        assertEquals("org.motechproject.email.domain.mdsaccessor.EmailAccessor",
+                ClassName.getAccessorName("org.motechproject.email.domain.Email"));
+    }
 }
@@ -0,0 +1,117 @@
+package org.motechproject.osgi.web.tracker;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks all services of the given type and keeps them in a map, keyed by the name exposed by every service.
+ * The map is updated on OSGi service events, so looking up a service by its name does not query the
+ * service registry. If more than one service with the same name is registered, the one registered first
+ * is returned. The tracker opens itself on the first lookup.
+ *
+ * @param <S> the type of the tracked services
+ */
+public abstract class NamedServiceTracker<S> extends ServiceTracker<S, S> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamedServiceTracker.class);
+
+    private final Map<String, S> servicesByName = new ConcurrentHashMap<>();
+    private final Map<ServiceReference<S>, String> names = new ConcurrentHashMap<>();
+
+    private volatile boolean opened;
+
+    /**
+     * @param context the bundle context used for tracking the services
+     * @param clazz the class of the tracked services
+     */
+    public NamedServiceTracker(BundleContext context, Class<S> clazz) {
+        super(context, clazz, null);
+    }
+
+    /**
+     * Returns the name of the given service.
+     *
+     * @param service the service
+     * @return the name of the service
+     */
+    protected abstract String getName(S service);
+
+    /**
+     * Returns the service with the given name.
+     *
+     * @param name the name of the service
+     * @return the service, null if no service with the given name is registered
+     */
+    public S getService(String name) {
+        if (!opened) {
+            openTracker();
+        }
+        return (name == null) ? null : servicesByName.get(name);
+    }
+
+    @Override
+    public S addingService(ServiceReference<S> reference) {
+        S service = super.addingService(reference);
+
+        if (service != null) {
+            String name = getName(service);
+            if (name != null) {
+                names.put(reference, name);
+                if (servicesByName.containsKey(name)) {
+                    LOGGER.warn("More than one {} named {} is registered", service.getClass().getName(), name);
+                } else {
+                    servicesByName.put(name, service);
+                }
+            }
+        }
+
+        return service;
+    }
+
+    @Override
+    public void removedService(ServiceReference<S> reference, S service) {
+        String name = names.remove(reference);
+
+        if (name != null && servicesByName.get(name) == service) {
+            servicesByName.remove(name);
+            replaceService(name);
+        }
+
+        super.removedService(reference, service);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            opened = false;
+        }
+        super.close();
+        servicesByName.clear();
+        names.clear();
+    }
+
+    private synchronized void openTracker() {
+        if (!opened) {
+            open();
+            opened = true;
+        }
+    }
+
+    private void replaceService(String name) {
+        for (Map.Entry<ServiceReference<S>, String> entry : names.entrySet()) {
+            if (name.equals(entry.getValue())) {
+                S service = getService(entry.getKey());
+                if (service != null) {
+                    servicesByName.put(name, service);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.motechproject.osgi.web.tracker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NamedServiceTrackerTest {
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference<Runnable> firstReference;
+
+    @Mock
+    private ServiceReference<Runnable> secondReference;
+
+    private NamedService first = new NamedService("name");
+    private NamedService second = new NamedService("name");
+
+    private NamedServiceTracker<Runnable> tracker;
+
+    @Before
+    public void setUp() {
+        when(bundleContext.getService(firstReference)).thenReturn(first);
+        when(bundleContext.getService(secondReference)).thenReturn(second);
+
+        tracker = new NamedServiceTracker<Runnable>(bundleContext, Runnable.class) {
+            @Override
+            protected String getName(Runnable service) {
+                return ((NamedService) service).name;
+            }
+        };
+    }
+
+    @Test
+    public void shouldFindTrackedServiceByName() {
+        tracker.addingService(firstReference);
+
+        assertEquals(first, tracker.getService("name"));
+        assertNull(tracker.getService("other"));
+        assertNull(tracker.getService((String) null));
+    }
+
+    @Test
+    public void shouldForgetRemovedService() {
+        tracker.addingService(firstReference);
+        tracker.removedService(firstReference, first);
+
+        assertNull(tracker.getService("name"));
+    }
+
+    @Test
+    public void shouldKeepFirstServiceWithTheSameName() {
+        tracker.addingService(firstReference);
+        tracker.addingService(secondReference);
+
+        assertEquals(first, tracker.getService("name"));
+    }
+
+    private static class NamedService implements Runnable {
+        private final String name;
+
+        NamedService(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}